@@ -0,0 +1,311 @@
+package nepic;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import nepic.logging.EventLogger;
+import nepic.logging.EventType;
+import nepic.util.Verify;
+
+/**
+ * Runs the operations that find, edit, and accept ROIs on a single background worker thread, so
+ * that segmenting a large page does not freeze the GUI. Tasks are submitted from the Swing event
+ * dispatch thread (EDT), run one at a time in the order in which they were submitted, and publish
+ * their results back on the EDT. Since no two tasks ever run at once, each task sees the
+ * {@link nepic.image.ImagePage} and the ROI finders exactly as the tasks before it left them.
+ * <p>
+ * A newly submitted task supersedes the earlier tasks that it makes stale (by default, those in the
+ * same group): a superseded task that has not yet started is never run, and one that is already
+ * running is allowed to finish (the ROI finders cannot be stopped part way through) but is then
+ * told that it was cancelled rather than asked to publish its result. The user can cancel all of
+ * the submitted tasks in the same way.
+ *
+ * @author AJ Parmidge
+ */
+public class RoiTaskExecutor {
+    private final ExecutorService worker;
+    private final ProgressListener progressListener;
+    /**
+     * The tasks that have been submitted but have not yet finished, in the order in which they were
+     * submitted. Only accessed on the EDT.
+     */
+    private final List<Task<?>> tasks = new ArrayList<Task<?>>();
+    /**
+     * The task currently running on the worker thread, or {@code null} if none is. Only accessed on
+     * the EDT.
+     */
+    private Task<?> runningTask = null;
+
+    /**
+     * Creates a {@link RoiTaskExecutor} that reports its progress to the given listener.
+     *
+     * @param progressListener the listener to notify (on the EDT) whenever a task starts or
+     *        finishes
+     */
+    public RoiTaskExecutor(ProgressListener progressListener) {
+        Verify.notNull(progressListener, "progressListener");
+        this.progressListener = progressListener;
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, Nepic.getName() + " ROI worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Submits the given task to be run after all of the tasks already submitted, cancelling every
+     * earlier task that the given task supersedes. Must be called on the EDT.
+     *
+     * @param task the task to run
+     */
+    public void submit(final Task<?> task) {
+        verifyOnEdt();
+        Verify.notNull(task, "task");
+        Verify.argument(!task.submitted, "Task has already been submitted");
+        task.submitted = true;
+        task.executor = this;
+        Iterator<Task<?>> itr = tasks.iterator();
+        while (itr.hasNext()) {
+            Task<?> earlier = itr.next();
+            if (task.supersedes(earlier)) {
+                earlier.cancelled = true;
+                if (earlier != runningTask) {
+                    itr.remove();
+                }
+            }
+        }
+        tasks.add(task);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                runOnWorker(task);
+            }
+        });
+        notifyProgressListener();
+    }
+
+    /**
+     * Cancels all of the tasks that have been submitted but have not yet finished. Must be called on
+     * the EDT.
+     */
+    public void cancelAll() {
+        verifyOnEdt();
+        for (Task<?> task : tasks) {
+            task.cancelled = true;
+        }
+        tasks.clear();
+        if (runningTask != null) {
+            tasks.add(runningTask); // Cannot stop the running task, only ignore its result.
+        }
+        notifyProgressListener();
+    }
+
+    /**
+     * Returns whether any submitted task has not yet finished. Must be called on the EDT.
+     */
+    public boolean isBusy() {
+        verifyOnEdt();
+        return !tasks.isEmpty();
+    }
+
+    private void verifyOnEdt() {
+        Verify.state(SwingUtilities.isEventDispatchThread(),
+                "RoiTaskExecutor can only be used on the event dispatch thread");
+    }
+
+    private void notifyProgressListener() {
+        progressListener.progressChanged(
+                runningTask == null || runningTask.cancelled ? null : runningTask.description,
+                runningTask == null ? tasks.size() : tasks.size() - 1);
+    }
+
+    private <T> void runOnWorker(final Task<T> task) {
+        final boolean[] started = new boolean[1];
+        invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                // Tasks cancelled before they start have already been forgotten on the EDT.
+                if (!task.cancelled) {
+                    runningTask = task;
+                    started[0] = true;
+                    notifyProgressListener();
+                }
+            }
+        });
+        if (!started[0]) {
+            return;
+        }
+
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = task.compute();
+        } catch (Throwable e) {
+            // Includes Errors (such as an OutOfMemoryError while segmenting a large page), which
+            // must not stop the task from being finished below, or the executor would stay busy.
+            failure = e;
+        }
+
+        // Publish on the EDT before running the next task, so that the next task cannot change the
+        // state that this task is publishing.
+        final T finalResult = result;
+        final Throwable finalFailure = failure;
+        invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                runningTask = null;
+                tasks.remove(task);
+                try {
+                    if (finalFailure != null) {
+                        task.failed(finalFailure);
+                    } else if (task.cancelled) {
+                        task.cancelled(finalResult);
+                    } else {
+                        task.publish(finalResult);
+                    }
+                } finally {
+                    notifyProgressListener();
+                }
+            }
+        });
+    }
+
+    private static void invokeAndWait(Runnable runnable) {
+        try {
+            SwingUtilities.invokeAndWait(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            Nepic.log(EventType.ERROR, EventLogger.LOG_ONLY,
+                    "Unable to publish the result of an ROI task",
+                    EventLogger.formatException(e.getCause()));
+        }
+    }
+
+    /**
+     * An operation to run on the worker thread of a {@link RoiTaskExecutor}.
+     *
+     * @param <T> the type of the result of the operation
+     *
+     * @author AJ Parmidge
+     */
+    public static abstract class Task<T> {
+        private volatile String description;
+        private final Object group;
+        private RoiTaskExecutor executor = null;
+        private boolean submitted = false;
+        private volatile boolean cancelled = false;
+
+        /**
+         * Creates a {@link Task} with the given description and group.
+         *
+         * @param description a short description of the task, to display while the task is
+         *        running
+         * @param group the group of the task; by default, a task supersedes the earlier tasks in
+         *        the same group
+         */
+        public Task(String description, Object group) {
+            Verify.nonEmpty(description, "description");
+            Verify.notNull(group, "group");
+            this.description = description;
+            this.group = group;
+        }
+
+        /**
+         * Changes the description of this task displayed while it is running (for example, to show
+         * how far through its work the task is). Can be called from the worker thread.
+         *
+         * @param description the new description
+         */
+        protected final void setDescription(String description) {
+            Verify.nonEmpty(description, "description");
+            this.description = description;
+            final RoiTaskExecutor taskExecutor = executor;
+            if (taskExecutor != null) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (taskExecutor.runningTask == Task.this) {
+                            taskExecutor.notifyProgressListener();
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Returns whether this task should cancel the given task submitted before it.
+         */
+        protected boolean supersedes(Task<?> earlier) {
+            return group.equals(earlier.group);
+        }
+
+        /**
+         * Returns whether this task has been cancelled (either superseded or cancelled by the user).
+         * Long-running tasks can check this to stop early.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Performs the operation. Called on the worker thread.
+         *
+         * @return the result of the operation
+         */
+        protected abstract T compute();
+
+        /**
+         * Publishes the result of the operation. Called on the EDT if the task has not been
+         * cancelled.
+         *
+         * @param result the result returned by {@link #compute()}
+         */
+        protected abstract void publish(T result);
+
+        /**
+         * Called on the EDT instead of {@link #publish(Object)} if the task was cancelled while it
+         * was running. Does nothing by default.
+         *
+         * @param result the result returned by {@link #compute()}
+         */
+        protected void cancelled(T result) {}
+
+        /**
+         * Called on the EDT if {@link #compute()} threw an exception or error. Logs it as an error
+         * by default.
+         *
+         * @param e the exception or error thrown
+         */
+        protected void failed(Throwable e) {
+            Nepic.log(EventType.ERROR, "Unable to complete task: " + description,
+                    EventLogger.formatException(e));
+        }
+    }
+
+    /**
+     * Listens for the progress of the tasks run by a {@link RoiTaskExecutor}.
+     *
+     * @author AJ Parmidge
+     */
+    public interface ProgressListener {
+        /**
+         * Called on the EDT whenever a task is submitted, starts, finishes, or is cancelled.
+         *
+         * @param runningTask the description of the task currently running, or {@code null} if no
+         *        (uncancelled) task is running
+         * @param numWaiting the number of tasks waiting to run
+         */
+        void progressChanged(String runningTask, int numWaiting);
+    }
+}
@@ -14,6 +14,11 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.AbstractAction;
 import javax.swing.JButton;
@@ -26,6 +31,7 @@ import javax.swing.KeyStroke;
 import nepic.data.DataSet;
 import nepic.data.GraphData;
 import nepic.data.MutableDataSet;
+import nepic.data.QuantileSketch;
 import nepic.gui.Graph;
 import nepic.gui.HistogramViewPanel;
 import nepic.gui.Interface;
@@ -33,6 +39,8 @@ import nepic.image.ConstraintMap;
 import nepic.image.ImagePage;
 import nepic.image.MultiPageImageInfo;
 import nepic.image.PageInfo;
+import nepic.image.PhaseCorrelator;
+import nepic.image.Roi;
 import nepic.io.DataWriter;
 import nepic.io.Files;
 import nepic.io.NepicFileFilter;
@@ -46,6 +54,7 @@ import nepic.roi.CellBodyFinder;
 import nepic.roi.DataScanner;
 import nepic.data.Histogram;
 import nepic.geo.Blob;
+import nepic.geo.BoundingBox;
 import nepic.geo.LineSegment;
 import nepic.geo.Polygon;
 import nepic.util.Pair;
@@ -61,13 +70,40 @@ import nepic.util.Verify;
  */
 public class Tracker {
     private TiffOpener myOpener;
-    private String analFileClassPath = null;
+    private String analFileClassPath = null; // Only accessed on the EDT.
+    private String analFileName = null;
     private DataWriter dataWriter;
 
     private Interface myGui;
     private Point clickLoc = null;
     private Point dragLoc = null;
 
+    /**
+     * Runs every operation that uses the ROI finders. All of the state below that is not marked as
+     * being accessed only on the EDT is owned by the tasks run by this executor, and so must only be
+     * read or written by those tasks (or on the EDT while they publish their results).
+     */
+    private final RoiTaskExecutor roiTasks;
+    /**
+     * The page currently displayed in the GUI. Only accessed on the EDT.
+     */
+    private ImagePage displayedPg = null;
+    /**
+     * Whether the displayed page is displayed with its histogram equalized. Only accessed on the EDT.
+     */
+    private boolean displayedPgEqualized = false;
+    /**
+     * The edges and colors of the ROIs currently drawn on the displayed page, by ROI ID, so that
+     * only the ROIs that have changed are redrawn. Only accessed on the EDT.
+     */
+    private final Map<Integer, DrawnRoi> drawnRois = new HashMap<Integer, DrawnRoi>();
+    /**
+     * The number of the page most recently requested by the user, and the number of pages in the
+     * image being analyzed. Only accessed on the EDT.
+     */
+    private int requestedPgNum = -1;
+    private int numPgs = 0;
+
     // For tracking
     private final BackgroundFinder bkFinder;
     private final CellBodyFinder cbFinder;
@@ -76,16 +112,34 @@ public class Tracker {
 
     // From last page.img: Use for tracking
     private PageInfo prevPgInfo = null;
+    /**
+     * The page that was current before the current page (and its page number), from which the
+     * motion of the cell body onto the current page can be estimated.
+     */
+    private ImagePage lastPg = null;
+    private int lastPgNum = -1;
+    private final PhaseCorrelator pgCorrelator = new PhaseCorrelator();
 
     // Current page.img
     private ImagePage currPg = null;
     private int currPgNum = -1; // Start with invalid number!
     private CellBody cbCand = null;
     private Background bkCand = null;
+    /**
+     * The cell body candidates found by "Find All Cell Bodies" from which the user has not yet
+     * chosen the actual cell body.
+     */
+    private List<CellBody> unchosenCbCands = new ArrayList<CellBody>();
 
     private boolean bkAccepted = false;
 
     public Tracker() {
+        roiTasks = new RoiTaskExecutor(new RoiTaskExecutor.ProgressListener() {
+            @Override
+            public void progressChanged(String runningTask, int numWaiting) {
+                myGui.showTaskProgress(runningTask, numWaiting);
+            }
+        });
         myGui = setUpInterface();
         Nepic.getEventLogger().setObserver(myGui);
         myOpener = new TiffOpener();
@@ -102,6 +156,8 @@ public class Tracker {
         gui.getSaveDataMenuItem().addActionListener(new SaveDataHandler());
         gui.getEqualizeHistogramMenuItem().addActionListener(new ToggleImageContrastHandler());
         gui.getAboutNepicMenuItem().addActionListener(new DisplayProgramInfoHandler());
+        gui.getFindAllCellBodiesMenuItem().addActionListener(new AllCBsFinder());
+        gui.getTrackAllPagesMenuItem().addActionListener(new TrackAllPagesHandler());
         setUpChangePage(gui);
         setUpIncrementPage(gui);
         gui.getImageLabel().addMouseListener(new ClickHandler());
@@ -111,6 +167,7 @@ public class Tracker {
         gui.getEnlargeCellBodyButton().addActionListener(new EnlargeCandHandler());
         gui.getShrinkCellBodyButton().addActionListener(new ShrinkCandHandler());
         gui.getAcceptCandidatesButton().addActionListener(new AcceptRoiHandler());
+        gui.getCancelTaskButton().addActionListener(new CancelTasksHandler());
         gui.addWindowListener(new ExitHandler());
         gui.setVisible(true);
         return gui;
@@ -162,25 +219,47 @@ public class Tracker {
         @Override
         public void actionPerformed(ActionEvent e) {
             if (selectFileToAnalyze()) {
-                loadAndDisplayTiff(analFileClassPath);
+                roiTasks.submit(new LoadImageTask(analFileClassPath));
             }
         }
     }
 
-    private boolean loadAndDisplayTiff(String classpath) {
-        if (myOpener.loadTiffInfo(classpath)) {
-            int totNumPgs = myOpener.getNumPagesInTiff();
-            updateImageBeingAnalyzed(totNumPgs);
-            myGui.setTitle(new StringBuilder(Interface.TITLE)
-                    .append(" (")
-                    .append(Files.getName(analFileClassPath))
-                    .append(")")
-                    .toString());
-            updateDisplayedPage(0); // open the first page of the image
-            return true;
+    /**
+     * Loads the image at the given classpath, and then displays its first page.
+     */
+    private class LoadImageTask extends PageTask<Integer> {
+        private final String classpath;
+
+        private LoadImageTask(String classpath) {
+            super("Loading " + Files.getName(classpath));
+            this.classpath = classpath;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (myOpener.loadTiffInfo(classpath)) {
+                analFileName = Files.getName(classpath);
+                int totNumPgs = myOpener.getNumPagesInTiff();
+                updateImageBeingAnalyzed(totNumPgs);
+                return totNumPgs;
+            }
+            Nepic.log(EventType.ERROR,
+                    "Unable to load image from the given classpath: " + classpath);
+            return 0;
+        }
+
+        @Override
+        protected void publish(Integer totNumPgs) {
+            if (totNumPgs > 0) {
+                numPgs = totNumPgs;
+                myGui.setTitle(new StringBuilder(Interface.TITLE)
+                        .append(" (")
+                        .append(Files.getName(classpath))
+                        .append(")")
+                        .toString());
+                showPage(0, false); // open the first page of the image
+            }
         }
-        Nepic.log(EventType.ERROR, "Unable to load image from the given classpath: " + classpath);
-        return false;
     }
 
     private void updateImageBeingAnalyzed(int numPages) {
@@ -196,21 +275,103 @@ public class Tracker {
     // Display Image Page
     // *********************************************************************************************
 
-    private void updateDisplayedPage(int pgNum) {
+    /**
+     * Displays the given page of the image being analyzed. Must be called on the EDT.
+     *
+     * @param pgNum the number of the page to display
+     * @param trackRois whether to track the ROIs from the previous page onto the page if it does not
+     *        already have valid ROI candidates
+     */
+    private void showPage(int pgNum, boolean trackRois) {
+        requestedPgNum = pgNum;
+        roiTasks.submit(new ShowPageTask(pgNum, trackRois));
+    }
+
+    /**
+     * A task that changes the page being analyzed. Since every other task acts on the page being
+     * analyzed when it was requested, a {@link PageTask} supersedes every earlier task.
+     */
+    private abstract class PageTask<T> extends RoiTaskExecutor.Task<T> {
+        private PageTask(String description) {
+            super(description, PageTask.class);
+        }
+
+        @Override
+        protected boolean supersedes(RoiTaskExecutor.Task<?> earlier) {
+            return true;
+        }
+
+        @Override
+        protected void cancelled(T result) {
+            redrawRois();
+        }
+
+        @Override
+        protected void failed(Throwable e) {
+            super.failed(e);
+            redrawRois();
+        }
+    }
+
+    /**
+     * Opens a page of the image being analyzed, and (if desired) tracks the ROIs from the previous
+     * page onto it. The result is {@code null} if no ROIs were tracked, or whether the cell body
+     * was successfully tracked.
+     */
+    private class ShowPageTask extends PageTask<Boolean> {
+        private final int pgNum;
+        private final boolean trackRois;
+
+        private ShowPageTask(int pgNum, boolean trackRois) {
+            super("Opening page " + (pgNum + 1));
+            this.pgNum = pgNum;
+            this.trackRois = trackRois;
+        }
+
+        @Override
+        protected Boolean compute() {
+            myGui.clearOutput();
+            openPage(pgNum);
+            if (trackRois && !hasValidCandidates() && canTrackFromPrevPage()) {
+                return trackFromPrevPage();
+            }
+            return null;
+        }
+
+        @Override
+        protected void publish(Boolean tracked) {
+            displayCurrentPage();
+            if (tracked != null) {
+                if (tracked) {
+                    Nepic.log(EventType.INFO, "Found CellBody candidate.", "MinPi =",
+                            cbCand.getMinPi());
+                } else {
+                    myGui.respondToInfo("Unable to find cell body.  "
+                            + "Please re-indicate cell body location.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the given page of the image being analyzed, and makes it the current page.
+     */
+    private void openPage(int pgNum) {
         ImagePage imageBeingAnalyzed = myOpener.openTiffPage(pgNum);
-        updatePage(Files.getName(analFileClassPath), pgNum, imageBeingAnalyzed);
-        paintCurrentPage();
-        myGui.clearOutput();
-        int displayedPageNumber = pgNum + 1;
+        updatePage(analFileName, pgNum, imageBeingAnalyzed);
         bkAccepted = false;
-        myGui.getPageNumberTextField().setText(displayedPageNumber + "/" + pages.getNumPages());
-        Nepic.log(EventType.INFO, "Page " + displayedPageNumber + " displayed.");
     }
 
-    private void paintCurrentPage() {
-        myGui.getImageLabel().displayImage(currPg.asImage(myGui.isHistogramEqualizationDesired()));
-        redrawCbCand();
-        redrawBkCand();
+    /**
+     * Displays the current page and its ROI candidates. Must be called on the EDT while no ROI task
+     * is running.
+     */
+    private void displayCurrentPage() {
+        redrawRois();
+        requestedPgNum = currPgNum;
+        int displayedPageNumber = currPgNum + 1;
+        myGui.getPageNumberTextField().setText(displayedPageNumber + "/" + numPgs);
+        Nepic.log(EventType.INFO, "Page " + displayedPageNumber + " displayed.");
     }
 
     private boolean updatePage(String imgName, int pgNum, ImagePage page) {
@@ -224,8 +385,11 @@ public class Tracker {
 
         bkCand = null;
         cbCand = null;
+        unchosenCbCands.clear();
 
         // Make PageInfo for current page
+        lastPg = currPg;
+        lastPgNum = currPgNum;
         currPgNum = pgNum;
         currPg = page;
         PageInfo currPageInfo = pages.getPage(pgNum);
@@ -278,18 +442,23 @@ public class Tracker {
         @Override
         public void actionPerformed(ActionEvent e) {
             if (clickLoc != null && dragLoc != null) {
-                Polygon bkArea = new Polygon(new Point[] {
+                final Polygon bkArea = new Polygon(new Point[] {
                         clickLoc,
                         new Point(dragLoc.x, clickLoc.y),
                         dragLoc,
                         new Point(clickLoc.x, dragLoc.y) });
-                clickLoc = null;
-                dragLoc = null;
                 myGui.getImageLabel().eraseImageAnnotation(Nepic.MOUSE_ACTION_ID);
-                if (userAcceptAsBackground(bkArea)) {
-                    Nepic.log(EventType.INFO, "Background information recorded.", bkArea);
-                }
-                redrawBkCand();
+                roiTasks.submit(new CandidateTask("Defining background", BackgroundFinder.class) {
+                    @Override
+                    protected Boolean compute() {
+                        return userAcceptAsBackground(bkArea);
+                    }
+
+                    @Override
+                    protected void publishSuccess() {
+                        Nepic.log(EventType.INFO, "Background information recorded.", bkArea);
+                    }
+                });
             } else {
                 myGui.respondToInfo("Background not chosen.  Unable to accept.");
             }
@@ -338,53 +507,75 @@ public class Tracker {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (currPg == null) {
+            if (displayedPg == null) {
                 myGui.respondToInfo("Unable to find cell body until image chosen.");
                 return;
             }
-            ConstraintMap cbConstraints = new ConstraintMap();
-            if (clickLoc == null || dragLoc == null || !currPg.contains(clickLoc.x, clickLoc.y)
-                    || !currPg.contains(dragLoc.x, dragLoc.y)) {
-                cbConstraints.addConstraint(CellBodyFinder.SEED_POLYGON,
-                        new Polygon(new Point[] {
-                                new Point(0, 0),
-                                new Point(currPg.width - 1, 0),
-                                new Point(currPg.width - 1, currPg.height - 1),
-                                new Point(0, currPg.height - 1) }));
-            } else {
+            final Point seedCorner1 = clickLoc;
+            final Point seedCorner2 = dragLoc;
+            if (seedCorner1 != null && seedCorner2 != null) {
                 myGui.getImageLabel().eraseImageAnnotation(Nepic.MOUSE_ACTION_ID);
-                cbConstraints.addConstraint(CellBodyFinder.SEED_POLYGON,
-                        new Polygon(new Point[] {
-                                clickLoc,
-                                new Point(dragLoc.x, clickLoc.y),
-                                dragLoc,
-                                new Point(clickLoc.x, dragLoc.y) }));
-            }
-            if (findCB(cbConstraints)) {
-                Nepic.log(EventType.INFO, "Found CellBody candidate.",
-                        "MinPi =", cbCand.getMinPi());
-                redrawCbCand();
-                if (!bkAccepted) {
-                    if (canTrackFromPrevPage()) {
+            }
+            roiTasks.submit(new CandidateTask("Finding cell body", CellBodyFinder.class) {
+                @Override
+                protected Boolean compute() {
+                    if (!findCB(makeSeedConstraints(seedCorner1, seedCorner2))) {
+                        return false;
+                    }
+                    if (!bkAccepted && canTrackFromPrevPage()) {
                         trackBackground();
-                        redrawBkCand();
                     }
+                    return true;
                 }
-            } else {
-                myGui.respondToError("Unable to find cell body in indicated region.");
-            }
+
+                @Override
+                protected void publishSuccess() {
+                    Nepic.log(EventType.INFO, "Found CellBody candidate.",
+                            "MinPi =", cbCand.getMinPi());
+                }
+
+                @Override
+                protected void publishFailure() {
+                    myGui.respondToError("Unable to find cell body in indicated region.");
+                }
+            });
             clickLoc = null;
             dragLoc = null;
         }
     }
 
+    /**
+     * Makes the constraints for finding a cell body within the rectangle with the given corners, or
+     * anywhere in the current page if the corners are not both in the page.
+     */
+    private ConstraintMap makeSeedConstraints(Point corner1, Point corner2) {
+        ConstraintMap cbConstraints = new ConstraintMap();
+        if (corner1 == null || corner2 == null || !currPg.contains(corner1.x, corner1.y)
+                || !currPg.contains(corner2.x, corner2.y)) {
+            cbConstraints.addConstraint(CellBodyFinder.SEED_POLYGON,
+                    new Polygon(new Point[] {
+                            new Point(0, 0),
+                            new Point(currPg.width - 1, 0),
+                            new Point(currPg.width - 1, currPg.height - 1),
+                            new Point(0, currPg.height - 1) }));
+        } else {
+            cbConstraints.addConstraint(CellBodyFinder.SEED_POLYGON,
+                    new Polygon(new Point[] {
+                            corner1,
+                            new Point(corner2.x, corner1.y),
+                            corner2,
+                            new Point(corner1.x, corner2.y) }));
+        }
+        return cbConstraints;
+    }
+
     /**
      * @param corners
      * @return true if background updated, otherwise false
      */
     private boolean findCB(ConstraintMap constraints) {
+        removeUnchosenCbCands();
         if (cbCand != null) { // Then must edit the current cand
-            myGui.getImageLabel().eraseImageAnnotation(cbCand.getId());
             cbFinder.removeFeature(cbCand);
             cbCand.release();
         }
@@ -392,6 +583,107 @@ public class Tracker {
         return cbCandValid();
     }
 
+    private class AllCBsFinder extends TitledActionListener {
+        private AllCBsFinder() {
+            super("Find All Cell Bodies");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (displayedPg == null) {
+                myGui.respondToInfo("Unable to find cell bodies until image chosen.");
+                return;
+            }
+            roiTasks.submit(new CandidateTask("Finding all cell bodies", CellBodyFinder.class) {
+                @Override
+                protected Boolean compute() {
+                    removeUnchosenCbCands();
+                    if (cbCand != null) {
+                        cbFinder.removeFeature(cbCand);
+                        cbCand.release();
+                        cbCand = null;
+                    }
+                    for (CellBody cand : cbFinder.createFeatures(new ConstraintMap())) {
+                        if (cand.isValid()) {
+                            unchosenCbCands.add(cand);
+                        } else {
+                            cbFinder.removeFeature(cand);
+                            cand.release();
+                        }
+                    }
+                    if (unchosenCbCands.size() == 1) {
+                        chooseCbCand(unchosenCbCands.get(0));
+                        return true;
+                    }
+                    return !unchosenCbCands.isEmpty();
+                }
+
+                @Override
+                protected void publishSuccess() {
+                    if (cbCand != null) {
+                        Nepic.log(EventType.INFO, "Found CellBody candidate.", "MinPi =",
+                                cbCand.getMinPi());
+                    } else {
+                        myGui.respondToInfo("Found " + unchosenCbCands.size()
+                                + " cell body candidates.  "
+                                + "Right-click on the actual cell body to choose it.");
+                    }
+                }
+
+                @Override
+                protected void publishFailure() {
+                    myGui.respondToError("Unable to find any cell bodies in the image.");
+                }
+            });
+        }
+    }
+
+    private class ChooseCbCandHandler extends TitledActionListener {
+        private final CellBody chosen;
+
+        private ChooseCbCandHandler(CellBody chosen) {
+            super("Choose Cell Body");
+            this.chosen = chosen;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            roiTasks.submit(new CandidateTask("Choosing cell body", CellBodyFinder.class) {
+                @Override
+                protected Boolean compute() {
+                    if (unchosenCbCands.contains(chosen)) {
+                        chooseCbCand(chosen);
+                        return true;
+                    }
+                    return false;
+                }
+
+                @Override
+                protected void publishSuccess() {
+                    Nepic.log(EventType.INFO, "Found CellBody candidate.", "MinPi =",
+                            cbCand.getMinPi());
+                }
+            });
+        }
+    }
+
+    private void chooseCbCand(CellBody chosen) {
+        unchosenCbCands.remove(chosen);
+        removeUnchosenCbCands();
+        cbCand = chosen;
+        if (!bkAccepted && canTrackFromPrevPage()) {
+            trackBackground();
+        }
+    }
+
+    private void removeUnchosenCbCands() {
+        for (CellBody unchosen : unchosenCbCands) {
+            cbFinder.removeFeature(unchosen);
+            unchosen.release();
+        }
+        unchosenCbCands.clear();
+    }
+
     // *********************************************************************************************
     // Modify CellBody
     // *********************************************************************************************
@@ -403,13 +695,7 @@ public class Tracker {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (cbCand != null) {
-                changeCbCandSize(true);
-                redrawCbCand();
-                redrawBkCand();
-            } else {
-                myGui.respondToInfo("Cannot enlarge a candidate until has been selected.");
-            }
+            roiTasks.submit(new ChangeCbCandSizeTask(true));
         }
     }
 
@@ -420,13 +706,42 @@ public class Tracker {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (cbCand != null) {
-                changeCbCandSize(false);
-                redrawCbCand();
-                redrawBkCand();
-            } else {
-                myGui.respondToInfo("Cannot shrink a candidate until candidate has been selected.");
+            roiTasks.submit(new ChangeCbCandSizeTask(false));
+        }
+    }
+
+    /**
+     * A task that enlarges or shrinks the cell body candidate by one pixel. Since each resize edits
+     * the candidate left by the tasks before it, a {@link ChangeCbCandSizeTask} supersedes no earlier
+     * task; it runs after them instead, so that every click counts exactly once.
+     */
+    private class ChangeCbCandSizeTask extends CandidateTask {
+        private final boolean enlarge;
+
+        private ChangeCbCandSizeTask(boolean enlarge) {
+            super(enlarge ? "Enlarging cell body" : "Shrinking cell body", CellBodyFinder.class);
+            this.enlarge = enlarge;
+        }
+
+        @Override
+        protected boolean supersedes(RoiTaskExecutor.Task<?> earlier) {
+            return false;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (cbCand == null) {
+                return false;
             }
+            changeCbCandSize(enlarge);
+            return true;
+        }
+
+        @Override
+        protected void publishFailure() {
+            myGui.respondToInfo(enlarge
+                    ? "Cannot enlarge a candidate until has been selected."
+                    : "Cannot shrink a candidate until candidate has been selected.");
         }
     }
 
@@ -457,27 +772,24 @@ public class Tracker {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (acceptRoiCandidates()) {
-                myGui.getSaveDataMenuItem().setEnabled(true);
-                if (incrementPage(1)) {
-                    if (!hasValidCandidates()) {
-                        if (canTrackFromPrevPage()) {
-                            if (trackFromPrevPage()) {
-                                Nepic.log(EventType.INFO, "Found CellBody candidate.", "MinPi =",
-                                        cbCand.getMinPi());
-                            } else {
-                                myGui.respondToInfo("Unable to find cell body.  "
-                                        + "Please re-indicate cell body location.");
-                            }
-                        }
-                    }
+            roiTasks.submit(new CandidateTask("Accepting candidates", AcceptRoiHandler.class) {
+                @Override
+                protected Boolean compute() {
+                    return acceptRoiCandidates();
                 }
-                redrawCbCand();
-                redrawBkCand();
-            } else {
-                myGui.respondToInfo("Must have valid background and cell"
-                        + " body candidates before accepting.");
-            }
+
+                @Override
+                protected void publishSuccess() {
+                    myGui.getSaveDataMenuItem().setEnabled(true);
+                    incrementPage(1, true);
+                }
+
+                @Override
+                protected void publishFailure() {
+                    myGui.respondToInfo("Must have valid background and cell"
+                            + " body candidates before accepting.");
+                }
+            });
         }
     }
 
@@ -513,8 +825,6 @@ public class Tracker {
                 cbCand.getMinPi(), "Background: corners =", bkCand.getArea());
 
         // Remove candidates (since have already been accepted)
-        myGui.getImageLabel().eraseImageAnnotation(bkCand.getId());
-        myGui.getImageLabel().eraseImageAnnotation(cbCand.getId());
         bkFinder.removeFeature(bkCand);
         bkCand.release();
         cbFinder.removeFeature(cbCand);
@@ -536,6 +846,12 @@ public class Tracker {
                 dataWriter.addDataRow(page.getCsvData());
             }
         }
+        QuantileSketch stackPis = pages.getStackPiSketch();
+        if (stackPis.getNumValues() > 0) {
+            Nepic.log(EventType.INFO, "Pixel intensities of all pages viewed:", "5th percentile =",
+                    stackPis.getPercentile(5), ", median =", stackPis.getMedian(),
+                    ", 95th percentile =", stackPis.getPercentile(95));
+        }
         unsavedDataOnCurrentImg = false;
     }
 
@@ -586,7 +902,7 @@ public class Tracker {
 
         // If need to find the CB
         Blob prevCb = prevPgInfo.getCB().getArea();
-        Polygon prevCbLoc = prevCb.getBoundingBox().asPolygon();
+        Polygon prevCbLoc = predictCbLocation(prevCb.getBoundingBox());
         int prevCbSize = prevCb.getSize();
         if (trackCbInGivenArea(prevCbLoc, prevCbSize)) {
             if (!bkCandValid()) {
@@ -616,6 +932,28 @@ public class Tracker {
         return false;
     }
 
+    /**
+     * Predicts where the cell body is on the current page from where it was on the previous page,
+     * by shifting it by the motion of the whole image between the pages (when the previous page is
+     * the page that was current before the current page).
+     */
+    private Polygon predictCbLocation(BoundingBox prevCbBox) {
+        if (lastPg != null && lastPgNum == prevPgInfo.getPageNum()
+                && lastPg.getDimensions().equals(currPg.getDimensions())) {
+            Point shift = pgCorrelator.estimateShift(lastPg, currPg);
+            BoundingBox predictedBox = prevCbBox.asPolygon().getTranslatedCopy(shift.x, shift.y)
+                    .getBoundingBox().getIntersectionWith(currPg.getBoundingBox());
+            if (predictedBox != null) {
+                if (shift.x != 0 || shift.y != 0) {
+                    Nepic.log(EventType.INFO, "Image moved by (" + shift.x + ", " + shift.y
+                            + ") since previous page.");
+                }
+                return predictedBox.asPolygon();
+            }
+        }
+        return prevCbBox.asPolygon();
+    }
+
     private boolean trackCbInGivenArea(Polygon location, int prevCbSize) {
         ConstraintMap cbConstraints = new ConstraintMap()
                 .addConstraint(CellBodyFinder.SEED_POLYGON, location);
@@ -641,7 +979,6 @@ public class Tracker {
         if (!bkAccepted) {
             if (bkCand != null) {
                 bkFinder.removeFeature(bkCand);
-                myGui.getImageLabel().eraseImageAnnotation(bkCand.getId());
                 bkCand.release();
                 bkCand = null;
             }
@@ -658,38 +995,236 @@ public class Tracker {
         }
     }
 
+    // *********************************************************************************************
+    // Track All Remaining Pages
+    // *********************************************************************************************
+
+    private class TrackAllPagesHandler implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (displayedPg == null) {
+                myGui.respondToInfo("Unable to track cell bodies until image chosen.");
+                return;
+            }
+            roiTasks.submit(new TrackAllPagesTask());
+        }
+    }
+
+    /**
+     * The outcome of tracking the ROIs through the remaining pages of the image.
+     */
+    private static class TrackAllPagesResult {
+        private int numPgsAccepted = 0;
+        private double pgsPerSecond = 0;
+        /**
+         * Whether the ROIs were accepted on every page through to the last page of the image.
+         */
+        private boolean reachedLastPage = false;
+        /**
+         * Why the ROIs could not be accepted on the page where tracking stopped, or {@code null}
+         * if the last page was reached.
+         */
+        private String failureReason = null;
+    }
+
+    /**
+     * Tracks the ROIs from the current page through to the last page of the image, accepting them
+     * on every page, until either the last page is reached, the ROIs cannot be tracked onto or
+     * accepted on a page (in which case that page is left for the user), or the task is cancelled.
+     */
+    private class TrackAllPagesTask extends PageTask<TrackAllPagesResult> {
+        private TrackAllPagesTask() {
+            super("Tracking all remaining pages");
+        }
+
+        @Override
+        protected TrackAllPagesResult compute() {
+            TrackAllPagesResult result = new TrackAllPagesResult();
+            long startTime = System.nanoTime();
+            while (!isCancelled()) {
+                if (!hasValidCandidates()) {
+                    if (!canTrackFromPrevPage()) {
+                        result.failureReason = "No valid ROIs on the previous page to track from.";
+                        break;
+                    }
+                    // trackFromPrevPage() only finds cell bodies within the tolerated change in
+                    // size.
+                    if (!trackFromPrevPage()) {
+                        result.failureReason = "Unable to track the cell body onto this page.";
+                        break;
+                    }
+                }
+                if (!acceptRoiCandidates()) {
+                    result.failureReason = cbCandValid()
+                            ? "Unable to place a valid background on this page."
+                            : "The cell body candidate on this page is not valid.";
+                    break;
+                }
+                result.numPgsAccepted++;
+                result.pgsPerSecond = result.numPgsAccepted * 1e9 / (System.nanoTime() - startTime);
+                if (currPgNum + 1 >= pages.getNumPages()) {
+                    result.reachedLastPage = true;
+                    break;
+                }
+                openPage(currPgNum + 1);
+                setDescription(String.format("Tracking page %d/%d (%.1f pages/sec)",
+                        currPgNum + 1, pages.getNumPages(), result.pgsPerSecond));
+            }
+            return result;
+        }
+
+        @Override
+        protected void publish(TrackAllPagesResult result) {
+            displayResult(result);
+            if (!result.reachedLastPage) {
+                myGui.respondToInfo(result.failureReason
+                        + "  Please indicate the ROIs on this page, then accept them.");
+            }
+        }
+
+        @Override
+        protected void cancelled(TrackAllPagesResult result) {
+            displayResult(result);
+            Nepic.log(EventType.INFO, "Tracking all remaining pages cancelled.");
+        }
+
+        private void displayResult(TrackAllPagesResult result) {
+            displayCurrentPage();
+            if (result.numPgsAccepted > 0) {
+                myGui.getSaveDataMenuItem().setEnabled(true);
+            }
+            Nepic.log(EventType.INFO, String.format(
+                    "ROI candidates tracked and accepted on %d pages (%.1f pages/sec).",
+                    result.numPgsAccepted, result.pgsPerSecond));
+        }
+    }
+
     // *********************************************************************************************
     // Visualize ROIs
     // *********************************************************************************************
 
-    private boolean redrawCbCand() {
-        if (cbCand != null) {
-            DataSet cbCandPixels = new MutableDataSet();
-            cbCandPixels.addAll(cbCand.getEdges());
-            if (cbCand.isModified()) {
-                cbCandPixels.setRgb(Nepic.CELL_BODY_CAND_COLOR);
+    /**
+     * A task that finds or edits the ROI candidates on the current page, and then redraws them. The
+     * result of the task is whether it succeeded.
+     */
+    private abstract class CandidateTask extends RoiTaskExecutor.Task<Boolean> {
+        private CandidateTask(String description, Object group) {
+            super(description, group);
+        }
+
+        @Override
+        protected final void publish(Boolean succeeded) {
+            redrawRois();
+            if (succeeded) {
+                publishSuccess();
             } else {
-                cbCandPixels.setRgb(Nepic.CELL_BODY_COLOR);
+                publishFailure();
             }
-            myGui.getImageLabel().annotateImage(cbCand.getId(), cbCandPixels);
-            return true;
         }
-        return false;
+
+        /**
+         * Called on the EDT after the ROIs are redrawn if the task succeeded.
+         */
+        protected void publishSuccess() {}
+
+        /**
+         * Called on the EDT after the ROIs are redrawn if the task did not succeed.
+         */
+        protected void publishFailure() {}
+
+        @Override
+        protected void cancelled(Boolean succeeded) {
+            redrawRois();
+        }
+
+        @Override
+        protected void failed(Throwable e) {
+            super.failed(e);
+            redrawRois();
+        }
     }
 
-    private boolean redrawBkCand() {
+    /**
+     * Displays the current page (if it is not already displayed), and redraws all of its ROI
+     * candidates, erasing the ones that no longer exist. Must be called on the EDT while no ROI task
+     * is running.
+     */
+    private void redrawRois() {
+        if (currPg == null) {
+            return;
+        }
+        if (displayedPg != currPg || displayedPgEqualized != myGui.isHistogramEqualizationDesired()) {
+            displayedPg = currPg;
+            displayedPgEqualized = myGui.isHistogramEqualizationDesired();
+            myGui.getImageLabel().displayImage(currPg.asImage(displayedPgEqualized));
+            drawnRois.clear();
+            redrawMouseAction();
+        }
+
+        List<Integer> roiIds = new ArrayList<Integer>(unchosenCbCands.size() + 2);
+        for (CellBody unchosen : unchosenCbCands) {
+            roiIds.add(unchosen.getId());
+        }
+        if (cbCand != null) {
+            roiIds.add(cbCand.getId());
+        }
         if (bkCand != null) {
-            DataSet bkCandPixels = new MutableDataSet();
-            bkCandPixels.addAll(bkCand.getEdges());
-            if (bkCand.isModified()) {
-                bkCandPixels.setRgb(Nepic.BACKGROUND_CAND_COLOR);
-            } else {
-                bkCandPixels.setRgb(Nepic.BACKGROUND_COLOR);
+            roiIds.add(bkCand.getId());
+        }
+        Iterator<Integer> drawnIdItr = drawnRois.keySet().iterator();
+        while (drawnIdItr.hasNext()) {
+            int drawnId = drawnIdItr.next();
+            if (!roiIds.contains(drawnId)) {
+                myGui.getImageLabel().eraseImageAnnotation(drawnId);
+                drawnIdItr.remove();
             }
-            myGui.getImageLabel().annotateImage(bkCand.getId(), bkCandPixels);
-            return true;
         }
-        return false;
+
+        for (CellBody unchosen : unchosenCbCands) {
+            redrawCellBody(unchosen);
+        }
+        if (cbCand != null) {
+            redrawCellBody(cbCand);
+        }
+        if (bkCand != null) {
+            redrawRoi(bkCand, bkCand.isModified()
+                    ? Nepic.BACKGROUND_CAND_COLOR
+                    : Nepic.BACKGROUND_COLOR);
+        }
+    }
+
+    private void redrawCellBody(CellBody cb) {
+        redrawRoi(cb, cb.isModified() ? Nepic.CELL_BODY_CAND_COLOR : Nepic.CELL_BODY_COLOR);
+    }
+
+    /**
+     * Draws the edges of the given ROI in the given color, unless they are already drawn that way.
+     */
+    private void redrawRoi(Roi roi, int rgb) {
+        List<Point> edges = roi.getEdges();
+        DrawnRoi drawn = drawnRois.get(roi.getId());
+        if (drawn != null && drawn.rgb == rgb && drawn.edges.equals(edges)) {
+            return;
+        }
+        DataSet roiPixels = new MutableDataSet();
+        roiPixels.addAll(edges);
+        roiPixels.setRgb(rgb);
+        myGui.getImageLabel().annotateImage(roi.getId(), roiPixels);
+        drawnRois.put(roi.getId(), new DrawnRoi(new ArrayList<Point>(edges), rgb));
+    }
+
+    /**
+     * The edges of an ROI as they are drawn on the displayed page, and the color in which they are
+     * drawn.
+     */
+    private static class DrawnRoi {
+        private final List<Point> edges;
+        private final int rgb;
+
+        private DrawnRoi(List<Point> edges, int rgb) {
+            this.edges = edges;
+            this.rgb = rgb;
+        }
     }
 
     private class ViewHistHandler extends TitledActionListener {
@@ -709,18 +1244,21 @@ public class Tracker {
     }
 
     private class ViewScanlineHandler extends TitledActionListener {
-        private GraphData data;
+        private DataScanner scanner;
+        private int minPi;
 
-        private ViewScanlineHandler(String name, DataScanner scanner) {
+        private ViewScanlineHandler(String name, DataScanner scanner, int minPi) {
             super(name);
-            this.data = scanner.getGraphData();
+            this.scanner = scanner;
+            this.minPi = minPi;
         }
 
         @Override
         public void actionPerformed(ActionEvent arg0) {
+            GraphData data = scanner.getGraphData();
             DataSet minPiData = new MutableDataSet();
-            minPiData.add(new Point(data.getMinX(), cbCand.getMinPi()));
-            minPiData.add(new Point(data.getMaxX(), cbCand.getMinPi()));
+            minPiData.add(new Point(data.getMinX(), minPi));
+            minPiData.add(new Point(data.getMaxX(), minPi));
             data.setDataSet("minPI", minPiData, 0xffff00 /* yellow */);
             JOptionPane.showMessageDialog(myGui,
                     new Graph(800, 600, 0x000000).setData(data).setYGridlineInterval(5).refresh());
@@ -748,16 +1286,24 @@ public class Tracker {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (pages != null) {
-                incrementPage(incrementFactor);
+            if (numPgs > 0) {
+                incrementPage(incrementFactor, false);
             }
         }
     }
 
-    private boolean incrementPage(int numToIncrement) {
-        int newPgNum = currPgNum + numToIncrement;
+    /**
+     * Moves the given number of pages on from the page most recently requested. Must be called on
+     * the EDT.
+     *
+     * @param numToIncrement the number of pages to move (negative to move back)
+     * @param trackRois whether to track the ROIs from the previous page onto the new page
+     * @return whether the page was changed
+     */
+    private boolean incrementPage(int numToIncrement, boolean trackRois) {
+        int newPgNum = requestedPgNum + numToIncrement;
         boolean continueToNextPage = true;
-        int totNumPgs = pages.getNumPages();
+        int totNumPgs = numPgs;
         if (newPgNum < 0) {
             if (myGui.userAgrees("Reached First Page",
                     "You have reached the first page in the image.\n"
@@ -780,7 +1326,7 @@ public class Tracker {
         if (continueToNextPage) {
             clickLoc = null;
             dragLoc = null;
-            updateDisplayedPage(newPgNum);
+            showPage(newPgNum, trackRois);
         }
         return continueToNextPage;
     }
@@ -792,9 +1338,9 @@ public class Tracker {
     private class ToggleImageContrastHandler implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (currPg != null) {
-                paintCurrentPage();
-                redrawMouseAction();
+            // If ROIs are being found, the page is redisplayed when they have been found.
+            if (displayedPg != null && !roiTasks.isBusy()) {
+                redrawRois();
             }
         }
     }
@@ -809,7 +1355,7 @@ public class Tracker {
     private class ClickHandler implements MouseListener {
         @Override
         public void mouseClicked(MouseEvent e) {
-            if (currPg == null) {
+            if (displayedPg == null) {
                 return;
             }
             clickLoc = null;
@@ -817,19 +1363,34 @@ public class Tracker {
             myGui.getImageLabel().eraseImageAnnotation(Nepic.MOUSE_ACTION_ID);
 
             if (e.getButton() == MouseEvent.BUTTON3) {
+                if (roiTasks.isBusy()) {
+                    // The ROIs on the page are still changing.
+                    myGui.respondToInfo("Please wait until the current task has finished.");
+                    return;
+                }
                 Point clickPt = e.getPoint();
                 if (currPg != null && currPg.contains(clickPt.x, clickPt.y)) {
                     int roiId = currPg.getId(clickPt.x, clickPt.y);
-                    if (roiId > 0) { // TODO: use value from ImagePage for this?
-                        if (cbCand != null && roiId == cbCand.getId()) {
+                    if (roiId != ImagePage.NON_ROI_ID) {
+                        Roi clicked = findRoiAt(clickPt.x, clickPt.y, roiId);
+                        if (clicked != null && unchosenCbCands.contains(clicked)) {
+                            CellBody unchosen = (CellBody) clicked;
+                            openJPopupMenu(e.getComponent(), e.getX(), e.getY(),
+                                    new ChooseCbCandHandler(unchosen),
+                                    new ViewHistHandler("View CB Hist", unchosen.getPiHist()));
+                        } else if (clicked != null && clicked == cbCand) {
                             openJPopupMenu(e.getComponent(), e.getX(), e.getY(),
                                     new ViewHistHandler("View CB Hist", cbCand.getPiHist()),
-                                    new ViewScanlineHandler("0 Deg", cbCand.getEdgeFinder(0)),
-                                    new ViewScanlineHandler("45 Deg", cbCand.getEdgeFinder(1)),
-                                    new ViewScanlineHandler("90 Deg", cbCand.getEdgeFinder(2)),
-                                    new ViewScanlineHandler("135 Deg", cbCand.getEdgeFinder(3)));
+                                    new ViewScanlineHandler("0 Deg", cbCand.getEdgeFinder(0),
+                                            cbCand.getMinPi()),
+                                    new ViewScanlineHandler("45 Deg", cbCand.getEdgeFinder(1),
+                                            cbCand.getMinPi()),
+                                    new ViewScanlineHandler("90 Deg", cbCand.getEdgeFinder(2),
+                                            cbCand.getMinPi()),
+                                    new ViewScanlineHandler("135 Deg", cbCand.getEdgeFinder(3),
+                                            cbCand.getMinPi()));
                             // TODO: also allow users to see the scanlines.
-                        } else if (bkCand != null && roiId == bkCand.getId()) {
+                        } else if (clicked != null && clicked == bkCand) {
                             openJPopupMenu(e.getComponent(), e.getX(), e.getY(),
                                     new ViewHistHandler("View BK Hist", bkCand.getPiHist()),
                                     new ViewHistHandler("View BK Edge Hist", bkCand.getEdgeHist()));
@@ -846,6 +1407,16 @@ public class Tracker {
             }
         }
 
+        // Only the ROIs whose bounds contain the clicked pixel need to be checked.
+        private Roi findRoiAt(int x, int y, int roiId) {
+            for (Roi roi : currPg.getRoiIndex().getItemsContaining(x, y)) {
+                if (roi.getId() == roiId) {
+                    return roi;
+                }
+            }
+            return null;
+        }
+
         private void openJPopupMenu(Component invoker, int x, int y,
                 TitledActionListener... handlers) {
             JPopupMenu popup = new JPopupMenu();
@@ -873,11 +1444,24 @@ public class Tracker {
     }
 
     private class DragHandler implements MouseMotionListener {
+        /**
+         * Redraws the rectangle being dragged once per frame, however many drag events arrive in
+         * that frame.
+         */
+        private final Runnable mouseActionRedrawer = new Runnable() {
+            @Override
+            public void run() {
+                if (displayedPg != null) {
+                    redrawMouseAction();
+                }
+            }
+        };
+
         @Override
         public void mouseDragged(MouseEvent e) {
-            if (currPg != null) {
+            if (displayedPg != null) {
                 dragLoc = e.getPoint();
-                redrawMouseAction();
+                myGui.getImageLabel().runBeforeNextFrame(mouseActionRedrawer);
             }
         }
 
@@ -889,7 +1473,7 @@ public class Tracker {
         if (clickLoc == null || dragLoc == null) {
             return; // No mouse actions to redraw.
         }
-        Dimension picDims = currPg.getDimensions();
+        Dimension picDims = displayedPg.getDimensions();
         if (clickLoc.x != dragLoc.x && clickLoc.y != dragLoc.y && dragLoc.x >= 0
                 && dragLoc.y >= 0 && dragLoc.x < picDims.width && dragLoc.y < picDims.height) {
             Polygon newRec = new Polygon(new Point[] {
@@ -906,6 +1490,30 @@ public class Tracker {
         }
     }
 
+    /**
+     * Tells the user to wait for the running ROI tasks to finish if there are any, since the data
+     * for the pages may still be changing.
+     *
+     * @param action what the user wants to do once the tasks are finished
+     * @return true if there are ROI tasks running; otherwise false
+     */
+    private boolean respondIfBusy(String action) {
+        if (roiTasks.isBusy()) {
+            myGui.respondToInfo("Please wait until the current task has finished (or cancel it) "
+                    + "before " + action + ".");
+            return true;
+        }
+        return false;
+    }
+
+    private class CancelTasksHandler implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            roiTasks.cancelAll();
+            Nepic.log(EventType.INFO, "Task cancelled.");
+        }
+    }
+
     // *********************************************************************************************
     // Save CSV Data
     // *********************************************************************************************
@@ -913,6 +1521,9 @@ public class Tracker {
     private class SaveDataHandler implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
+            if (respondIfBusy("saving data")) {
+                return;
+            }
             if (saveData()) {
                 myGui.getSaveDataMenuItem().setEnabled(false);
             }
@@ -995,6 +1606,9 @@ public class Tracker {
         }
 
         private void exit() {
+            if (respondIfBusy("exiting")) {
+                return;
+            }
             boolean canClose = saveDataIfNecessary();
             if (canClose) {
                 myGui.close();
@@ -22,26 +22,32 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
      */
     private String dependentVariable = "";
     /**
-     * The global minimum x-value of all included data sets.
+     * The minimum x-values of each of the included data sets (the global minimum x-value is the
+     * least of these).
      */
-    private int minX = Integer.MAX_VALUE;
+    private final IntMultiset minXs = new IntMultiset();
     /**
-     * The global maximum x-value of all included data sets.
+     * The maximum x-values of each of the included data sets.
      */
-    private int maxX = Integer.MIN_VALUE;
+    private final IntMultiset maxXs = new IntMultiset();
     /**
-     * The global minimum y-value of all included data sets.
+     * The minimum y-values of each of the included data sets.
      */
-    private int minY = Integer.MAX_VALUE;
+    private final IntMultiset minYs = new IntMultiset();
     /**
-     * The global maximum y-value of all included data sets.
+     * The maximum y-values of each of the included data sets.
      */
-    private int maxY = Integer.MIN_VALUE;
+    private final IntMultiset maxYs = new IntMultiset();
     /**
      * The collection of all the data sets included in this {@link GraphData}. Maps the name of the
      * {@link DataSet} to the set of data itself.
      */
     private Map<String, DataSet> dataSetMap;
+    /**
+     * The number of times the data sets in this {@link GraphData} have been changed, so that
+     * anything derived from them (such as a drawn {@link Graph}) can tell when it is out of date.
+     */
+    private int modCount = 0;
 
     /**
      * Creates an empty {@link GraphData} with the ability to handle the given number of data sets.
@@ -82,6 +88,14 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
         return dataSetMap.isEmpty();
     }
 
+    /**
+     * Gets the number of times that the data sets in this {@link GraphData} have been added,
+     * removed, renamed, revalued, or recolored. If this number is unchanged, so are the data sets.
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
     public int size() {
         return dataSetMap.size();
     }
@@ -101,37 +115,38 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
     @Override
     public int getMinX() {
         verifyContainsDataSets();
-        return minX;
+        return minXs.getMin();
     }
 
     @Override
     public int getMaxX() {
         verifyContainsDataSets();
-        return maxX;
+        return maxXs.getMax();
     }
 
     @Override
     public int getMinY() {
         verifyContainsDataSets();
-        return minY;
+        return minYs.getMin();
     }
 
     @Override
     public int getMaxY() {
         verifyContainsDataSets();
-        return maxY;
+        return maxYs.getMax();
     }
 
     @Override
     public boolean boundsContain(BoundedRegion region) {
         verifyContainsDataSets();
-        return minX <= region.getMinX() && maxX >= region.getMaxX()
-                && minY <= region.getMinY() && maxY >= region.getMaxY();
+        return getMinX() <= region.getMinX() && getMaxX() >= region.getMaxX()
+                && getMinY() <= region.getMinY() && getMaxY() >= region.getMaxY();
     }
 
     @Override
     public boolean boundsContain(int x, int y) {
-        return minX <= x && maxX >= x && minY <= y && maxY >= y;
+        return !dataSetMap.isEmpty() && getMinX() <= x && getMaxX() >= x && getMinY() <= y
+                && getMaxY() >= y;
     }
 
     public void setDataSet(String name, Collection<? extends Point> values, int rgb) {
@@ -150,6 +165,7 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
         DataSet toRename = dataSetMap.remove(currentName);
         Verify.argument(toRename != null, "No data set with name '" + currentName + "' exists.");
         dataSetMap.put(newName, toRename);
+        modCount++;
     }
 
     public void revalueDataSet(String name, Collection<? extends Point> values) {
@@ -163,6 +179,7 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
 
     public void recolorDataSet(String name, int rgb) {
         get(name).setRgb(rgb);
+        modCount++;
     }
 
     private DataSet get(String name) {
@@ -174,14 +191,16 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
     private DataSet removeAndAdjustBounds(String name) {
         DataSet removedDataSet = dataSetMap.remove(name);
         if (removedDataSet != null) {
-            reviseGlobalBoundsAfterRemoval(removedDataSet);
+            removeBounds(removedDataSet);
+            modCount++;
         }
         return removedDataSet;
     }
 
     private void putAndAdjustBounds(String name, DataSet dataSet) {
         dataSetMap.put(name, dataSet);
-        adjustGlobalBounds(dataSet);
+        addBounds(dataSet);
+        modCount++;
     }
 
     /**
@@ -210,72 +229,41 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
      */
     public DataSet removeDataSet(String name) {
         Verify.notNull(name, "name");
-        DataSet dataSet = dataSetMap.remove(name);
+        DataSet dataSet = removeAndAdjustBounds(name);
         Verify.argument(dataSet != null, "No data set with name '" + name + "' exists.");
         return dataSet;
     }
 
     private void verifyContainsDataSets() {
-        Verify.state(maxX >= minX, /* This will only be true when there is 1+ data sets */
+        Verify.state(!dataSetMap.isEmpty(),
                 "There must be at least one data set in this graph data.");
     }
 
     /**
-     * Modifies the global bounds of this {@link Graph} to include the given data set.
-     *
-     * <p>
-     * i.e. if the given data set has a max x-value of 13, but the current bounds max out at 10 in
-     * the x-direction, this method modifies the global max x-value to 13 (so that the global bounds
-     * now include the bounds of the given data set).
+     * Includes the bounds of the given data set in the global bounds of this {@link GraphData}.
      *
      * @param dataSet the data set to include in the graph bounds
-     * @return {@code true} if the global bounds of the {@link Graph} are adjusted due to the
-     *         addition of the given data set; otherwise {@code false}
      */
-    private boolean adjustGlobalBounds(DataSet dataSet) {
-        boolean boundsAdjusted = false;
-        if (dataSet.getMinX() < minX) {
-            minX = dataSet.getMinX();
-            boundsAdjusted = true;
-        }
-        if (dataSet.getMaxX() > maxX) {
-            maxX = dataSet.getMaxX();
-            boundsAdjusted = true;
-        }
-        if (dataSet.getMinY() < minY) {
-            minY = dataSet.getMinY();
-            boundsAdjusted = true;
-        }
-        if (dataSet.getMaxY() > maxY) {
-            maxY = dataSet.getMaxY();
-            boundsAdjusted = true;
-        }
-        return boundsAdjusted;
+    private void addBounds(DataSet dataSet) {
+        minXs.add(dataSet.getMinX());
+        maxXs.add(dataSet.getMaxX());
+        minYs.add(dataSet.getMinY());
+        maxYs.add(dataSet.getMaxY());
     }
 
     /**
-     * Revises the global bounds of this {@link Graph}, assuming that the given data set has been
-     * previously removed from the graph.
+     * Removes the bounds of the given data set (which must have been previously included by
+     * {@link #addBounds(DataSet)}, and since been removed) from the global bounds of this
+     * {@link GraphData}. Unlike rescanning every remaining data set, this takes time logarithmic
+     * in the number of data sets.
      *
      * @param removedDataSet the data set that has been removed from the graph
-     * @return {@code true} if the global bounds of the {@link Graph} are revised due to the removal
-     *         of the given data set; otherwise {@code false}
      */
-    private boolean reviseGlobalBoundsAfterRemoval(DataSet removedDataSet) {
-        if (removedDataSet.getMinX() == minX || removedDataSet.getMaxX() == maxX
-                || removedDataSet.getMinY() == minY || removedDataSet.getMaxY() == maxY) {
-            // Then need to adjust the global bounds.
-            minX = Integer.MAX_VALUE;
-            maxX = Integer.MIN_VALUE;
-            minY = Integer.MAX_VALUE;
-            maxY = Integer.MIN_VALUE;
-            boolean boundsRevised = false;
-            for (DataSet dataSet : dataSetMap.values()) {
-                adjustGlobalBounds(dataSet);
-            }
-            return boundsRevised;
-        }
-        return false;
+    private void removeBounds(DataSet removedDataSet) {
+        minXs.remove(removedDataSet.getMinX());
+        maxXs.remove(removedDataSet.getMaxX());
+        minYs.remove(removedDataSet.getMinY());
+        maxYs.remove(removedDataSet.getMaxY());
     }
 
     @Override
@@ -317,4 +305,40 @@ public class GraphData implements BoundedRegion, Iterable<Pair<String, ? extends
         }
         return builder.toString();
     }
+
+    /**
+     * A sorted multiset of {@code int} values, with logarithmic-time insertion, removal, and lookup
+     * of its least and greatest values.
+     *
+     * @author AJ Parmidge
+     */
+    private static class IntMultiset {
+        /**
+         * Maps each value to the number of times it is in the multiset.
+         */
+        private final TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+
+        private void add(int value) {
+            Integer count = counts.get(value);
+            counts.put(value, count == null ? 1 : count + 1);
+        }
+
+        private void remove(int value) {
+            Integer count = counts.get(value);
+            Verify.state(count != null, "Value " + value + " is not in the multiset");
+            if (count == 1) {
+                counts.remove(value);
+            } else {
+                counts.put(value, count - 1);
+            }
+        }
+
+        private int getMin() {
+            return counts.firstKey();
+        }
+
+        private int getMax() {
+            return counts.lastKey();
+        }
+    }
 }
@@ -1,13 +1,14 @@
 package nepic.data;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.google.common.collect.Lists;
 
 import nepic.io.Label;
 import nepic.util.CsvFormattable;
+import nepic.util.IntLongConsumer;
 import nepic.util.Range;
 import nepic.util.Verify;
 
@@ -15,40 +16,54 @@ import nepic.util.Verify;
  * A class representing a histogram of single-dimensional data within a given range of values.
  *
  * <p>
- * Note: This class is optimized for sets of single-dimensional data with relatively small domains
- * (the number of values in the data set is immaterial in the final {@link Histogram}).
+ * Note: The number of values in the data set is immaterial in the final {@link Histogram}. Data
+ * whose values are packed into a relatively small domain is stored densely (one column per value
+ * between the minimum and maximum), while data whose values are spread thinly over a wide domain
+ * (such as a few thousand 16-bit values) is stored sparsely (one column per distinct value). Either
+ * way, the same queries are supported, and the number of values, the count of each value, and the
+ * sum of the data are all kept in {@code long}s so that every statistic stays exact for any number
+ * of values (such as the pooled values of every page in a large stack).
  *
  * @author AJ Parmidge
  */
 public class Histogram implements CsvFormattable {
     /**
-     * The actual histogram data.
+     * Domains no wider than this are always stored densely.
      */
-    private final int[] hist;
+    private static final int MAX_ALWAYS_DENSE_RANGE = 256;
     /**
-     * The number of values in this {@link Histogram}.
+     * Wider domains are stored sparsely if fewer than one in this many of their values occur.
      */
-    private final int n;
+    private static final int MIN_SPARSE_RANGE_PER_VALUE = 4;
+
     /**
-     * The difference between the actual lower bound of the histogram's domain and zero (relates the
-     * actual histogram domain to the positions in the hist array).
+     * The actual histogram data.
      */
-    private final int offset;
+    private final Bins bins;
+    /**
+     * The number of values in this {@link Histogram}.
+     */
+    private final long n;
     /**
      * The sum of the magnitudes of all columns in the histogram.
      */
-    private final int sum;
+    private final long sum;
     /**
      * The modes of the data represented by the histogram
      */
-    private final List<Integer> modePositions;
+    private final List<Integer> modes;
     /**
      * The number of times the mode occurs in the data summarized by the histogram.
      */
-    private final int numModeInstances;
+    private final long numModeInstances;
+    /**
+     * The sample variance of the data represented by the histogram.
+     */
+    private final double variance;
 
     /**
-     * Creates a histogram with the given information passed from the {@link Builder}.
+     * Creates a histogram with the given dense information passed from the {@link Builder} (or from
+     * a {@link MutableHistogram}).
      *
      * @param hist the actual data for the {@link Histogram}
      * @param n the number of values included in the histogram data
@@ -56,28 +71,90 @@ public class Histogram implements CsvFormattable {
      * @param sum the sum of all values in the given histogram data
      * @param minPos the minimum position in the histogram data at which there is at least one value
      * @param maxPos the maximum position in the histogram data at which there is at least one value
-     * @param numModeInstances the number of times the mode occurs in the data summarized by this
-     *        {@link Histogram}
      */
-    private Histogram(int[] hist, int n, int offset, int sum, int minPos, int maxPos, int numModeInstances) {
-        Verify.argument(minPos <= maxPos, "Invalid bounds given.  maxPos (= " + maxPos
-                + ") < minPos (= " + minPos + ")");
+    Histogram(long[] hist, long n, int offset, long sum, int minPos, int maxPos) {
+        this(makeBins(hist, offset, minPos, maxPos), n, sum);
+    }
+
+    /**
+     * Creates a histogram with the given sparse information passed from the {@link Builder}.
+     *
+     * @param values the distinct values in the histogram data, in increasing order
+     * @param counts the number of times each of the given values occurs
+     * @param n the number of values included in the histogram data
+     * @param sum the sum of all values in the given histogram data
+     */
+    Histogram(int[] values, long[] counts, long n, long sum) {
+        this(makeBins(values, counts), n, sum);
+    }
+
+    private Histogram(Bins bins, long n, long sum) {
+        this.bins = bins;
         this.n = n;
-        this.offset = offset + minPos;
         this.sum = sum;
+
+        int numSlots = bins.getNumSlots();
+        long numModeInstances = 0;
+        for (int slot = 0; slot < numSlots; slot++) {
+            numModeInstances = Math.max(numModeInstances, bins.getSlotCount(slot));
+        }
         this.numModeInstances = numModeInstances;
-        this.modePositions = new LinkedList<Integer>();
+        this.modes = new ArrayList<Integer>(1);
+        for (int slot = 0; slot < numSlots; slot++) {
+            if (bins.getSlotCount(slot) == numModeInstances) {
+                modes.add(bins.getSlotValue(slot));
+            }
+        }
+
+        // Variance for sample (for entire population, divide by n, not n-1)
+        this.variance = bins.getSumOfSquaredDifferences(getMean()) / (n - 1);
+    }
 
-        // Make a defensive copy of the Histogram in case the Builder is modified after this
-        // Histogram is made.
-        this.hist = new int[maxPos - minPos + 1];
+    private static Bins makeBins(long[] hist, int offset, int minPos, int maxPos) {
+        Verify.argument(minPos <= maxPos, "Invalid bounds given.  maxPos (= " + maxPos
+                + ") < minPos (= " + minPos + ")");
+        int numDistinct = 0;
+        for (int pos = minPos; pos <= maxPos; pos++) {
+            if (hist[pos] > 0) {
+                numDistinct++;
+            }
+        }
+        int rangeLength = maxPos - minPos + 1;
+        if (!shouldBeSparse(numDistinct, rangeLength)) {
+            // Copy in case the Builder is modified after this Histogram is made.
+            return new DenseBins(Arrays.copyOfRange(hist, minPos, maxPos + 1), offset + minPos);
+        }
+        int[] values = new int[numDistinct];
+        long[] counts = new long[numDistinct];
+        int i = 0;
         for (int pos = minPos; pos <= maxPos; pos++) {
-            int numOccurrences = hist[pos];
-            this.hist[pos - minPos] = numOccurrences;
-            if (numOccurrences == numModeInstances) {
-                modePositions.add(pos - minPos);
+            if (hist[pos] > 0) {
+                values[i] = pos + offset;
+                counts[i] = hist[pos];
+                i++;
             }
         }
+        return new SparseBins(values, counts);
+    }
+
+    private static Bins makeBins(int[] values, long[] counts) {
+        Verify.argument(values.length > 0, "Cannot make an empty Histogram");
+        int min = values[0];
+        int max = values[values.length - 1];
+        long rangeLength = (long) max - min + 1;
+        if (rangeLength > Integer.MAX_VALUE || shouldBeSparse(values.length, (int) rangeLength)) {
+            return new SparseBins(values, counts);
+        }
+        long[] hist = new long[(int) rangeLength];
+        for (int i = 0; i < values.length; i++) {
+            hist[values[i] - min] = counts[i];
+        }
+        return new DenseBins(hist, min);
+    }
+
+    private static boolean shouldBeSparse(int numDistinct, int rangeLength) {
+        return rangeLength > MAX_ALWAYS_DENSE_RANGE
+                && numDistinct < rangeLength / MIN_SPARSE_RANGE_PER_VALUE;
     }
 
     public static Label[] getCsvLabels() {
@@ -123,20 +200,37 @@ public class Histogram implements CsvFormattable {
      * @param value the value of the column for which to get the magnitude
      * @return the magnitude of the specified column
      */
-    public int getNumValuesAt(int value) {
-        int pos = value - offset;
-        if (pos < 0 || pos >= hist.length) { // If the given value is outside the Histogram's
-                                             // bounds.
+    public long getNumValuesAt(int value) {
+        if (value < getMin() || value > getMax()) { // If the given value is outside the
+                                                    // Histogram's bounds.
             return 0;
         }
-        return hist[pos];
+        return bins.getNumValuesAt(value);
+    }
+
+    /**
+     * Visits each distinct value in this histogram, in increasing order, along with the number of
+     * times it occurs. Values that do not occur are skipped, so for a sparsely stored histogram this
+     * takes time proportional to the number of distinct values rather than to the range.
+     *
+     * @param visitor accepts each value (as its first argument) and its count (as its second)
+     */
+    public void forEachValue(IntLongConsumer visitor) {
+        Verify.notNull(visitor, "visitor");
+        int numSlots = bins.getNumSlots();
+        for (int slot = 0; slot < numSlots; slot++) {
+            long count = bins.getSlotCount(slot);
+            if (count > 0) {
+                visitor.accept(bins.getSlotValue(slot), count);
+            }
+        }
     }
 
     /**
      * Gets the maximum value of the data in this {@link Histogram}.
      */
     public int getMax() {
-        return offset + hist.length - 1;
+        return bins.getMax();
     }
 
     /**
@@ -157,34 +251,37 @@ public class Histogram implements CsvFormattable {
      * Gets the minimum value of the data in this {@link Histogram}.
      */
     public int getMin() {
-        return offset;
+        return bins.getMin();
     }
 
     /**
      * Gets the all of the modes of the data in this {@link Histogram}.
      */
     public List<Integer> getModes() {
-        List<Integer> modes = new ArrayList<Integer>(modePositions.size());
-        for (int modePos : modePositions) {
-            modes.add(modePos + offset);
-        }
-        return modes;
+        return new ArrayList<Integer>(modes);
     }
 
     /**
      * Gets the number of times the mode appears in the data represented by this {@link Histogram}
      */
-    public int getNumberModeInstances() {
+    public long getNumberModeInstances() {
         return numModeInstances;
     }
 
     /**
      * Gets the number of data points that this {@link Histogram} represents.
      */
-    public int getNumValues() {
+    public long getNumValues() {
         return n;
     }
 
+    /**
+     * Gets the sum of all of the data points that this {@link Histogram} represents.
+     */
+    public long getSum() {
+        return sum;
+    }
+
     /**
      * Gets the magnitudes of all of all columns in the {@link Histogram} between the given
      * {@code floor} and {@code ceiling} inclusively.
@@ -193,27 +290,18 @@ public class Histogram implements CsvFormattable {
      * @param ceiling the upper bound of the range
      * @return the sum of all column magnitudes inclusively contained within the given domain
      */
-    public int getNumValuesBetween(int floor, int ceiling) {
+    public long getNumValuesBetween(int floor, int ceiling) {
         Verify.argument(floor <= ceiling,
                 "Given floor (=" + floor + ") > given ceiling (= " + ceiling + ")");
-        int floorPos = floor - offset;
-        int ceilingPos = ceiling - offset;
-
-        if(ceilingPos < 0 || floorPos >= hist.length){
+        if (ceiling < getMin() || floor > getMax()) {
             // If the given values are outside the bounds of this histogram.
             return 0;
         }
 
-        // Bound the given range to hist.
-        floorPos = Math.max(floorPos, 0);
-        ceilingPos = Math.min(ceilingPos, hist.length - 1);
-
-        // Get the magnitude of each column between the floor and ceiling inclusively.
-        int numValues = 0;
-        for (int pos = floorPos; pos <= ceilingPos; pos++) {
-            numValues += hist[pos];
-        }
-        return numValues;
+        // Bound the given range to the histogram.
+        long numAtOrBelowCeiling = ceiling >= getMax() ? n : bins.getNumValuesAtOrBelow(ceiling);
+        long numBelowFloor = floor <= getMin() ? 0 : bins.getNumValuesAtOrBelow(floor - 1);
+        return numAtOrBelowCeiling - numBelowFloor;
     }
 
     /**
@@ -230,21 +318,11 @@ public class Histogram implements CsvFormattable {
     public int getPercentile(double percentile) {
         Verify.argument(percentile >= 0 && percentile <= 100, "Illegal percentile value "
                 + percentile + ".  Percentiles MUST be between 0 and 100 (inclusive).");
-        long elPos = (int) (n * percentile / 100);
-        int numPassed = 0;
-        int elVal = 0;
-        for (int i = 0; i < hist.length; i++) {
-            int magnitude = hist[i];
-            if (magnitude > 0) {
-                numPassed += magnitude;
-                if (numPassed > elPos) {
-                    elVal = i;
-                    break;
-                }
-                elVal = i; // For the 100th percentile case.
-            }
+        long elPos = (long) (n * percentile / 100);
+        if (elPos >= n) { // For the 100th percentile case.
+            return getMax();
         }
-        return elVal + offset;
+        return bins.getValueOfRank(elPos);
     }
 
     /**
@@ -258,13 +336,7 @@ public class Histogram implements CsvFormattable {
      * Gets the variance of the data in this {@link Histogram}.
      */
     public double getVariance() {
-        double var = 0;
-        double mean = getMean() - offset;
-        for (int pos = 0; pos < hist.length; pos++) {
-            double diff = pos - mean;
-            var += hist[pos] * (diff * diff); // take sum of square of diffs
-        }
-        return var / (n - 1); // Variance for sample (for entire population, divide by n, not n-1)
+        return variance;
     }
 
     /**
@@ -274,7 +346,7 @@ public class Histogram implements CsvFormattable {
      * <p>
      * Note that the result of this method will <b> not </b> necessarily be the same if the invoking
      * object and the parameter are switched.
-     * 
+     *
      * @param other the histogram with which to find overlap
      * @return the area of the overlapping region between the two histograms as a percentage of the
      *         summed areas of the two histograms.
@@ -283,9 +355,13 @@ public class Histogram implements CsvFormattable {
         Verify.notNull(other, "otherHistogram");
         int overlapMin = Math.max(getMin(), other.getMin());
         int overlapMax = Math.min(getMax(), other.getMax());
-        int overlapArea = 0;
-        for (int i = overlapMin; i <= overlapMax; i++) {
-            overlapArea += Math.min(getNumValuesAt(i), other.getNumValuesAt(i));
+        long overlapArea = 0;
+        int numSlots = bins.getNumSlots();
+        for (int slot = 0; slot < numSlots; slot++) {
+            int value = bins.getSlotValue(slot);
+            if (value >= overlapMin && value <= overlapMax) {
+                overlapArea += Math.min(bins.getSlotCount(slot), other.bins.getNumValuesAt(value));
+            }
         }
 
         return ((double) overlapArea) / getNumValues();
@@ -298,27 +374,286 @@ public class Histogram implements CsvFormattable {
                 + getStDev() + " stDev";
     }
 
+    /**
+     * The columns of a {@link Histogram}. The columns are numbered as 'slots' from zero, in
+     * increasing order of their values; depending on how the columns are stored, there may or may
+     * not be a slot for each value between the minimum and the maximum.
+     *
+     * @author AJ Parmidge
+     */
+    private static abstract class Bins {
+
+        abstract int getMin();
+
+        abstract int getMax();
+
+        /**
+         * Gets the number of values equal to the given value (between the min and max, inclusive).
+         */
+        abstract long getNumValuesAt(int value);
+
+        /**
+         * Gets the number of values less than or equal to the given value (between the min and
+         * max, inclusive).
+         */
+        abstract long getNumValuesAtOrBelow(int value);
+
+        /**
+         * Gets the value with the given rank (i.e. the value that would be at the given index if
+         * all of the values were sorted).
+         */
+        abstract int getValueOfRank(long rank);
+
+        abstract int getNumSlots();
+
+        abstract int getSlotValue(int slot);
+
+        abstract long getSlotCount(int slot);
+
+        /**
+         * Gets the sum of the squared difference between each value and the given mean.
+         */
+        abstract double getSumOfSquaredDifferences(double mean);
+
+        /**
+         * Gets the index of the first element in the given array of cumulative counts that is
+         * greater than the given rank.
+         */
+        static int findRank(long[] cumulative, long rank) {
+            int lo = 0;
+            int hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] > rank) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        static long[] accumulate(long[] counts) {
+            long[] cumulative = new long[counts.length];
+            long numValues = 0;
+            for (int i = 0; i < counts.length; i++) {
+                numValues += counts[i];
+                cumulative[i] = numValues;
+            }
+            return cumulative;
+        }
+    }
+
+    /**
+     * {@link Bins} with a column for every value between the min and max, so that the number of
+     * values at any given value can be found in constant time.
+     */
+    private static class DenseBins extends Bins {
+        private final long[] hist;
+        /**
+         * The cumulative histogram data: the number of values at or below each position in
+         * {@link #hist}. Lets range counts be found in constant time and percentiles be found by
+         * binary search.
+         */
+        private final long[] cumulative;
+        /**
+         * The difference between the actual lower bound of the histogram's domain and zero (relates
+         * the actual histogram domain to the positions in the hist array).
+         */
+        private final int offset;
+
+        DenseBins(long[] hist, int offset) {
+            this.hist = hist;
+            this.cumulative = accumulate(hist);
+            this.offset = offset;
+        }
+
+        @Override
+        int getMin() {
+            return offset;
+        }
+
+        @Override
+        int getMax() {
+            return offset + hist.length - 1;
+        }
+
+        @Override
+        long getNumValuesAt(int value) {
+            int pos = value - offset;
+            return pos < 0 || pos >= hist.length ? 0 : hist[pos];
+        }
+
+        @Override
+        long getNumValuesAtOrBelow(int value) {
+            return cumulative[value - offset];
+        }
+
+        @Override
+        int getValueOfRank(long rank) {
+            return findRank(cumulative, rank) + offset;
+        }
+
+        @Override
+        int getNumSlots() {
+            return hist.length;
+        }
+
+        @Override
+        int getSlotValue(int slot) {
+            return slot + offset;
+        }
+
+        @Override
+        long getSlotCount(int slot) {
+            return hist[slot];
+        }
+
+        @Override
+        double getSumOfSquaredDifferences(double mean) {
+            double var = 0;
+            mean -= offset;
+            for (int pos = 0; pos < hist.length; pos++) {
+                double diff = pos - mean;
+                var += hist[pos] * (diff * diff); // take sum of square of diffs
+            }
+            return var;
+        }
+    }
+
+    /**
+     * {@link Bins} with a column for only the values that actually occur, found by binary search.
+     */
+    private static class SparseBins extends Bins {
+        /**
+         * The distinct values, in increasing order.
+         */
+        private final int[] values;
+        /**
+         * The number of values at or below each of the distinct {@link #values}.
+         */
+        private final long[] cumulative;
+
+        SparseBins(int[] values, long[] counts) {
+            this.values = values;
+            this.cumulative = accumulate(counts);
+        }
+
+        @Override
+        int getMin() {
+            return values[0];
+        }
+
+        @Override
+        int getMax() {
+            return values[values.length - 1];
+        }
+
+        @Override
+        long getNumValuesAt(int value) {
+            int slot = Arrays.binarySearch(values, value);
+            return slot < 0 ? 0 : getSlotCount(slot);
+        }
+
+        @Override
+        long getNumValuesAtOrBelow(int value) {
+            int slot = Arrays.binarySearch(values, value);
+            if (slot < 0) {
+                slot = -slot - 2; // The slot of the greatest value below the given value.
+            }
+            return slot < 0 ? 0 : cumulative[slot];
+        }
+
+        @Override
+        int getValueOfRank(long rank) {
+            return values[findRank(cumulative, rank)];
+        }
+
+        @Override
+        int getNumSlots() {
+            return values.length;
+        }
+
+        @Override
+        int getSlotValue(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        long getSlotCount(int slot) {
+            return slot == 0 ? cumulative[0] : cumulative[slot] - cumulative[slot - 1];
+        }
+
+        @Override
+        double getSumOfSquaredDifferences(double mean) {
+            // Measure from the min, as DenseBins does, so both give exactly the same result.
+            double var = 0;
+            mean -= values[0];
+            for (int slot = 0; slot < values.length; slot++) {
+                double diff = ((long) values[slot] - values[0]) - mean;
+                var += getSlotCount(slot) * (diff * diff);
+            }
+            return var;
+        }
+    }
+
     /**
      * The mutable builder for the immutable {@link Histogram} object.
+     * <p>
+     * Builders for domains of up to {@link #MAX_DENSE_BUILDER_RANGE} values count each value in a
+     * dense array. Large batches of values given to {@link #addAll(int[], int, int)} or
+     * {@link #addAll(byte[], int, int)} are counted round-robin into several separate lanes, so that
+     * runs of equal values (common in images) do not make each increment wait on the previous one.
+     * The lanes are folded back together whenever the counts are needed. Builders for wider domains
+     * (such as 16-bit or 32-bit data) only count the values that actually occur. The modes are only
+     * found once, when the {@link Histogram} is built.
      *
      * @author AJ Parmidge
      */
     public static class Builder implements nepic.util.Builder<Histogram> {
-        private final int[] histogram;
+        /**
+         * The widest domain for which a builder counts values in a dense array.
+         */
+        private static final int MAX_DENSE_BUILDER_RANGE = 1 << 12;
+        /**
+         * The number of separate sets of counts into which large batches of values are split.
+         */
+        private static final int NUM_LANES = 4;
+        /**
+         * The smallest batch of values for which it is worth using separate lanes.
+         */
+        private static final int MIN_VALUES_FOR_LANES = 64;
+
+        /**
+         * The dense counts of the values, or {@code null} if this builder counts values sparsely.
+         */
+        private final long[] histogram;
+        /**
+         * The sparse counts of the values, or {@code null} if this builder counts values densely.
+         */
+        private final SparseCounts sparseCounts;
         private final int offset;
+        private final int upperBound;
 
-        private int n = 0;
-        private int sum = 0;
+        private long n = 0;
+        private long sum = 0;
         /**
-         * The position of the minimum value in the histogram array.
+         * The position of the minimum value in the domain.
          */
         private int minPos = Integer.MAX_VALUE;
         /**
-         * The position of the maximum value in the histogram array.
+         * The position of the maximum value in the domain.
          */
         private int maxPos = Integer.MIN_VALUE;
-        private int numModeInstances = 0;
-        private List<Integer> modes = new LinkedList<Integer>();
+        /**
+         * The extra lanes of counts (the {@link #histogram} array is the first lane), or
+         * {@code null} if no batch has been large enough to need them yet.
+         */
+        private long[][] lanes = null;
+        /**
+         * Whether any of the {@link #lanes} hold counts not yet folded into the {@link #histogram}.
+         */
+        private boolean lanesDirty = false;
 
         /**
          * Creates an object that builds a {@link Histogram} with the given bounds.
@@ -331,8 +666,18 @@ public class Histogram implements CsvFormattable {
         public Builder(int lowerBound, int upperBound) {
             Verify.argument(lowerBound <= upperBound,
                     "Lower bound " + lowerBound + "is greater than upper bound " + upperBound);
-            this.histogram = new int[upperBound - lowerBound + 1];
+            long rangeLength = (long) upperBound - lowerBound + 1;
+            Verify.argument(rangeLength < Integer.MAX_VALUE, "Domain from " + lowerBound + " to "
+                    + upperBound + " is too large");
+            if (rangeLength <= MAX_DENSE_BUILDER_RANGE) {
+                this.histogram = new long[(int) rangeLength];
+                this.sparseCounts = null;
+            } else {
+                this.histogram = null;
+                this.sparseCounts = new SparseCounts();
+            }
             this.offset = lowerBound;
+            this.upperBound = upperBound;
         }
 
         /**
@@ -343,10 +688,7 @@ public class Histogram implements CsvFormattable {
          */
         public Histogram.Builder addValues(int... values) {
             Verify.notNull(values, "values");
-            for (int value : values) {
-                addValue(value);
-            }
-            return this;
+            return addAll(values, 0, values.length);
         }
 
         /**
@@ -363,48 +705,297 @@ public class Histogram implements CsvFormattable {
             return this;
         }
 
+        /**
+         * Add the given range of values to the {@link Histogram} being built. Either all of the
+         * values are added, or (if any of them is outside the bounds of this builder) none are.
+         *
+         * @param values the array containing the values to add
+         * @param off the index in the array of the first value to add
+         * @param len the number of values to add
+         * @return {@code this}, for chaining
+         */
+        public Histogram.Builder addAll(int[] values, int off, int len) {
+            Verify.notNull(values, "values");
+            verifySubRange(values.length, off, len);
+            if (len == 0) {
+                return this;
+            }
+            int end = off + len;
+
+            // Check all of the values before adding any of them.
+            int minValue = Integer.MAX_VALUE;
+            int maxValue = Integer.MIN_VALUE;
+            for (int i = off; i < end; i++) {
+                int value = values[i];
+                if (value < minValue) {
+                    minValue = value;
+                }
+                if (value > maxValue) {
+                    maxValue = value;
+                }
+            }
+            verifyLegalValue(minValue);
+            verifyLegalValue(maxValue);
+
+            long batchSum = 0;
+            int i = off;
+            if (histogram == null) {
+                for (; i < end; i++) {
+                    int value = values[i];
+                    sparseCounts.add(value, 1);
+                    batchSum += value;
+                }
+            } else {
+                long[] lane0 = histogram;
+                if (len >= MIN_VALUES_FOR_LANES) {
+                    long[][] lanes = getLanes();
+                    long[] lane1 = lanes[0];
+                    long[] lane2 = lanes[1];
+                    long[] lane3 = lanes[2];
+                    for (; i + NUM_LANES <= end; i += NUM_LANES) {
+                        int v0 = values[i];
+                        int v1 = values[i + 1];
+                        int v2 = values[i + 2];
+                        int v3 = values[i + 3];
+                        lane0[v0 - offset]++;
+                        lane1[v1 - offset]++;
+                        lane2[v2 - offset]++;
+                        lane3[v3 - offset]++;
+                        batchSum += (long) v0 + v1 + v2 + v3;
+                    }
+                }
+                for (; i < end; i++) {
+                    int value = values[i];
+                    lane0[value - offset]++;
+                    batchSum += value;
+                }
+            }
+            recordBatch(len, batchSum, minValue, maxValue);
+            return this;
+        }
+
+        /**
+         * Add the given range of values to the {@link Histogram} being built, where each byte is
+         * taken to be an unsigned value between 0 and 255 (such as an 8-bit pixel intensity).
+         * Either all of the values are added, or (if any of them is outside the bounds of this
+         * builder) none are.
+         *
+         * @param values the array containing the values to add
+         * @param off the index in the array of the first value to add
+         * @param len the number of values to add
+         * @return {@code this}, for chaining
+         */
+        public Histogram.Builder addAll(byte[] values, int off, int len) {
+            Verify.notNull(values, "values");
+            verifySubRange(values.length, off, len);
+            if (len == 0) {
+                return this;
+            }
+            int end = off + len;
+
+            // Check all of the values before adding any of them.
+            int minValue = 0xFF;
+            int maxValue = 0;
+            for (int i = off; i < end; i++) {
+                int value = values[i] & 0xFF;
+                if (value < minValue) {
+                    minValue = value;
+                }
+                if (value > maxValue) {
+                    maxValue = value;
+                }
+            }
+            verifyLegalValue(minValue);
+            verifyLegalValue(maxValue);
+
+            long batchSum = 0;
+            int i = off;
+            if (histogram == null) {
+                for (; i < end; i++) {
+                    int value = values[i] & 0xFF;
+                    sparseCounts.add(value, 1);
+                    batchSum += value;
+                }
+            } else {
+                long[] lane0 = histogram;
+                if (len >= MIN_VALUES_FOR_LANES) {
+                    long[][] lanes = getLanes();
+                    long[] lane1 = lanes[0];
+                    long[] lane2 = lanes[1];
+                    long[] lane3 = lanes[2];
+                    for (; i + NUM_LANES <= end; i += NUM_LANES) {
+                        int v0 = values[i] & 0xFF;
+                        int v1 = values[i + 1] & 0xFF;
+                        int v2 = values[i + 2] & 0xFF;
+                        int v3 = values[i + 3] & 0xFF;
+                        lane0[v0 - offset]++;
+                        lane1[v1 - offset]++;
+                        lane2[v2 - offset]++;
+                        lane3[v3 - offset]++;
+                        batchSum += v0 + v1 + v2 + v3;
+                    }
+                }
+                for (; i < end; i++) {
+                    int value = values[i] & 0xFF;
+                    lane0[value - offset]++;
+                    batchSum += value;
+                }
+            }
+            recordBatch(len, batchSum, minValue, maxValue);
+            return this;
+        }
+
+        /**
+         * Adds all of the values added to the given builder to this builder (for example, to
+         * combine histograms of separate parts of an image built at the same time). The given
+         * builder is not modified.
+         *
+         * @param other the builder whose values to add; all of its values must be within the
+         *        bounds of this builder
+         * @return {@code this}, for chaining
+         */
+        public Histogram.Builder merge(Histogram.Builder other) {
+            Verify.notNull(other, "other");
+            if (other.n == 0) {
+                return this;
+            }
+            int otherMinValue = other.minPos + other.offset;
+            int otherMaxValue = other.maxPos + other.offset;
+            verifyLegalValue(otherMinValue);
+            verifyLegalValue(otherMaxValue);
+
+            if (other.histogram == null) {
+                for (int value : other.sparseCounts.getSortedValues()) {
+                    addCount(value, other.sparseCounts.get(value));
+                }
+            } else {
+                long[] otherHistogram = other.histogram();
+                for (int pos = other.minPos; pos <= other.maxPos; pos++) {
+                    if (otherHistogram[pos] > 0) {
+                        addCount(pos + other.offset, otherHistogram[pos]);
+                    }
+                }
+            }
+            recordBatch(other.n, other.sum, otherMinValue, otherMaxValue);
+            return this;
+        }
+
         @Override
         public Histogram build() {
             Verify.state(minPos <= maxPos, "Cannot instantiate an empty Histogram");
-            return new Histogram(histogram, n, offset, sum, minPos, maxPos, numModeInstances);
+            if (histogram == null) {
+                int[] values = sparseCounts.getSortedValues();
+                long[] counts = new long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    counts[i] = sparseCounts.get(values[i]);
+                }
+                return new Histogram(values, counts, n, sum);
+            }
+            return new Histogram(histogram(), n, offset, sum, minPos, maxPos);
         }
 
         /**
-         * Add the given value to the {@link Histogram} being built.
+         * Add the given value to the {@link Histogram} being built. Unlike
+         * {@link #addValues(int...)}, this does not need an array to be made for the value.
          *
          * @param value the value to add
+         * @return {@code this}, for chaining
+         */
+        public Histogram.Builder addValue(int value) {
+            verifyLegalValue(value);
+            addCount(value, 1);
+            recordBatch(1, value, value, value);
+            return this;
+        }
+
+        /**
+         * Gets all of the modes of the values added so far, in increasing order.
          */
-        private void addValue(int value) {
-            int pos = value - offset; // The position of 'value' in the histogram matrix.
-            Verify.argument(pos >= 0 && pos < histogram.length, "Cannot add illegal value " + value
-                    + " to to the Histogram being built.  Acceptable values range from " + offset
-                    + " to " + (offset + histogram.length - 1));
-            int numValueInstances = histogram[pos] + 1;
-            histogram[pos] = numValueInstances;
-            n++;
-            sum += value;
-            if (pos < minPos) {
-                minPos = pos;
+        public List<Integer> getModes() {
+            long numModeInstances = getNumberModeInstances();
+            List<Integer> modes = Lists.newArrayList();
+            if (histogram == null) {
+                for (int value : sparseCounts.getSortedValues()) {
+                    if (sparseCounts.get(value) == numModeInstances) {
+                        modes.add(value);
+                    }
+                }
+            } else {
+                for (int pos = minPos; pos <= maxPos; pos++) {
+                    if (histogram[pos] == numModeInstances) {
+                        modes.add(pos + offset);
+                    }
+                }
             }
-            if (pos > maxPos) {
-                maxPos = pos;
+            return modes;
+        }
+
+        public long getNumberModeInstances() {
+            long numModeInstances = 0;
+            if (histogram == null) {
+                for (int value : sparseCounts.getSortedValues()) {
+                    numModeInstances = Math.max(numModeInstances, sparseCounts.get(value));
+                }
+            } else {
+                long[] histogram = histogram();
+                for (int pos = minPos; pos <= maxPos; pos++) {
+                    numModeInstances = Math.max(numModeInstances, histogram[pos]);
+                }
             }
-            if (numValueInstances >= numModeInstances) {
-                if (numValueInstances > numModeInstances) {
-                    modes.clear();
-                    numModeInstances = numValueInstances;
+            return numModeInstances;
+        }
+
+        /**
+         * Gets the dense histogram array, after folding any counts still held in the separate
+         * lanes into it.
+         */
+        private long[] histogram() {
+            if (lanesDirty) {
+                for (long[] lane : lanes) {
+                    for (int pos = minPos; pos <= maxPos; pos++) {
+                        histogram[pos] += lane[pos];
+                        lane[pos] = 0;
+                    }
                 }
-                numModeInstances = numValueInstances;
-                modes.add(pos);
+                lanesDirty = false;
             }
+            return histogram;
         }
 
-        public List<Integer> getModes() {
-            return Lists.newArrayList(modes);
+        private long[][] getLanes() {
+            if (lanes == null) {
+                lanes = new long[NUM_LANES - 1][histogram.length];
+            }
+            lanesDirty = true;
+            return lanes;
         }
 
-        public int getNumberModeInstances() {
-            return numModeInstances;
+        private void addCount(int value, long count) {
+            if (histogram == null) {
+                sparseCounts.add(value, count);
+            } else {
+                histogram[value - offset] += count;
+            }
+        }
+
+        private void recordBatch(long numValues, long batchSum, int minValue, int maxValue) {
+            n += numValues;
+            sum += batchSum;
+            minPos = Math.min(minPos, minValue - offset);
+            maxPos = Math.max(maxPos, maxValue - offset);
+        }
+
+        private void verifyLegalValue(int value) {
+            if (value < offset || value > upperBound) {
+                throw new IllegalArgumentException("Cannot add illegal value " + value
+                        + " to to the Histogram being built.  Acceptable values range from "
+                        + offset + " to " + upperBound);
+            }
+        }
+
+        private static void verifySubRange(int arrayLength, int off, int len) {
+            Verify.argument(off >= 0 && len >= 0 && off <= arrayLength - len, "Illegal range (off = "
+                    + off + ", len = " + len + ") of array of length " + arrayLength);
         }
     }
 }
@@ -1,32 +1,50 @@
 package nepic.data;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
-import com.google.common.collect.Lists;
-
 import nepic.util.Range;
 import nepic.util.Verify;
 
+/**
+ * A histogram that also records the first position at which each of its values was added. A
+ * {@link HistogramPositionMap} is backed entirely by primitive arrays, and can be reused for new
+ * data by calling {@link #clear()}, so adding values to it never allocates.
+ *
+ * @author AJ Parmidge
+ */
 public class HistogramPositionMap {
     /**
-     * The actual histogram data.
+     * The number of instances of each value in the histogram.
+     */
+    private final int[] counts;
+    /**
+     * The first position associated with each value in the histogram (only meaningful for the
+     * values whose count is non-zero).
      */
-    private final List<LinkedList<Integer>> histogram;
+    private final int[] firstPositions;
     /**
      * The difference between the actual lower bound of the histogram's domain and zero (relates the
      * actual histogram domain to the positions in the hist array).
      */
     private final int offset;
     /**
-     * The modes of the data represented by the histogram
+     * The positions (in the hist array) of the modes of the data represented by the histogram, in
+     * the order in which they became modes. Only the first {@link #numModes} are valid.
      */
-    private final List<Integer> modePositions;
+    private final int[] modePositions;
+    private int numModes;
     /**
      * The number of times the mode occurs in the data summarized by the histogram.
      */
     private int numModeInstances;
+    /**
+     * The positions (in the hist array) of all the values with a non-zero count, so that the
+     * histogram can be cleared in time proportional to the number of distinct values added. Only
+     * the first {@link #numTouchedPositions} are valid.
+     */
+    private final int[] touchedPositions;
+    private int numTouchedPositions;
 
     /**
      * Creates a {@link HistogramPositionMap} with the given bounds.
@@ -40,12 +58,23 @@ public class HistogramPositionMap {
         Verify.argument(lowerBound <= upperBound,
                 "lowerBound (=" + lowerBound + ") > upperBound (=" + upperBound + ")");
         int histSize = upperBound - lowerBound + 1;
-        histogram = new ArrayList<LinkedList<Integer>>(histSize);
-        for (int i = 0; i < histSize; i++) {
-            histogram.add(new LinkedList<Integer>());
-        }
+        counts = new int[histSize];
+        firstPositions = new int[histSize];
+        modePositions = new int[histSize];
+        touchedPositions = new int[histSize];
         offset = lowerBound;
-        modePositions = new LinkedList<Integer>();
+    }
+
+    /**
+     * Removes all the values from this {@link HistogramPositionMap}, so that it can be reused.
+     */
+    public void clear() {
+        for (int i = 0; i < numTouchedPositions; i++) {
+            counts[touchedPositions[i]] = 0;
+        }
+        numTouchedPositions = 0;
+        numModes = 0;
+        numModeInstances = 0;
     }
 
     /**
@@ -56,36 +85,47 @@ public class HistogramPositionMap {
      */
     public void addValueAtPosition(int value, int position) {
         int histPos = value - offset; // The position of 'value' in the histogram matrix.
-        Verify.argument(histPos >= 0 && histPos < histogram.size(), "Cannot add illegal value "
+        Verify.argument(histPos >= 0 && histPos < counts.length, "Cannot add illegal value "
                 + value + " to to the Histogram being built.  Acceptable values range from "
-                + offset + " to " + (offset + histogram.size() - 1));
-        LinkedList<Integer> positionsAtHistPos = histogram.get(histPos);
-        positionsAtHistPos.add(position);
-        int numValueInstances = positionsAtHistPos.size();
+                + offset + " to " + (offset + counts.length - 1));
+        int numValueInstances = ++counts[histPos];
+        if (numValueInstances == 1) {
+            firstPositions[histPos] = position;
+            touchedPositions[numTouchedPositions++] = histPos;
+        }
         if (numValueInstances >= numModeInstances) {
             if (numValueInstances > numModeInstances) {
-                modePositions.clear();
+                numModes = 0;
                 numModeInstances = numValueInstances;
             }
-            numModeInstances = numValueInstances;
-            modePositions.add(histPos);
+            modePositions[numModes++] = histPos;
         }
     }
 
     public void addRangeAtPosition(Range range, int position) {
-        int rangeMin = range.min;
-        int rangeMax = range.max;
+        addRangeAtPosition(range.min, range.max, position);
+    }
+
+    /**
+     * Adds every value in the given range to the histogram at the given position. Note that if the
+     * range contains a single value, that value is added twice.
+     *
+     * @param rangeMin the lower bound (inclusive) of the range of values to add
+     * @param rangeMax the upper bound (inclusive) of the range of values to add
+     * @param position the position of the values to add
+     */
+    public void addRangeAtPosition(int rangeMin, int rangeMax, int position) {
         addValueAtPosition(rangeMin, position);
-        for (int i = range.min + 1; i < range.max; i++) {
+        for (int i = rangeMin + 1; i < rangeMax; i++) {
             addValueAtPosition(i, position);
         }
         addValueAtPosition(rangeMax, position);
     }
 
     public List<Integer> getModes() {
-        List<Integer> modes = new ArrayList<Integer>(modePositions.size());
-        for (int modePos : modePositions) {
-            modes.add(modePos + offset);
+        List<Integer> modes = new ArrayList<Integer>(numModes);
+        for (int i = 0; i < numModes; i++) {
+            modes.add(modePositions[i] + offset);
         }
         return modes;
     }
@@ -93,17 +133,16 @@ public class HistogramPositionMap {
     // Returns the average of all the current modes.
     public double getMode() {
         int avgMode = 0;
-        int numModes = modePositions.size();
-        for (int mode : getModes()) {
-            avgMode += mode;
+        for (int i = 0; i < numModes; i++) {
+            avgMode += modePositions[i] + offset;
         }
         return ((double) avgMode) / numModes;
     }
 
     public int getFirstModePosition() {
         int firstModePos = Integer.MAX_VALUE;
-        for (int modePosition : modePositions) {
-            int firstPos = histogram.get(modePosition).get(0);
+        for (int i = 0; i < numModes; i++) {
+            int firstPos = firstPositions[modePositions[i]];
             if (firstPos < firstModePos) {
                 firstModePos = firstPos;
             }
@@ -111,10 +150,6 @@ public class HistogramPositionMap {
         return firstModePos;
     }
 
-    public List<Integer> getPositionsAssociatedWith(int pi) {
-        return Lists.newArrayList(histogram.get(pi));
-    }
-
     public int getNumberModeInstances() {
         return numModeInstances;
     }
@@ -126,8 +161,22 @@ public class HistogramPositionMap {
      * @return
      */
     public boolean currentModeWithinRange(Range range) {
-        for (int mode : getModes()) {
-            if (range.min <= mode && range.max >= mode) {
+        return currentModeWithinRange(range.min, range.max);
+    }
+
+    /**
+     * Determines whether any of the current modes of this {@link HistogramPositionMap} are within
+     * the given range.
+     *
+     * @param rangeMin the lower bound (inclusive) of the range
+     * @param rangeMax the upper bound (inclusive) of the range
+     * @return {@code true} if any of the current modes are within the given range; otherwise
+     *         {@code false}
+     */
+    public boolean currentModeWithinRange(int rangeMin, int rangeMax) {
+        for (int i = 0; i < numModes; i++) {
+            int mode = modePositions[i] + offset;
+            if (rangeMin <= mode && rangeMax >= mode) {
                 return true;
             }
         }
@@ -1,21 +1,32 @@
 package nepic.data;
 
 import java.awt.Point;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 import nepic.geo.BoundedRegion;
 import nepic.util.Verify;
 
 /**
  * A mutable implementation of the the {@link DataSet} interface.
+ * <p>
+ * The coordinates of the points are packed into parallel {@code int} arrays rather than kept as
+ * separate {@link Point} objects, and {@link #contains(Object)} is answered from a hash index of the
+ * points that is built the first time it is needed.
  *
  * @author AJ Parmidge
  */
 public class MutableDataSet implements DataSet {
-    private final List<Point> data;
+    private int[] xs;
+    private int[] ys;
+    private int size = 0;
+    /**
+     * The index of all of the points in this data set, or {@code null} if it has not been needed
+     * since this data set was last cleared.
+     */
+    private PointIndex index = null;
     private int rgb = 0x000000; // Default is black.
 
     private int minX = Integer.MAX_VALUE;
@@ -27,7 +38,8 @@ public class MutableDataSet implements DataSet {
      * Creates an empty {@link MutableDataSet}.
      */
     public MutableDataSet() {
-        this.data = new LinkedList<Point>();
+        xs = new int[16];
+        ys = new int[16];
     }
 
     @Override
@@ -43,7 +55,7 @@ public class MutableDataSet implements DataSet {
 
     @Override
     public DataSet setData(Point... data) {
-        this.data.clear();
+        clear();
         for (Point datum : data) {
             add(datum);
         }
@@ -52,63 +64,103 @@ public class MutableDataSet implements DataSet {
 
     @Override
     public DataSet setData(Collection<? extends Point> data) {
-        this.data.clear();
+        clear();
         addAll(data);
         return this;
     }
 
     @Override
     public int getMinX() {
-        Verify.state(!data.isEmpty(), "No min x of empty data set.");
+        Verify.state(size > 0, "No min x of empty data set.");
         return minX;
     }
 
     @Override
     public int getMaxX() {
-        Verify.state(!data.isEmpty(), "No max x of empty data set.");
+        Verify.state(size > 0, "No max x of empty data set.");
         return maxX;
     }
 
     @Override
     public int getMinY() {
-        Verify.state(!data.isEmpty(), "No min y of empty data set.");
+        Verify.state(size > 0, "No min y of empty data set.");
         return minY;
     }
 
     @Override
     public int getMaxY() {
-        Verify.state(!data.isEmpty(), "No max y of empty data set.");
+        Verify.state(size > 0, "No max y of empty data set.");
         return maxY;
     }
 
     @Override
     public boolean boundsContain(BoundedRegion region) {
-        Verify.state(!data.isEmpty(), "Bounds of empty dataset undefined.");
+        Verify.state(size > 0, "Bounds of empty dataset undefined.");
         return region.getMinX() >= minX && region.getMaxX() <= maxX && region.getMinY() >= minY
                 && region.getMaxY() <= maxY;
     }
 
     @Override
     public boolean boundsContain(int x, int y) {
-        Verify.state(!data.isEmpty(), "Bounds of empty dataset undefined.");
+        Verify.state(size > 0, "Bounds of empty dataset undefined.");
         return x >= minX && x <= maxX && y >= minY && y <= maxY;
     }
 
+    /**
+     * Gets the x-coordinate of the point with the given index in this data set (in the order in
+     * which the points were added).
+     *
+     * @param i the index of the point
+     */
+    public int getX(int i) {
+        verifyIndexLegal(i);
+        return xs[i];
+    }
+
+    /**
+     * Gets the y-coordinate of the point with the given index in this data set (in the order in
+     * which the points were added).
+     *
+     * @param i the index of the point
+     */
+    public int getY(int i) {
+        verifyIndexLegal(i);
+        return ys[i];
+    }
+
     @Override
     public boolean add(Point pt) {
         Verify.notNull(pt, "Point");
-        int x = pt.x;
-        int y = pt.y;
-        data.add(new Point(x, y));
-        adjustMinimaAndMaxima(x, y);
+        add(pt.x, pt.y);
         return true;
     }
 
+    /**
+     * Adds the point with the given coordinates to this data set, without the need to make a
+     * {@link Point}.
+     *
+     * @param x the x-coordinate of the point to add
+     * @param y the y-coordinate of the point to add
+     */
+    public void add(int x, int y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, 2 * size);
+            ys = Arrays.copyOf(ys, 2 * size);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        if (index != null) {
+            index.add(x, y);
+        }
+        adjustMinimaAndMaxima(x, y);
+    }
+
     @Override
     public boolean addAll(Collection<? extends Point> pts) {
         Verify.noNullElements(pts);
         for (Point pt : pts) {
-            add(pt);
+            add(pt.x, pt.y);
         }
         return true;
     }
@@ -119,37 +171,69 @@ public class MutableDataSet implements DataSet {
      */
     @Override
     public void clear() {
-        data.clear();
+        size = 0;
+        index = null;
+        minX = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxY = Integer.MIN_VALUE;
     }
 
     @Override
     public boolean contains(Object o) {
-        return data.contains(o);
+        if (!(o instanceof Point)) {
+            return false;
+        }
+        Point pt = (Point) o;
+        if (size == 0 || !boundsContain(pt.x, pt.y)) {
+            return false;
+        }
+        if (index == null) {
+            index = new PointIndex(size);
+            for (int i = 0; i < size; i++) {
+                index.add(xs[i], ys[i]);
+            }
+        }
+        return index.contains(pt.x, pt.y);
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        return data.containsAll(c);
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public boolean isEmpty() {
-        return data.isEmpty();
+        return size == 0;
     }
 
+    /**
+     * Returns an iterator over the points in this data set. Each point returned is a new
+     * {@link Point}, so changing it does NOT affect the data set.
+     */
     @Override
     public Iterator<Point> iterator() {
         return new Iterator<Point>() {
-            Iterator<Point> dataItr = data.iterator();
+            int i = 0;
 
             @Override
             public boolean hasNext() {
-                return dataItr.hasNext();
+                return i < size;
             }
 
             @Override
             public Point next() {
-                return dataItr.next();
+                if (i >= size) {
+                    throw new NoSuchElementException();
+                }
+                Point next = new Point(xs[i], ys[i]);
+                i++;
+                return next;
             }
 
             @Override
@@ -185,7 +269,7 @@ public class MutableDataSet implements DataSet {
 
     @Override
     public int size() {
-        return data.size();
+        return size;
     }
 
     /**
@@ -194,10 +278,9 @@ public class MutableDataSet implements DataSet {
      */
     @Override
     public Object[] toArray() {
-        Point[] array = new Point[data.size()];
-        int i = 0;
-        for (Point datum : data) {
-            array[i++] = new Point(datum.x, datum.y);
+        Point[] array = new Point[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = new Point(xs[i], ys[i]);
         }
         return array;
     }
@@ -209,16 +292,22 @@ public class MutableDataSet implements DataSet {
     @Override
     public <T> T[] toArray(T[] a) {
         Verify.notNull(a, "Given array");
-        Verify.argument(a instanceof Point[] && a.length == data.size(),
-                "Given argument must be an array of points of length " + data.size());
+        Verify.argument(a instanceof Point[] && a.length == size,
+                "Given argument must be an array of points of length " + size);
         Point[] array = (Point[]) a;
-        int i = 0;
-        for (Point datum : data) {
-            array[i++] = new Point(datum.x, datum.y);
+        for (int i = 0; i < size; i++) {
+            array[i] = new Point(xs[i], ys[i]);
         }
         return a;
     }
 
+    private void verifyIndexLegal(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for data set of size "
+                    + size);
+        }
+    }
+
     private void adjustMinimaAndMaxima(int x, int y) {
         if (x < minX) {
             minX = x;
@@ -236,6 +325,80 @@ public class MutableDataSet implements DataSet {
 
     @Override
     public String toString() {
-        return "(0x" + Integer.toHexString(rgb) + "): " + data.toString();
+        StringBuilder builder = new StringBuilder("(0x").append(Integer.toHexString(rgb))
+                .append("): [");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(new Point(xs[i], ys[i]));
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * A set of points, each packed into a single {@code long}, kept in an open-addressed hash
+     * table.
+     *
+     * @author AJ Parmidge
+     */
+    private static class PointIndex {
+        private long[] keys;
+        private boolean[] used;
+        private int numKeys = 0;
+
+        private PointIndex(int expectedSize) {
+            int capacity = 16;
+            while (capacity < 2 * expectedSize) {
+                capacity *= 2;
+            }
+            keys = new long[capacity];
+            used = new boolean[capacity];
+        }
+
+        private void add(int x, int y) {
+            long key = pack(x, y);
+            int slot = findSlot(keys, used, key);
+            if (!used[slot]) {
+                keys[slot] = key;
+                used[slot] = true;
+                numKeys++;
+                if (2 * numKeys > keys.length) {
+                    grow();
+                }
+            }
+        }
+
+        private boolean contains(int x, int y) {
+            return used[findSlot(keys, used, pack(x, y))];
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            keys = new long[2 * oldKeys.length];
+            used = new boolean[2 * oldUsed.length];
+            for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+                if (oldUsed[oldSlot]) {
+                    int slot = findSlot(keys, used, oldKeys[oldSlot]);
+                    keys[slot] = oldKeys[oldSlot];
+                    used[slot] = true;
+                }
+            }
+        }
+
+        private static long pack(int x, int y) {
+            return ((long) x << 32) | (y & 0xFFFFFFFFL);
+        }
+
+        private static int findSlot(long[] keys, boolean[] used, long key) {
+            int mask = keys.length - 1; // The table length is always a power of two.
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,230 @@
+package nepic.data;
+
+import nepic.util.Verify;
+
+/**
+ * A histogram of single-dimensional data within a given range of values, to and from which values
+ * can be added and removed at any time.
+ * <p>
+ * The count, sum, and sum of squares of the values are maintained as values are added and
+ * removed, so the mean and variance of the data are always available in constant time. Order
+ * statistics (such as the median) take time proportional to the number of columns in the
+ * histogram. An immutable snapshot of the current data can be made at any time with
+ * {@link #toHistogram()}.
+ *
+ * @author AJ Parmidge
+ */
+public class MutableHistogram {
+    /**
+     * The actual histogram data.
+     */
+    private final int[] hist;
+    /**
+     * The difference between the actual lower bound of the histogram's domain and zero (relates the
+     * actual histogram domain to the positions in the hist array).
+     */
+    private final int offset;
+    /**
+     * The number of values in this {@link MutableHistogram}.
+     */
+    private int n = 0;
+    /**
+     * The sum of all of the values in this {@link MutableHistogram}.
+     */
+    private long sum = 0;
+    /**
+     * The sum of the squares of all of the values in this {@link MutableHistogram}.
+     */
+    private long sumOfSquares = 0;
+
+    /**
+     * Creates an empty {@link MutableHistogram} with the given bounds.
+     *
+     * @param lowerBound the lower bound (inclusive) of the domain over which the histogram must
+     *        extend.
+     * @param upperBound the upper bound (inclusive) of the domain over which the histogram must
+     *        extend.
+     */
+    public MutableHistogram(int lowerBound, int upperBound) {
+        Verify.argument(lowerBound <= upperBound,
+                "Lower bound " + lowerBound + " is greater than upper bound " + upperBound);
+        this.hist = new int[upperBound - lowerBound + 1];
+        this.offset = lowerBound;
+    }
+
+    /**
+     * Adds the given value to this {@link MutableHistogram}.
+     *
+     * @param value the value to add
+     */
+    public void addValue(int value) {
+        int pos = getPosition(value);
+        hist[pos]++;
+        n++;
+        sum += value;
+        sumOfSquares += (long) value * value;
+    }
+
+    /**
+     * Removes one instance of the given value from this {@link MutableHistogram}.
+     *
+     * @param value the value to remove
+     * @throws IllegalArgumentException if the given value is not in this histogram
+     */
+    public void removeValue(int value) {
+        int pos = getPosition(value);
+        Verify.argument(hist[pos] > 0, "Cannot remove value " + value
+                + " that is not in the histogram");
+        hist[pos]--;
+        n--;
+        sum -= value;
+        sumOfSquares -= (long) value * value;
+    }
+
+    /**
+     * Removes all of the values from this {@link MutableHistogram}.
+     */
+    public void clear() {
+        for (int pos = 0; pos < hist.length; pos++) {
+            hist[pos] = 0;
+        }
+        n = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    private int getPosition(int value) {
+        int pos = value - offset; // The position of 'value' in the histogram matrix.
+        Verify.argument(pos >= 0 && pos < hist.length, "Illegal value " + value
+                + " for histogram.  Acceptable values range from " + offset + " to "
+                + (offset + hist.length - 1));
+        return pos;
+    }
+
+    /**
+     * Gets the number of values currently in this {@link MutableHistogram}.
+     */
+    public int getNumValues() {
+        return n;
+    }
+
+    /**
+     * Determines whether this {@link MutableHistogram} currently contains no values.
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Gets the number of instances of the given value in this {@link MutableHistogram}.
+     */
+    public int getNumValuesAt(int value) {
+        int pos = value - offset;
+        if (pos < 0 || pos >= hist.length) {
+            return 0;
+        }
+        return hist[pos];
+    }
+
+    /**
+     * Gets the minimum value of the data in this {@link MutableHistogram}.
+     */
+    public int getMin() {
+        verifyNotEmpty();
+        int pos = 0;
+        while (hist[pos] == 0) {
+            pos++;
+        }
+        return pos + offset;
+    }
+
+    /**
+     * Gets the maximum value of the data in this {@link MutableHistogram}.
+     */
+    public int getMax() {
+        verifyNotEmpty();
+        int pos = hist.length - 1;
+        while (hist[pos] == 0) {
+            pos--;
+        }
+        return pos + offset;
+    }
+
+    /**
+     * Gets the mean of the data in this {@link MutableHistogram}.
+     */
+    public double getMean() {
+        verifyNotEmpty();
+        return ((double) sum) / n;
+    }
+
+    /**
+     * Gets the median of the data in this {@link MutableHistogram}.
+     */
+    public int getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Gets the value of the given percentile of this {@link MutableHistogram}'s data, in the same
+     * way as {@link Histogram#getPercentile(double)}.
+     *
+     * @param percentile the percentile to get (must be between 0 and 100, inclusive
+     * @return the value of the given percentile of the histogram data
+     */
+    public int getPercentile(double percentile) {
+        Verify.argument(percentile >= 0 && percentile <= 100, "Illegal percentile value "
+                + percentile + ".  Percentiles MUST be between 0 and 100 (inclusive).");
+        verifyNotEmpty();
+        long elPos = (long) (n * percentile / 100);
+        int numPassed = 0;
+        int elVal = 0;
+        for (int i = 0; i < hist.length; i++) {
+            int magnitude = hist[i];
+            if (magnitude > 0) {
+                numPassed += magnitude;
+                elVal = i;
+                if (numPassed > elPos) {
+                    break;
+                }
+            }
+        }
+        return elVal + offset;
+    }
+
+    /**
+     * Gets the standard deviation of the data in this {@link MutableHistogram}.
+     */
+    public double getStDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets the (sample) variance of the data in this {@link MutableHistogram}.
+     */
+    public double getVariance() {
+        double mean = getMean(); // Verifies that the histogram is not empty.
+        // Variance for sample (for entire population, divide by n, not n-1)
+        return (sumOfSquares - mean * sum) / (n - 1);
+    }
+
+    /**
+     * Makes an immutable {@link Histogram} of the data currently in this {@link MutableHistogram}.
+     *
+     * @return the histogram made
+     */
+    public Histogram toHistogram() {
+        Verify.state(n > 0, "Cannot instantiate an empty Histogram");
+        int minPos = getMin() - offset;
+        int maxPos = getMax() - offset;
+        long[] counts = new long[maxPos - minPos + 1];
+        for (int pos = minPos; pos <= maxPos; pos++) {
+            counts[pos - minPos] = hist[pos];
+        }
+        return new Histogram(counts, n, offset + minPos, sum, 0, maxPos - minPos);
+    }
+
+    private void verifyNotEmpty() {
+        Verify.state(n > 0, "Histogram is empty");
+    }
+}
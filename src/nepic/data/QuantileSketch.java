@@ -0,0 +1,349 @@
+package nepic.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import nepic.util.IntLongConsumer;
+import nepic.util.Verify;
+
+/**
+ * A summary of a stream of {@code int} values (such as the pixel intensities of every page in an
+ * image stack) from which approximate percentiles can be found, using a bounded amount of memory
+ * no matter how many values are added. The count, sum, mean, minimum and maximum of the values are
+ * always exact.
+ * <p>
+ * This is a KLL sketch (Karnin, Lang, and Liberty, "Optimal Quantile Approximation in Streams",
+ * 2016): values are kept in a stack of levels, where each value in level {@code h} stands for
+ * {@code 2^h} of the values added. When the sketch grows too large, the fullest low level is sorted
+ * and every other value in it (starting at random from the first or the second) is promoted to the
+ * next level, while the rest are discarded. With the default accuracy parameter, the rank of a
+ * reported percentile is typically within about one percent of the requested rank. Until the
+ * first such compaction, the reported percentiles are exact.
+ * <p>
+ * Sketches can be merged, so that (for example) separate workers can each summarize a batch of
+ * pages, and the results can be combined into a summary of the whole stack. A
+ * {@link QuantileSketch} is not thread-safe.
+ *
+ * @author AJ Parmidge
+ */
+public class QuantileSketch {
+    /**
+     * The default accuracy parameter, giving an error in rank of roughly one percent.
+     */
+    public static final int DEFAULT_K = 200;
+    /**
+     * How much smaller the capacity of each level is than the capacity of the level above it.
+     */
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    /**
+     * The smallest capacity of any level.
+     */
+    private static final int MIN_LEVEL_CAPACITY = 2;
+
+    private final int k;
+    private final Random random;
+
+    /**
+     * The values in each level (where the values in level {@code h} each stand for {@code 2^h}
+     * values). Only the first {@code levelSizes[h]} values of level {@code h} are valid.
+     */
+    private int[][] levels;
+    private int[] levelSizes;
+    private int numLevels;
+    /**
+     * The total number of values held in all of the levels.
+     */
+    private int numRetained = 0;
+
+    private long n = 0;
+    private long sum = 0;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    /**
+     * Creates an empty {@link QuantileSketch} with the default accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates an empty {@link QuantileSketch} with the given accuracy.
+     *
+     * @param k the accuracy parameter; the sketch keeps about {@code 3k} values, and the error in
+     *        the rank of a reported percentile is roughly proportional to {@code 1/k}
+     */
+    public QuantileSketch(int k) {
+        this(k, new Random());
+    }
+
+    QuantileSketch(int k, Random random) {
+        Verify.argument(k >= MIN_LEVEL_CAPACITY, "k must be at least " + MIN_LEVEL_CAPACITY);
+        Verify.notNull(random, "random");
+        this.k = k;
+        this.random = random;
+        levels = new int[][] { new int[k] };
+        levelSizes = new int[1];
+        numLevels = 1;
+    }
+
+    /**
+     * Adds the given value to this sketch.
+     *
+     * @param value the value to add
+     */
+    public void update(int value) {
+        update(value, 1);
+    }
+
+    /**
+     * Adds the given number of instances of the given value to this sketch. This takes time
+     * proportional to the logarithm of the given count, rather than to the count itself.
+     *
+     * @param value the value to add
+     * @param count the number of instances of the value to add (must be positive)
+     */
+    public void update(int value, long count) {
+        Verify.argument(count > 0, "Count must be positive");
+        // Split the count into powers of two, and give each power to the level of that weight.
+        for (int level = 0; (count >>> level) != 0; level++) {
+            if (((count >>> level) & 1) != 0) {
+                addToLevel(level, value);
+            }
+        }
+        recordValues(count, value * count, value, value);
+        compress();
+    }
+
+    /**
+     * Adds all of the values in the given {@link Histogram} to this sketch. This takes time
+     * proportional to the number of distinct values in the histogram, even if it is stored sparsely.
+     *
+     * @param hist the histogram whose values to add
+     */
+    public void update(Histogram hist) {
+        Verify.notNull(hist, "hist");
+        hist.forEachValue(new IntLongConsumer() {
+            @Override
+            public void accept(int value, long count) {
+                update(value, count);
+            }
+        });
+    }
+
+    /**
+     * Adds all of the values summarized by the given sketch to this sketch. The given sketch is not
+     * modified, unless it is this sketch (in which case every value is counted twice).
+     *
+     * @param other the sketch to merge into this one
+     */
+    public void merge(QuantileSketch other) {
+        Verify.notNull(other, "other");
+        if (other.n == 0) {
+            return;
+        }
+        // Copy the other sketch's levels first, since adding to this sketch's levels would change
+        // them if the other sketch is this sketch.
+        int otherNumLevels = other.numLevels;
+        int[][] otherLevels = new int[otherNumLevels][];
+        for (int level = 0; level < otherNumLevels; level++) {
+            otherLevels[level] = Arrays.copyOf(other.levels[level], other.levelSizes[level]);
+        }
+        recordValues(other.n, other.sum, other.min, other.max);
+        for (int level = 0; level < otherNumLevels; level++) {
+            for (int value : otherLevels[level]) {
+                addToLevel(level, value);
+            }
+        }
+        compress();
+    }
+
+    /**
+     * Gets the number of values added to this sketch.
+     */
+    public long getNumValues() {
+        return n;
+    }
+
+    /**
+     * Gets the sum of all of the values added to this sketch.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Gets the mean of the values added to this sketch.
+     */
+    public double getMean() {
+        verifyNotEmpty();
+        return ((double) sum) / n;
+    }
+
+    /**
+     * Gets the minimum value added to this sketch.
+     */
+    public int getMin() {
+        verifyNotEmpty();
+        return min;
+    }
+
+    /**
+     * Gets the maximum value added to this sketch.
+     */
+    public int getMax() {
+        verifyNotEmpty();
+        return max;
+    }
+
+    /**
+     * Gets the (approximate) median of the values added to this sketch.
+     */
+    public int getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Gets the (approximate) value of the given percentile of the values added to this sketch, in
+     * the same sense as {@link Histogram#getPercentile(double)}.
+     *
+     * @param percentile the percentile to get (must be between 0 and 100, inclusive)
+     * @return the value of the given percentile
+     */
+    public int getPercentile(double percentile) {
+        Verify.argument(percentile >= 0 && percentile <= 100, "Illegal percentile value "
+                + percentile + ".  Percentiles MUST be between 0 and 100 (inclusive).");
+        verifyNotEmpty();
+        long elPos = (long) (n * percentile / 100);
+        if (elPos >= n) { // For the 100th percentile case.
+            return max;
+        }
+
+        // Sort all of the retained values along with their weights.
+        long[] weightedValues = new long[numRetained];
+        int numValues = 0;
+        for (int level = 0; level < numLevels; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                // The value goes in the high bits (offset so that it sorts correctly), the level
+                // in the low bits.
+                weightedValues[numValues++] = (((long) levels[level][i] - Integer.MIN_VALUE) << 6)
+                        | level;
+            }
+        }
+        Arrays.sort(weightedValues);
+
+        long numPassed = 0;
+        for (long weightedValue : weightedValues) {
+            numPassed += 1L << (weightedValue & 0x3F);
+            if (numPassed > elPos) {
+                return (int) ((weightedValue >> 6) + Integer.MIN_VALUE);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Gets the number of values that this sketch is currently holding in memory.
+     */
+    public int getNumRetained() {
+        return numRetained;
+    }
+
+    @Override
+    public String toString() {
+        if (n == 0) {
+            return "QuantileSketch (n = 0)";
+        }
+        return "QuantileSketch (n = " + n + ", range " + min + "-" + max + "): med = "
+                + getMedian() + ", mean = " + getMean();
+    }
+
+    private void verifyNotEmpty() {
+        Verify.state(n > 0, "QuantileSketch is empty");
+    }
+
+    private void recordValues(long numValues, long valuesSum, int valuesMin, int valuesMax) {
+        n += numValues;
+        sum += valuesSum;
+        min = Math.min(min, valuesMin);
+        max = Math.max(max, valuesMax);
+    }
+
+    private void addToLevel(int level, int value) {
+        while (level >= numLevels) {
+            addLevel();
+        }
+        int[] levelValues = levels[level];
+        int size = levelSizes[level];
+        if (size == levelValues.length) {
+            levelValues = Arrays.copyOf(levelValues, 2 * size);
+            levels[level] = levelValues;
+        }
+        levelValues[size] = value;
+        levelSizes[level] = size + 1;
+        numRetained++;
+    }
+
+    private void addLevel() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, 2 * numLevels);
+            levelSizes = Arrays.copyOf(levelSizes, 2 * numLevels);
+        }
+        levels[numLevels] = new int[MIN_LEVEL_CAPACITY];
+        levelSizes[numLevels] = 0;
+        numLevels++;
+    }
+
+    /**
+     * Gets the number of values that the given level can hold before it should be compacted.
+     */
+    private int getCapacity(int level) {
+        int depth = numLevels - 1 - level; // The number of levels above the given level.
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int getTotalCapacity() {
+        int totalCapacity = 0;
+        for (int level = 0; level < numLevels; level++) {
+            totalCapacity += getCapacity(level);
+        }
+        return totalCapacity;
+    }
+
+    /**
+     * Compacts levels until the sketch is within its total capacity.
+     */
+    private void compress() {
+        while (numRetained > getTotalCapacity()) {
+            for (int level = 0; level < numLevels; level++) {
+                if (levelSizes[level] >= getCapacity(level)) {
+                    compact(level);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Promotes every other value in the given level to the next level up, and discards the rest.
+     */
+    private void compact(int level) {
+        if (level + 1 == numLevels) {
+            addLevel();
+        }
+        int[] levelValues = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(levelValues, 0, size);
+
+        // With an odd number of values, leave the largest one behind.
+        int numToCompact = size & ~1;
+        for (int i = random.nextBoolean() ? 1 : 0; i < numToCompact; i += 2) {
+            addToLevel(level + 1, levelValues[i]);
+        }
+        numRetained -= numToCompact;
+        if (numToCompact < size) {
+            levelValues[0] = levelValues[size - 1];
+        }
+        levelSizes[level] = size - numToCompact;
+    }
+}
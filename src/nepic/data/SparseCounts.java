@@ -0,0 +1,111 @@
+package nepic.data;
+
+import java.util.Arrays;
+
+import nepic.util.Verify;
+
+/**
+ * The number of times each of a set of {@code int} values has occurred, for values that are spread
+ * too thinly over too wide a domain to be worth counting in a dense array. The counts are kept in
+ * an open-addressed hash table backed by primitive arrays, so counting a value never allocates
+ * (except when the table grows).
+ *
+ * @author AJ Parmidge
+ */
+class SparseCounts {
+    /**
+     * The values being counted. Only meaningful in the slots whose count is non-zero.
+     */
+    private int[] keys;
+    /**
+     * The count of each value in {@link #keys}, or zero if the slot is empty.
+     */
+    private long[] counts;
+    /**
+     * The number of distinct values counted.
+     */
+    private int size = 0;
+
+    /**
+     * Creates an empty {@link SparseCounts}.
+     */
+    SparseCounts() {
+        keys = new int[16];
+        counts = new long[16];
+    }
+
+    /**
+     * Adds the given number of occurrences of the given value.
+     *
+     * @param value the value to count
+     * @param count the number of occurrences to add (must be positive)
+     */
+    void add(int value, long count) {
+        Verify.argument(count > 0, "Count must be positive");
+        int slot = findSlot(keys, counts, value);
+        if (counts[slot] == 0) {
+            keys[slot] = value;
+            size++;
+        }
+        counts[slot] += count;
+        if (2 * size > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Gets the number of occurrences of the given value.
+     */
+    long get(int value) {
+        return counts[findSlot(keys, counts, value)];
+    }
+
+    /**
+     * Gets the number of distinct values counted.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets all of the distinct values counted, in increasing order.
+     */
+    int[] getSortedValues() {
+        int[] values = new int[size];
+        int i = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (counts[slot] > 0) {
+                values[i++] = keys[slot];
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new int[2 * oldKeys.length];
+        counts = new long[2 * oldCounts.length];
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldCounts[oldSlot] > 0) {
+                int slot = findSlot(keys, counts, oldKeys[oldSlot]);
+                keys[slot] = oldKeys[oldSlot];
+                counts[slot] = oldCounts[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Finds the slot holding the given value, or the empty slot in which it belongs.
+     */
+    private static int findSlot(int[] keys, long[] counts, int value) {
+        int mask = keys.length - 1; // The table length is always a power of two.
+        int hash = value * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (counts[slot] != 0 && keys[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -1,17 +1,12 @@
 package nepic.geo;
 
 import java.awt.Point;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
-import com.google.common.collect.Lists;
-
 import nepic.image.IdTaggedImage;
-import nepic.util.HorizontalEdge;
 import nepic.util.Pixels;
 import nepic.util.Verify;
 
@@ -21,9 +16,42 @@ import nepic.util.Verify;
  * @author AJ Parmidge
  */
 public class Blob implements BoundedRegion {
-    private final ArrayList<LinkedList<HorizontalEdge>> horizEdges;
+    /**
+     * Visits the horizontal spans of pixels in a {@link Blob}. The spans of a {@link Blob} are
+     * visited in order of increasing y, and then increasing x, and never overlap one another.
+     *
+     * @author AJ Parmidge
+     */
+    public interface SpanVisitor {
+        /**
+         * Visits the span of pixels in the given row from {@code firstX} to {@code lastX}
+         * (inclusive).
+         *
+         * @param y the y-coordinate of the row containing the span
+         * @param firstX the x-coordinate of the first pixel in the span
+         * @param lastX the x-coordinate of the last pixel in the span (never less than
+         *        {@code firstX})
+         */
+        public void visitSpan(int y, int firstX, int lastX);
+    }
+
+    /**
+     * The horizontal edges of the {@link Blob}, from which the parity checking on the {@link Blob}
+     * is done, in compressed sparse row form. The horizontal edges in the row {@code minY + r} are
+     * the spans {@code [spanFirst[i], spanLast[i]]} for all {@code i} from {@code rowStart[r]}
+     * (inclusive) to {@code rowStart[r + 1]} (exclusive), sorted by their first x-values. These
+     * arrays are never modified, so are shared by all copies of the {@link Blob}.
+     */
+    private final int[] rowStart;
+    private final int[] spanFirst;
+    private final int[] spanLast;
     private final BoundingBox boundaries;
     private int size = -1; // Loaded lazily.
+    /**
+     * The vertices of the convex hull of this {@link Blob} (loaded lazily). Since a {@link Blob}
+     * never changes, the hull can be shared by all copies of the {@link Blob}.
+     */
+    private Point[] convexHull = null;
 
     /**
      * Create a {@link Blob} from the given collection of points, which represents a single clump of
@@ -36,8 +64,8 @@ public class Blob implements BoundedRegion {
      * create your {@link Blob} this way:
      *
      * <pre>
-     * Blob myBlob = Blob.newBlobFromTracedEdges(
-     *         traceOuterEdges(myIdTaggedImage, maxXPointInPixelClump, uniqueIdOfPixelClump));
+     * Blob myBlob = Blob.newBlobFromChainCode(traceChainCode(myIdTaggedImage,
+     *         uniqueIdOfPixelClump, maxXPointInPixelClump.x, maxXPointInPixelClump.y, chainCode));
      * </pre>
      *
      * @param pixelClump represents a <i> single </i> clump of mutually touching pixels
@@ -66,13 +94,31 @@ public class Blob implements BoundedRegion {
         // Make an IdTagged image for tracing the edges of the pixel clump.
         int id = 1909; // Arbitrary non-zero number.
         IdTaggedImage idImg = new RoiEdgeTracer.ImgMatrix(blobBounds, pixelClump, id);
-        List<Point> blobEdgePointList = RoiEdgeTracer.traceOuterEdges(idImg, id, maxXPt);
-        Point[] blobEdgePointArray = blobEdgePointList.toArray(new Point[blobEdgePointList.size()]);
+        ChainCode edgeChain =
+                RoiEdgeTracer.traceChainCode(idImg, id, maxXPt.x, maxXPt.y, new ChainCode());
 
         // Create the Blob.
-        ArrayList<LinkedList<HorizontalEdge>> horizEdges = findHorizEdges(
-                blobBounds, blobEdgePointArray);
-        return new Blob(blobBounds, horizEdges);
+        return newBlobFromChainCode(edgeChain);
+    }
+
+    /**
+     * Creates a {@link Blob} from the chain code of the traced outer edges of a single clump of
+     * pixels, as made by
+     * {@link RoiEdgeTracer#traceChainCode(IdTaggedImage, int, int, int, ChainCode)}. The spans of
+     * the {@link Blob} are made directly from the chain code, without making a {@link Point} for
+     * any of the edge pixels.
+     *
+     * @param edgeChain the chain code of the edges of the pixel clump for which to make a
+     *        {@link Blob}
+     * @return the {@link Blob} representing the pixel clump with the given edges
+     */
+    public static Blob newBlobFromChainCode(ChainCode edgeChain) {
+        Verify.notNull(edgeChain, "Chain code of Blob edges cannot be null");
+        int numEdgePts = edgeChain.getNumPoints();
+        int[] edgeXs = new int[numEdgePts];
+        int[] edgeYs = new int[numEdgePts];
+        edgeChain.decodeInto(edgeXs, edgeYs);
+        return newBlobFromTracedEdges(edgeXs, edgeYs, numEdgePts);
     }
 
     /**
@@ -94,7 +140,8 @@ public class Blob implements BoundedRegion {
     public static Blob newBlobFromTracedEdges(Collection<? extends Point> edges) {
         int numEdgePts = edges.size();
         assert numEdgePts > 0;
-        Point[] edgePtArray = new Point[numEdgePts];
+        int[] edgeXs = new int[numEdgePts];
+        int[] edgeYs = new int[numEdgePts];
 
         // Verify that adjacent pixels touch.
         int idx = 0;
@@ -110,35 +157,56 @@ public class Blob implements BoundedRegion {
                 blobBounds.update(pt.x, pt.y);
                 prevPt = pt;
             }
-            edgePtArray[idx++] = pt;
+            edgeXs[idx] = pt.x;
+            edgeYs[idx] = pt.y;
+            idx++;
         }
 
         // Make the new Blob.
-        ArrayList<LinkedList<HorizontalEdge>> horizEdges = findHorizEdges(blobBounds, edgePtArray);
-        return new Blob(blobBounds, horizEdges);
+        return new Blob(blobBounds, findHorizEdges(blobBounds, edgeXs, edgeYs, numEdgePts));
     }
 
-    // Creates the horizontal edges from which the parity checking on the Blob is done (when
-    // determining whether a pixel is inside the Blob, e.g.)
-    private static ArrayList<LinkedList<HorizontalEdge>> findHorizEdges(BoundingBox bounds,
-            Point[] edgePts) {
-        // Special case: single point Blob
-        if (edgePts.length == 1) {
-            return makeSinglePointBlob(edgePts[0]);
+    /**
+     * Creates a {@link Blob} from the given traced edges of a single clump of pixels, as in
+     * {@link #newBlobFromTracedEdges(Collection)}, where the edge points are given as arrays of
+     * their coordinates rather than as {@link Point} objects.
+     *
+     * @param edgeXs the x-coordinates of the edge points
+     * @param edgeYs the y-coordinates of the edge points
+     * @param numEdgePts the number of edge points (from the start of the arrays) to use
+     * @return the {@link Blob} representing the pixel clump with the given edges
+     */
+    static Blob newBlobFromTracedEdges(int[] edgeXs, int[] edgeYs, int numEdgePts) {
+        Verify.argument(numEdgePts > 0, "Blob must have at least one edge point");
+        BoundingBox blobBounds = new BoundingBox(edgeXs[0], edgeXs[0], edgeYs[0], edgeYs[0]);
+        for (int i = 1; i < numEdgePts; i++) {
+            blobBounds.update(edgeXs[i], edgeYs[i]);
         }
+        return new Blob(blobBounds, findHorizEdges(blobBounds, edgeXs, edgeYs, numEdgePts));
+    }
 
-        // Initialize all linked lists in horizEdges
+    // Creates the horizontal edges from which the parity checking on the Blob is done (when
+    // determining whether a pixel is inside the Blob, e.g.)
+    private static HorizEdgeBuilder findHorizEdges(BoundingBox bounds, int[] xs, int[] ys,
+            int numPts) {
         int minY = bounds.getMinY();
         int numRows = bounds.getMaxY() - minY + 1;
-        ArrayList<LinkedList<HorizontalEdge>> horizEdges = initializeHorizEdgeLists(numRows);
+        HorizEdgeBuilder horizEdges = new HorizEdgeBuilder(minY, numRows, numPts);
+
+        // Special case: single point Blob
+        if (numPts == 1) {
+            horizEdges.add(ys[0], xs[0], xs[0]);
+            horizEdges.add(ys[0], xs[0], xs[0]);
+            return horizEdges;
+        }
 
         // Find start of first horizontal edge
-        int currY = edgePts[0].y; // The y-value of the current horizontal edge
-        int horizEdgeMin = edgePts[0].x; // min x in the current horizEdge
+        int currY = ys[0]; // The y-value of the current horizontal edge
+        int horizEdgeMin = xs[0]; // min x in the current horizEdge
         int horizEdgeMax = horizEdgeMin; // max x in the current horizEdge
-        int endIdx = edgePts.length - 1; // last pos in edgePts NOT in first horizontal edge
-        while (endIdx > 0 && edgePts[endIdx].y == currY) {
-            int edgePtX = edgePts[endIdx].x;
+        int endIdx = numPts - 1; // last pos in edge points NOT in first horizontal edge
+        while (endIdx > 0 && ys[endIdx] == currY) {
+            int edgePtX = xs[endIdx];
             if (edgePtX > horizEdgeMax) { // Need to check in case edge doubles back on itself
                 horizEdgeMax = edgePtX;
             } else if (edgePtX < horizEdgeMin) {
@@ -146,13 +214,13 @@ public class Blob implements BoundedRegion {
             }
             endIdx--;
         }
-        int firstPos = (endIdx + 1) % edgePts.length; // pos of first el in horiz edge
-        int prevDiffY = currY - edgePts[endIdx].y;
+        int firstPos = (endIdx + 1) % numPts; // pos of first el in horiz edge
+        int prevDiffY = currY - ys[endIdx];
 
         // Find end of horizontal edge
         int lastPos = 1; // (pos of last el in horiz edge) + 1
-        while (lastPos < edgePts.length - 1 && edgePts[lastPos].y == currY) {
-            int edgePtX = edgePts[lastPos].x;
+        while (lastPos < numPts - 1 && ys[lastPos] == currY) {
+            int edgePtX = xs[lastPos];
             if (edgePtX > horizEdgeMax) { // Need to check in case edge doubles back on itself
                 horizEdgeMax = edgePtX;
             } else if (edgePtX < horizEdgeMin) {
@@ -160,29 +228,27 @@ public class Blob implements BoundedRegion {
             }
             lastPos++;
         }
-        int nextDiffY = currY - edgePts[lastPos].y;
+        int nextDiffY = currY - ys[lastPos];
 
         // Make horizontal edge with given first and last positions
-        HorizontalEdge edge = new HorizontalEdge(horizEdgeMin, horizEdgeMax);
-        LinkedList<HorizontalEdge> row = horizEdges.get(currY - minY);
-        row.add(edge);
+        horizEdges.add(currY, horizEdgeMin, horizEdgeMax);
         if (prevDiffY * nextDiffY >= 0) { // if diffs have the same sign
             // If is local min or local max, add edge a second time
-            row.add(edge);
+            horizEdges.add(currY, horizEdgeMin, horizEdgeMax);
         }
 
         while (lastPos <= endIdx) {
             // Reset for next horizontal edge
             firstPos = lastPos;
-            currY = edgePts[firstPos].y;
-            horizEdgeMin = edgePts[firstPos].x;
+            currY = ys[firstPos];
+            horizEdgeMin = xs[firstPos];
             horizEdgeMax = horizEdgeMin;
             prevDiffY = -nextDiffY;
 
             // Find end of current horizontal edge
             lastPos = firstPos + 1;
-            while (lastPos <= endIdx && edgePts[lastPos].y == currY) {
-                int edgePtX = edgePts[lastPos].x;
+            while (lastPos <= endIdx && ys[lastPos] == currY) {
+                int edgePtX = xs[lastPos];
                 if (edgePtX > horizEdgeMax) { // Need to check in case edge doubles back on itself
                     horizEdgeMax = edgePtX;
                 } else if (edgePtX < horizEdgeMin) {
@@ -190,62 +256,149 @@ public class Blob implements BoundedRegion {
                 }
                 lastPos++;
             }
-            if (lastPos < edgePts.length) {
-                nextDiffY = currY - edgePts[lastPos].y;
+            if (lastPos < numPts) {
+                nextDiffY = currY - ys[lastPos];
             } else {
-                nextDiffY = currY - edgePts[(endIdx + 1) % edgePts.length].y;
+                nextDiffY = currY - ys[(endIdx + 1) % numPts];
             }
 
             // Make horizontal edge with given first and last positions
-            edge = new HorizontalEdge(horizEdgeMin, horizEdgeMax);
-            row = horizEdges.get(currY - minY);
-            row.add(edge);
+            horizEdges.add(currY, horizEdgeMin, horizEdgeMax);
             if (prevDiffY * nextDiffY >= 0) { // if diffs have the same sign
                 // If is local min or local max, add edge a second time
-                row.add(edge);
+                horizEdges.add(currY, horizEdgeMin, horizEdgeMax);
             }
         }
-        sortHorizEdgeLists(horizEdges);
         return horizEdges;
     }
 
-    private static ArrayList<LinkedList<HorizontalEdge>> initializeHorizEdgeLists(int numRows) {
-        ArrayList<LinkedList<HorizontalEdge>> horizEdges = Lists.newArrayListWithCapacity(numRows);
-        for (int i = 0; i < numRows; i++) {
-            horizEdges.add(new LinkedList<HorizontalEdge>());
+    /**
+     * Collects the horizontal edges of a {@link Blob} (in any order), and then arranges them into
+     * compressed sparse row form.
+     */
+    private static class HorizEdgeBuilder {
+        private final int minY;
+        private final int numRows;
+        private int[] ys;
+        private int[] firsts;
+        private int[] lasts;
+        private int numEdges = 0;
+
+        HorizEdgeBuilder(int minY, int numRows, int expectedNumEdges) {
+            this.minY = minY;
+            this.numRows = numRows;
+            int capacity = Math.max(expectedNumEdges, 2);
+            ys = new int[capacity];
+            firsts = new int[capacity];
+            lasts = new int[capacity];
+        }
+
+        void add(int y, int first, int last) {
+            if (numEdges == ys.length) {
+                int newCapacity = 2 * numEdges;
+                ys = Arrays.copyOf(ys, newCapacity);
+                firsts = Arrays.copyOf(firsts, newCapacity);
+                lasts = Arrays.copyOf(lasts, newCapacity);
+            }
+            ys[numEdges] = y;
+            firsts[numEdges] = first;
+            lasts[numEdges] = last;
+            numEdges++;
         }
-        return horizEdges;
-    }
 
-    // TODO: do I really need to break this out into a special case??
-    private static ArrayList<LinkedList<HorizontalEdge>> makeSinglePointBlob(Point pt) {
-        ArrayList<LinkedList<HorizontalEdge>> horizEdges = initializeHorizEdgeLists(1);
-        LinkedList<HorizontalEdge> row = horizEdges.get(0);
-        HorizontalEdge edge = new HorizontalEdge(pt.x, pt.x);
-        row.add(edge);
-        row.add(edge);
-        return horizEdges;
-    }
+        int[] makeRowStart() {
+            int[] rowStart = new int[numRows + 1];
+            for (int i = 0; i < numEdges; i++) {
+                rowStart[ys[i] - minY + 1]++;
+            }
+            for (int rowNum = 0; rowNum < numRows; rowNum++) {
+                rowStart[rowNum + 1] += rowStart[rowNum];
+            }
+            return rowStart;
+        }
 
-    private static void sortHorizEdgeLists(ArrayList<LinkedList<HorizontalEdge>> horizEdges) {
-        for (LinkedList<HorizontalEdge> row : horizEdges) {
-            Collections.sort(row);
+        /**
+         * Places the edges into the given span arrays by row (keeping the order in which the edges
+         * of each row were added), then sorts the edges in each row by their first x-values.
+         */
+        void fillSpans(int[] rowStart, int[] spanFirst, int[] spanLast) {
+            int[] nextPos = Arrays.copyOf(rowStart, numRows);
+            for (int i = 0; i < numEdges; i++) {
+                int pos = nextPos[ys[i] - minY]++;
+                spanFirst[pos] = firsts[i];
+                spanLast[pos] = lasts[i];
+            }
+            for (int rowNum = 0; rowNum < numRows; rowNum++) {
+                // Stable insertion sort (rows generally contain very few edges).
+                for (int i = rowStart[rowNum] + 1; i < rowStart[rowNum + 1]; i++) {
+                    int first = spanFirst[i];
+                    int last = spanLast[i];
+                    int j = i - 1;
+                    while (j >= rowStart[rowNum] && spanFirst[j] > first) {
+                        spanFirst[j + 1] = spanFirst[j];
+                        spanLast[j + 1] = spanLast[j];
+                        j--;
+                    }
+                    spanFirst[j + 1] = first;
+                    spanLast[j + 1] = last;
+                }
+            }
         }
     }
 
-    private Blob(BoundingBox boundaries, ArrayList<LinkedList<HorizontalEdge>> horizEdges) {
-        this.horizEdges = horizEdges;
+    private Blob(BoundingBox boundaries, HorizEdgeBuilder horizEdges) {
         this.boundaries = boundaries;
+        this.rowStart = horizEdges.makeRowStart();
+        this.spanFirst = new int[horizEdges.numEdges];
+        this.spanLast = new int[horizEdges.numEdges];
+        horizEdges.fillSpans(rowStart, spanFirst, spanLast);
     }
 
-    private Blob(BoundingBox boundaries, ArrayList<LinkedList<HorizontalEdge>> horizEdges, int size) {
-        this.horizEdges = horizEdges;
+    private Blob(BoundingBox boundaries, Blob toCopy) {
         this.boundaries = boundaries;
+        this.rowStart = toCopy.rowStart;
+        this.spanFirst = toCopy.spanFirst;
+        this.spanLast = toCopy.spanLast;
+        this.size = toCopy.size;
+        this.convexHull = toCopy.convexHull;
+    }
+
+    private Blob(BoundingBox boundaries, int[] rowStart, int[] spanFirst, int[] spanLast, int size) {
+        this.boundaries = boundaries;
+        this.rowStart = rowStart;
+        this.spanFirst = spanFirst;
+        this.spanLast = spanLast;
         this.size = size;
     }
 
     /**
-     * Creates an exact copy of the current {@link Blob}.
+     * Creates a copy of this {@link Blob} that has been moved by the given amounts. The rows of the
+     * copy are shared with this {@link Blob}, so this takes time proportional to the number of
+     * horizontal edges in the {@link Blob}, rather than to the number of pixels in it.
+     *
+     * @param dx the distance to move the copy in the x direction
+     * @param dy the distance to move the copy in the y direction
+     * @return the translated copy of this {@link Blob}
+     */
+    public Blob translate(int dx, int dy) {
+        BoundingBox translatedBounds = new BoundingBox(boundaries.getMinX() + dx,
+                boundaries.getMaxX() + dx, boundaries.getMinY() + dy, boundaries.getMaxY() + dy);
+        if (dx == 0) {
+            return new Blob(translatedBounds, rowStart, spanFirst, spanLast, size);
+        }
+        int numSpans = spanFirst.length;
+        int[] translatedFirst = new int[numSpans];
+        int[] translatedLast = new int[numSpans];
+        for (int i = 0; i < numSpans; i++) {
+            translatedFirst[i] = spanFirst[i] + dx;
+            translatedLast[i] = spanLast[i] + dx;
+        }
+        return new Blob(translatedBounds, rowStart, translatedFirst, translatedLast, size);
+    }
+
+    /**
+     * Creates an exact copy of the current {@link Blob}. Since the horizontal edges of a
+     * {@link Blob} are never modified, they are shared by the copy rather than copied.
      *
      * @return the copy of this {@link Blob}
      */
@@ -253,51 +406,152 @@ public class Blob implements BoundedRegion {
         // Copy boundingBox
         BoundingBox boundariesCopy = new BoundingBox(boundaries.getMinX(), boundaries.getMaxX(),
                 boundaries.getMinY(), boundaries.getMaxY());
-
-        // Copy horizEdges
-        int numRows = horizEdges.size();
-        ArrayList<LinkedList<HorizontalEdge>> horizEdgeCopy =
-                Lists.newArrayListWithCapacity(numRows);
-        for (int i = 0; i < numRows; i++) {
-            LinkedList<HorizontalEdge> rowCopy = new LinkedList<HorizontalEdge>();
-            for (HorizontalEdge horizEdge : horizEdges.get(i)) {
-                rowCopy.add(new HorizontalEdge(horizEdge.first, horizEdge.last));
-            }
-            horizEdgeCopy.add(rowCopy);
-        }
-
-        // Make deep copy
-        return new Blob(boundariesCopy, horizEdgeCopy, size);
+        return new Blob(boundariesCopy, this);
     }
 
     /**
      * Gets the maximum diameter of this {@link Blob}. This is the line segment with maximum length
      * between any two points in the edges of the {@link Blob}.
+     * <p>
+     * Both end-points of the maximum diameter must be vertices of the convex hull of the
+     * {@link Blob}, so the maximum diameter is found by rotating a pair of calipers around the
+     * (cached) convex hull, which takes time linear in the number of vertices in the hull. If
+     * there are several maximum diameters, the one whose end-points come first (ordering points by
+     * y and then x) is returned.
      *
      * @return the line segment representing the maximum diameter of this {@link Blob}
      */
     public LineSegment getMaxDiameter() { // Equivalent to get length
-        // TODO: increase efficiency (same way as before)
-        Point startPoint = null;
-        Point endPoint = null;
-        List<Point> edgePts = getEdges();
-        int maxDiamSquared = -1;
-        for (Point edgePt1 : edgePts) {
-            for (Point edgePt2 : edgePts) {
-                int changeX = edgePt1.x - edgePt2.x;
-                int changeY = edgePt1.y - edgePt2.y;
-                int possMaxDiamSquared = changeX * changeX + changeY * changeY;
-                if (possMaxDiamSquared > maxDiamSquared) {
-                    maxDiamSquared = possMaxDiamSquared;
-                    startPoint = edgePt1;
-                    endPoint = edgePt2;
+        Point[] hull = getConvexHull();
+        int numVertices = hull.length;
+        if (numVertices == 0) {
+            return null;
+        }
+        Point[] diameter = new Point[] { hull[0], hull[0] };
+        if (numVertices == 2) {
+            considerDiameter(diameter, hull[0], hull[1]);
+        } else if (numVertices > 2) {
+            // For each edge of the hull, find the vertex furthest from that edge. Every vertex
+            // pair that can form a maximum diameter is one of the edge's end-points paired with
+            // this vertex (or its successor, if the two are equally far from the edge).
+            int j = 1;
+            for (int i = 0; i < numVertices; i++) {
+                Point edgeStart = hull[i];
+                Point edgeEnd = hull[(i + 1) % numVertices];
+                long area = getTriangleArea(edgeStart, edgeEnd, hull[j]);
+                long nextArea = getTriangleArea(edgeStart, edgeEnd, hull[(j + 1) % numVertices]);
+                while (nextArea > area) {
+                    j = (j + 1) % numVertices;
+                    area = nextArea;
+                    nextArea = getTriangleArea(edgeStart, edgeEnd, hull[(j + 1) % numVertices]);
+                }
+                considerDiameter(diameter, edgeStart, hull[j]);
+                considerDiameter(diameter, edgeEnd, hull[j]);
+                if (nextArea == area) {
+                    Point nextVertex = hull[(j + 1) % numVertices];
+                    considerDiameter(diameter, edgeStart, nextVertex);
+                    considerDiameter(diameter, edgeEnd, nextVertex);
                 }
             }
         }
-        if (startPoint == null) {
-            return null;
+        return new LineSegment(new Point(diameter[0]), new Point(diameter[1]));
+    }
+
+    // Replaces the current diameter with the given pair of points, if they are further apart (or
+    // as far apart, but come first).
+    private static void considerDiameter(Point[] diameter, Point pt1, Point pt2) {
+        if (comesBefore(pt2, pt1)) {
+            Point temp = pt1;
+            pt1 = pt2;
+            pt2 = temp;
+        }
+        long lengthSquared = getDistanceSquared(pt1, pt2);
+        long maxLengthSquared = getDistanceSquared(diameter[0], diameter[1]);
+        if (lengthSquared > maxLengthSquared
+                || (lengthSquared == maxLengthSquared && (comesBefore(pt1, diameter[0])
+                        || (pt1.equals(diameter[0]) && comesBefore(pt2, diameter[1]))))) {
+            diameter[0] = pt1;
+            diameter[1] = pt2;
+        }
+    }
+
+    private static boolean comesBefore(Point pt1, Point pt2) {
+        return pt1.y < pt2.y || (pt1.y == pt2.y && pt1.x < pt2.x);
+    }
+
+    private static long getDistanceSquared(Point pt1, Point pt2) {
+        long changeX = pt1.x - pt2.x;
+        long changeY = pt1.y - pt2.y;
+        return changeX * changeX + changeY * changeY;
+    }
+
+    // Twice the (unsigned) area of the given triangle.
+    private static long getTriangleArea(Point pt1, Point pt2, Point pt3) {
+        return Math.abs(getCrossProduct(pt1, pt2, pt3));
+    }
+
+    // The z-component of the cross product of the vectors (origin to pt1) and (origin to pt2).
+    private static long getCrossProduct(Point origin, Point pt1, Point pt2) {
+        return ((long) pt1.x - origin.x) * (pt2.y - origin.y)
+                - ((long) pt1.y - origin.y) * (pt2.x - origin.x);
+    }
+
+    /**
+     * Gets the vertices of the convex hull of this {@link Blob}, in order around the hull (with no
+     * three consecutive vertices collinear).
+     */
+    private synchronized Point[] getConvexHull() {
+        if (convexHull == null) {
+            convexHull = findConvexHull();
+        }
+        return convexHull;
+    }
+
+    private Point[] findConvexHull() {
+        // The convex hull of the Blob is the convex hull of the end-points of its rows, which are
+        // found already sorted by y and then x.
+        final int minY = boundaries.getMinY();
+        int numRows = rowStart.length - 1;
+        Point[] rowEnds = new Point[2 * numRows];
+        int numRowEnds = 0;
+        for (int rowNum = 0; rowNum < numRows; rowNum++) {
+            int rowEnd = rowStart[rowNum + 1];
+            if (rowStart[rowNum] < rowEnd) {
+                int rowMin = spanFirst[rowStart[rowNum]]; // The row is sorted by first x.
+                int rowMax = rowMin;
+                for (int i = rowStart[rowNum]; i < rowEnd; i++) {
+                    rowMax = Math.max(rowMax, spanLast[i]);
+                }
+                int y = minY + rowNum;
+                rowEnds[numRowEnds++] = new Point(rowMin, y);
+                if (rowMax != rowMin) {
+                    rowEnds[numRowEnds++] = new Point(rowMax, y);
+                }
+            }
+        }
+        if (numRowEnds < 2) {
+            return Arrays.copyOf(rowEnds, numRowEnds);
+        }
+
+        // Andrew's monotone chain algorithm.
+        Point[] hull = new Point[2 * numRowEnds];
+        int hullSize = 0;
+        for (int i = 0; i < numRowEnds; i++) { // First half of the hull.
+            while (hullSize >= 2
+                    && getCrossProduct(hull[hullSize - 2], hull[hullSize - 1], rowEnds[i]) <= 0) {
+                hullSize--;
+            }
+            hull[hullSize++] = rowEnds[i];
         }
-        return new LineSegment(startPoint, endPoint);
+        int minHullSize = hullSize + 1;
+        for (int i = numRowEnds - 2; i >= 0; i--) { // Second half of the hull.
+            while (hullSize >= minHullSize
+                    && getCrossProduct(hull[hullSize - 2], hull[hullSize - 1], rowEnds[i]) <= 0) {
+                hullSize--;
+            }
+            hull[hullSize++] = rowEnds[i];
+        }
+        return Arrays.copyOf(hull, hullSize - 1); // The first point is repeated at the end.
     }
 
     @Override
@@ -326,100 +580,149 @@ public class Blob implements BoundedRegion {
 
     /**
      * Gets the number of points in this {@link Blob}, including both points located on the
-     * {@link Blob}'s edges, as well as points located in the interior of the {@link Blob}.
+     * {@link Blob}'s edges, as well as points located in the interior of the {@link Blob}. The size
+     * is found by adding up the lengths of the spans of the {@link Blob}, without visiting any
+     * individual points.
      *
      * @return the size of (i.e. the number of points in) the blob
      */
-    // TODO: probably want to remove this method?
     public synchronized int getSize() {
         if (size < 0) {
-            size = getAllPoints().size();
+            final int[] sizeHolder = new int[1];
+            forEachSpan(new SpanVisitor() {
+                @Override
+                public void visitSpan(int y, int firstX, int lastX) {
+                    sizeHolder[0] += lastX - firstX + 1;
+                }
+            });
+            size = sizeHolder[0];
         }
         return size;
     }
 
     /**
-     * Gets all of the points in the interior of the {@link Blob}. In other words, retrieves all of
-     * the points in the {@link Blob} that are not on the edge of the {@link Blob}.
+     * Visits the spans of all of the points in this {@link Blob} (both the edges and the innards).
      *
-     * @return a list of the non-edge points in this blob
+     * @param visitor the visitor to which to pass each span
      */
-    public List<Point> getInnards() {
-        LinkedList<Point> toReturn = new LinkedList<Point>();
+    public void forEachSpan(SpanVisitor visitor) {
+        Verify.notNull(visitor, "visitor");
         final int minY = boundaries.getMinY();
-        for (int rowNum = 0; rowNum < horizEdges.size(); rowNum++) {
-            LinkedList<HorizontalEdge> currentRow = horizEdges.get(rowNum);
-            Iterator<HorizontalEdge> currRowItr = currentRow.iterator();
+        for (int rowNum = 0; rowNum < rowStart.length - 1; rowNum++) {
             int prevEnd = Integer.MIN_VALUE;
-            while (currRowItr.hasNext()) {
-                int start = currRowItr.next().last + 1;
-                int end = currRowItr.next().first;
+            for (int i = rowStart[rowNum]; i < rowStart[rowNum + 1]; i += 2) {
+                int start = spanFirst[i];
+                int end = spanLast[i + 1];
                 if (start <= prevEnd && end > prevEnd) {
                     start = prevEnd + 1;
                 }
                 if (start > prevEnd) {
-                    for (int x = start; x < end; x++) {
-                        toReturn.add(new Point(x, rowNum + minY));
+                    if (start <= end) {
+                        visitor.visitSpan(rowNum + minY, start, end);
                     }
                     prevEnd = Math.max(start - 1, end); // Since sometimes, start > end
                 }
             }
         }
-
-        return toReturn;
     }
 
     /**
-     * Gets all of the points on the edge of the {@link Blob}. The order of the returned edge points
-     * is NOT guaranteed. However, all the points passed in as the original traced edges used when
-     * creating the {@link Blob} are included in the returned list.
+     * Visits the spans of the points in the interior of this {@link Blob} (i.e. the points that are
+     * not on the edge of the {@link Blob}).
      *
-     * @return the points that define the edges of this blob
+     * @param visitor the visitor to which to pass each span
      */
-    public List<Point> getEdges() { // Gets the union of the edges
-        List<Point> edgePts = new LinkedList<Point>();
+    public void forEachInnardSpan(SpanVisitor visitor) {
+        Verify.notNull(visitor, "visitor");
         final int minY = boundaries.getMinY();
-
-        for (int rowNum = 0; rowNum < horizEdges.size(); rowNum++) {
-            LinkedList<HorizontalEdge> currentRow = horizEdges.get(rowNum);
-            int y = minY + rowNum;
+        for (int rowNum = 0; rowNum < rowStart.length - 1; rowNum++) {
             int prevEnd = Integer.MIN_VALUE;
-            for (HorizontalEdge edge : currentRow) {
-                int newEnd = edge.last;
-                if (newEnd > prevEnd) {
-                    for (int x = Math.max(edge.first, prevEnd + 1); x <= newEnd; x++) {
-                        edgePts.add(new Point(x, y));
+            for (int i = rowStart[rowNum]; i < rowStart[rowNum + 1]; i += 2) {
+                int start = spanLast[i] + 1;
+                int end = spanFirst[i + 1];
+                if (start <= prevEnd && end > prevEnd) {
+                    start = prevEnd + 1;
+                }
+                if (start > prevEnd) {
+                    if (start < end) {
+                        visitor.visitSpan(rowNum + minY, start, end - 1);
                     }
-                    prevEnd = newEnd;
+                    prevEnd = Math.max(start - 1, end); // Since sometimes, start > end
                 }
             }
         }
-        return edgePts;
     }
 
-    public List<Point> getAllPoints() {
-        LinkedList<Point> toReturn = new LinkedList<Point>();
+    /**
+     * Visits the spans of the points on the edge of this {@link Blob}.
+     *
+     * @param visitor the visitor to which to pass each span
+     */
+    public void forEachEdgeSpan(SpanVisitor visitor) {
+        Verify.notNull(visitor, "visitor");
         final int minY = boundaries.getMinY();
-        for (int rowNum = 0; rowNum < horizEdges.size(); rowNum++) {
-            LinkedList<HorizontalEdge> currentRow = horizEdges.get(rowNum);
-            Iterator<HorizontalEdge> currRowItr = currentRow.iterator();
+        for (int rowNum = 0; rowNum < rowStart.length - 1; rowNum++) {
             int prevEnd = Integer.MIN_VALUE;
-            while (currRowItr.hasNext()) {
-                int start = currRowItr.next().first;
-                int end = currRowItr.next().last;
-                if (start <= prevEnd && end > prevEnd) {
-                    start = prevEnd + 1;
-                }
-                if (start > prevEnd) {
-                    for (int x = start; x <= end; x++) {
-                        toReturn.add(new Point(x, rowNum + minY));
-                    }
-                    prevEnd = Math.max(start - 1, end); // Since sometimes, start > end
+            for (int i = rowStart[rowNum]; i < rowStart[rowNum + 1]; i++) {
+                int newEnd = spanLast[i];
+                if (newEnd > prevEnd) {
+                    visitor.visitSpan(rowNum + minY, Math.max(spanFirst[i], prevEnd + 1), newEnd);
+                    prevEnd = newEnd;
                 }
             }
         }
+    }
+
+    /**
+     * Gets all of the points in the interior of the {@link Blob}. In other words, retrieves all of
+     * the points in the {@link Blob} that are not on the edge of the {@link Blob}.
+     * <p>
+     * NOTE: this method makes a new {@link Point} for every point in the innards of the
+     * {@link Blob}; use {@link #forEachInnardSpan(SpanVisitor)} where possible.
+     *
+     * @return a list of the non-edge points in this blob
+     */
+    public List<Point> getInnards() {
+        List<Point> innards = new LinkedList<Point>();
+        forEachInnardSpan(new PointCollector(innards));
+        return innards;
+    }
+
+    /**
+     * Gets all of the points on the edge of the {@link Blob}. The order of the returned edge points
+     * is NOT guaranteed. However, all the points passed in as the original traced edges used when
+     * creating the {@link Blob} are included in the returned list.
+     *
+     * @return the points that define the edges of this blob
+     */
+    public List<Point> getEdges() { // Gets the union of the edges
+        List<Point> edgePts = new LinkedList<Point>();
+        forEachEdgeSpan(new PointCollector(edgePts));
+        return edgePts;
+    }
+
+    public List<Point> getAllPoints() {
+        List<Point> allPts = new LinkedList<Point>();
+        forEachSpan(new PointCollector(allPts));
+        return allPts;
+    }
+
+    /**
+     * Adds every point in each visited span to a list of points.
+     */
+    private static class PointCollector implements SpanVisitor {
+        private final List<Point> points;
+
+        PointCollector(List<Point> points) {
+            this.points = points;
+        }
 
-        return toReturn;
+        @Override
+        public void visitSpan(int y, int firstX, int lastX) {
+            for (int x = firstX; x <= lastX; x++) {
+                points.add(new Point(x, y));
+            }
+        }
     }
 
     @Override
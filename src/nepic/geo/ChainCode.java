@@ -0,0 +1,135 @@
+package nepic.geo;
+
+import java.util.Arrays;
+
+import nepic.util.Verify;
+
+/**
+ * The outer edges of a clump of pixels, given as an 8-direction chain code: a starting pixel,
+ * followed by the direction of each step from one edge pixel to the next around the clump. Each
+ * step is stored in a single byte, so a traced edge of any length takes only one array, and a
+ * {@link ChainCode} can be reused for any number of traces by calling {@link #reset(int, int)}.
+ * <p>
+ * The directions are numbered clockwise (on screen) starting from west: {@link #W}, {@link #NW},
+ * {@link #N}, {@link #NE}, {@link #E}, {@link #SE}, {@link #S}, and {@link #SW}. For a closed edge,
+ * the last step leads back to the starting pixel.
+ *
+ * @author AJ Parmidge
+ */
+public class ChainCode {
+    public static final byte W = 0;
+    public static final byte NW = 1;
+    public static final byte N = 2;
+    public static final byte NE = 3;
+    public static final byte E = 4;
+    public static final byte SE = 5;
+    public static final byte S = 6;
+    public static final byte SW = 7;
+
+    /**
+     * The change in x of a step in each direction.
+     */
+    static final int[] DX = { -1, -1, 0, 1, 1, 1, 0, -1 };
+    /**
+     * The change in y of a step in each direction (remember that positive y is DOWN the image).
+     */
+    static final int[] DY = { 0, -1, -1, -1, 0, 1, 1, 1 };
+
+    private int startX;
+    private int startY;
+    private byte[] directions;
+    private int length = 0;
+
+    /**
+     * Creates an empty {@link ChainCode} starting at the origin.
+     */
+    public ChainCode() {
+        directions = new byte[64];
+    }
+
+    /**
+     * Removes all of the steps from this {@link ChainCode}, and moves its starting pixel to the
+     * given location.
+     *
+     * @param startX the x-coordinate of the new starting pixel
+     * @param startY the y-coordinate of the new starting pixel
+     * @return this {@link ChainCode}, for chaining
+     */
+    public ChainCode reset(int startX, int startY) {
+        this.startX = startX;
+        this.startY = startY;
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Adds a step in the given direction to the end of this {@link ChainCode}.
+     *
+     * @param direction the direction of the step (between {@link #W} and {@link #SW}, inclusive)
+     */
+    public void add(int direction) {
+        Verify.argument(direction >= W && direction <= SW, "Invalid direction " + direction);
+        if (length == directions.length) {
+            directions = Arrays.copyOf(directions, 2 * length);
+        }
+        directions[length++] = (byte) direction;
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    /**
+     * Gets the number of steps in this {@link ChainCode}.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the direction of the given step in this {@link ChainCode}.
+     *
+     * @param step the number of the step (from zero)
+     */
+    public int getDirection(int step) {
+        Verify.argument(step >= 0 && step < length, "Invalid step " + step);
+        return directions[step];
+    }
+
+    /**
+     * Gets the number of distinct positions along the closed edge represented by this
+     * {@link ChainCode} (the starting pixel is only counted once, even though the last step returns
+     * to it).
+     */
+    public int getNumPoints() {
+        return length == 0 ? 1 : length;
+    }
+
+    /**
+     * Writes the coordinates of the points along the closed edge represented by this
+     * {@link ChainCode} into the given arrays, starting with the starting pixel.
+     *
+     * @param xs the array in which to put the x-coordinates (at least {@link #getNumPoints()} long)
+     * @param ys the array in which to put the y-coordinates (at least {@link #getNumPoints()} long)
+     * @return the number of points written
+     */
+    public int decodeInto(int[] xs, int[] ys) {
+        int numPts = getNumPoints();
+        int x = startX;
+        int y = startY;
+        xs[0] = x;
+        ys[0] = y;
+        for (int i = 1; i < numPts; i++) {
+            int direction = directions[i - 1];
+            x += DX[direction];
+            y += DY[direction];
+            xs[i] = x;
+            ys[i] = y;
+        }
+        return numPts;
+    }
+}
@@ -5,6 +5,8 @@ import java.awt.geom.Point2D;
 import java.util.LinkedList;
 import java.util.List;
 
+import nepic.util.IntBinaryConsumer;
+
 public class LineSegment extends Line {
 
     public LineSegment(Point startPoint, Point endPoint) {
@@ -155,34 +157,151 @@ public class LineSegment extends Line {
 
     // Horizontal lines: includes only 1 point at most
     public List<Point> drawByY(IncludeStart is, IncludeEnd ie) {
-        List<Point> pixsInLine = new LinkedList<Point>();
-        int changeY = yIncrement * (endY - startY);
-        int nextY;
-        double nextX;
-        for (int i = 0 + is.val; i <= changeY + ie.val; i++) {
-            nextY = startY + yIncrement * i;
-            nextX = (double) ((changeY - i) * startX + i * endX) / changeY;
-            nextX = nextX < 0 ? nextX - 0.5 : nextX + 0.5;
-            pixsInLine.add(new Point((int) nextX, nextY));
-        }// for all y values
-        return pixsInLine;
+        return toPointList(true, is, ie);
     }
 
     // Vertical lines: includes only at most 1 point
     public List<Point> drawByX(IncludeStart is, IncludeEnd ie) {
+        return toPointList(false, is, ie);
+    }
+
+    private List<Point> toPointList(boolean byY, IncludeStart is, IncludeEnd ie) {
+        int numPts = getNumDrawnPoints(byY, is, ie);
+        int[] xs = new int[numPts];
+        int[] ys = new int[numPts];
+        drawInto(xs, ys, 0, byY, is, ie);
         List<Point> pixsInLine = new LinkedList<Point>();
-        int changeX = xIncrement * (endX - startX);
-        int nextX;
-        double nextY;
-        for (int i = 0 + is.val; i <= changeX + ie.val; i++) {
-            nextX = startX + xIncrement * i;
-            nextY = ((double) (changeX - i) * startY + i * endY) / changeX;
-            nextY = nextY < 0 ? nextY - 0.5 : nextY + 0.5;
-            pixsInLine.add(new Point(nextX, (int) nextY));
-        }// for all y values
+        for (int i = 0; i < numPts; i++) {
+            pixsInLine.add(new Point(xs[i], ys[i]));
+        }
         return pixsInLine;
     }
 
+    /**
+     * Gets the number of points that {@link #draw(IncludeStart, IncludeEnd)} would return for this
+     * line segment.
+     */
+    int getNumDrawnPoints(IncludeStart is, IncludeEnd ie) {
+        return getNumDrawnPoints(moreVertical, is, ie);
+    }
+
+    private int getNumDrawnPoints(boolean byY, IncludeStart is, IncludeEnd ie) {
+        int numSteps = byY ? yIncrement * (endY - startY) : xIncrement * (endX - startX);
+        return Math.max(0, numSteps + ie.val - is.val + 1);
+    }
+
+    /**
+     * Writes the points of this line segment into the given coordinate arrays, in the same order as
+     * they are returned by {@link #draw(IncludeStart, IncludeEnd)}, but without creating a
+     * {@link Point} for each of them.
+     *
+     * @param xs the array in which to put the x-coordinates of the points
+     * @param ys the array in which to put the y-coordinates of the points
+     * @param pos the position in the arrays at which to put the first point
+     * @return the position in the arrays after the last point written
+     */
+    int drawInto(int[] xs, int[] ys, int pos, IncludeStart is, IncludeEnd ie) {
+        return drawInto(xs, ys, pos, moreVertical, is, ie);
+    }
+
+    private int drawInto(final int[] xs, final int[] ys, final int pos, boolean byY,
+            IncludeStart is, IncludeEnd ie) {
+        forEachPixel(byY, is, ie, new IntBinaryConsumer() {
+            int nextPos = pos;
+
+            @Override
+            public void accept(int x, int y) {
+                xs[nextPos] = x;
+                ys[nextPos] = y;
+                nextPos++;
+            }
+        });
+        return pos + getNumDrawnPoints(byY, is, ie);
+    }
+
+    /**
+     * Gets the number of pixels in this line segment (including both end-points), which is the
+     * number of points returned by {@link #draw()}.
+     */
+    public int getNumPixels() {
+        return getNumDrawnPoints(IncludeStart.YES, IncludeEnd.YES);
+    }
+
+    /**
+     * Performs the given operation on the coordinates of every pixel in this line segment
+     * (including both end-points), in the same order as the points returned by {@link #draw()}.
+     *
+     * @param op the operation to perform on each pixel
+     */
+    public void forEachPixel(IntBinaryConsumer op) {
+        forEachPixel(IncludeStart.YES, IncludeEnd.YES, op);
+    }
+
+    /**
+     * Performs the given operation on the coordinates of every pixel in this line segment, in the
+     * same order as the points returned by {@link #draw(IncludeStart, IncludeEnd)}.
+     *
+     * @param is whether to include the starting point of the line segment
+     * @param ie whether to include the ending point of the line segment
+     * @param op the operation to perform on each pixel
+     */
+    public void forEachPixel(IncludeStart is, IncludeEnd ie, IntBinaryConsumer op) {
+        forEachPixel(moreVertical, is, ie, op);
+    }
+
+    // Steps one pixel at a time along the major axis (y if byY, otherwise x), tracking the exact
+    // position along the minor axis as a whole part and a remainder (as in Bresenham's algorithm),
+    // so that each pixel costs only integer additions and comparisons. The minor coordinate of
+    // step i is ((n - i) * start + i * end) / n rounded half away from zero, where n is the number
+    // of steps along the major axis.
+    private void forEachPixel(boolean byY, IncludeStart is, IncludeEnd ie, IntBinaryConsumer op) {
+        int majorStart = byY ? startY : startX;
+        int majorIncrement = byY ? yIncrement : xIncrement;
+        int minorStart = byY ? startX : startY;
+        int n = byY ? yIncrement * (endY - startY) : xIncrement * (endX - startX);
+        int minorChange = (byY ? endX : endY) - minorStart;
+        int first = is.val;
+        int last = n + ie.val;
+        if (n == 0) {
+            if (first <= last) {
+                op.accept(startX, startY);
+            }
+            return;
+        }
+
+        // The exact minor coordinate is (minor + (remainder - n) / (2 * n)), where
+        // 0 <= remainder < 2 * n, so rounding half up gives minor.
+        int twiceN = 2 * n;
+        int initialOffset = 2 * first * minorChange + n;
+        int minor = minorStart + floorDiv(initialOffset, twiceN);
+        int remainder = initialOffset - floorDiv(initialOffset, twiceN) * twiceN;
+        int minorStep = floorDiv(2 * minorChange, twiceN);
+        int remainderStep = 2 * minorChange - minorStep * twiceN;
+        int major = majorStart + majorIncrement * first;
+        for (int i = first; i <= last; i++) {
+            // A remainder of zero is an exact half, which rounds away from zero.
+            int rounded = remainder == 0 && minor <= 0 ? minor - 1 : minor;
+            if (byY) {
+                op.accept(rounded, major);
+            } else {
+                op.accept(major, rounded);
+            }
+            major += majorIncrement;
+            minor += minorStep;
+            remainder += remainderStep;
+            if (remainder >= twiceN) {
+                remainder -= twiceN;
+                minor++;
+            }
+        }
+    }
+
+    // Rounds towards negative infinity, for positive divisors.
+    private static int floorDiv(int dividend, int divisor) {
+        int quotient = dividend / divisor;
+        return dividend % divisor < 0 ? quotient - 1 : quotient;
+    }
+
     public static void main(String[] args) {
         LineSegment line = new LineSegment(new Point(0, 0), new Point(5, 5));
         System.out.println(line.getY(4));
@@ -18,6 +18,11 @@ import nepic.util.Verify;
 public class Polygon implements BoundedRegion {
     private final Point[] vertices;
     private final BoundingBox boundaries;
+    /**
+     * The {@link Blob} representation of this {@link Polygon} (loaded lazily, and reset whenever
+     * this {@link Polygon} is moved).
+     */
+    private Blob blob = null;
 
     /**
      * Creates a polygon with the given vertices.
@@ -78,7 +83,7 @@ public class Polygon implements BoundedRegion {
         boundaries = new BoundingBox(vertices[0], vertices[0]);
         for (int i = 0; i < numVertices; i++) {
             Point vertex = vertices[i];
-            this.vertices[i] = vertex;
+            this.vertices[i] = new Point(vertex.x, vertex.y); // Callers may mutate their Points.
             boundaries.update(vertex.x, vertex.y);
         }
     }
@@ -103,7 +108,7 @@ public class Polygon implements BoundedRegion {
             } else {
                 boundaries.update(vertex.x, vertex.y);
             }
-            this.vertices[i] = vertex;
+            this.vertices[i] = new Point(vertex.x, vertex.y); // Callers may mutate their Points.
             i++;
         }
     }
@@ -191,7 +196,9 @@ public class Polygon implements BoundedRegion {
      * @param y the amount to move this polygon in the y-direction (negative values will move the
      *        polygon up, while positive values will move the polygon down)
      */
-    public void translate(int x, int y) {
+    public synchronized void translate(int x, int y) {
+        blob = null; // The Blob must be remade for the new position.
+
         // Translate vertices
         for (Point vertex : vertices) {
             vertex.x += x;
@@ -206,6 +213,33 @@ public class Polygon implements BoundedRegion {
         boundaries.resetBounds(newMinX, newMaxX, newMinY, newMaxY);
     }
 
+    /**
+     * Creates a copy of this polygon that has been translated by the given amounts. If the
+     * {@link Blob} of this polygon has already been made, then the {@link Blob} of the copy is made
+     * by translating it rather than by rasterizing the copy again (as long as neither polygon has
+     * any negative coordinates, translating the {@link Blob} gives exactly the same pixels).
+     *
+     * @param x the distance to move the copy in the x direction
+     * @param y the distance to move the copy in the y direction
+     * @return the translated copy
+     */
+    public Polygon getTranslatedCopy(int x, int y) {
+        int numVertices = vertices.length;
+        Point[] translatedVertices = new Point[numVertices];
+        for (int i = 0; i < numVertices; i++) {
+            translatedVertices[i] = new Point(vertices[i].x + x, vertices[i].y + y);
+        }
+        Polygon copy = new Polygon(translatedVertices);
+        boolean nonNegative = getMinX() >= 0 && getMinY() >= 0 && copy.getMinX() >= 0
+                && copy.getMinY() >= 0;
+        synchronized (this) {
+            if (blob != null && nonNegative) {
+                copy.blob = blob.translate(x, y);
+            }
+        }
+        return copy;
+    }
+
     /**
      * Creates a new polygon with the same basic shape as this polygon, but which has been resized
      * by the given factor.
@@ -243,22 +277,17 @@ public class Polygon implements BoundedRegion {
         int numVertices = vertices.length;
         Point[] rotatedVertices = new Point[numVertices];
 
-        double r;
-        double theta;
+        double cos = Math.cos(phi);
+        double sin = Math.sin(phi);
         for (int i = 0; i < numVertices; i++) {
             int x = vertices[i].x - origin.x;
             int y = vertices[i].y - origin.y;
 
-            // Convert Cartesian point to polar coordinates.
-            r = Math.sqrt(x * x + y * y);
-            theta = Math.atan2(y, x);
-
-            // Rotate
-            theta += phi;
-
-            // Convert polar coordinates back to Cartesian coordinates.
-            x = (int) (r * Math.cos(theta) + 0.5) + origin.x;
-            y = (int) (r * Math.sin(theta) + 0.5) + origin.y;
+            // Rotate (the cosine and sine of the angle are shared by all the vertices).
+            double rotatedX = x * cos - y * sin;
+            double rotatedY = x * sin + y * cos;
+            x = (int) (rotatedX + 0.5) + origin.x;
+            y = (int) (rotatedY + 0.5) + origin.y;
             rotatedVertices[i] = new Point(x, y);
         }
         return new Polygon(rotatedVertices);
@@ -278,16 +307,55 @@ public class Polygon implements BoundedRegion {
             int y = vertices[i].y;
             copiedVertices[i] = new Point(x, y);
         }
-        return new Polygon(copiedVertices);
+        Polygon copy = new Polygon(copiedVertices);
+        synchronized (this) {
+            copy.blob = blob; // Blobs are immutable, so can be shared.
+        }
+        return copy;
     }
 
     /**
-     * Creates a {@link Blob} representation of this {@link Polygon}.
+     * Gets the {@link Blob} representation of this {@link Polygon}. The {@link Blob} is made the
+     * first time this method is called (and again after the {@link Polygon} is translated), and is
+     * shared by all subsequent calls.
+     * <p>
+     * The {@link Blob} is made by walking the edges of the polygon one vertex to the next, recording
+     * only the coordinates of the pixels on each edge. The {@link Blob} is built directly from the
+     * horizontal runs of these pixels in each row, so no objects are created for the individual
+     * pixels in either the edges or the interior of the polygon.
      *
      * @return the {@link Blob} representation of this {@link Polygon}
      */
-    public Blob asBlob() {
-        return Blob.newBlobFromTracedEdges(getEdges());
+    public synchronized Blob asBlob() {
+        if (blob == null) {
+            blob = rasterize();
+        }
+        return blob;
+    }
+
+    private Blob rasterize() {
+        // Find the edges of the polygon (as drawn by getEdges()).
+        int numVertices = vertices.length;
+        LineSegment[] edges = new LineSegment[numVertices];
+        int numEdgePts = 0;
+        Point lastPoint = vertices[numVertices - 1];
+        for (int i = 0; i < numVertices; i++) {
+            Point currentPoint = vertices[i];
+            edges[i] = new LineSegment(lastPoint, currentPoint);
+            numEdgePts += edges[i].getNumDrawnPoints(
+                    LineSegment.IncludeStart.YES, LineSegment.IncludeEnd.NO);
+            lastPoint = currentPoint;
+        }
+
+        // Draw the edge pixels.
+        int[] edgeXs = new int[numEdgePts];
+        int[] edgeYs = new int[numEdgePts];
+        int pos = 0;
+        for (LineSegment edge : edges) {
+            pos = edge.drawInto(edgeXs, edgeYs, pos,
+                    LineSegment.IncludeStart.YES, LineSegment.IncludeEnd.NO);
+        }
+        return Blob.newBlobFromTracedEdges(edgeXs, edgeYs, numEdgePts);
     }
 
     @Override
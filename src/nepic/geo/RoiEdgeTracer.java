@@ -12,16 +12,6 @@ import nepic.logging.EventType;
 import nepic.util.Verify;
 
 public class RoiEdgeTracer {
-    // Used by the goLeft() method when finding the outer edges of a clump of pixels.
-    private static final Point[] DIRECTIONS = new Point[] {
-            new Point(-1, 0), // W
-            new Point(-1, -1), // NW
-            new Point(0, -1), // N
-            new Point(1, -1), // NE
-            new Point(1, 0), // E
-            new Point(1, 1), // SE
-            new Point(0, 1), // S
-            new Point(-1, 1) }; // SW
 
     /**
      * Finds the outer edges of the singular clump of pixels with the given ID on the given image.
@@ -37,49 +27,94 @@ public class RoiEdgeTracer {
 
         // If maxXPoint is not the maxX point with the given ID in the IdTaggedImage, then find the
         // actual maxXPoint with the given ID in the IdTaggedImage.
-        if (maxXPoint == null || img.getId(maxXPoint.x, maxXPoint.y) != id
-                || (maxXPoint.x < img.getMaxX() && img.getId(maxXPoint.x + 1, maxXPoint.y) == id)) {
-            maxXPoint = findMaxXInRegion(img, id);
+        if (maxXPoint == null || !isValidStart(img, id, maxXPoint.x, maxXPoint.y)) {
+            maxXPoint = findStart(img, id);
             Verify.argument(maxXPoint != null,
                     "IdTaggedImage does NOT contain any pixels with id = " + id);
         }
 
+        ChainCode chain = traceChainCode(img, id, maxXPoint.x, maxXPoint.y, new ChainCode());
+        if (chain == null) {
+            return null;
+        }
         List<Point> outerEdges = new LinkedList<Point>();
-        int dirToGo = 0; // West
-        Point toAdd = maxXPoint;// add minY; assume came from left
-        do {
-            // Add all outer edge points (some may be duplicated if there is an intersection)
-            outerEdges.add(toAdd);
-            // .out.println("Add " + toAdd);
+        int x = chain.getStartX();
+        int y = chain.getStartY();
+        outerEdges.add(new Point(x, y));
+        for (int step = 0; step < chain.getNumPoints() - 1; step++) {
+            int direction = chain.getDirection(step);
+            x += ChainCode.DX[direction];
+            y += ChainCode.DY[direction];
+            outerEdges.add(new Point(x, y));
+        }
+        return outerEdges;
+    }
 
+    /**
+     * Traces the outer edges of the singular clump of pixels with the given ID on the given image,
+     * starting from the given pixel, and records them as a chain code. No objects are made while
+     * tracing, so if the given {@link ChainCode} is reused between traces, tracing takes no new
+     * memory once the chain code has grown to the length of the longest edge traced.
+     *
+     * @param img the image on which to trace the clump
+     * @param id the ID of the pixels in the clump
+     * @param startX the x-coordinate of the pixel at which to start tracing, which must be a valid
+     *        start (see {@link #isValidStart(IdTaggedImage, int, int, int)})
+     * @param startY the y-coordinate of the pixel at which to start tracing
+     * @param chain the chain code in which to record the edges (which is reset before tracing)
+     * @return the given chain code, or {@code null} if the edges could not be traced
+     */
+    public static ChainCode traceChainCode(IdTaggedImage img, int id, int startX, int startY,
+            ChainCode chain) {
+        Verify.notNull(img, "Cannot find outer edges of region in null IdTaggedImage");
+        Verify.notNull(chain, "ChainCode in which to record the outer edges cannot be null");
+        Verify.argument(isValidStart(img, id, startX, startY), "(" + startX + ", " + startY
+                + ") is not a valid pixel at which to start tracing the edges of ROI " + id);
+
+        chain.reset(startX, startY);
+        int dirToGo = ChainCode.W; // Assume came from the east.
+        int x = startX;
+        int y = startY;
+        do {
             // Find next direction to go
-            dirToGo = goLeft(img, id, toAdd, (dirToGo + 4) % 8);
+            dirToGo = goLeft(img, id, x, y, (dirToGo + 4) % 8);
             if (dirToGo == -1) {
-                if (outerEdges.size() == 1) {
+                if (chain.getLength() == 0) {
                     // If blob contains only a single pixel
-                    return outerEdges;
+                    return chain;
                 } else {
                     // Should never happen.
                     Nepic.log(EventType.ERROR, EventLogger.LOG_ONLY,
-                            "goLeft method failed.  currentPixel = " + toAdd
-                                    + ", outerEdges.size() = " + outerEdges.size());
+                            "goLeft method failed.  currentPixel = (" + x + ", " + y
+                                    + "), outerEdges.size() = " + chain.getLength());
                     return null;
                 }
             }// if unable to find which direction to go to find the rest of the outer edges
-            int xToGo = toAdd.x + DIRECTIONS[dirToGo].x;
-            int yToGo = toAdd.y + DIRECTIONS[dirToGo].y;
-            toAdd = new Point(xToGo, yToGo);
-        } while (!toAdd.equals(maxXPoint));
+            chain.add(dirToGo);
+            x += ChainCode.DX[dirToGo];
+            y += ChainCode.DY[dirToGo];
+        } while (x != startX || y != startY);
 
-        return outerEdges;
+        return chain;
+    }
+
+    /**
+     * Determines whether the outer edges of the clump of pixels with the given ID can be traced
+     * starting from the given pixel: the pixel must be in the clump, but the pixel to its right
+     * must not be. The rightmost pixel of any row of the clump is always a valid start, as long as
+     * it is not on the edge of a hole in the clump.
+     */
+    public static boolean isValidStart(IdTaggedImage img, int id, int x, int y) {
+        return img.contains(x, y) && img.getId(x, y) == id
+                && !(x < img.getMaxX() && img.getId(x + 1, y) == id);
     }
 
-    private static int goLeft(IdTaggedImage img, int id, Point from, int dirFrom) {
+    private static int goLeft(IdTaggedImage img, int id, int fromX, int fromY, int dirFrom) {
         int dirToCheck = dirFrom;
-        for (int i = 0; i < DIRECTIONS.length; i++) {
-            dirToCheck = (dirToCheck + 1) % 8;// 8 == dirs.length
-            int xToCheck = from.x + DIRECTIONS[dirToCheck].x;
-            int yToCheck = from.y + DIRECTIONS[dirToCheck].y;
+        for (int i = 0; i < 8; i++) {
+            dirToCheck = (dirToCheck + 1) % 8;
+            int xToCheck = fromX + ChainCode.DX[dirToCheck];
+            int yToCheck = fromY + ChainCode.DY[dirToCheck];
             if (img.contains(xToCheck, yToCheck) && img.getId(xToCheck, yToCheck) == id) {
                 return dirToCheck;
             }
@@ -87,7 +122,14 @@ public class RoiEdgeTracer {
         return -1; // This should only happen if the pixel clump being traced is a single pixel.
     }
 
-    private static Point findMaxXInRegion(IdTaggedImage img, int id) {
+    /**
+     * Finds a valid pixel at which to start tracing the outer edges of the clump of pixels with the
+     * given ID (the rightmost pixel of the topmost row of the clump). This scans the entire image,
+     * so should only be used when no such pixel is already known.
+     *
+     * @return the pixel found, or {@code null} if the image contains no pixels with the given ID
+     */
+    public static Point findStart(IdTaggedImage img, int id) {
         for (int y = img.getMinY(); y <= img.getMaxY(); y++) {
             for (int x = img.getMaxX(); x >= img.getMinX(); x--) {
                 if (img.getId(x, y) == id) {
@@ -103,21 +145,29 @@ public class RoiEdgeTracer {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * An {@link IdTaggedImage} in which a given clump of pixels all have the same ID, so that the
+     * clump can be traced. The clump is stored as a packed bit mask over its bounding box.
+     */
     public static class ImgMatrix implements IdTaggedImage {
-        private BoundingBox boundaries;
-        private int[][] imgMatrix;
+        private final BoundingBox boundaries;
+        private final int id;
+        private final int width;
+        private final long[] mask;
 
         public ImgMatrix(BoundingBox boundaries, Collection<? extends Point> edgePts, int id) {
             this.boundaries = boundaries;
+            this.id = id;
             int minX = boundaries.getMinX();
-            int maxX = boundaries.getMaxX();
             int minY = boundaries.getMinY();
-            int maxY = boundaries.getMaxY();
-            imgMatrix = new int[maxX - minX + 1][maxY - minY + 1];
+            width = boundaries.getMaxX() - minX + 1;
+            int height = boundaries.getMaxY() - minY + 1;
+            mask = new long[(int) (((long) width * height + 63) >> 6)];
 
             // Initialize edgePts on the ImgMatrix
             for (Point pt : edgePts) {
-                imgMatrix[pt.x - minX][pt.y - minY] = id;
+                int bit = (pt.y - minY) * width + (pt.x - minX);
+                mask[bit >> 6] |= 1L << bit;
             }
         }
 
@@ -128,7 +178,8 @@ public class RoiEdgeTracer {
 
         @Override
         public int getId(int x, int y) {
-            return imgMatrix[x - getMinX()][y - getMinY()];
+            int bit = (y - getMinY()) * width + (x - getMinX());
+            return (mask[bit >> 6] & (1L << bit)) != 0 ? id : 0;
         }
 
         @Override
@@ -0,0 +1,304 @@
+package nepic.geo;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nepic.util.Verify;
+
+/**
+ * An index of items by their {@link BoundingBox}es, which supports finding the items whose
+ * bounding boxes contain a given point, the items whose bounding boxes intersect a given region,
+ * and the item whose bounding box is nearest to a given point.
+ * <p>
+ * The index is a uniform grid of square cells laid over some region of interest (such as the
+ * bounds of an image). Each item is recorded in every cell its bounding box overlaps, so point and
+ * region queries only examine the items in the cells they touch, and nearest-item queries search
+ * outwards from the given point one ring of cells at a time. Items can be added, moved, and removed
+ * at any time, in time proportional to the number of cells their bounding boxes cover. Items whose
+ * bounding boxes extend past the indexed region are recorded in the cells along its border.
+ *
+ * @author AJ Parmidge
+ *
+ * @param <T> the type of the items in the index
+ */
+public class SpatialIndex<T> {
+    /**
+     * The default width and height (in pixels) of each cell in the grid.
+     */
+    public static final int DEFAULT_CELL_SIZE = 32;
+
+    private final int minX;
+    private final int minY;
+    private final int cellSize;
+    private final int numCols;
+    private final int numRows;
+    /**
+     * The items whose bounding boxes overlap each cell of the grid, indexed by
+     * {@code row * numCols + col}.
+     */
+    private final List<List<T>> cells;
+    /**
+     * The bounding box of every item in the index (items are compared by identity).
+     */
+    private final Map<T, BoundingBox> boxes = new IdentityHashMap<T, BoundingBox>();
+
+    /**
+     * Creates an empty {@link SpatialIndex} over the given region, using the
+     * {@link #DEFAULT_CELL_SIZE}.
+     *
+     * @param region the region of interest over which to lay the grid
+     */
+    public SpatialIndex(BoundingBox region) {
+        this(region, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates an empty {@link SpatialIndex} over the given region.
+     *
+     * @param region the region of interest over which to lay the grid
+     * @param cellSize the width and height (in pixels) of each cell in the grid
+     */
+    public SpatialIndex(BoundingBox region, int cellSize) {
+        Verify.notNull(region, "Region to index cannot be null");
+        Verify.argument(cellSize > 0, "Cell size must be positive");
+        this.minX = region.getMinX();
+        this.minY = region.getMinY();
+        this.cellSize = cellSize;
+        this.numCols = (region.getMaxX() - minX) / cellSize + 1;
+        this.numRows = (region.getMaxY() - minY) / cellSize + 1;
+        int numCells = numCols * numRows;
+        cells = new ArrayList<List<T>>(numCells);
+        for (int i = 0; i < numCells; i++) {
+            cells.add(null); // Lists are only made for cells that hold items.
+        }
+    }
+
+    /**
+     * Adds the given item to this index with the given bounding box. If the item is already in this
+     * index, its bounding box is updated instead.
+     *
+     * @param item the item to add
+     * @param box the bounding box of the item (this index keeps its own copy)
+     */
+    public void put(T item, BoundingBox box) {
+        Verify.notNull(item, "Item to index cannot be null");
+        Verify.notNull(box, "Bounding box of indexed item cannot be null");
+        remove(item);
+        box = box.deepCopy();
+        boxes.put(item, box);
+        int maxCol = getCol(box.getMaxX());
+        int maxRow = getRow(box.getMaxY());
+        for (int row = getRow(box.getMinY()); row <= maxRow; row++) {
+            for (int col = getCol(box.getMinX()); col <= maxCol; col++) {
+                int cellNum = row * numCols + col;
+                List<T> cell = cells.get(cellNum);
+                if (cell == null) {
+                    cell = new ArrayList<T>(2);
+                    cells.set(cellNum, cell);
+                }
+                cell.add(item);
+            }
+        }
+    }
+
+    /**
+     * Removes the given item from this index.
+     *
+     * @param item the item to remove
+     * @return {@code true} if the item was in this index; otherwise {@code false}
+     */
+    public boolean remove(T item) {
+        BoundingBox box = boxes.remove(item);
+        if (box == null) {
+            return false;
+        }
+        int maxCol = getCol(box.getMaxX());
+        int maxRow = getRow(box.getMaxY());
+        for (int row = getRow(box.getMinY()); row <= maxRow; row++) {
+            for (int col = getCol(box.getMinX()); col <= maxCol; col++) {
+                List<T> cell = cells.get(row * numCols + col);
+                for (int i = 0; i < cell.size(); i++) {
+                    if (cell.get(i) == item) {
+                        cell.remove(i);
+                        break;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of the items from this index.
+     */
+    public void clear() {
+        for (List<T> cell : cells) {
+            if (cell != null) {
+                cell.clear();
+            }
+        }
+        boxes.clear();
+    }
+
+    /**
+     * Determines whether the given item is in this index.
+     */
+    public boolean contains(T item) {
+        return boxes.containsKey(item);
+    }
+
+    /**
+     * Gets the bounding box with which the given item is indexed.
+     *
+     * @param item the item whose bounding box to get
+     * @return a copy of the item's bounding box, or {@code null} if the item is not in this index
+     */
+    public BoundingBox getBoundingBox(T item) {
+        BoundingBox box = boxes.get(item);
+        return box == null ? null : box.deepCopy();
+    }
+
+    /**
+     * Gets the number of items in this index.
+     */
+    public int size() {
+        return boxes.size();
+    }
+
+    /**
+     * Determines whether this index contains no items.
+     */
+    public boolean isEmpty() {
+        return boxes.isEmpty();
+    }
+
+    /**
+     * Finds all of the items whose bounding boxes contain the given point.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the items found, in the order in which they were indexed
+     */
+    public List<T> getItemsContaining(int x, int y) {
+        List<T> found = new ArrayList<T>();
+        List<T> cell = cells.get(getRow(y) * numCols + getCol(x));
+        if (cell != null) {
+            for (T item : cell) {
+                if (boxes.get(item).boundsContain(x, y)) {
+                    found.add(item);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds all of the items whose bounding boxes intersect the given region.
+     *
+     * @param region the region to check
+     * @return the items found, each listed once
+     */
+    public List<T> getItemsIntersecting(BoundingBox region) {
+        Verify.notNull(region, "Region to check cannot be null");
+        List<T> found = new ArrayList<T>();
+        Map<T, Boolean> seen = new IdentityHashMap<T, Boolean>();
+        int maxCol = getCol(region.getMaxX());
+        int maxRow = getRow(region.getMaxY());
+        for (int row = getRow(region.getMinY()); row <= maxRow; row++) {
+            for (int col = getCol(region.getMinX()); col <= maxCol; col++) {
+                List<T> cell = cells.get(row * numCols + col);
+                if (cell != null) {
+                    for (T item : cell) {
+                        if (!seen.containsKey(item) && boxes.get(item).intersectsWith(region)) {
+                            seen.put(item, Boolean.TRUE);
+                            found.add(item);
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the item whose bounding box is nearest to the given point. Items whose bounding boxes
+     * contain the point are at distance zero.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the nearest item (any one of the nearest, if there is a tie), or {@code null} if this
+     *         index is empty
+     */
+    public T getNearest(int x, int y) {
+        if (boxes.isEmpty()) {
+            return null;
+        }
+        int startCol = getCol(x);
+        int startRow = getRow(y);
+        int maxRing = Math.max(Math.max(startCol, numCols - 1 - startCol),
+                Math.max(startRow, numRows - 1 - startRow));
+        Map<T, Boolean> seen = new IdentityHashMap<T, Boolean>();
+        T nearest = null;
+        long nearestDistSq = Long.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Any item first found in this ring is at least (ring - 1) whole cells away.
+            long minDist = (long) (ring - 1) * cellSize;
+            if (nearest != null && ring > 1 && nearestDistSq <= minDist * minDist) {
+                break;
+            }
+            for (int row = startRow - ring; row <= startRow + ring; row++) {
+                if (row < 0 || row >= numRows) {
+                    continue;
+                }
+                // Only the first and last rows of the ring are searched in full.
+                boolean onRingEdge = row == startRow - ring || row == startRow + ring;
+                int colStep = onRingEdge ? 1 : 2 * ring;
+                for (int col = startCol - ring; col <= startCol + ring; col += colStep) {
+                    if (col < 0 || col >= numCols) {
+                        continue;
+                    }
+                    List<T> cell = cells.get(row * numCols + col);
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (T item : cell) {
+                        if (seen.containsKey(item)) {
+                            continue;
+                        }
+                        seen.put(item, Boolean.TRUE);
+                        long distSq = getDistanceSquared(boxes.get(item), x, y);
+                        if (distSq < nearestDistSq) {
+                            nearest = item;
+                            nearestDistSq = distSq;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private static long getDistanceSquared(BoundingBox box, int x, int y) {
+        long dx = getGap(x, box.getMinX(), box.getMaxX());
+        long dy = getGap(y, box.getMinY(), box.getMaxY());
+        return dx * dx + dy * dy;
+    }
+
+    private static long getGap(int val, int min, int max) {
+        if (val < min) {
+            return min - val;
+        }
+        return val > max ? val - max : 0;
+    }
+
+    // Items and queries outside the indexed region are clamped to the cells along its border.
+    private int getCol(int x) {
+        return Math.min(numCols - 1, Math.max(0, (x - minX) / cellSize));
+    }
+
+    private int getRow(int y) {
+        return Math.min(numRows - 1, Math.max(0, (y - minY) / cellSize));
+    }
+}
@@ -1,6 +1,7 @@
 package nepic.gui;
 
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.Collection;
 import java.util.Iterator;
@@ -17,6 +18,12 @@ import nepic.util.Verify;
 public class AnnotatableImage {
     private final BufferedImage img; // The image being annotated.
     private final Stack<Annotation> annotationStack; // The stack of annotations to the image.
+    // The bounds of the pixels changed since the last call to takeChangedRegion() (empty if
+    // changedMinX > changedMaxX).
+    private int changedMinX = Integer.MAX_VALUE;
+    private int changedMinY = Integer.MAX_VALUE;
+    private int changedMaxX = Integer.MIN_VALUE;
+    private int changedMaxY = Integer.MIN_VALUE;
 
     /**
      * Creates an empty {@code AnnotatableImage} with the given image as background.
@@ -41,6 +48,40 @@ public class AnnotatableImage {
         return img;
     }
 
+    /**
+     * Returns the smallest rectangle containing every pixel of the image that has been drawn or
+     * erased since the last call to this method, so that only that part of the image needs to be
+     * repainted.
+     *
+     * @return the changed region (in the image's coordinates), or {@code null} if no pixel has
+     *         changed
+     */
+    Rectangle takeChangedRegion() {
+        if (changedMinX > changedMaxX) {
+            return null;
+        }
+        Rectangle changed = new Rectangle(changedMinX, changedMinY,
+                changedMaxX - changedMinX + 1, changedMaxY - changedMinY + 1);
+        changedMinX = changedMinY = Integer.MAX_VALUE;
+        changedMaxX = changedMaxY = Integer.MIN_VALUE;
+        return changed;
+    }
+
+    private void markChanged(int x, int y) {
+        if (x < changedMinX) {
+            changedMinX = x;
+        }
+        if (x > changedMaxX) {
+            changedMaxX = x;
+        }
+        if (y < changedMinY) {
+            changedMinY = y;
+        }
+        if (y > changedMaxY) {
+            changedMaxY = y;
+        }
+    }
+
     /**
      * Annotates the image with the given {@link ColoredPointList} information. If the annotation
      * specified by the given ID already contains any values, the annotation is erased before these
@@ -70,7 +111,7 @@ public class AnnotatableImage {
             Verify.notNull(dataSet, "DataSet");
             toRedraw.add(new MonochromePixelSet(dataSet.getRgb()).addAll(dataSet));
         }
-        push(toRedraw);
+        push(toRedraw, true);
     }
 
     /**
@@ -91,9 +132,10 @@ public class AnnotatableImage {
             pixelSet.rgb = rgb;
             for (Pixel pix : pixelSet.pixels) {
                 img.setRGB(pix.x, pix.y, rgb);
+                markChanged(pix.x, pix.y);
             }
         }
-        push(toRecolor);
+        push(toRecolor, true);
     }
 
     public void appendAnnotation(int id, DataSet first, DataSet... rest) {
@@ -111,7 +153,7 @@ public class AnnotatableImage {
             Verify.notNull(dataSet, "DataSet");
             toRedraw.add(new MonochromePixelSet(dataSet.getRgb()).addAll(dataSet));
         }
-        push(toRedraw);
+        push(toRedraw, true);
     }
 
     public void eraseAnnotation(int id) {
@@ -123,11 +165,17 @@ public class AnnotatableImage {
      */
     public void clear() {
         while (!annotationStack.empty()) {
-            pop();
+            pop(true);
         }
     }
 
-    private void push(Annotation annotation) {
+    /**
+     * Pushes the given annotation onto the stack, drawing it on the image.
+     *
+     * @param markChanges whether to include the pixels drawn in the changed region (false only when
+     *        restoring an annotation exactly as it was)
+     */
+    private void push(Annotation annotation, boolean markChanges) {
         // Push the given Annotation onto the stack.
         annotationStack.push(annotation);
 
@@ -139,11 +187,20 @@ public class AnnotatableImage {
                 int y = pix.y;
                 pix.color = img.getRGB(x, y); // The color to restore when erasing this pixel.
                 img.setRGB(x, y, rgb);
+                if (markChanges) {
+                    markChanged(x, y);
+                }
             }
         }
     }
 
-    private Annotation pop() {
+    /**
+     * Pops the top annotation off the stack, erasing it from the image.
+     *
+     * @param markChanges whether to include the pixels erased in the changed region (false only when
+     *        the annotation will be restored exactly as it was)
+     */
+    private Annotation pop(boolean markChanges) {
         Annotation poppedAnnotation = annotationStack.pop();
 
         // Erase the popped annotation from the image (iterate BACKWARDS)
@@ -153,6 +210,9 @@ public class AnnotatableImage {
             while (reversePixItr.hasNext()) {
                 Pixel pixToRestore = reversePixItr.next();
                 img.setRGB(pixToRestore.x, pixToRestore.y, pixToRestore.color);
+                if (markChanges) {
+                    markChanged(pixToRestore.x, pixToRestore.y);
+                }
             }
         }
         return poppedAnnotation;
@@ -171,7 +231,9 @@ public class AnnotatableImage {
 
         // Erase all annotations up through the desired annotation in the stack.
         while (!annotationStack.empty() && desiredAnnotation == null) {
-            Annotation poppedAnnotation = pop();
+            // The annotations above the desired one are restored below, leaving their pixels (and
+            // any of the desired annotation's pixels that they cover) unchanged.
+            Annotation poppedAnnotation = pop(annotationStack.peek().id == id);
             if (poppedAnnotation.id == id) {
                 desiredAnnotation = poppedAnnotation;
             } else {
@@ -181,7 +243,7 @@ public class AnnotatableImage {
 
         // Restore all annotations that were previously above the desired annotation in the stack.
         while (!otherStack.empty()) {
-            push(otherStack.pop());
+            push(otherStack.pop(), false);
         }
 
         // The desired annotation is no longer in the stack (if it exists)
@@ -1,6 +1,8 @@
 package nepic.gui;
 
 import java.awt.Color;
+import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 import javax.swing.ImageIcon;
@@ -15,6 +17,7 @@ public class AnnotatableImageLabel extends JLabel {
      */
     private static final long serialVersionUID = 6310500552214650433L;
     private AnnotatableImage img;
+    private final RepaintScheduler repaintScheduler;
 
     /**
      * Constructs an {@link AnnotatableImageLabel} with the given background color.
@@ -25,6 +28,7 @@ public class AnnotatableImageLabel extends JLabel {
         setVerticalAlignment(JLabel.TOP);
         setOpaque(true);
         setBackground(bkColor);
+        repaintScheduler = new RepaintScheduler(this);
     }
 
     public void displayImage(BufferedImage img) {
@@ -35,25 +39,49 @@ public class AnnotatableImageLabel extends JLabel {
     public void annotateImage(int annotationId, DataSet first, DataSet... rest) {
         Verify.state(img != null, "No image to annotate");
         img.annotate(annotationId, first, rest);
-        repaint();
+        repaintChanges();
     }
 
     public void recolorImageAnnoation(int annotationId, int rgb) {
         Verify.state(img != null, "No image to annotate");
         img.recolorAnnotation(annotationId, rgb);
-        repaint();
+        repaintChanges();
     }
 
     public void eraseImageAnnotation(int annotationId) {
         Verify.state(img != null, "No image to annotate");
         img.eraseAnnotation(annotationId);
-        repaint();
+        repaintChanges();
     }
 
     public void removeImageAnnotations() {
         Verify.state(img != null, "No image to annotate");
         img.clear();
-        repaint();
+        repaintChanges();
+    }
+
+    /**
+     * Runs the given task just before the next frame is painted. Requesting the same task several
+     * times before then (for example, once for each of a burst of mouse events) runs it only once.
+     *
+     * @param task the task to run on the event dispatch thread
+     */
+    public void runBeforeNextFrame(Runnable task) {
+        repaintScheduler.runBeforeNextFrame(task);
+    }
+
+    /**
+     * Schedules the region of the image changed since the last repaint to be repainted in the next
+     * frame.
+     */
+    private void repaintChanges() {
+        Rectangle changed = img.takeChangedRegion();
+        if (changed != null) {
+            // The image is drawn in the top left corner of the label, just inside its border.
+            Insets insets = getInsets();
+            changed.translate(insets.left, insets.top);
+            repaintScheduler.invalidate(changed);
+        }
     }
 
 }
@@ -4,6 +4,10 @@ package nepic.gui;
 import java.awt.Color;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -14,6 +18,7 @@ import nepic.data.MutableDataSet;
 import nepic.geo.LineSegment;
 import nepic.geo.LineSegment.IncludeEnd;
 import nepic.geo.LineSegment.IncludeStart;
+import nepic.util.IntBinaryConsumer;
 import nepic.util.Pair;
 import nepic.util.Verify;
 
@@ -42,6 +47,23 @@ public class Graph extends JPanel {
      * The collection of all the data sets being graphed.
      */
     private GraphData data = null;
+    /**
+     * The pixels covered by each of the data sets in {@link #cachedData} when it was last drawn.
+     */
+    private List<DataSet> cachedDataSetPixels = null;
+    /**
+     * The {@link GraphData} from which the {@link #cachedDataSetPixels} were found.
+     */
+    private GraphData cachedData = null;
+    /**
+     * The modification count of the {@link #cachedData} when the {@link #cachedDataSetPixels} were
+     * found.
+     */
+    private int cachedModCount = 0;
+    /**
+     * Whether the data points were connected when the {@link #cachedDataSetPixels} were found.
+     */
+    private boolean cachedConnectTheDots = true;
 
     private JLabel topLabel, bottomLabel;
 
@@ -238,43 +260,140 @@ public class Graph extends JPanel {
     }
 
     private void drawDataSets(ConvolutionData cData) {
+        if (cachedData != data || cachedModCount != data.getModificationCount()
+                || cachedConnectTheDots != connectTheDots) {
+            cacheDataSetPixels(cData);
+        }
         int id = 1;
+        for (DataSet dataSetPixels : cachedDataSetPixels) {
+            img.annotate(id, dataSetPixels);
+            id++;
+        }
+        topLabel.setText("" + data.getMaxY());
+        bottomLabel.setText("" + data.getMinY());
+    }
+
+    /**
+     * Works out which pixels of the graph image each of the current data sets covers, and caches
+     * them until the data or the way it is drawn changes. The pixels are found from the data
+     * decimated to the graph's resolution (see {@link #addConnectedPixels(DataSet, MutableDataSet,
+     * ConvolutionData)} and
+     * {@link #addScatteredPixels(DataSet, MutableDataSet, ConvolutionData, BitSet)}),
+     * so the number of pixels cached for each data set is bounded by the size of the graph, not by
+     * the size of the data set.
+     */
+    private void cacheDataSetPixels(ConvolutionData cData) {
+        List<DataSet> dataSetPixels = new ArrayList<DataSet>(data.size());
+        BitSet scatteredPixels = connectTheDots ? null : new BitSet(img.getWidth() * img.getHeight());
         for (Pair<String, ? extends DataSet> dataEntry : data) {
-            // Redraws the data set.
-            DataSet convolvedData = convolveDataset(dataEntry.second, cData);
+            MutableDataSet pixels = new MutableDataSet();
+            pixels.setRgb(dataEntry.second.getRgb());
             if (connectTheDots) {
-                DataSet connectedData = new MutableDataSet();
-                connectedData.setRgb(convolvedData.getRgb());
-                Point startPt = null;
-                for (Point datum : convolvedData) {
-                    Point endPt = datum;
-                    if (startPt != null) {
-                        connectedData.addAll(
-                                new LineSegment(startPt, endPt).draw(IncludeStart.YES,
-                                        IncludeEnd.NO));
-                    }
-                    startPt = endPt;
-                }
-                connectedData.add(startPt); // Adds the last point in the convolved data.
-                img.annotate(id, connectedData);
+                addConnectedPixels(dataEntry.second, pixels, cData);
             } else {
-                img.annotate(id, convolvedData);
+                scatteredPixels.clear();
+                addScatteredPixels(dataEntry.second, pixels, cData, scatteredPixels);
             }
-            id++;
+            dataSetPixels.add(pixels);
         }
-        topLabel.setText("" + data.getMaxY());
-        bottomLabel.setText("" + data.getMinY());
+        cachedDataSetPixels = dataSetPixels;
+        cachedData = data;
+        cachedModCount = data.getModificationCount();
+        cachedConnectTheDots = connectTheDots;
     }
 
-    private DataSet convolveDataset(DataSet dataSet, ConvolutionData cData) {
-        // Convolve the actual data set to fit on the graph when drawn.
-        DataSet convolvedData = new MutableDataSet();
-        convolvedData.setRgb(dataSet.getRgb());
+    /**
+     * Adds the pixels of the line connecting the points in the given data set (in order) to the
+     * given set of pixels.
+     * <p>
+     * Each run of consecutive points that fall in the same pixel column of the graph is reduced to
+     * at most four points: the first, the lowest, the highest, and the last. Since the line through
+     * the run covers every pixel in the column between its lowest and highest points, this draws
+     * exactly the same pixels as connecting every point in the data set.
+     */
+    private void addConnectedPixels(
+            DataSet dataSet, MutableDataSet pixels, ConvolutionData cData) {
+        Point prevVertex = null;
+        boolean inColumn = false;
+        int columnX = 0;
+        int firstY = 0;
+        int minY = 0;
+        int maxY = 0;
+        int lastY = 0;
         for (Point datum : dataSet) {
-            Point convolvedDatum = new Point(convolveX(datum.x, cData), convolveY(datum.y, cData));
-            convolvedData.add(convolvedDatum);
+            int x = convolveX(datum.x, cData);
+            int y = convolveY(datum.y, cData);
+            if (inColumn && x == columnX) {
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+                lastY = y;
+            } else {
+                if (inColumn) {
+                    prevVertex = addColumn(pixels, prevVertex, columnX, firstY, minY, maxY, lastY);
+                }
+                inColumn = true;
+                columnX = x;
+                firstY = minY = maxY = lastY = y;
+            }
+        }
+        if (inColumn) {
+            prevVertex = addColumn(pixels, prevVertex, columnX, firstY, minY, maxY, lastY);
+            pixels.add(prevVertex); // Adds the last point in the convolved data.
+        }
+    }
+
+    private Point addColumn(MutableDataSet pixels, Point prevVertex, int x, int firstY, int minY,
+            int maxY, int lastY) {
+        prevVertex = addLineTo(pixels, prevVertex, x, firstY);
+        prevVertex = addLineTo(pixels, prevVertex, x, minY);
+        prevVertex = addLineTo(pixels, prevVertex, x, maxY);
+        return addLineTo(pixels, prevVertex, x, lastY);
+    }
+
+    /**
+     * Adds the pixels of the line from the given previous vertex (excluding the vertex itself) to
+     * the given point, and returns the given point as the new previous vertex.
+     */
+    private Point addLineTo(final MutableDataSet pixels, Point prevVertex, int x, int y) {
+        if (prevVertex == null) {
+            return new Point(x, y);
+        }
+        if (prevVertex.x == x && prevVertex.y == y) {
+            return prevVertex;
+        }
+        Point vertex = new Point(x, y);
+        new LineSegment(prevVertex, vertex).forEachPixel(IncludeStart.YES, IncludeEnd.NO,
+                new IntBinaryConsumer() {
+                    @Override
+                    public void accept(int pixelX, int pixelY) {
+                        pixels.add(pixelX, pixelY);
+                    }
+                });
+        return vertex;
+    }
+
+    /**
+     * Adds each distinct pixel of the graph at which there is a point in the given data set to the
+     * given set of pixels.
+     *
+     * @param drawn the pixels (numbered row by row) already added for this data set
+     */
+    private void addScatteredPixels(
+            DataSet dataSet, MutableDataSet pixels, ConvolutionData cData, BitSet drawn) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        for (Point datum : dataSet) {
+            int x = convolveX(datum.x, cData);
+            int y = convolveY(datum.y, cData);
+            if (x >= 0 && x < width && y >= 0 && y < height) {
+                int pixelNum = y * width + x;
+                if (drawn.get(pixelNum)) {
+                    continue;
+                }
+                drawn.set(pixelNum);
+            }
+            pixels.add(x, y);
         }
-        return convolvedData;
     }
 
     private int convolveX(int x, ConvolutionData cData) {
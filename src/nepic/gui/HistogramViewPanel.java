@@ -1,5 +1,7 @@
 package nepic.gui;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 
 import javax.swing.BorderFactory;
@@ -24,6 +26,10 @@ import nepic.util.Verify;
 public class HistogramViewPanel extends JPanel {
     private static final long serialVersionUID = 1L; // Default
     private static final int histColor = 0xFF0000; // red
+    /**
+     * The widest that the image of the histogram is allowed to be, in pixels.
+     */
+    private static final int MAX_WIDTH = 1024;
 
     private JLabel histImgL; // for displaying BufferedImage of histogram
     private BufferedImage histImg;
@@ -43,7 +49,15 @@ public class HistogramViewPanel extends JPanel {
         histHeight = height;
         columnWidth = desiredColumnWidth;
 
-        int width = columnWidth * (rangeToDisplay.max - rangeToDisplay.min + 1);
+        // Wide ranges are decimated so that several values share each pixel column, which is drawn
+        // as high as the tallest of those values.
+        int numValues = rangeToDisplay.max - rangeToDisplay.min + 1;
+        int valuesPerColumn = 1;
+        if ((long) columnWidth * numValues > MAX_WIDTH) {
+            columnWidth = Math.max(1, MAX_WIDTH / numValues);
+            valuesPerColumn = divideRoundingUp(numValues, MAX_WIDTH / columnWidth);
+        }
+        int width = columnWidth * divideRoundingUp(numValues, valuesPerColumn);
         histImg = new BufferedImage(width, histHeight, BufferedImage.TYPE_INT_RGB);
         histImgL = new JLabel(new ImageIcon(histImg));
         histImgL.setSize(width, histHeight);
@@ -51,19 +65,24 @@ public class HistogramViewPanel extends JPanel {
         add(histImgL);
         histImgL.setVisible(true);
 
+        Graphics2D g = histImg.createGraphics();
+        g.setColor(new Color(histColor));
         int xPos = 0;
-        int maxNumDataPtsInColumn = hist.getNumberModeInstances();
-        // System.out.println("Print histogram.");
-        for (int i = rangeToDisplay.min; i <= rangeToDisplay.max; i++) {
-            int columnHeight = hist.getNumValuesAt(i) * histHeight / maxNumDataPtsInColumn;
-            // System.out.println(i + "\t" + hist.numDataAt(i));
-            for (int x = xPos; x < xPos + columnWidth; x++) {
-                for (int y = histHeight - 1; y > (histHeight - columnHeight); y--) {
-                    histImg.setRGB(x, y, histColor);
-                }
+        long maxNumDataPtsInColumn = hist.getNumberModeInstances();
+        for (int i = rangeToDisplay.min; i <= rangeToDisplay.max; i += valuesPerColumn) {
+            int lastValue = (int) Math.min(rangeToDisplay.max, (long) i + valuesPerColumn - 1);
+            long numDataPtsInColumn = 0;
+            for (int value = i; value <= lastValue; value++) {
+                numDataPtsInColumn = Math.max(numDataPtsInColumn, hist.getNumValuesAt(value));
+            }
+            int columnHeight =
+                    (int) (numDataPtsInColumn * histHeight / maxNumDataPtsInColumn);
+            if (columnHeight > 1) { // Fills from the bottom row up to (not including) columnHeight.
+                g.fillRect(xPos, histHeight - columnHeight + 1, columnWidth, columnHeight - 1);
             }
             xPos += columnWidth;
         }
+        g.dispose();
         histImgL.repaint();
 
         Label[] infoLabels = Histogram.getCsvLabels();
@@ -87,4 +106,8 @@ public class HistogramViewPanel extends JPanel {
         this.setPreferredSize(getSize());
         setVisible(true);
     }
+
+    private static int divideRoundingUp(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
 }
@@ -3,25 +3,35 @@ package nepic.gui;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.GroupLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTextField;
 import javax.swing.JTextPane;
 import javax.swing.KeyStroke;
 import javax.swing.LayoutStyle;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
@@ -34,6 +44,7 @@ import nepic.Preferences;
 import nepic.logging.EventLogger;
 import nepic.logging.EventType;
 import nepic.logging.LoggerObserver;
+import nepic.util.RingBuffer;
 import nepic.util.Verify;
 
 // Key Bindings: http://stackoverflow.com/questions/19066859/adding-keylistener-or-key-binding-to-jbuttons-that-use-actionlistener
@@ -55,10 +66,16 @@ public class Interface extends JFrame implements LoggerObserver {
     private static final SimpleAttributeSet BOLD_ERROR_TEXT_STYLE = newTextStyle(0xcc0000, true);
     private static final SimpleAttributeSet ERROR_TEXT_STYLE = newTextStyle(0xcc0000, false);
     private static final SimpleAttributeSet INFO_TEXT_STYLE = newTextStyle(0x000088, false);
+    /**
+     * The maximum number of messages kept in the output pane. Older messages are trimmed.
+     */
+    private static final int MAX_OUTPUT_MESSAGES = 1000;
 
     private JMenuItem chooseFileMenuItem;
     private JMenuItem saveDataMenuItem;
     private JCheckBoxMenuItem equalizeHistogramMenuItem;
+    private JMenuItem findAllCellBodiesMenuItem;
+    private JMenuItem trackAllPagesMenuItem;
     private JMenuItem aboutNepicMenuItem;
     private AnnotatableImageLabel imgLabel;
     private JButton defineBackgroundButton;
@@ -69,7 +86,23 @@ public class Interface extends JFrame implements LoggerObserver {
     private JButton prevPgButton;
     private JButton nextPgButton;
     private JTextField pgNumTextField;
+    private JProgressBar taskProgressBar;
+    private JButton cancelTaskButton;
     private JTextPane outputTextPane;
+    private JLabel trimmedOutputLabel;
+    /**
+     * The messages shown in the output pane, oldest first.
+     */
+    private final RingBuffer<OutputMessage> outputMessages =
+            new RingBuffer<OutputMessage>(MAX_OUTPUT_MESSAGES);
+    private int numTrimmedMessages = 0;
+    /**
+     * The messages (and requests to clear the output pane) logged from any thread that have not
+     * yet been shown, so that they can be shown in batches at most once per frame.
+     */
+    private final Queue<OutputMessage> pendingOutput = new ConcurrentLinkedQueue<OutputMessage>();
+    private final AtomicBoolean outputFlushScheduled = new AtomicBoolean(false);
+    private final Timer outputFlushTimer;
 
     private static SimpleAttributeSet newTextStyle(int rgb, boolean isEmphasized) {
         SimpleAttributeSet textStyle = new SimpleAttributeSet();
@@ -81,6 +114,13 @@ public class Interface extends JFrame implements LoggerObserver {
 
     public Interface() {
         super(TITLE);
+        outputFlushTimer = new Timer(RepaintScheduler.FRAME_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                flushOutput();
+            }
+        });
+        outputFlushTimer.setRepeats(false);
         setJMenuBar(constructMenuBar());
 
         // Add components.
@@ -115,6 +155,10 @@ public class Interface extends JFrame implements LoggerObserver {
         return aboutNepicMenuItem;
     }
 
+    public JButton getCancelTaskButton() {
+        return cancelTaskButton;
+    }
+
     public JButton getAcceptCandidatesButton() {
         return acceptCandidatesButton;
     }
@@ -135,6 +179,14 @@ public class Interface extends JFrame implements LoggerObserver {
         return equalizeHistogramMenuItem;
     }
 
+    public JMenuItem getFindAllCellBodiesMenuItem() {
+        return findAllCellBodiesMenuItem;
+    }
+
+    public JMenuItem getTrackAllPagesMenuItem() {
+        return trackAllPagesMenuItem;
+    }
+
     public JButton getFindCellBodyButton() {
         return findCellBodyButton;
     }
@@ -171,6 +223,24 @@ public class Interface extends JFrame implements LoggerObserver {
         return equalizeHistogramMenuItem.getState();
     }
 
+    /**
+     * Shows that the given task is running in the background, or hides the task progress if no task
+     * is running.
+     *
+     * @param runningTask the description of the running task, or {@code null} if none is running
+     * @param numWaiting the number of tasks waiting to run after the running task
+     */
+    public void showTaskProgress(String runningTask, int numWaiting) {
+        boolean busy = runningTask != null || numWaiting > 0;
+        taskProgressBar.setIndeterminate(busy);
+        taskProgressBar.setString(!busy ? "" : new StringBuilder(
+                runningTask != null ? runningTask : "Cancelling")
+                .append(numWaiting > 0 ? " (" + numWaiting + " waiting)" : "")
+                .append("...")
+                .toString());
+        cancelTaskButton.setEnabled(busy);
+    }
+
     public File selectFile(String title, String location, FileFilter filter) {
         JFileChooser chooser = new JFileChooser(location);
         chooser.setAcceptAllFileFilterUsed(false);
@@ -212,6 +282,8 @@ public class Interface extends JFrame implements LoggerObserver {
         equalizeHistogramMenuItem = new JCheckBoxMenuItem("Enhance Contrast");
         equalizeHistogramMenuItem.setState(Nepic.getPrefs().isHistogramEqualizationDesired());
         menu.add(equalizeHistogramMenuItem);
+        findAllCellBodiesMenuItem = menu.add(new JMenuItem("Find All Cell Bodies"));
+        trackAllPagesMenuItem = menu.add(new JMenuItem("Track All Remaining Pages"));
 
         // "Help" Menu (Mnemonic = 'H').
         menu = menuBar.add(new JMenu("Help"));
@@ -246,6 +318,11 @@ public class Interface extends JFrame implements LoggerObserver {
         prevPgButton = new JButton("<");
         pgNumTextField = makePageNumberTextField("N/A");
         nextPgButton = new JButton(">");
+        taskProgressBar = new JProgressBar();
+        taskProgressBar.setStringPainted(true);
+        taskProgressBar.setString("");
+        cancelTaskButton = new JButton("Cancel");
+        cancelTaskButton.setEnabled(false);
 
         layout.setHorizontalGroup(layout.createSequentialGroup()
                 .addComponent(imgScrollPane)
@@ -255,6 +332,8 @@ public class Interface extends JFrame implements LoggerObserver {
                         .addComponent(enlargeCellBodyButton, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addComponent(shrinkCellBodyButton, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addComponent(acceptCandidatesButton, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                        .addComponent(taskProgressBar, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                        .addComponent(cancelTaskButton, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addGroup(layout.createSequentialGroup()
                                 .addComponent(prevPgButton)
                                 .addComponent(pgNumTextField)
@@ -269,6 +348,9 @@ public class Interface extends JFrame implements LoggerObserver {
                                 .addComponent(enlargeCellBodyButton)
                                 .addComponent(shrinkCellBodyButton)
                                 .addComponent(acceptCandidatesButton)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(taskProgressBar)
+                                .addComponent(cancelTaskButton)
                                 .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED, 50, Short.MAX_VALUE) // Create gap so next el at bottom.
                                 .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING, false)
                                         .addComponent(prevPgButton, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
@@ -315,6 +397,9 @@ public class Interface extends JFrame implements LoggerObserver {
         JScrollPane ouptutScrollPane = new JScrollPane(outputTextPane,
                 JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
                 JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        trimmedOutputLabel = new JLabel();
+        trimmedOutputLabel.setVisible(false);
+        ouptutScrollPane.setColumnHeaderView(trimmedOutputLabel);
         ouptutScrollPane.setPreferredSize(new Dimension(300, 100));
         ouptutScrollPane.setMinimumSize(new Dimension(300, 0));
         return ouptutScrollPane;
@@ -329,8 +414,13 @@ public class Interface extends JFrame implements LoggerObserver {
         prefs.setHistogramEqualizationDesired(isHistogramEqualizationDesired());
     }
 
+    /**
+     * Clears all of the messages from the output pane. Can be called from any thread; the messages
+     * logged before this call are cleared, and the ones logged after it are kept.
+     */
     public void clearOutput() {
-        outputTextPane.setText("");
+        pendingOutput.add(OutputMessage.CLEAR);
+        scheduleOutputFlush();
     }
 
     @Override
@@ -373,25 +463,155 @@ public class Interface extends JFrame implements LoggerObserver {
                 TITLE + ": Error Detected", JOptionPane.ERROR_MESSAGE);
     }
 
-    private boolean appendOutput(String message, SimpleAttributeSet messageTextStyle) {
-        return appendOutput("", null, message, messageTextStyle);
+    private void appendOutput(String message, SimpleAttributeSet messageTextStyle) {
+        appendOutput("", null, message, messageTextStyle);
     }
 
-    private boolean appendOutput(String prefix, SimpleAttributeSet prefixTextStyle,
+    private void appendOutput(String prefix, SimpleAttributeSet prefixTextStyle,
             String message, SimpleAttributeSet messageTextStyle) {
+        pendingOutput.add(
+                new OutputMessage(prefix, prefixTextStyle, message, messageTextStyle));
+        scheduleOutputFlush();
+    }
+
+    /**
+     * Schedules the pending output to be shown in the next frame, unless it already has been.
+     */
+    private void scheduleOutputFlush() {
+        // Events are logged from the background ROI worker as well as from the event dispatch
+        // thread, but Swing components can only be modified on the event dispatch thread.
+        if (outputFlushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    outputFlushTimer.start();
+                }
+            });
+        }
+    }
+
+    /**
+     * Shows all of the pending output in the output pane, trimming the oldest messages so that no
+     * more than {@link #MAX_OUTPUT_MESSAGES} are shown.
+     */
+    private void flushOutput() {
+        outputFlushScheduled.set(false); // Output logged from now on needs another flush.
+        boolean clear = false;
+        int numShownToRemove = 0;
+        int lengthToRemove = 0;
+        int numShown = outputMessages.size();
+        Deque<OutputMessage> toShow = new ArrayDeque<OutputMessage>();
+        OutputMessage message;
+        while ((message = pendingOutput.poll()) != null) {
+            if (message == OutputMessage.CLEAR) {
+                clear = true;
+                numShown = 0;
+                numShownToRemove = lengthToRemove = 0;
+                toShow.clear();
+                outputMessages.clear();
+                numTrimmedMessages = 0;
+                continue;
+            }
+            OutputMessage trimmed = outputMessages.add(message);
+            toShow.addLast(message);
+            if (trimmed != null) {
+                numTrimmedMessages++;
+                if (numShownToRemove < numShown) {
+                    numShownToRemove++;
+                    lengthToRemove += trimmed.length;
+                } else { // Trimmed before it was ever shown.
+                    toShow.removeFirst();
+                }
+            }
+        }
+
         StyledDocument doc = outputTextPane.getStyledDocument();
-        int docLength = doc.getLength();
         try {
-            if (!prefix.isEmpty()) {
-                prefix = prefix + ": ";
-                doc.insertString(docLength, prefix, prefixTextStyle);
+            if (clear) {
+                doc.remove(0, doc.getLength());
+            } else if (lengthToRemove > 0) {
+                doc.remove(0, lengthToRemove);
+            }
+            for (OutputMessage toAppend : toShow) {
+                showOutputMessage(doc, toAppend);
             }
-            doc.insertString(docLength + prefix.length(), message + "\r\n", messageTextStyle);
-            return true;
         } catch (BadLocationException e) {
             Nepic.log(EventType.ERROR, EventLogger.LOG_ONLY,
                     "Unable to append text to outputTextPane", EventLogger.formatException(e));
-            return false;
+            // The document no longer matches the lengths recorded for the messages shown, so
+            // trimming them later would remove the wrong text. Show them all again instead.
+            resyncOutput(doc);
+        }
+        trimmedOutputLabel.setText(numTrimmedMessages + " earlier messages trimmed");
+        trimmedOutputLabel.setVisible(numTrimmedMessages > 0);
+    }
+
+    /**
+     * Appends the given message to the output pane's document, recording its length only once it
+     * has been appended in full.
+     */
+    private void showOutputMessage(StyledDocument doc, OutputMessage toAppend)
+            throws BadLocationException {
+        int docLength = doc.getLength();
+        if (!toAppend.prefix.isEmpty()) {
+            doc.insertString(docLength, toAppend.prefix + ": ", toAppend.prefixTextStyle);
+        }
+        doc.insertString(doc.getLength(), toAppend.message + "\r\n", toAppend.messageTextStyle);
+        toAppend.length = doc.getLength() - docLength;
+    }
+
+    /**
+     * Replaces the contents of the output pane's document with the messages in
+     * {@link #outputMessages}. If even that fails, the output pane is left empty.
+     */
+    private void resyncOutput(StyledDocument doc) {
+        try {
+            doc.remove(0, doc.getLength());
+            for (OutputMessage shown : outputMessages) {
+                shown.length = 0;
+            }
+            for (OutputMessage shown : outputMessages) {
+                showOutputMessage(doc, shown);
+            }
+        } catch (BadLocationException e) {
+            Nepic.log(EventType.ERROR, EventLogger.LOG_ONLY,
+                    "Unable to restore the text of outputTextPane", EventLogger.formatException(e));
+            try {
+                doc.remove(0, doc.getLength());
+            } catch (BadLocationException e2) {
+                // Removing the entire document cannot fail.
+            }
+            for (OutputMessage shown : outputMessages) {
+                shown.length = 0;
+            }
+        }
+    }
+
+    /**
+     * A message waiting to be shown (or being shown) in the output pane.
+     */
+    private static class OutputMessage {
+        /**
+         * Stands for a request to clear the output pane.
+         */
+        private static final OutputMessage CLEAR = new OutputMessage("", null, "", null);
+
+        private final String prefix;
+        private final SimpleAttributeSet prefixTextStyle;
+        private final String message;
+        private final SimpleAttributeSet messageTextStyle;
+        /**
+         * The number of characters of the output pane's document taken up by this message once it
+         * has been shown.
+         */
+        private int length = 0;
+
+        private OutputMessage(String prefix, SimpleAttributeSet prefixTextStyle, String message,
+                SimpleAttributeSet messageTextStyle) {
+            this.prefix = prefix;
+            this.prefixTextStyle = prefixTextStyle;
+            this.message = message;
+            this.messageTextStyle = messageTextStyle;
         }
     }
 
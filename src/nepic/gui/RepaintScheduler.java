@@ -0,0 +1,113 @@
+package nepic.gui;
+
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import nepic.util.Verify;
+
+/**
+ * Coalesces the changes made to a component into at most one repaint per frame. Rather than
+ * repainting the component after every change, the changed regions are recorded as they are made,
+ * and once per frame their union (and only their union) is repainted. Work that only needs to be
+ * done once per frame (such as redrawing a rectangle that follows the mouse while it is dragged)
+ * can also be deferred to the start of the next frame, so that a burst of mouse events results in
+ * a single redraw.
+ * <p>
+ * A {@link RepaintScheduler} must only be used on the event dispatch thread.
+ *
+ * @author AJ Parmidge
+ */
+public class RepaintScheduler {
+    /**
+     * The minimum number of milliseconds between the frames painted (roughly 60 frames per second).
+     */
+    public static final int FRAME_MILLIS = 16;
+
+    private final JComponent component;
+    private final Timer frameTimer;
+    /**
+     * The tasks to run at the start of the next frame, in the order in which they were first
+     * requested.
+     */
+    private final Set<Runnable> frameTasks = new LinkedHashSet<Runnable>();
+    /**
+     * The union of the regions of the component to repaint in the next frame, or {@code null} if no
+     * region needs to be repainted.
+     */
+    private Rectangle dirtyRegion = null;
+
+    /**
+     * Creates a {@link RepaintScheduler} for the given component.
+     *
+     * @param component the component to repaint
+     */
+    public RepaintScheduler(JComponent component) {
+        Verify.notNull(component, "component");
+        this.component = component;
+        frameTimer = new Timer(FRAME_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                paintFrame();
+            }
+        });
+        frameTimer.setRepeats(false);
+        frameTimer.setCoalesce(true);
+    }
+
+    /**
+     * Marks the given region of the component as needing to be repainted in the next frame.
+     *
+     * @param region the region of the component to repaint (in the component's coordinates)
+     */
+    public void invalidate(Rectangle region) {
+        Verify.notNull(region, "region");
+        if (region.isEmpty()) {
+            return;
+        }
+        if (dirtyRegion == null) {
+            dirtyRegion = new Rectangle(region);
+        } else {
+            dirtyRegion.add(region);
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Runs the given task at the start of the next frame, before the dirty region is repainted.
+     * Requesting the same task more than once before the next frame runs it only once.
+     *
+     * @param task the task to run
+     */
+    public void runBeforeNextFrame(Runnable task) {
+        Verify.notNull(task, "task");
+        frameTasks.add(task);
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!frameTimer.isRunning()) {
+            frameTimer.start();
+        }
+    }
+
+    private void paintFrame() {
+        while (!frameTasks.isEmpty()) {
+            Runnable[] tasks = frameTasks.toArray(new Runnable[frameTasks.size()]);
+            frameTasks.clear();
+            for (Runnable task : tasks) {
+                task.run(); // May invalidate more of the component.
+            }
+        }
+        if (dirtyRegion != null) {
+            component.repaint(dirtyRegion);
+            dirtyRegion = null;
+        }
+        frameTimer.stop(); // In case a task restarted the timer; this frame covers its changes.
+    }
+}
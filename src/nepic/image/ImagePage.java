@@ -2,12 +2,18 @@ package nepic.image;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 
 import nepic.data.Histogram;
+import nepic.geo.Blob;
 import nepic.geo.BoundedRegion;
 import nepic.geo.BoundingBox;
+import nepic.geo.SpatialIndex;
 import nepic.roi.ConflictingRoisException;
+import nepic.util.Parallel;
 import nepic.util.Verify;
 
 // assumes 32-bit processor
@@ -22,6 +28,7 @@ public class ImagePage implements IdTaggedImage {
     private static final int MAX_ID = (1 << ID_LENGTH) - 1;
     private static final int PI_LENGTH = 8; // The number of bits in the 'Pixel Intensity' field.
     private static final int MAX_PI = (1 << PI_LENGTH) - 1;
+    private static final int MIN_COLUMNS_PER_STRIP = 64;
 
     /**
      * The width of this {@link ImagePage}.
@@ -39,6 +46,11 @@ public class ImagePage implements IdTaggedImage {
      * </pre>
      */
     private int[][] imgToAnal;// NOTE: ordered [x][y]
+    /**
+     * The bounding boxes of the {@link Roi}s currently on this {@link ImagePage}, kept up to date by
+     * the {@link RoiFinder}s that create, edit, and remove them.
+     */
+    private final SpatialIndex<Roi> roiIndex;
 
     /**
      * Creates an {@link ImagePage} with the given dimensions.
@@ -50,6 +62,7 @@ public class ImagePage implements IdTaggedImage {
         imgToAnal = new int[width][height];
         this.width = width;
         this.height = height;
+        roiIndex = new SpatialIndex<Roi>(getBoundingBox());
     }
 
     public BufferedImage asImage(boolean equalizeHistogram) {
@@ -92,6 +105,14 @@ public class ImagePage implements IdTaggedImage {
         return new BoundingBox(0, width - 1, 0, height - 1);
     }
 
+    /**
+     * Gets the spatial index of all the {@link Roi}s currently on this {@link ImagePage}, by which
+     * the ROIs at or near any location in the page can be found without checking every ROI.
+     */
+    public SpatialIndex<Roi> getRoiIndex() {
+        return roiIndex;
+    }
+
     public Dimension getDimensions() {
         return new Dimension(width, height);
     }
@@ -130,11 +151,34 @@ public class ImagePage implements IdTaggedImage {
     }
 
     public Histogram makeHistogram() {
-        Histogram.Builder imgHistBuilder = new Histogram.Builder(0, MAX_PI);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                imgHistBuilder.addValues(getPixelIntensity(x, y));
-            }
+        // Build a separate histogram of each strip of columns at the same time, then merge them.
+        final int numStrips = Parallel.getNumStrips(width, MIN_COLUMNS_PER_STRIP);
+        List<Callable<Histogram.Builder>> stripHistBuilders =
+                new ArrayList<Callable<Histogram.Builder>>(numStrips);
+        for (int strip = 0; strip < numStrips; strip++) {
+            final int startX = Parallel.getStripStart(strip, width, numStrips);
+            final int endX = Parallel.getStripStart(strip + 1, width, numStrips);
+            stripHistBuilders.add(new Callable<Histogram.Builder>() {
+                @Override
+                public Histogram.Builder call() {
+                    Histogram.Builder stripHistBuilder = new Histogram.Builder(0, MAX_PI);
+                    int[] columnPis = new int[height];
+                    for (int x = startX; x < endX; x++) {
+                        int[] column = imgToAnal[x];
+                        for (int y = 0; y < height; y++) {
+                            columnPis[y] = MAX_PI & column[y];
+                        }
+                        stripHistBuilder.addAll(columnPis, 0, height);
+                    }
+                    return stripHistBuilder;
+                }
+            });
+        }
+
+        List<Histogram.Builder> builtStrips = Parallel.invokeAll(stripHistBuilders);
+        Histogram.Builder imgHistBuilder = builtStrips.get(0);
+        for (int strip = 1; strip < numStrips; strip++) {
+            imgHistBuilder.merge(builtStrips.get(strip));
         }
         return imgHistBuilder.build();
     }
@@ -179,6 +223,115 @@ public class ImagePage implements IdTaggedImage {
         }
     }
 
+    /**
+     * Associates every pixel in the given {@link Blob} with the given {@link Roi}. Either all of
+     * the pixels in the {@link Blob} are associated with the {@link Roi}, or (if any pixel in the
+     * {@link Blob} is already associated with a different {@link Roi}) none of them are.
+     *
+     * @param blob the pixels to associate with the {@link Roi}
+     * @param roi the {@link Roi} with which to associate the pixels
+     * @throws ConflictingRoisException if any pixel in the {@link Blob} is already associated with
+     *         a different {@link Roi}
+     */
+    public void associateBlobWithRoi(Blob blob, Roi roi) throws ConflictingRoisException {
+        associateSpansWithRoi(blob, false /* innardsOnly */, roi);
+    }
+
+    /**
+     * Associates every innard (non-edge) pixel in the given {@link Blob} with the given
+     * {@link Roi}, in the same all-or-nothing way as {@link #associateBlobWithRoi(Blob, Roi)}.
+     *
+     * @param blob the {@link Blob} whose innard pixels to associate with the {@link Roi}
+     * @param roi the {@link Roi} with which to associate the pixels
+     * @throws ConflictingRoisException if any innard pixel in the {@link Blob} is already
+     *         associated with a different {@link Roi}
+     */
+    public void associateBlobInnardsWithRoi(Blob blob, Roi roi) throws ConflictingRoisException {
+        associateSpansWithRoi(blob, true /* innardsOnly */, roi);
+    }
+
+    private void associateSpansWithRoi(Blob blob, boolean innardsOnly, Roi roi)
+            throws ConflictingRoisException {
+        Verify.notNull(blob, "blob");
+        final int newId = roi.getId();
+        final int[] conflictingPixel = new int[] { -1, -1, NON_ROI_ID };
+        forEachSpan(blob, innardsOnly, new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX && conflictingPixel[0] < 0; x++) {
+                    int currentId = getId(x, y);
+                    if (currentId != newId && currentId != NON_ROI_ID) {
+                        conflictingPixel[0] = x;
+                        conflictingPixel[1] = y;
+                        conflictingPixel[2] = currentId;
+                    }
+                }
+            }
+        });
+        if (conflictingPixel[0] >= 0) {
+            throw new ConflictingRoisException("Unable to associate blob with Roi " + roi
+                    + ".  Pixel (" + conflictingPixel[0] + ", " + conflictingPixel[1]
+                    + ") is already associated with Roi (id = " + conflictingPixel[2] + ").");
+        }
+
+        final int idBits = newId << ID_OFFSET;
+        forEachSpan(blob, innardsOnly, new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    imgToAnal[x][y] = imgToAnal[x][y] | idBits;
+                }
+            }
+        });
+    }
+
+    private static void forEachSpan(Blob blob, boolean innardsOnly, Blob.SpanVisitor visitor) {
+        if (innardsOnly) {
+            blob.forEachInnardSpan(visitor);
+        } else {
+            blob.forEachSpan(visitor);
+        }
+    }
+
+    /**
+     * Dissociates every pixel in the given {@link Blob} that is associated with the given
+     * {@link Roi} from that {@link Roi}.
+     *
+     * @param blob the pixels to dissociate from the {@link Roi}
+     * @param roi the {@link Roi} from which to dissociate the pixels
+     */
+    public void dissociateBlobFromRoi(Blob blob, final Roi roi) {
+        Verify.notNull(blob, "blob");
+        blob.forEachSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    dissociatePixelWithRoi(x, y, roi);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sums the pixel intensities of all of the pixels in the given {@link Blob}.
+     *
+     * @param blob the pixels whose intensities to sum
+     * @return the sum of the pixel intensities
+     */
+    public long sumPixelIntensities(Blob blob) {
+        Verify.notNull(blob, "blob");
+        final long[] sum = new long[1];
+        blob.forEachSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    sum[0] += MAX_PI & imgToAnal[x][y];
+                }
+            }
+        });
+        return sum[0];
+    }
+
     public void setRGB(int x, int y, byte relLum) {
         imgToAnal[x][y] = MAX_PI & relLum;
     }
@@ -195,6 +348,15 @@ public class ImagePage implements IdTaggedImage {
     // private Roi[] rois = new Roi[MAX_ID]; // TODO: keep this??
     private Stack<Integer> availableIds = initializeAvailableIds();
 
+    /**
+     * Returns the number of {@link Roi} IDs on this {@link ImagePage} that have not yet been
+     * requested. This is the maximum number of additional {@link Roi}s that can be created on this
+     * page at once.
+     */
+    public int getNumAvailableIds() {
+        return availableIds.size();
+    }
+
     int requestId() {
         Verify.state(!availableIds.isEmpty(), "No more Roi IDs available on this ImagePage.");
         return availableIds.pop();
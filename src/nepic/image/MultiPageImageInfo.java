@@ -2,6 +2,7 @@ package nepic.image;
 
 import java.util.Iterator;
 
+import nepic.data.QuantileSketch;
 import nepic.util.Verify;
 
 /**
@@ -12,6 +13,10 @@ import nepic.util.Verify;
  */
 public class MultiPageImageInfo implements Iterable<PageInfo> {
     private final PageInfo[] pages;
+    /**
+     * A summary of the pixel intensities of every page added so far.
+     */
+    private final QuantileSketch stackPiSketch = new QuantileSketch();
 
     public MultiPageImageInfo(int numPages) {
         // Initialize all pages so that all PageInfos are initially null
@@ -36,9 +41,21 @@ public class MultiPageImageInfo implements Iterable<PageInfo> {
         Verify.notNull(page, "PageInfo to set cannot be null");
         int pgNum = page.getPageNum();
         verifyPageNumLegal(pgNum);
+        if (pages[pgNum] == null) { // Only count the pixels of each page once.
+            stackPiSketch.update(page.getPiHist());
+        }
         pages[pgNum] = page;
     }
 
+    /**
+     * Gets a summary of the pixel intensities of all of the pages set so far, from which the
+     * stack-wide median, percentiles, and mean can be found without keeping every page's
+     * histogram.
+     */
+    public QuantileSketch getStackPiSketch() {
+        return stackPiSketch;
+    }
+
     @Override
     public Iterator<PageInfo> iterator() {
         return new Iterator<PageInfo>() {
@@ -0,0 +1,221 @@
+package nepic.image;
+
+import java.awt.Point;
+
+import nepic.util.Fft;
+import nepic.util.Verify;
+
+/**
+ * Estimates the global translation between two {@link ImagePage}s of the same size by phase
+ * correlation. Each page is shrunk (by averaging square blocks of pixels) to fit within a grid of
+ * at most {@link #MAX_GRID_SIZE} by {@link #MAX_GRID_SIZE} samples, windowed, and transformed with
+ * an FFT. The inverse transform of the normalized cross-power spectrum of the two pages peaks at
+ * the translation between them.
+ * <p>
+ * The FFT plans and the buffers for the spectra are reused for as long as the size of the pages
+ * compared stays the same, and the spectrum of the last page compared is kept, so that comparing
+ * each page of an image with the page before it transforms each page only once. A
+ * {@link PhaseCorrelator} is not thread-safe.
+ *
+ * @author AJ Parmidge
+ */
+public class PhaseCorrelator {
+    /**
+     * The maximum number of samples along each dimension of the grid to which pages are shrunk
+     * before they are transformed (must be a power of two).
+     */
+    public static final int MAX_GRID_SIZE = 256;
+
+    private int pageWidth = -1;
+    private int pageHeight = -1;
+    /**
+     * The width and height of each block of pixels averaged into one sample of the grid.
+     */
+    private int blockSize;
+    private int sampledWidth;
+    private int sampledHeight;
+    private int gridWidth;
+    private int gridHeight;
+    private Fft rowFft;
+    private Fft columnFft;
+    private double[] hannX;
+    private double[] hannY;
+    private double[] row;
+    private double[] rowRe;
+    private double[] rowIm;
+
+    /**
+     * The page whose spectrum is in {@link #lastRe} and {@link #lastIm}, or {@code null} if none.
+     */
+    private ImagePage lastPage = null;
+    /**
+     * The spectrum of the last page transformed, ordered [u][v] where u is the frequency along x
+     * (only the non-negative frequencies of which are kept) and v is the frequency along y.
+     */
+    private double[][] lastRe;
+    private double[][] lastIm;
+    private double[][] spareRe;
+    private double[][] spareIm;
+
+    /**
+     * Estimates the translation that moves the contents of one page onto another.
+     *
+     * @param from the page before the translation
+     * @param to the page after the translation (must be the same size as {@code from})
+     * @return the estimated translation from {@code from} to {@code to}, accurate to within the
+     *         width of one block of pixels averaged into one sample of the grid
+     */
+    public Point estimateShift(ImagePage from, ImagePage to) {
+        Verify.notNull(from, "from");
+        Verify.notNull(to, "to");
+        Verify.argument(from.width == to.width && from.height == to.height,
+                "Cannot correlate pages of different sizes");
+        if (from.width != pageWidth || from.height != pageHeight) {
+            plan(from.width, from.height);
+        }
+
+        if (from != lastPage) {
+            transform(from, lastRe, lastIm);
+            lastPage = from;
+        }
+        double[][] fromRe = lastRe;
+        double[][] fromIm = lastIm;
+        double[][] toRe = spareRe;
+        double[][] toIm = spareIm;
+        transform(to, toRe, toIm);
+
+        // Overwrite the spectrum of 'from' with the normalized cross-power spectrum.
+        for (int u = 0; u < fromRe.length; u++) {
+            for (int v = 0; v < gridHeight; v++) {
+                double re = toRe[u][v] * fromRe[u][v] + toIm[u][v] * fromIm[u][v];
+                double im = toIm[u][v] * fromRe[u][v] - toRe[u][v] * fromIm[u][v];
+                double magnitude = Math.hypot(re, im);
+                if (magnitude > 1e-12) {
+                    fromRe[u][v] = re / magnitude;
+                    fromIm[u][v] = im / magnitude;
+                } else {
+                    fromRe[u][v] = 0;
+                    fromIm[u][v] = 0;
+                }
+            }
+        }
+        Point peak = findPeakOfInverse(fromRe, fromIm);
+
+        // Keep the spectrum of 'to' for the next comparison.
+        lastRe = toRe;
+        lastIm = toIm;
+        spareRe = fromRe;
+        spareIm = fromIm;
+        lastPage = to;
+
+        int dx = peak.x > gridWidth / 2 ? peak.x - gridWidth : peak.x;
+        int dy = peak.y > gridHeight / 2 ? peak.y - gridHeight : peak.y;
+        return new Point(dx * blockSize, dy * blockSize);
+    }
+
+    private void plan(int width, int height) {
+        pageWidth = width;
+        pageHeight = height;
+        int maxDimension = Math.max(width, height);
+        blockSize = (maxDimension + MAX_GRID_SIZE - 1) / MAX_GRID_SIZE;
+        sampledWidth = (width + blockSize - 1) / blockSize;
+        sampledHeight = (height + blockSize - 1) / blockSize;
+        gridWidth = Math.max(2, nextPowerOfTwo(sampledWidth));
+        gridHeight = nextPowerOfTwo(sampledHeight);
+
+        rowFft = new Fft(gridWidth / 2);
+        columnFft = new Fft(gridHeight);
+        hannX = makeHannWindow(sampledWidth);
+        hannY = makeHannWindow(sampledHeight);
+        row = new double[gridWidth];
+        rowRe = new double[gridWidth / 2 + 1];
+        rowIm = new double[gridWidth / 2 + 1];
+        lastRe = new double[gridWidth / 2 + 1][gridHeight];
+        lastIm = new double[gridWidth / 2 + 1][gridHeight];
+        spareRe = new double[gridWidth / 2 + 1][gridHeight];
+        spareIm = new double[gridWidth / 2 + 1][gridHeight];
+        lastPage = null;
+    }
+
+    private void transform(ImagePage page, double[][] re, double[][] im) {
+        double[][] samples = sample(page);
+        for (int y = 0; y < gridHeight; y++) {
+            for (int x = 0; x < gridWidth; x++) {
+                row[x] = y < sampledHeight && x < sampledWidth ? samples[y][x] : 0;
+            }
+            rowFft.realForward(row, rowRe, rowIm);
+            for (int u = 0; u < rowRe.length; u++) {
+                re[u][y] = rowRe[u];
+                im[u][y] = rowIm[u];
+            }
+        }
+        for (int u = 0; u < re.length; u++) {
+            columnFft.transform(re[u], im[u], false);
+        }
+    }
+
+    /**
+     * Shrinks the given page to the sampled size, then subtracts its mean and applies the window,
+     * so that neither its overall brightness nor the edges of the page dominate its spectrum.
+     */
+    private double[][] sample(ImagePage page) {
+        double[][] samples = new double[sampledHeight][sampledWidth];
+        double total = 0;
+        for (int sy = 0; sy < sampledHeight; sy++) {
+            int maxY = Math.min(page.height, (sy + 1) * blockSize);
+            for (int sx = 0; sx < sampledWidth; sx++) {
+                int maxX = Math.min(page.width, (sx + 1) * blockSize);
+                int sum = 0;
+                for (int x = sx * blockSize; x < maxX; x++) {
+                    for (int y = sy * blockSize; y < maxY; y++) {
+                        sum += page.getPixelIntensity(x, y);
+                    }
+                }
+                int numPixels = (maxX - sx * blockSize) * (maxY - sy * blockSize);
+                samples[sy][sx] = (double) sum / numPixels;
+                total += samples[sy][sx];
+            }
+        }
+        double mean = total / (sampledWidth * sampledHeight);
+        for (int sy = 0; sy < sampledHeight; sy++) {
+            for (int sx = 0; sx < sampledWidth; sx++) {
+                samples[sy][sx] = (samples[sy][sx] - mean) * hannX[sx] * hannY[sy];
+            }
+        }
+        return samples;
+    }
+
+    private Point findPeakOfInverse(double[][] re, double[][] im) {
+        for (int u = 0; u < re.length; u++) {
+            columnFft.transform(re[u], im[u], true);
+        }
+        Point peak = new Point(0, 0);
+        double peakValue = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < gridHeight; y++) {
+            for (int u = 0; u < rowRe.length; u++) {
+                rowRe[u] = re[u][y];
+                rowIm[u] = im[u][y];
+            }
+            rowFft.realInverse(rowRe, rowIm, row);
+            for (int x = 0; x < gridWidth; x++) {
+                if (row[x] > peakValue) {
+                    peakValue = row[x];
+                    peak.setLocation(x, y);
+                }
+            }
+        }
+        return peak;
+    }
+
+    private static double[] makeHannWindow(int length) {
+        double[] window = new double[length];
+        for (int i = 0; i < length; i++) {
+            window[i] = length == 1 ? 1 : 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (length - 1));
+        }
+        return window;
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+}
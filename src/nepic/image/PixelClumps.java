@@ -0,0 +1,255 @@
+package nepic.image;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import nepic.geo.BoundingBox;
+import nepic.util.Parallel;
+import nepic.util.Pixel;
+import nepic.util.Verify;
+
+/**
+ * The clumps of (4-connected) pixels in an {@link ImagePage} whose pixel intensities are all at
+ * least some minimum value, and which are not yet associated with any {@link Roi}.
+ * <p>
+ * The clumps are found by labeling the connected components of the entire page at once. The rows
+ * of the page are split into strips that are labeled in parallel using a union-find forest, after
+ * which the strips are stitched together along their borders; labeling therefore takes time linear
+ * in the number of pixels in the page.
+ *
+ * @author AJ Parmidge
+ */
+public class PixelClumps {
+    private static final int BACKGROUND = -1;
+    private static final int MIN_ROWS_PER_STRIP = 64;
+
+    private final int width;
+    /**
+     * The clump number of every pixel in the page, indexed by {@code y * width + x}; pixels not
+     * in any clump have the value {@link #BACKGROUND}.
+     */
+    private final int[] clumpNums;
+    private final int numClumps;
+    private final int[] sizes;
+    private final int[] minXs, maxXs, minYs, maxYs;
+    private final int[] maxXPixelYs;
+    private final int[] peakXs, peakYs, peakPis;
+
+    private PixelClumps(ImagePage img, int[] clumpNums, int numClumps) {
+        this.width = img.width;
+        this.clumpNums = clumpNums;
+        this.numClumps = numClumps;
+        sizes = new int[numClumps];
+        minXs = new int[numClumps];
+        maxXs = new int[numClumps];
+        minYs = new int[numClumps];
+        maxYs = new int[numClumps];
+        maxXPixelYs = new int[numClumps];
+        peakXs = new int[numClumps];
+        peakYs = new int[numClumps];
+        peakPis = new int[numClumps];
+        Arrays.fill(minXs, Integer.MAX_VALUE);
+        Arrays.fill(maxXs, -1);
+        Arrays.fill(peakPis, -1);
+        for (int y = 0; y < img.height; y++) {
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                int clumpNum = clumpNums[rowStart + x];
+                if (clumpNum != BACKGROUND) {
+                    sizes[clumpNum]++;
+                    if (sizes[clumpNum] == 1) {
+                        minYs[clumpNum] = y;
+                    }
+                    maxYs[clumpNum] = y;
+                    if (x < minXs[clumpNum]) {
+                        minXs[clumpNum] = x;
+                    }
+                    if (x > maxXs[clumpNum]) {
+                        maxXs[clumpNum] = x;
+                        maxXPixelYs[clumpNum] = y;
+                    }
+                    int pi = img.getPixelIntensity(x, y);
+                    if (pi > peakPis[clumpNum]) {
+                        peakPis[clumpNum] = pi;
+                        peakXs[clumpNum] = x;
+                        peakYs[clumpNum] = y;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds all of the clumps of pixels in the given image whose pixel intensities are at least the
+     * given minimum pixel intensity, and which are not associated with any {@link Roi}.
+     *
+     * @param img the image in which to find the clumps
+     * @param minPi the minimum pixel intensity of the pixels in the clumps
+     * @return the clumps found
+     */
+    public static PixelClumps find(ImagePage img, int minPi) {
+        Verify.notNull(img, "Image in which to find pixel clumps cannot be null");
+        return find(img, minPi, Parallel.getNumStrips(img.height, MIN_ROWS_PER_STRIP));
+    }
+
+    /**
+     * Finds the clumps of pixels in the same way as {@link #find(ImagePage, int)}, but labels the
+     * image in the given number of strips (so that the stitching of the strips can be tested
+     * regardless of the number of processors available).
+     *
+     * @param img the image in which to find the clumps
+     * @param minPi the minimum pixel intensity of the pixels in the clumps
+     * @param numStrips the number of strips into which to split the rows of the image (between 1
+     *        and the height of the image, inclusive)
+     * @return the clumps found
+     */
+    static PixelClumps find(final ImagePage img, final int minPi, int numStrips) {
+        Verify.notNull(img, "Image in which to find pixel clumps cannot be null");
+        final int width = img.width;
+        final int height = img.height;
+        Verify.argument(numStrips >= 1 && numStrips <= Math.max(1, height),
+                "Illegal number of strips " + numStrips + " for image of height " + height);
+        final int[] parents = new int[width * height];
+
+        // Label each strip of rows independently. Each strip only touches the union-find entries
+        // of its own pixels, so the strips can safely be labeled at the same time.
+        List<Callable<Void>> stripLabelers = new ArrayList<Callable<Void>>(numStrips);
+        for (int strip = 0; strip < numStrips; strip++) {
+            final int startY = Parallel.getStripStart(strip, height, numStrips);
+            final int endY = Parallel.getStripStart(strip + 1, height, numStrips);
+            stripLabelers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    labelStrip(img, minPi, parents, startY, endY);
+                    return null;
+                }
+            });
+        }
+        Parallel.invokeAll(stripLabelers);
+
+        // Stitch the strips together along their borders.
+        for (int strip = 1; strip < numStrips; strip++) {
+            int rowStart = Parallel.getStripStart(strip, height, numStrips) * width;
+            for (int x = 0; x < width; x++) {
+                int pos = rowStart + x;
+                if (parents[pos] != BACKGROUND && parents[pos - width] != BACKGROUND) {
+                    union(parents, pos, pos - width);
+                }
+            }
+        }
+
+        // Flatten the forest into consecutive clump numbers. Every parent precedes its children,
+        // so when a pixel is reached its parent has already been replaced by its clump number.
+        int numClumps = 0;
+        for (int pos = 0; pos < parents.length; pos++) {
+            int parent = parents[pos];
+            if (parent == pos) {
+                parents[pos] = numClumps++;
+            } else if (parent != BACKGROUND) {
+                parents[pos] = parents[parent];
+            }
+        }
+        return new PixelClumps(img, parents, numClumps);
+    }
+
+    private static void labelStrip(ImagePage img, int minPi, int[] parents, int startY, int endY) {
+        int width = img.width;
+        for (int y = startY; y < endY; y++) {
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                int pos = rowStart + x;
+                if (img.getPixelIntensity(x, y) >= minPi
+                        && img.getId(x, y) == ImagePage.NON_ROI_ID) {
+                    parents[pos] = pos;
+                    if (x > 0 && parents[pos - 1] != BACKGROUND) {
+                        union(parents, pos, pos - 1);
+                    }
+                    if (y > startY && parents[pos - width] != BACKGROUND) {
+                        union(parents, pos, pos - width);
+                    }
+                } else {
+                    parents[pos] = BACKGROUND;
+                }
+            }
+        }
+    }
+
+    private static int findRoot(int[] parents, int pos) {
+        while (parents[pos] != pos) {
+            parents[pos] = parents[parents[pos]]; // Path halving.
+            pos = parents[pos];
+        }
+        return pos;
+    }
+
+    private static void union(int[] parents, int pos1, int pos2) {
+        int root1 = findRoot(parents, pos1);
+        int root2 = findRoot(parents, pos2);
+        // Always make the earlier pixel the root, so that parents always precede their children.
+        if (root1 < root2) {
+            parents[root2] = root1;
+        } else if (root2 < root1) {
+            parents[root1] = root2;
+        }
+    }
+
+    /**
+     * Returns the number of clumps found.
+     */
+    public int getNumClumps() {
+        return numClumps;
+    }
+
+    /**
+     * Determines the clump containing the given pixel.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @return the number of the clump containing the given pixel (in the range
+     *         {@code [0, getNumClumps())}), or {@code -1} if the pixel is not in any clump
+     */
+    public int getClumpNumber(int x, int y) {
+        return clumpNums[y * width + x];
+    }
+
+    /**
+     * Returns the number of pixels in the given clump.
+     */
+    public int getSize(int clumpNum) {
+        verifyClumpNum(clumpNum);
+        return sizes[clumpNum];
+    }
+
+    /**
+     * Returns the smallest {@link BoundingBox} containing all the pixels in the given clump.
+     */
+    public BoundingBox getBoundingBox(int clumpNum) {
+        verifyClumpNum(clumpNum);
+        return new BoundingBox(minXs[clumpNum], maxXs[clumpNum], minYs[clumpNum], maxYs[clumpNum]);
+    }
+
+    /**
+     * Returns the most intense pixel in the given clump (the topmost, then leftmost, such pixel if
+     * there is a tie).
+     */
+    public Pixel getMostIntensePixel(int clumpNum) {
+        verifyClumpNum(clumpNum);
+        return new Pixel(peakXs[clumpNum], peakYs[clumpNum], peakPis[clumpNum]);
+    }
+
+    /**
+     * Returns a pixel in the given clump with the maximum x-coordinate of all the pixels in the
+     * clump, as needed to start tracing the outer edges of the clump.
+     */
+    public Point getMaxXPixel(int clumpNum) {
+        verifyClumpNum(clumpNum);
+        return new Point(maxXs[clumpNum], maxXPixelYs[clumpNum]);
+    }
+
+    private void verifyClumpNum(int clumpNum) {
+        Verify.argument(clumpNum >= 0 && clumpNum < numClumps, "Invalid clump number " + clumpNum);
+    }
+}
@@ -3,6 +3,7 @@ package nepic.image;
 import java.awt.Point;
 import java.util.List;
 
+import nepic.geo.BoundingBox;
 import nepic.image.ImagePage;
 import nepic.util.CsvFormattable;
 import nepic.util.Validatable;
@@ -35,6 +36,7 @@ public abstract class Roi implements CsvFormattable, Validatable {
      */
     public void release() {
         if (img != null) {
+            img.getRoiIndex().remove(this);
             img.releaseId(id);
             id = 0; // Invalid value.
             img = null;
@@ -53,6 +55,13 @@ public abstract class Roi implements CsvFormattable, Validatable {
 
     public abstract List<Point> getInnards();
 
+    /**
+     * Gets the smallest {@link BoundingBox} containing all of the pixels in this ROI.
+     *
+     * @return the bounding box of this ROI, or {@code null} if this ROI does not yet have an area
+     */
+    public abstract BoundingBox getBoundingBox();
+
     public void revalidate(ImagePage img) {
         // Release this ROI on its old ImagePage, if applicable.
         release();
@@ -4,6 +4,8 @@ import java.awt.Point;
 import java.util.LinkedList;
 import java.util.List;
 
+import nepic.geo.BoundingBox;
+
 /**
  *
  * @author AJ Parmidge
@@ -42,6 +44,32 @@ public abstract class RoiFinder<RoiImpl extends Roi> {
      */
     public abstract boolean restoreFeature(RoiImpl validRoi);
 
+    /**
+     * Records the current bounds of the given ROI in the spatial index of the image, so that the
+     * ROI can be found by location. Should be called whenever a feature is created, edited, or
+     * restored.
+     *
+     * @param roi the ROI to index
+     */
+    protected void indexFeature(RoiImpl roi) {
+        BoundingBox bounds = roi.getBoundingBox();
+        if (bounds == null) {
+            img.getRoiIndex().remove(roi);
+        } else {
+            img.getRoiIndex().put(roi, bounds);
+        }
+    }
+
+    /**
+     * Removes the given ROI from the spatial index of the image. Should be called whenever a
+     * feature is removed from the image.
+     *
+     * @param roi the ROI to remove from the index
+     */
+    protected void unindexFeature(RoiImpl roi) {
+        img.getRoiIndex().remove(roi);
+    }
+
     protected List<Point> getAllPixelsInRoi(int roiNum) {
         List<Point> roiPixs = new LinkedList<Point>();
         for (int x = 0; x < img.width; x++) {
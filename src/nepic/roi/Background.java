@@ -3,6 +3,7 @@ package nepic.roi;
 import java.awt.Point;
 import java.util.List;
 
+import nepic.geo.BoundingBox;
 import nepic.geo.Polygon;
 import nepic.image.ImagePage;
 import nepic.image.Roi;
@@ -38,6 +39,11 @@ public class Background extends Roi {
         return backgroundArea.asBlob().getInnards();
     }
 
+    @Override
+    public BoundingBox getBoundingBox() {
+        return backgroundArea == null ? null : backgroundArea.getBoundingBox();
+    }
+
     public Histogram getPiHist() {
         return piHist;
     }
@@ -83,8 +89,8 @@ public class Background extends Roi {
     // thresh used for edges; any edge magnitude less than or equal to this is considered to be
     // 'flat'
     public int getEdgeThresh() {
-        int threshElPos = edgeHist.getNumValues() * 99 / 100;// == 99th percentile element
-        int elNum = 0;
+        long threshElPos = edgeHist.getNumValues() * 99 / 100;// == 99th percentile element
+        long elNum = 0;
         int eThresh = edgeHist.getMin();
         while (elNum < threshElPos) {
             elNum += edgeHist.getNumValuesAt(eThresh);
@@ -1,11 +1,14 @@
 package nepic.roi;
 
 import java.awt.Point;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 
 import nepic.Nepic;
+import nepic.geo.Blob;
 import nepic.geo.Polygon;
 import nepic.image.ConstraintMap;
 import nepic.image.RoiFinder;
@@ -33,6 +36,30 @@ public class BackgroundFinder extends RoiFinder<Background> {
                              // rotated)
     double origTheta = 0; // original theta
 
+    /**
+     * The maximum number of rotated background areas to keep in {@link #rotatedBkAreas}.
+     */
+    private static final int MAX_ROTATED_BK_AREAS = 64;
+    /**
+     * The original background area rotated to each of the angles at which it has recently been
+     * tracked, by angle number (the least recently used are discarded first). Only valid for the
+     * current {@link #origBkArea} and {@link #origOrigin}.
+     */
+    @SuppressWarnings("serial")
+    private final Map<Integer, RotatedBkArea> rotatedBkAreas =
+            new LinkedHashMap<Integer, RotatedBkArea>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, RotatedBkArea> eldest) {
+                    return size() > MAX_ROTATED_BK_AREAS;
+                }
+            };
+    /**
+     * The number of evenly-spaced angles (in a full turn) to which the rotation of the background
+     * area is rounded when tracking, or 0 if not yet determined for the current
+     * {@link #origBkArea} and {@link #origOrigin}.
+     */
+    private int numBkAngles = 0;
+
     public boolean initialized() {
         return origBkArea != null && origOrigin != null;
     }
@@ -61,6 +88,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
                 initializeTheta(toReturn, currTheta);
             }
 
+            indexFeature(toReturn);
             return toReturn;
 
         } else {
@@ -97,25 +125,22 @@ public class BackgroundFinder extends RoiFinder<Background> {
                 // Make transposed background
                 diffTheta = currTheta - origTheta;
                 // System.out.println("phi (diffTheta) = " + Math.toDegrees(diffTheta));
-                bkArea = origBkArea.rotate(diffTheta, (origin == null ? origOrigin : origin));
                 toReturn.setTheta(currTheta);
-
-                // System.out.println("END ROTATE!\n\n");
             } else {
-                bkArea = origBkArea.deepCopy();
                 toReturn.setTheta(origTheta);
             }
+            double phi = toReturn.getTheta() - origTheta;
 
             // Origin constraint
-            if (origin != null) {
-                bkArea.translate(origin.x - origOrigin.x, origin.y - origOrigin.y); // new - old
-                toReturn.setOrigin(new Point(origin.x, origin.y));
-            } else {
-                toReturn.setOrigin(new Point(origOrigin.x, origOrigin.y));
+            if (origin == null) {
+                origin = origOrigin;
             }
+            toReturn.setOrigin(new Point(origin.x, origin.y));
+            bkArea = makeTrackedBkArea(phi, origin);
 
             // Background
             if (setRoiBackground(toReturn, bkArea)) {
+                indexFeature(toReturn);
                 return toReturn;
             }
         }
@@ -135,6 +160,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
                 removeFeatureFromImage(roi);
             }
             if (!initializeBkArea(roi, bkArea)) {
+                indexFeature(roi);
                 return false;
             }
         }
@@ -151,6 +177,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
             initializeTheta(roi, currTheta);
         }
 
+        indexFeature(roi);
         return true;
     }
 
@@ -158,6 +185,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
     public void acceptFeature(Background roi) {
         roi.setModified(false);
         removeFeatureFromImage(roi);
+        unindexFeature(roi);
     }
 
     /**
@@ -166,6 +194,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
     @Override
     public void removeFeature(Background roi) {
         removeFeatureFromImage(roi);
+        unindexFeature(roi);
         // roi.clear();
     }
 
@@ -181,6 +210,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
                 img.associatePixelWithRoi(innardPt.x, innardPt.y, validRoi);
                 restoredBkPts.add(innardPt);
             }
+            indexFeature(validRoi);
             return true;
         } catch (ConflictingRoisException e) {
             for (Point invalidRestoredPt : restoredBkPts) {
@@ -191,12 +221,18 @@ public class BackgroundFinder extends RoiFinder<Background> {
     }
 
     // Does NOT clear or invalidate the roi
-    private void removeFeatureFromImage(Background roi) {
-        for (Point innardPix : roi.getArea().asBlob().getInnards()) {
-            if (img.contains(innardPix.x, innardPix.y)) {
-                img.dissociatePixelWithRoi(innardPix.x, innardPix.y, roi);
+    private void removeFeatureFromImage(final Background roi) {
+        roi.getArea().asBlob().forEachInnardSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                if (y >= 0 && y < img.height) {
+                    // Only dissociate the part of the span within the image.
+                    for (int x = Math.max(firstX, 0); x <= Math.min(lastX, img.width - 1); x++) {
+                        img.dissociatePixelWithRoi(x, y, roi);
+                    }
+                }
             }
-        }
+        });
 
         // Check : TODO remove this code!
         List<Point> unclearedPixs = getAllPixelsInRoi(roi.getId());
@@ -221,49 +257,65 @@ public class BackgroundFinder extends RoiFinder<Background> {
     private boolean setRoiBackground(Background roi, Polygon bkArea) {
         Polygon prevBkArea = roi.getArea();
         roi.setArea(bkArea);
-
-        // Make Histograms for bkArea
-        Histogram.Builder piHistBuilder = new Histogram.Builder(0, 255);
-        Histogram.Builder edgeHistBuilder = new Histogram.Builder(-255, 255);
-
-        // Fill histograms
-        List<Point> bkPts = bkArea.asBlob().getInnards();
-        for (Point bkPt : bkPts) {
-            int x = bkPt.x;
-            int y = bkPt.y;
-            try {
-                int rl = img.getPixelIntensity(x, y);
-                piHistBuilder.addValues(rl);
-
-                // edgeHist: add only 2 differences so don't double-count edges
-                edgeHistBuilder.addValues(rl - img.getPixelIntensity(x + 1, y), rl
-                        - img.getPixelIntensity(x, y + 1));
-
-                img.associatePixelWithRoi(x, y, roi);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                removeFeatureFromImage(roi);
-                roi.setArea(null);
-                Nepic.log(EventType.WARNING, "Background extends beyond image boundaries.  "
-                        + "Please indicate a new background.");
-                return false;
-            } catch (ConflictingRoisException e) { // if overlap with another ROI
-                removeFeatureFromImage(roi); // TODO: THIS SCREWS UP OTHER ROI CONFLICTED WITH!!!!
-                roi.setArea(prevBkArea);
-                if (prevBkArea != null) {
-                    restoreFeature(roi);
+        Blob bkBlob = bkArea.asBlob();
+
+        // Check the borders up front, rather than relying on out-of-bounds reads: every innard
+        // pixel of the background must have a right and lower neighbor within the image.
+        final int[] numInnards = new int[] { 0 };
+        final boolean[] inBounds = new boolean[] { true };
+        final int maxX = img.getMaxX() - 1;
+        final int maxY = img.getMaxY() - 1;
+        bkBlob.forEachInnardSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                numInnards[0] += lastX - firstX + 1;
+                if (y < 0 || y > maxY || firstX < 0 || lastX > maxX) {
+                    inBounds[0] = false;
                 }
-                Nepic.log(EventType.WARNING, "Background conflicts with another ROI.  "
-                        + "Please indicate a new background.");
-                return false;
             }
-        }
-
-        if(bkPts.isEmpty()){
+        });
+        if (numInnards[0] == 0) {
             Nepic.log(EventType.WARNING,
                     "Cannot accept current background, as it contains no pixels.");
             return false;
         }
+        if (!inBounds[0]) {
+            roi.setArea(null);
+            Nepic.log(EventType.WARNING, "Background extends beyond image boundaries.  "
+                    + "Please indicate a new background.");
+            return false;
+        }
+
+        try {
+            img.associateBlobInnardsWithRoi(bkBlob, roi);
+        } catch (ConflictingRoisException e) { // if overlap with another ROI
+            // Nothing was associated with the roi, so there is nothing to undo here.
+            roi.setArea(prevBkArea);
+            if (prevBkArea != null) {
+                restoreFeature(roi);
+            }
+            Nepic.log(EventType.WARNING, "Background conflicts with another ROI.  "
+                    + "Please indicate a new background.");
+            return false;
+        }
 
+        // Fill both histograms in a single pass over the rows of the background
+        final Histogram.Builder piHistBuilder = new Histogram.Builder(0, 255);
+        final Histogram.Builder edgeHistBuilder = new Histogram.Builder(-255, 255);
+        bkBlob.forEachInnardSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                int rl = img.getPixelIntensity(firstX, y);
+                for (int x = firstX; x <= lastX; x++) {
+                    int right = img.getPixelIntensity(x + 1, y);
+                    piHistBuilder.addValue(rl);
+                    // edgeHist: add only 2 differences so don't double-count edges
+                    edgeHistBuilder.addValue(rl - right);
+                    edgeHistBuilder.addValue(rl - img.getPixelIntensity(x, y + 1));
+                    rl = right;
+                }
+            }
+        });
 
         // Set histograms to BK
         roi.setPiHist(piHistBuilder.build());
@@ -274,11 +326,99 @@ public class BackgroundFinder extends RoiFinder<Background> {
     private boolean initializeBkArea(Background roi, Polygon bkArea) {
         if (setRoiBackground(roi, bkArea)) {
             origBkArea = bkArea;
+            clearRotatedBkAreas();
             return true;
         }
         return false;
     }
 
+    private void clearRotatedBkAreas() {
+        rotatedBkAreas.clear();
+        numBkAngles = 0;
+    }
+
+    /**
+     * Makes the background area for a tracked page: the original background area, rotated by the
+     * given angle around the given origin, and then moved by the distance from the original origin
+     * to the given origin.
+     * <p>
+     * The angle is rounded to the nearest of a fixed set of angles, spaced closely enough that no
+     * vertex of the background area moves by more than half a pixel. The background area is only
+     * rotated and rasterized once for each of these angles; for every page after the first at that
+     * angle, the rasterized background area is simply translated. (Rotating around the given origin
+     * rather than the original origin only moves the rotated area by a constant offset, so the
+     * same rotated area serves every origin.)
+     *
+     * @param phi the angle (in radians) through which to rotate the original background area
+     * @param origin the location of the origin of the background area on the tracked page
+     * @return the background area for the tracked page
+     */
+    private Polygon makeTrackedBkArea(double phi, Point origin) {
+        if (numBkAngles == 0) {
+            double maxRadius = 0;
+            for (Point vertex : origBkArea.getVertices()) {
+                maxRadius = Math.max(maxRadius, vertex.distance(origOrigin));
+            }
+            numBkAngles = Math.max(1, (int) Math.ceil(2 * Math.PI * maxRadius));
+        }
+        int angleNum = (int) Math.round(phi / (2 * Math.PI) * numBkAngles) % numBkAngles;
+        if (angleNum < 0) {
+            angleNum += numBkAngles;
+        }
+
+        RotatedBkArea rotated = rotatedBkAreas.get(angleNum);
+        if (rotated == null) {
+            rotated = new RotatedBkArea(origBkArea, origOrigin, 2 * Math.PI * angleNum
+                    / numBkAngles);
+            rotatedBkAreas.put(angleNum, rotated);
+        }
+
+        // Rotating around the given origin p rather than the original origin o moves every vertex
+        // by (I - R)(p - o), where R is the rotation.
+        int dx = origin.x - origOrigin.x;
+        int dy = origin.y - origOrigin.y;
+        int shiftX = (int) Math.round(dx - (dx * rotated.cos - dy * rotated.sin));
+        int shiftY = (int) Math.round(dy - (dx * rotated.sin + dy * rotated.cos));
+        return rotated.area.getTranslatedCopy(origin.x + rotated.offsetX + shiftX,
+                origin.y + rotated.offsetY + shiftY);
+    }
+
+    /**
+     * The original background area rotated around the original origin by some angle, and then
+     * moved so that its minimum x- and y-values are zero (so that its rasterized {@link Blob} can
+     * be translated to any position in the image without changing which pixels it contains).
+     */
+    private static class RotatedBkArea {
+        /**
+         * The rotated background area (whose {@link Blob} has already been made).
+         */
+        final Polygon area;
+        /**
+         * The position of the rotated area's (0, 0) relative to the origin.
+         */
+        final int offsetX, offsetY;
+        /**
+         * The cosine and sine of the angle through which the area was rotated.
+         */
+        final double cos, sin;
+
+        RotatedBkArea(Polygon bkArea, Point origin, double phi) {
+            // Rotate with Polygon.rotate, so the vertices are rounded exactly as they would be if
+            // the background area were rotated directly. Polygon.rotate rounds the vertices left of
+            // and above the origin inward even when not rotating, so the unrotated area is copied
+            // as drawn instead.
+            Polygon rotatedArea = phi == 0 ? bkArea.deepCopy() : bkArea.rotate(phi, origin);
+            int minX = rotatedArea.getMinX();
+            int minY = rotatedArea.getMinY();
+            area = rotatedArea.getTranslatedCopy(-minX, -minY);
+            area.asBlob();
+            offsetX = minX - origin.x;
+            offsetY = minY - origin.y;
+            cos = Math.cos(phi);
+            sin = Math.sin(phi);
+        }
+    }
+
     private void initializeTheta(Background toReturn, Double currTheta) {
         origTheta = currTheta;
         toReturn.setTheta(currTheta);
@@ -286,6 +426,7 @@ public class BackgroundFinder extends RoiFinder<Background> {
 
     private void initializeOrigin(Background toReturn, Point origin) {
         origOrigin = origin;
+        clearRotatedBkAreas();
         toReturn.setOrigin(origin);
     }
 }
@@ -4,11 +4,13 @@ import java.awt.Point;
 import java.util.List;
 
 import nepic.geo.Blob;
+import nepic.geo.BoundingBox;
 import nepic.image.ImagePage;
 import nepic.image.Roi;
 import nepic.io.ComplexLabel;
 import nepic.io.Label;
 import nepic.data.Histogram;
+import nepic.data.MutableHistogram;
 import nepic.util.Pixel;
 
 /**
@@ -22,6 +24,11 @@ public class CellBody extends Roi {
     private Pixel seedPixel;
     private Blob cbArea;
     private Histogram piHist;
+    /**
+     * The pixel intensities of all of the pixels currently associated with this {@link CellBody} in
+     * its image, kept up to date as pixels join and leave the cell body.
+     */
+    private final MutableHistogram pixelPis = new MutableHistogram(0, 255);
     private DataScanner[] cbEdgeFinders = new DataScanner[8];
 
     private int minPi;
@@ -40,6 +47,11 @@ public class CellBody extends Roi {
         return cbArea.getInnards();
     }
 
+    @Override
+    public BoundingBox getBoundingBox() {
+        return cbArea == null ? null : cbArea.getBoundingBox();
+    }
+
     public Pixel getSeedPixel() {
         return seedPixel;
     }
@@ -67,6 +79,14 @@ public class CellBody extends Roi {
         return this;
     }
 
+    /**
+     * Gets the histogram of the pixel intensities of all of the pixels currently associated with
+     * this {@link CellBody} in its image.
+     */
+    MutableHistogram getPixelPis() {
+        return pixelPis;
+    }
+
     public int getMinPi() {
         return minPi;
     }
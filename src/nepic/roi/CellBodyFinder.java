@@ -4,27 +4,35 @@ package nepic.roi;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.google.common.collect.Lists;
 
 import nepic.Nepic;
 import nepic.geo.Blob;
 import nepic.geo.BoundingBox;
+import nepic.geo.ChainCode;
 import nepic.geo.Line;
 import nepic.geo.LineSegment;
 import nepic.geo.Polygon;
 import nepic.geo.RoiEdgeTracer;
 import nepic.image.ConstraintMap;
-import nepic.image.Roi;
+import nepic.image.ImagePage;
+import nepic.image.PixelClumps;
 import nepic.image.RoiFinder;
 import nepic.logging.EventLogger;
 import nepic.logging.EventType;
 import nepic.data.Histogram;
+import nepic.data.MutableHistogram;
 import nepic.util.DoubleLinkRing;
+import nepic.util.IntBinaryConsumer;
 import nepic.util.Pair;
+import nepic.util.Parallel;
 import nepic.util.Pixel;
 import nepic.util.Verify;
 
@@ -38,6 +46,30 @@ import nepic.util.Verify;
 public class CellBodyFinder extends RoiFinder<CellBody> {
     public static final String SEED_POLYGON = "Seed Polygon";
     public static final String DESIRED_SIZE = "Desired Size";
+    public static final String MIN_CONTRAST = "Min Contrast";
+    public static final String MIN_SIZE = "Min Size";
+
+    /**
+     * The default minimum ratio of the pixel intensity of every pixel in a cell body candidate to
+     * the median pixel intensity of the image, when finding all cell body candidates at once.
+     */
+    public static final double DEFAULT_MIN_CONTRAST = 1.5;
+    /**
+     * The default minimum number of pixels in a cell body candidate, when finding all cell body
+     * candidates at once.
+     */
+    public static final int DEFAULT_MIN_SIZE = 5;
+    /**
+     * The default number of radial scanlines used to estimate the pixel intensity threshold of a
+     * cell body.
+     */
+    public static final int DEFAULT_NUM_THRESHOLD_SCANLINES = 8;
+
+    private int numThresholdScanlines = DEFAULT_NUM_THRESHOLD_SCANLINES;
+    /**
+     * The chain code in which the edges of each cell body are traced (reused for every trace).
+     */
+    private final ChainCode edgeChain = new ChainCode();
 
     public enum SizeEdgeCase {
         BIGGER,
@@ -91,11 +123,142 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
             // TODO: in future, simply return null, but for now, have this workaround
             roi.setEdges(Blob.newBlobFromTracedEdges(edges)); // Only includes the seed pixel.
         } catch (ConflictingRoisException e) {
-            return roi;
+            // Keep the part of the CellBody found before the conflict.
         }
+        indexFeature(roi);
         return roi;
     }
 
+    /**
+     * Returns the number of radial scanlines (evenly spaced around the seed pixel) used to estimate
+     * the pixel intensity threshold of a cell body.
+     */
+    public int getNumThresholdScanlines() {
+        return numThresholdScanlines;
+    }
+
+    /**
+     * Sets the number of radial scanlines (evenly spaced around the seed pixel) used to estimate
+     * the pixel intensity threshold of a cell body. Using more scanlines gives a better estimate of
+     * the threshold; since the scanlines are processed concurrently, this costs little extra time.
+     *
+     * @param numThresholdScanlines the number of scanlines to use (at least 2)
+     * @return this {@link CellBodyFinder}, for chaining
+     */
+    public CellBodyFinder setNumThresholdScanlines(int numThresholdScanlines) {
+        Verify.argument(numThresholdScanlines >= 2,
+                "At least 2 scanlines are needed to estimate the pixel intensity threshold");
+        this.numThresholdScanlines = numThresholdScanlines;
+        return this;
+    }
+
+    /**
+     * Finds every {@link CellBody} candidate in the image at once, rather than the single candidate
+     * found by {@link #createFeature(ConstraintMap)}. Each candidate is a clump of connected pixels
+     * (not already in another ROI) that are all at least {@link #MIN_CONTRAST} times as intense as
+     * the median pixel of the image, and that contains at least {@link #MIN_SIZE} pixels. The
+     * entire image is labeled in a single pass, so this takes time linear in the size of the
+     * image, no matter how many candidates are found.
+     * <p>
+     * Since every ROI on a page needs its own ID, at most {@link ImagePage#getNumAvailableIds()}
+     * candidates are created; the candidates with the most intense seed pixels are kept.
+     *
+     * @param constraints the constraints on the candidates to find (only {@link #MIN_CONTRAST} and
+     *        {@link #MIN_SIZE} are used)
+     * @return all of the candidates found, in decreasing order of seed pixel intensity
+     */
+    public List<CellBody> createFeatures(ConstraintMap constraints) {
+        Double minContrast = (Double) constraints.getConstraint(MIN_CONTRAST);
+        if (minContrast == null) {
+            minContrast = DEFAULT_MIN_CONTRAST;
+        }
+        Integer minSize = (Integer) constraints.getConstraint(MIN_SIZE);
+        if (minSize == null) {
+            minSize = DEFAULT_MIN_SIZE;
+        }
+        Verify.argument(minContrast > 0, "Minimum contrast must be positive");
+
+        int imgMedianPi = img.makeHistogram().getMedian();
+        int minPi = Math.max(imgMedianPi + 1, (int) Math.ceil(minContrast * imgMedianPi));
+        final PixelClumps clumps = PixelClumps.find(img, minPi);
+
+        List<Integer> candClumpNums = new ArrayList<Integer>();
+        for (int clumpNum = 0; clumpNum < clumps.getNumClumps(); clumpNum++) {
+            if (clumps.getSize(clumpNum) >= minSize) {
+                candClumpNums.add(clumpNum);
+            }
+        }
+        Collections.sort(candClumpNums, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer clumpNum1, Integer clumpNum2) {
+                return clumps.getMostIntensePixel(clumpNum2).color
+                        - clumps.getMostIntensePixel(clumpNum1).color;
+            }
+        });
+
+        int numAvailableIds = img.getNumAvailableIds();
+        if (candClumpNums.size() > numAvailableIds) {
+            Nepic.log(EventType.WARNING, "Found " + candClumpNums.size()
+                    + " cell body candidates, but only " + numAvailableIds
+                    + " can be shown at once.");
+            candClumpNums = candClumpNums.subList(0, numAvailableIds);
+        }
+        List<CellBody> cbCands = new ArrayList<CellBody>(candClumpNums.size());
+        for (int clumpNum : candClumpNums) {
+            CellBody cbCand = createFeatureFromClump(clumps, clumpNum, minPi);
+            if (cbCand != null) {
+                cbCands.add(cbCand);
+            }
+        }
+        Nepic.log(EventType.VERBOSE, "Found " + cbCands.size() + " cell body candidates.",
+                "MinPi =", minPi);
+        return cbCands;
+    }
+
+    private CellBody createFeatureFromClump(PixelClumps clumps, int clumpNum, int minPi) {
+        CellBody roi = new CellBody(img);
+        BoundingBox clumpBounds = clumps.getBoundingBox(clumpNum);
+        try {
+            for (int y = clumpBounds.getMinY(); y <= clumpBounds.getMaxY(); y++) {
+                for (int x = clumpBounds.getMinX(); x <= clumpBounds.getMaxX(); x++) {
+                    if (clumps.getClumpNumber(x, y) == clumpNum) {
+                        associatePixel(x, y, roi);
+                    }
+                }
+            }
+            Blob cbArea = traceArea(roi, clumps.getMaxXPixel(clumpNum));
+            if (cbArea == null) {
+                discardClumpFeature(roi, clumpBounds, "Edges could not be traced.");
+                return null;
+            }
+            roi.setEdges(cbArea);
+            // The area of the ROI includes any holes in the clump, so the image must as well.
+            associateArea(roi, cbArea);
+        } catch (ConflictingRoisException e) {
+            // Then the clump surrounds another ROI.
+            discardClumpFeature(roi, clumpBounds, e.getMessage());
+            return null;
+        }
+
+        Pixel seedPixel = clumps.getMostIntensePixel(clumpNum);
+        roi.setSeedPixel(seedPixel);
+        roi.setMinPi(minPi);
+        roi.setEdgeFinders(processScanlines(seedPixel));
+        generateNewCellBodyHistogram(roi);
+        indexFeature(roi);
+        return roi;
+    }
+
+    private void discardClumpFeature(CellBody roi, BoundingBox clumpBounds, String reason) {
+        for (int y = clumpBounds.getMinY(); y <= clumpBounds.getMaxY(); y++) {
+            for (int x = clumpBounds.getMinX(); x <= clumpBounds.getMaxX(); x++) {
+                dissociatePixel(x, y, roi);
+            }
+        }
+        roi.release();
+        Nepic.log(EventType.VERBOSE, "Cell body candidate discarded.", reason);
+    }
+
     @Override
     public boolean editFeature(CellBody roi, ConstraintMap constraints) {
         // Only adjustable CellBody Constraint is currently desiredSize
@@ -105,12 +268,14 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
         if (desiredSize != null) {
             adjustToDesiredSize(roi, desiredSize.first, desiredSize.second);
         }
+        indexFeature(roi);
         return true;
     }
 
     @Override
     public void removeFeature(CellBody roi) {
         removeFeatureFromImage(roi);
+        unindexFeature(roi);
         // roi.setPiHist(null);
         // roi.clear();
     }
@@ -119,6 +284,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
     public void acceptFeature(CellBody roi) {
         roi.setModified(false);
         removeFeatureFromImage(roi);
+        unindexFeature(roi);
     }
 
     @Override
@@ -126,17 +292,10 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
         Verify.notNull(validRoi, "ROI to restore cannot be null.");
         Verify.argument(validRoi.isValid(), "ROI to restore must be valid");
         validRoi.revalidate(img); // Give valid ROI an Id handle for this image
-        Blob roiArea = validRoi.getArea();
-        List<Point> restoredPts = new LinkedList<Point>();
+        validRoi.getPixelPis().clear(); // None of its pixels are associated with this image yet.
         try {
-            for (Point edgePt : roiArea.getEdges()) {
-                img.associatePixelWithRoi(edgePt.x, edgePt.y, validRoi);
-                restoredPts.add(edgePt);
-            }
-            for (Point innardPt : roiArea.getInnards()) {
-                img.associatePixelWithRoi(innardPt.x, innardPt.y, validRoi);
-                restoredPts.add(innardPt);
-            }
+            associateArea(validRoi, validRoi.getArea());
+            indexFeature(validRoi);
             return true;
         } catch (ConflictingRoisException e) {
             return false;
@@ -151,7 +310,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
         }
 
         // Set seed pixel
-        img.associatePixelWithRoi(seedPixel.x, seedPixel.y, roi);
+        associatePixel(seedPixel.x, seedPixel.y, roi);
         roi.setSeedPixel(seedPixel);
         roi.setMinPi(seedPixel.color);
 
@@ -231,7 +390,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
                 removeFeatureFromImage(roi);
                 minPi += changePiIncrement;
                 roi.setSeedPixel(prevSeedPixel); // Don't retain seed pixel from latest enlargement.
-                img.associatePixelWithRoi(prevSeedPixel.x, prevSeedPixel.y, roi);
+                associatePixel(prevSeedPixel.x, prevSeedPixel.y, roi);
                 roi.setEdges(Blob.newBlobFromTracedEdges(Lists.newArrayList(prevSeedPixel)));
                 if (prevSize > 1) {
                     extendEdges(roi, minPi);
@@ -267,7 +426,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
             while (size > desiredSize) {
                 // Remove feature so can extend to shrink
                 removeFeatureFromImage(roi);
-                img.associatePixelWithRoi(seedPix.x, seedPix.y, roi);
+                associatePixel(seedPix.x, seedPix.y, roi);
                 roi.setEdges(Blob.newBlobFromTracedEdges(Lists.newArrayList(seedPix)));
 
                 // Extend cell body edges to a higher minPi (net shrink action)
@@ -304,23 +463,75 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
     }
 
     /**
-     * Sets the edges of the ROI to the specified {@link Blob}, and initializes the histograms of
-     * the ROI based upon the pixels contained in the {@link Blob}.
+     * Associates the given pixel with the given {@link CellBody}, keeping the histogram of the
+     * pixels in the {@link CellBody} up to date.
+     */
+    private void associatePixel(int x, int y, CellBody roi) throws ConflictingRoisException {
+        if (img.getId(x, y) != roi.getId()) {
+            img.associatePixelWithRoi(x, y, roi);
+            roi.getPixelPis().addValue(img.getPixelIntensity(x, y));
+        }
+    }
+
+    /**
+     * Associates all of the pixels in the given area with the given {@link CellBody} (or none of
+     * them, if any of the pixels are already associated with another ROI), and recounts the
+     * histogram of the pixels in the {@link CellBody}. All of the pixels already associated with
+     * the {@link CellBody} must be within the given area.
+     */
+    private void associateArea(CellBody roi, Blob area) throws ConflictingRoisException {
+        img.associateBlobWithRoi(area, roi);
+        final MutableHistogram pixelPis = roi.getPixelPis();
+        pixelPis.clear();
+        area.forEachSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    pixelPis.addValue(img.getPixelIntensity(x, y));
+                }
+            }
+        });
+    }
+
+    /**
+     * Dissociates the given pixel from the given {@link CellBody}, keeping the histogram of the
+     * pixels in the {@link CellBody} up to date.
+     */
+    private void dissociatePixel(int x, int y, CellBody roi) {
+        if (img.getId(x, y) == roi.getId()) {
+            img.dissociatePixelWithRoi(x, y, roi);
+            roi.getPixelPis().removeValue(img.getPixelIntensity(x, y));
+        }
+    }
+
+    /**
+     * Sets the histogram of the ROI based upon the pixels contained in the ROI's {@link Blob}.
+     * <p>
+     * The histogram of the pixels associated with the ROI is maintained as pixels are added to and
+     * removed from the ROI, so this normally only needs to take a snapshot of it. Only when the
+     * {@link Blob} also encloses pixels that are not associated with the ROI (i.e. holes in the
+     * ROI) are the spans of the {@link Blob} visited.
      *
-     * @param roi the ROI whose edges need to e set
-     * @param newEdges the new edges of the ROI
+     * @param roi the ROI whose histogram needs to be set
      */
     private void generateNewCellBodyHistogram(CellBody roi) {
-        // Make histogram for cb
-        Histogram.Builder cbPiHistBuilder = new Histogram.Builder(0, 255);
-        for (Point cbPt : roi.getInnards()) {
-            // For all points in the cell body
-            cbPiHistBuilder.addValues(img.getPixelIntensity(cbPt.x, cbPt.y));
-        }
-        for (Point cbPt : roi.getEdges()) {
-            // For all points in the cell body
-            cbPiHistBuilder.addValues(img.getPixelIntensity(cbPt.x, cbPt.y));
+        MutableHistogram pixelPis = roi.getPixelPis();
+        if (pixelPis.getNumValues() == roi.getArea().getSize()) {
+            roi.setPiHist(pixelPis.toHistogram());
+            return;
         }
+
+        // Make histogram for cb
+        final Histogram.Builder cbPiHistBuilder = new Histogram.Builder(0, 255);
+        roi.getArea().forEachSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    // For all points in the cell body
+                    cbPiHistBuilder.addValue(img.getPixelIntensity(x, y));
+                }
+            }
+        });
         roi.setPiHist(cbPiHistBuilder.build());
     }
 
@@ -328,26 +539,27 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
      * Clears the specified ROI from the image. More specifically, clears the ROI number from all
      * pixels in the image previously in the ROI.
      *
-     * @param roiNum the ID number of the ROI to remove from the image
-     * @param roiEdges the blob indicating the location of the ROI in the image
+     * @param roi the ROI to remove from the image
      */
-    private void removeFeatureFromImage(CellBody roi) {
-        for (Point edgePix : roi.getEdges()) {
-            img.dissociatePixelWithRoi(edgePix.x, edgePix.y, roi);
-        }
-        for (Point innardPix : roi.getInnards()) {
-            img.dissociatePixelWithRoi(innardPix.x, innardPix.y, roi);
-        }
+    private void removeFeatureFromImage(final CellBody roi) {
+        roi.getArea().forEachSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    dissociatePixel(x, y, roi);
+                }
+            }
+        });
 
-        // Check : TODO remove this code!
-        List<Point> unclearedPixs = getAllPixelsInRoi(roi.getId());
-        int numUnclearedPixs = unclearedPixs.size();
+        // Every pixel associated with the ROI is counted in its histogram, so the image only needs
+        // to be searched for the uncleared pixels if there are any.
+        int numUnclearedPixs = roi.getPixelPis().getNumValues();
         if (numUnclearedPixs > 0) {
             System.out.println(roi.getArea().toString());
+            throw new IllegalArgumentException("Not all pixels in ROI (ID = " + roi.getId()
+                    + ") removed! " + numUnclearedPixs + " uncleared pixels remain:\n\t"
+                    + getAllPixelsInRoi(roi.getId()));
         }
-        Verify.argument(numUnclearedPixs == 0, "Not all pixels in ROI (ID = " + roi.getId()
-                + ") removed! " + numUnclearedPixs + " uncleared pixels remain:\n\t"
-                + unclearedPixs);
     }
 
     /**
@@ -387,55 +599,73 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
     }// findMostIntensePixClump
 
     private int smoothAndDeterminePiThreshold(Point seedPixel) throws NoSuchFieldException {
-        BoundingBox upperLeftQuadrant = new BoundingBox(0 /* minX */,
-                seedPixel.x /* maxX */, 0 /* minY */, seedPixel.y /* maxY */);
-        BoundingBox upperRightQuadrant = new BoundingBox(
-                seedPixel.x /* minX */, img.width - 1 /* maxX */, 0 /* minY */,
-                seedPixel.y /* maxY */);
-        BoundingBox lowerLeftQuadrant = new BoundingBox(0 /* minX */,
-                seedPixel.x /* maxX */, seedPixel.y /* minY */, img.height - 1 /* maxY */);
-        BoundingBox lowerRightQuadrant = new BoundingBox(
-                seedPixel.x /* minX */, img.width - 1 /* maxX */,
-                seedPixel.y /* minY */, img.height - 1 /* maxY */);
-
-        Line verticalLine = new Line(seedPixel, -Math.PI / 2);
-        Line fortyFiveDegreeLine = new Line(seedPixel, Math.PI / 4);
-        Line horizontalLine = new Line(seedPixel, 0);
-        Line negFortyFiveDegreeLine = new Line(seedPixel, -Math.PI / 4);
-
-        return getPiThreshForScanlines(
-                seedPixel,
-                horizontalLine.boundTo(upperRightQuadrant), // 0 Degrees.
-                fortyFiveDegreeLine.boundTo(lowerRightQuadrant), // 45 Degrees.
-                verticalLine.boundTo(lowerRightQuadrant), // 90 Degrees.
-                negFortyFiveDegreeLine.boundTo(lowerLeftQuadrant), // 135 Degrees.
-                horizontalLine.boundTo(lowerLeftQuadrant), // 180 Degrees.
-                fortyFiveDegreeLine.boundTo(upperLeftQuadrant), // -135 Degrees.
-                verticalLine.boundTo(upperLeftQuadrant), // -90 Degrees.
-                negFortyFiveDegreeLine.boundTo(upperRightQuadrant)); // -45 Degrees.
+        LineSegment[] scanlines = new LineSegment[numThresholdScanlines];
+        for (int i = 0; i < numThresholdScanlines; i++) {
+            double theta = 2 * Math.PI * i / numThresholdScanlines;
+            scanlines[i] = new Line(seedPixel, theta).boundTo(getQuadrantFacing(seedPixel, theta));
+        }
+        return getPiThreshForScanlines(seedPixel, scanlines);
+    }
+
+    /**
+     * Returns the quadrant of the image (with its corner at the given seed pixel) into which a ray
+     * from the seed pixel at the given angle points.
+     *
+     * @param seedPixel the seed pixel at the corner of the quadrant
+     * @param theta the angle of the ray from the positive x axis (radians); remember that positive
+     *        on the y-axis is going DOWN the image
+     * @return the quadrant that the ray points into
+     */
+    private BoundingBox getQuadrantFacing(Point seedPixel, double theta) {
+        boolean facesRight = Math.cos(theta) >= 0;
+        boolean facesDown = Math.sin(theta) >= 0;
+        return new BoundingBox(
+                facesRight ? seedPixel.x : 0 /* minX */,
+                facesRight ? img.width - 1 : seedPixel.x /* maxX */,
+                facesDown ? seedPixel.y : 0 /* minY */,
+                facesDown ? img.height - 1 : seedPixel.y /* maxY */);
     }
 
     private DataScanner[] processScanlines(Point seedPixel){
-        DataScanner[] scanners = new DataScanner[4];
-        scanners[0] = new DataScanner(
-                getImgPixsForScanline(new Line(seedPixel, 0).boundTo(img))); // Horizontal.
-        scanners[1] = new DataScanner(
-                getImgPixsForScanline(new Line(seedPixel, Math.PI / 4).boundTo(img))); // 45 Deg.
-        scanners[2] = new DataScanner(
-                getImgPixsForScanline(new Line(seedPixel, -Math.PI / 2).boundTo(img))); // Vertical.
-        scanners[3] = new DataScanner(
-                getImgPixsForScanline(new Line(seedPixel, -Math.PI / 4).boundTo(img))); // -45 Deg.
-        return scanners;
+        return scanAll(
+                new Line(seedPixel, 0).boundTo(img), // Horizontal.
+                new Line(seedPixel, Math.PI / 4).boundTo(img), // 45 Deg.
+                new Line(seedPixel, -Math.PI / 2).boundTo(img), // Vertical.
+                new Line(seedPixel, -Math.PI / 4).boundTo(img)); // -45 Deg.
+    }
+
+    /**
+     * Scans the pixel intensities along all of the given scanlines at the same time.
+     *
+     * @param scanlines the scanlines to scan (any of which may be {@code null})
+     * @return the scanner of each of the given scanlines, in the same order as the scanlines (or
+     *         {@code null} where the scanline was {@code null})
+     */
+    private DataScanner[] scanAll(LineSegment... scanlines) {
+        List<Callable<DataScanner>> scanTasks = new ArrayList<Callable<DataScanner>>(
+                scanlines.length);
+        for (final LineSegment scanline : scanlines) {
+            scanTasks.add(new Callable<DataScanner>() {
+                @Override
+                public DataScanner call() {
+                    return scanline == null
+                            ? null
+                            : new DataScanner(getImgPixsForScanline(scanline));
+                }
+            });
+        }
+        return Parallel.invokeAll(scanTasks).toArray(new DataScanner[scanlines.length]);
     }
 
     private int getPiThreshForScanlines(Point seedPix, LineSegment... scanlines)
             throws NoSuchFieldException {
-        List<Integer> threshPis = new ArrayList<Integer>(8);
-        for (int i = 0; i < scanlines.length; i++) {
-            DataScanner scanner = new DataScanner(getImgPixsForScanline(scanlines[i]));
-            int threshPi = getProcessedThreshPiForData(scanner);
-            if (threshPi >= 0 && threshPi <= 255) { // If is valid.
-                threshPis.add(threshPi);
+        List<Integer> threshPis = new ArrayList<Integer>(scanlines.length);
+        for (DataScanner scanner : scanAll(scanlines)) {
+            if (scanner != null) {
+                int threshPi = getProcessedThreshPiForData(scanner);
+                if (threshPi >= 0 && threshPi <= 255) { // If is valid.
+                    threshPis.add(threshPi);
+                }
             }
         }
 
@@ -456,17 +686,21 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
         //return threshPis.get((int) Math.round(0.75 * (threshPis.size() - 1)));
     }
 
-    private List<Integer> getImgPixsForScanline(LineSegment scanline) {
-        List<Point> scanlinePoints = scanline.draw();
-        List<Integer> pis = new ArrayList<Integer>(scanlinePoints.size());
-        for (Point pt : scanlinePoints) {
-            pis.add(img.getPixelIntensity(pt.x, pt.y));
-        }
+    private int[] getImgPixsForScanline(LineSegment scanline) {
+        final int[] pis = new int[scanline.getNumPixels()];
+        scanline.forEachPixel(new IntBinaryConsumer() {
+            int i = 0;
+
+            @Override
+            public void accept(int x, int y) {
+                pis[i++] = img.getPixelIntensity(x, y);
+            }
+        });
         return pis;
     }
 
     private int getProcessedThreshPiForData(DataScanner scanner) {
-        List<Integer> processedData = scanner.getProcessedData();
+        int[] processedData = scanner.getProcessedData();
 
         // The threshPI is the first pixel intensity with 4 consecutive buckets.
         int currPI = -1; // invalid PI
@@ -497,6 +731,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
             candEdges.add(edgePt);
         }
         List<Point> extendedBy = new LinkedList<Point>();
+        Pixel seedPixel = roi.getSeedPixel();
         try {
             Point maxXPix = null;
             Iterator<Point> edgePixItr = candEdges.iterator();
@@ -559,15 +794,23 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
                         "Unable to extend edges of candidate; too many errors detected.");
             }
             if (!extendedBy.isEmpty()) {
-                roi.setEdges(Blob.newBlobFromTracedEdges((RoiEdgeTracer.traceOuterEdges(img, roiId,
-                        maxXPix))));
+                Blob extendedArea = traceArea(roi, maxXPix);
+                if (extendedArea == null) {
+                    // Keep the CellBody as it was before it was extended.
+                    for (Point pt : extendedBy) {
+                        dissociatePixel(pt.x, pt.y, roi);
+                    }
+                    roi.setSeedPixel(seedPixel);
+                    return;
+                }
+                roi.setEdges(extendedArea);
                 roi.setModified(true); // CellBody is ONLY modified if edges were extended.
             }
             roi.setMinPi(minPi);
         } catch (ConflictingRoisException e) {
             // If enlarge into another ROI
             for (Point pt : extendedBy) {
-                img.dissociatePixelWithRoi(pt.x, pt.y, roi);
+                dissociatePixel(pt.x, pt.y, roi);
             }
             Nepic.log(EventType.VERBOSE, "Unable to extend CellBody edges to " + minPi, ":",
                     e.getMessage());
@@ -576,6 +819,35 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
         }
     }// extendEdges
 
+    /**
+     * Traces the outer edges of the given {@link CellBody} in the image, and makes the
+     * {@link Blob} they enclose.
+     *
+     * @param roi the cell body to trace
+     * @param maxXPix a pixel of the cell body with the greatest x-value of any pixel in it; if this
+     *        is not a valid place to start tracing, the image is searched for one
+     * @return the area of the cell body, or {@code null} if its edges could not be traced
+     */
+    private Blob traceArea(CellBody roi, Point maxXPix) {
+        int roiId = roi.getId();
+        if (maxXPix == null || !RoiEdgeTracer.isValidStart(img, roiId, maxXPix.x, maxXPix.y)) {
+            maxXPix = RoiEdgeTracer.findStart(img, roiId);
+            if (maxXPix == null) {
+                Nepic.log(EventType.ERROR, "Unable to trace CellBody edges.",
+                        "No pixel at which to start tracing ROI", roiId);
+                return null;
+            }
+        }
+        ChainCode edges = RoiEdgeTracer.traceChainCode(img, roiId, maxXPix.x, maxXPix.y,
+                edgeChain);
+        if (edges == null) {
+            Nepic.log(EventType.ERROR, "Unable to trace CellBody edges.", "Tracing ROI", roiId,
+                    "from", maxXPix, "failed");
+            return null;
+        }
+        return Blob.newBlobFromChainCode(edges);
+    }
+
     private boolean shouldAddPixel(Point toAdd, int minPI) {
         // Only add if at least four of the surrounding pixels are ALSO over the minPI.
         if (img.getPixelIntensity(toAdd.x, toAdd.y) >= minPI) {
@@ -608,7 +880,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
         return false;
     }
 
-    private int tryToAdd(Pixel toAdd, DoubleLinkRing<Point> candEdges, Roi roi)
+    private int tryToAdd(Pixel toAdd, DoubleLinkRing<Point> candEdges, CellBody roi)
             throws ConflictingRoisException {
         int numErrors = 0;
 
@@ -616,7 +888,7 @@ public class CellBodyFinder extends RoiFinder<CellBody> {
             Nepic.log(EventType.ERROR, EventLogger.LOG_ONLY, "CB Cand already contains", toAdd);
             numErrors += 1;
         } else {
-            img.associatePixelWithRoi(toAdd.x, toAdd.y, roi);
+            associatePixel(toAdd.x, toAdd.y, roi);
         }
 
         if (candEdges.contains(toAdd)) {
@@ -4,11 +4,8 @@ import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
 
 import javax.swing.JOptionPane;
 
@@ -21,53 +18,71 @@ import nepic.util.Range;
 import nepic.util.Verify;
 
 public class DataScanner {
-    private final GraphData data = new GraphData();
-    List<Integer> rawData;
+    int[] rawData;
     BucketizedDataSet bucketSet;
+    /**
+     * The graphs of each stage of processing the raw data. These graphs are only needed for
+     * diagnostics, so are not made until they are first requested.
+     */
+    private GraphData data = null;
+    /**
+     * Reused for every single-mode region of the bucketized data, so that processing the data does
+     * not need to allocate a new histogram for each region.
+     */
+    private final HistogramPositionMap regionHistogram = new HistogramPositionMap(0, 255);
 
     public DataScanner(Collection<Integer> rawData) {
-        Verify.nonEmpty(rawData, "rawData");
+        this(toIntArray(rawData));
+    }
+
+    /**
+     * Creates a {@link DataScanner} that processes the given raw data.
+     *
+     * @param rawData the raw data to process (which is not copied, and so should not be modified
+     *        after this {@link DataScanner} is created)
+     */
+    public DataScanner(int[] rawData) {
+        Verify.notNull(rawData, "rawData");
+        Verify.argument(rawData.length > 0, "rawData cannot be empty");
         processRawData(rawData);
     }
 
-    private void processRawData(Collection<Integer> rawData) {
+    private static int[] toIntArray(Collection<Integer> rawData) {
+        Verify.nonEmpty(rawData, "rawData");
+        int[] rawDataArray = new int[rawData.size()];
+        int i = 0;
+        for (int datum : rawData) {
+            rawDataArray[i++] = datum;
+        }
+        return rawDataArray;
+    }
+
+    private void processRawData(int[] rawData) {
         // Look through the actual raw data.
-        copyRawData(rawData);
-        graphRawData();
+        this.rawData = rawData;
         // findTrendsInRawData();
 
         // Bucketize the raw data (does the initial smoothing / simplifying of the data)
         bucketSet = new BucketizedDataSet(rawData);
-        graphBucketizedData();
-        // graphCrossingsInformation();
 
         // Process the bucketized data.
         processBucketizedData();
     }
 
-    public List<Integer> getProcessedData() { // TODO: this is a hack!
-        int numBuckets = bucketSet.size();
-        List<Integer> processedData = new ArrayList<Integer>(numBuckets);
-        for (int i = 0; i < numBuckets; i++) {
-            processedData.add(bucketSet.getPI(i));
-        }
-        return processedData;
-    }
-
-    private void copyRawData(Collection<Integer> rawData) {
-        this.rawData = new ArrayList<Integer>(rawData.size());
-        for (int datum : rawData) {
-            this.rawData.add(datum);
-        }
+    /**
+     * Returns the pixel intensities of the processed buckets of the raw data, in order.
+     */
+    public int[] getProcessedData() {
+        return bucketSet.getPIs();
     }
 
     /**
-     * Adds the given raw data to this class's {@link GraphData} object.
+     * Adds the raw data to the given {@link GraphData} object.
      *
-     * @param rawData the raw data to graph
+     * @param data the graph data to which to add the raw data
      */
-    private void graphRawData() {
-        List<Point> rawDataPoints = new ArrayList<Point>(rawData.size());
+    private void graphRawData(GraphData data) {
+        List<Point> rawDataPoints = new ArrayList<Point>(rawData.length);
         int idx = 0;
         for (int datum : rawData) {
             // System.out.print(datum + ", ");
@@ -84,16 +99,13 @@ public class DataScanner {
         int trendLength = 0;
         int trendDelta = 0;
         int startPos = 0;
-        for (int pos = startPos; pos < rawData.size(); pos++) {
-            int currPI = rawData.get(pos);
-            System.out.print("rawData[" + pos + "] = " + currPI);
+        for (int pos = startPos; pos < rawData.length; pos++) {
+            int currPI = rawData[pos];
             if (prevPI > -1) { // If prevPI is valid.
                 int delta = currPI - prevPI;
                 if (delta != 0 && delta * trendDelta >= 0) { // Continuing current trend.
                     trendDelta += delta;
                     trendLength++;
-                    System.out.print((trendDelta > 0 ? " UP  ," : " DOWN,")
-                            + " trendLength = " + trendLength);
                 } else {
                     // First determine if the current trend is significant.
                     if (Math.abs(trendDelta) >= 20) { // Is significant trend.
@@ -102,10 +114,8 @@ public class DataScanner {
                         // + rawData.getPI(pos - trendLength) + "-" + rawData.getPI(pos)
                         // + ")");
                         // processFlatRegion(rawData, startPos, pos - trendLength);
-                        System.out.print(" ADD TREND ");
                         for (int i = pos - trendLength - 1; i < pos; i++) {
-                            trends.add(new Point(i, rawData.get(i)));
-                            System.out.print("(" + i + ", " + rawData.get(i) + ") ");
+                            trends.add(new Point(i, rawData[i]));
                         }
                         startPos = pos;// + 1;
                     }
@@ -117,21 +127,18 @@ public class DataScanner {
                     } else {
                         trendDelta = delta;
                         trendLength = 1;
-                        System.out.print((trendDelta > 0 ? " UP  ," : " DOWN,")
-                                + " trendLength = " + trendLength);
                     }
                 }
             }
             prevPI = currPI;
-            System.out.println();
         }
         if (!trends.isEmpty()) {
-            graphRawDataTrends(trends);
+            graphRawDataTrends(getGraphData(), trends);
         }
     }
 
-    private void graphRawDataTrends(List<Point> rawDataTrends) {
-        List<Point> rawTrendsDataSet = new ArrayList<Point>(rawData.size());
+    private void graphRawDataTrends(GraphData data, List<Point> rawDataTrends) {
+        List<Point> rawTrendsDataSet = new ArrayList<Point>(rawData.length);
         int nonTrendY = data.getMinY();
         int lastGraphedPos = -1;
         for (Point trendPt : rawDataTrends) {
@@ -147,7 +154,7 @@ public class DataScanner {
         data.setDataSet("05 Raw Data Trends", rawTrendsDataSet, 0xffff00 /* Yellow */);
     }
 
-    private void graphCrossingsInformation() {
+    private void graphCrossingsInformation(GraphData data) {
         int nonSigY = data.getMinY();
         LinkedList<Point> crossingsDataSet = new LinkedList<Point>();
         for (int bucketIdx = 0; bucketIdx < bucketSet.size(); bucketIdx++) {
@@ -155,7 +162,6 @@ public class DataScanner {
             int bucketPI = bucketSet.getPI(bucketIdx);
             int numCross = getNumberRawDataCrossings(bucketPI, bucketDomain.min, bucketDomain.max);
             if (numCross <= 2) {
-                System.out.println("numCrossings = " + numCross);
                 crossingsDataSet.add(new Point(bucketDomain.min, nonSigY));
                 crossingsDataSet.add(new Point(bucketDomain.min, bucketPI));
                 crossingsDataSet.add(new Point(bucketDomain.max, bucketPI));
@@ -165,30 +171,16 @@ public class DataScanner {
         data.setDataSet("00 Crossing Information", crossingsDataSet, 0xffff00 /* Yellow */);
     }
 
-    /**
-     * Gets the {@link Iterator} of the given {@link Iterable}, starting at the given position.
-     *
-     * @param iterable the iterabble for which to return an iterator
-     * @param pos the position in the given iterable at which the returned iterator should start
-     * @return the iterator of the given iterable, starting at the specified position
-     * @throws NoSuchElementException if the given position is after the last element in the
-     *         iterable
-     */
-    private <E> Iterator<E> getIteratorStartingAtPos(Iterable<E> iterable, int pos) {
-        Iterator<E> itr = iterable.iterator();
-        for (int i = 0; i < pos - 1; i++) {
-            itr.next();
-        }
-        return itr;
-    }
-
-    private void graphBucketizedData() {
-        int numBuckets = bucketSet.size();
+    private void graphBucketizedData(GraphData data) {
+        // Processing changes the buckets in place, so bucketize the raw data again (bucketizing is
+        // deterministic) rather than keeping a copy of the unprocessed buckets for every scan.
+        BucketizedDataSet unprocessedBucketSet = new BucketizedDataSet(rawData);
+        int numBuckets = unprocessedBucketSet.size();
         ArrayList<Point> bucketDataSet1 = new ArrayList<Point>(numBuckets / 2);
         ArrayList<Point> bucketDataSet2 = new ArrayList<Point>(numBuckets / 2 + numBuckets % 2);
         for(int bucketIdx = 0; bucketIdx < numBuckets; bucketIdx++){
             Range bucketDomain = bucketSet.getDomainForBucket(bucketIdx);
-            int bucketPI = bucketSet.getPI(bucketIdx);
+            int bucketPI = unprocessedBucketSet.getPI(bucketIdx);
             if (bucketIdx % 2 == 0) {
                 bucketDataSet1.add(new Point(bucketDomain.min, bucketPI));
                 bucketDataSet1.add(new Point(bucketDomain.max, bucketPI));
@@ -241,10 +233,9 @@ public class DataScanner {
             prevPI = currPI;
         }
         processFlatRegion(bucketSet, startPos, bucketSet.size() - 1);
-        graphProcessedData();
     }
 
-    private void graphProcessedData() {
+    private void graphProcessedData(GraphData data) {
         // Graph the first bucketSet
         int numBuckets = bucketSet.size();
         // System.out.println("bucketSet length = " + numBuckets);
@@ -287,37 +278,33 @@ public class DataScanner {
      * @return the last position in this single mode region.
      */
     private int flattenSingleModeRegion(BucketizedDataSet bucketSet, int startPos, int maxEndPos) {
-        HistogramPositionMap histogram = new HistogramPositionMap(0, 255);
+        HistogramPositionMap histogram = regionHistogram;
+        histogram.clear();
 
         // Determine the initial mode.
         int pos;
         for (pos = startPos; pos <= Math.min(startPos + 3, maxEndPos); pos++) {
-            Range halfBucketRange = bucketSet.getRangeForHalfBucket(pos);
-            histogram.addRangeAtPosition(halfBucketRange, pos);
+            histogram.addRangeAtPosition(bucketSet.getHalfBucketMin(pos),
+                    bucketSet.getHalfBucketMax(pos), pos);
         }
 
         // Continue until the last time the mode is crossed within range.
         // Only keep going if 1+ of these are/cross the mode. (don't add these to the
         // HistogramPositionMap UNLESS 1+ of them are/cross the mode)
+        // The positions pos through trialPos - 1 are those waiting to be added.
         int maxQueueSize = 4;
-        Queue<Range> piBuffer = new ArrayBlockingQueue<Range>(maxQueueSize);
-        int queueSize = 0;
         for (int trialPos = pos; trialPos <= maxEndPos; trialPos++) {
-            if (queueSize == maxQueueSize) {
+            if (trialPos - pos == maxQueueSize) {
                 break; // Now just need to combine the region into one mode.
             } else {
                 // Determine if current PI matches any of the current modes.
-                Range currPiRange = bucketSet.getRangeForHalfBucket(trialPos);
-                piBuffer.add(currPiRange);
-                queueSize++;
-                if (histogram.currentModeWithinRange(currPiRange)) {
+                if (histogram.currentModeWithinRange(bucketSet.getHalfBucketMin(trialPos),
+                        bucketSet.getHalfBucketMax(trialPos))) {
                     // System.out.print(" value matches current mode. Add ");
-                    for (int i = 0; i < queueSize; i++) {
-                        currPiRange = piBuffer.remove();
-                        histogram.addRangeAtPosition(currPiRange, pos);
-                        pos++;
+                    for (; pos <= trialPos; pos++) {
+                        histogram.addRangeAtPosition(bucketSet.getHalfBucketMin(pos),
+                                bucketSet.getHalfBucketMax(pos), pos);
                     }
-                    queueSize = 0;
                 }
             }
         }
@@ -335,7 +322,7 @@ public class DataScanner {
         int prevDelta = 0;
         int numCrossings = 0;
         for (int pos = startPos; pos <= endPos; pos++) {
-            int currDelta = rawData.get(pos) - pi;
+            int currDelta = rawData[pos] - pi;
             if (currDelta != 0) {
                 if (currDelta * prevDelta < 0) {
                     numCrossings++;
@@ -401,7 +388,17 @@ public class DataScanner {
         // System.out.println("med2 = " + med2);
     }
 
-    public GraphData getGraphData() {
+    /**
+     * Returns the graphs of each stage of processing the raw data given to this
+     * {@link DataScanner}. The graphs are made the first time this method is called.
+     */
+    public synchronized GraphData getGraphData() {
+        if (data == null) {
+            data = new GraphData();
+            graphRawData(data);
+            graphBucketizedData(data);
+            graphProcessedData(data);
+        }
         return data;
     }
 
@@ -575,25 +572,27 @@ public class DataScanner {
         private final int bucketOffset;
         private final int[] bucketSet;
 
-        public BucketizedDataSet(Collection<Integer> rawData) {
-            int numPts = rawData.size();
+        public BucketizedDataSet(int[] rawData) {
+            int numPts = rawData.length;
             bucketOffset = (numPts % HALF_BUCKET_SIZE) / 2; // Center the buckets in the raw data.
             int numSemiGroups = numPts / HALF_BUCKET_SIZE;
             Verify.argument(numSemiGroups > 0, "Raw data not large enough to create 1+ buckets");
             bucketSet = new int[numSemiGroups - 1];
 
-            int[] prevSemiGroup = null;
-            Iterator<Integer> itr = getIteratorStartingAtPos(rawData, bucketOffset);
+            int[] prevSemiGroup = new int[HALF_BUCKET_SIZE];
+            int[] semiGroup = new int[HALF_BUCKET_SIZE];
+            // NOTE: the semigroups have always started one position before the bucket offset.
+            int rawDataPos = Math.max(bucketOffset - 1, 0);
             for (int semiGroupNumber = 0; semiGroupNumber < numSemiGroups; semiGroupNumber++) {
-                int[] semiGroup = new int[HALF_BUCKET_SIZE];
-                for (int i = 0; i < HALF_BUCKET_SIZE; i++) {
-                    semiGroup[i] = itr.next();
-                }
+                System.arraycopy(rawData, rawDataPos, semiGroup, 0, HALF_BUCKET_SIZE);
+                rawDataPos += HALF_BUCKET_SIZE;
                 Arrays.sort(semiGroup);
-                if (prevSemiGroup != null) {
+                if (semiGroupNumber > 0) {
                     bucketSet[semiGroupNumber - 1] = getDblMedian(prevSemiGroup, semiGroup) / 2;
                 }
+                int[] temp = prevSemiGroup; // Reuse the semigroup arrays.
                 prevSemiGroup = semiGroup;
+                semiGroup = temp;
             }
         }
 
@@ -601,26 +600,48 @@ public class DataScanner {
             return bucketSet[bucketIdx];
         }
 
+        public int[] getPIs() {
+            return bucketSet.clone();
+        }
+
         public int setPI(int bucketIdx, int newPI) { // TODO: remove
             return bucketSet[bucketIdx] = newPI;
         }
 
-        // returns smaller end of range, followed by larger end of range
-        public Range getRangeForHalfBucket(int halfBucketIdx) {
+        /**
+         * Returns the smaller end of the range of pixel intensities spanned by the given half
+         * bucket.
+         */
+        public int getHalfBucketMin(int halfBucketIdx) {
+            return Math.min(getHalfBucketMed1(halfBucketIdx), getHalfBucketMed2(halfBucketIdx));
+        }
+
+        /**
+         * Returns the larger end of the range of pixel intensities spanned by the given half
+         * bucket.
+         */
+        public int getHalfBucketMax(int halfBucketIdx) {
+            return Math.max(getHalfBucketMed1(halfBucketIdx), getHalfBucketMed2(halfBucketIdx));
+        }
+
+        private int getHalfBucketMed1(int halfBucketIdx) {
             int numBuckets = bucketSet.length;
             Verify.argument(halfBucketIdx >= 0 || halfBucketIdx < numBuckets,
                     "halfBucketIdx " + halfBucketIdx + " is out of range");
-            int bucketMed1, bucketMed2;
-            if(halfBucketIdx == 0){
-                bucketMed1 = bucketMed2 = bucketSet[0];
-            } else if (halfBucketIdx == numBuckets - 1) {
-                bucketMed1 = bucketMed2 = bucketSet[numBuckets - 1];
-            }else{
-                bucketMed1 = bucketSet[halfBucketIdx];
-                bucketMed2 = bucketSet[halfBucketIdx + 1];
+            if (halfBucketIdx == numBuckets - 1) {
+                return bucketSet[numBuckets - 1];
             }
+            return bucketSet[halfBucketIdx];
+        }
 
-            return new Range(bucketMed1, bucketMed2);
+        private int getHalfBucketMed2(int halfBucketIdx) {
+            int numBuckets = bucketSet.length;
+            if (halfBucketIdx == 0) {
+                return bucketSet[0];
+            } else if (halfBucketIdx == numBuckets - 1) {
+                return bucketSet[numBuckets - 1];
+            }
+            return bucketSet[halfBucketIdx + 1];
         }
 
         public int getCenterPositionForBucket(int bucketIdx) {
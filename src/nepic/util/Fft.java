@@ -0,0 +1,183 @@
+package nepic.util;
+
+/**
+ * A plan for computing fast Fourier transforms (FFTs) of a fixed, power-of-two size, using the
+ * iterative radix-2 Cooley-Tukey algorithm. The twiddle factors and the bit-reversal permutation
+ * are computed once when the plan is created, so that transforming many arrays of the same size
+ * (such as every row of an image) repeats none of that work.
+ * <p>
+ * A plan of size {@code n} transforms complex sequences of length {@code n}, and also real
+ * sequences of length {@code 2n} (by packing the real sequence into a complex sequence of half its
+ * length). None of the transforms are normalized: transforming a sequence forwards and then back
+ * multiplies it by its length. An {@link Fft} holds scratch buffers, and so is not thread-safe.
+ *
+ * @author AJ Parmidge
+ */
+public class Fft {
+    private final int n;
+    /**
+     * The index with which each index is swapped when putting a sequence in bit-reversed order.
+     */
+    private final int[] bitReversed;
+    /**
+     * The cosine and sine of {@code -2 pi k / n}, for each {@code k} in {@code [0, n/2)}.
+     */
+    private final double[] cos;
+    private final double[] sin;
+    /**
+     * The cosine and sine of {@code -2 pi k / 2n}, for each {@code k} in {@code [0, n]}, for
+     * transforms of real sequences of length {@code 2n}.
+     */
+    private final double[] realCos;
+    private final double[] realSin;
+    private final double[] scratchRe;
+    private final double[] scratchIm;
+
+    /**
+     * Creates a plan for transforms of the given size.
+     *
+     * @param n the length of the complex sequences to transform (must be a power of two); real
+     *        sequences of length {@code 2n} can also be transformed
+     */
+    public Fft(int n) {
+        Verify.argument(n > 0 && (n & (n - 1)) == 0, "FFT size must be a power of two, not " + n);
+        this.n = n;
+
+        int numBits = Integer.numberOfTrailingZeros(n);
+        bitReversed = new int[n];
+        for (int i = 0; i < n; i++) {
+            bitReversed[i] = numBits == 0 ? 0 : Integer.reverse(i) >>> (32 - numBits);
+        }
+
+        cos = new double[Math.max(1, n / 2)];
+        sin = new double[cos.length];
+        for (int k = 0; k < n / 2; k++) {
+            double angle = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+
+        realCos = new double[n + 1];
+        realSin = new double[n + 1];
+        for (int k = 0; k <= n; k++) {
+            double angle = -Math.PI * k / n;
+            realCos[k] = Math.cos(angle);
+            realSin[k] = Math.sin(angle);
+        }
+        scratchRe = new double[n];
+        scratchIm = new double[n];
+    }
+
+    /**
+     * Returns the length of the complex sequences transformed by this plan.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Transforms the given complex sequence in place.
+     *
+     * @param re the real parts of the sequence (of length at least {@link #size()})
+     * @param im the imaginary parts of the sequence (of length at least {@link #size()})
+     * @param inverse true for the inverse transform; false for the forward transform
+     */
+    public void transform(double[] re, double[] im, boolean inverse) {
+        Verify.argument(re.length >= n && im.length >= n, "Sequence shorter than FFT size " + n);
+        for (int i = 0; i < n; i++) {
+            int j = bitReversed[i];
+            if (j > i) {
+                double tmp = re[i];
+                re[i] = re[j];
+                re[j] = tmp;
+                tmp = im[i];
+                im[i] = im[j];
+                im[j] = tmp;
+            }
+        }
+
+        double sign = inverse ? -1 : 1;
+        for (int halfSize = 1; halfSize < n; halfSize *= 2) {
+            int twiddleStep = n / (2 * halfSize);
+            for (int start = 0; start < n; start += 2 * halfSize) {
+                for (int k = 0; k < halfSize; k++) {
+                    double wRe = cos[k * twiddleStep];
+                    double wIm = sign * sin[k * twiddleStep];
+                    int even = start + k;
+                    int odd = even + halfSize;
+                    double oddRe = wRe * re[odd] - wIm * im[odd];
+                    double oddIm = wRe * im[odd] + wIm * re[odd];
+                    re[odd] = re[even] - oddRe;
+                    im[odd] = im[even] - oddIm;
+                    re[even] += oddRe;
+                    im[even] += oddIm;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the forward transform of the given real sequence of length {@code 2n}. Since the
+     * transform of a real sequence is conjugate symmetric, only its first {@code n + 1} values are
+     * given.
+     *
+     * @param x the real sequence (of length at least {@code 2n})
+     * @param outRe where to put the real parts of the transform (of length at least {@code n + 1})
+     * @param outIm where to put the imaginary parts of the transform (of length at least
+     *        {@code n + 1})
+     */
+    public void realForward(double[] x, double[] outRe, double[] outIm) {
+        Verify.argument(x.length >= 2 * n, "Sequence shorter than real FFT size " + 2 * n);
+        Verify.argument(outRe.length > n && outIm.length > n, "Output shorter than " + (n + 1));
+        // Transform the even values as the real parts and the odd values as the imaginary parts.
+        for (int k = 0; k < n; k++) {
+            scratchRe[k] = x[2 * k];
+            scratchIm[k] = x[2 * k + 1];
+        }
+        transform(scratchRe, scratchIm, false);
+
+        // Separate the transforms of the even and odd values, and combine them.
+        for (int k = 0; k <= n; k++) {
+            int k1 = k % n;
+            int k2 = (n - k) % n;
+            double evenRe = (scratchRe[k1] + scratchRe[k2]) / 2;
+            double evenIm = (scratchIm[k1] - scratchIm[k2]) / 2;
+            double oddRe = (scratchIm[k1] + scratchIm[k2]) / 2;
+            double oddIm = -(scratchRe[k1] - scratchRe[k2]) / 2;
+            outRe[k] = evenRe + realCos[k] * oddRe - realSin[k] * oddIm;
+            outIm[k] = evenIm + realCos[k] * oddIm + realSin[k] * oddRe;
+        }
+    }
+
+    /**
+     * Computes the inverse transform of the given conjugate-symmetric sequence of length
+     * {@code 2n}, whose first {@code n + 1} values are given, giving a real sequence. This is the
+     * inverse of {@link #realForward(double[], double[], double[])}, except that the result is
+     * multiplied by {@code 2n}.
+     *
+     * @param re the real parts of the first {@code n + 1} values of the transform
+     * @param im the imaginary parts of the first {@code n + 1} values of the transform
+     * @param outX where to put the real sequence (of length at least {@code 2n})
+     */
+    public void realInverse(double[] re, double[] im, double[] outX) {
+        Verify.argument(re.length > n && im.length > n, "Transform shorter than " + (n + 1));
+        Verify.argument(outX.length >= 2 * n, "Output shorter than real FFT size " + 2 * n);
+        // Recover the transforms of the even and odd values, and pack them into one sequence.
+        for (int k = 0; k < n; k++) {
+            double evenRe = (re[k] + re[n - k]) / 2;
+            double evenIm = (im[k] - im[n - k]) / 2;
+            double diffRe = (re[k] - re[n - k]) / 2;
+            double diffIm = (im[k] + im[n - k]) / 2;
+            // Multiply the difference by the conjugate of the twiddle factor.
+            double oddRe = diffRe * realCos[k] + diffIm * realSin[k];
+            double oddIm = diffIm * realCos[k] - diffRe * realSin[k];
+            scratchRe[k] = evenRe - oddIm;
+            scratchIm[k] = evenIm + oddRe;
+        }
+        transform(scratchRe, scratchIm, true);
+        for (int k = 0; k < n; k++) {
+            outX[2 * k] = 2 * scratchRe[k];
+            outX[2 * k + 1] = 2 * scratchIm[k];
+        }
+    }
+}
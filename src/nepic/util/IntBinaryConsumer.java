@@ -0,0 +1,20 @@
+package nepic.util;
+
+/**
+ * An operation that accepts two {@code int} arguments (such as the coordinates of a pixel) and
+ * returns no result. Unlike a consumer of {@link java.awt.Point}s, this requires no object to be
+ * made for each pair of values.
+ *
+ * @author AJ Parmidge
+ */
+public interface IntBinaryConsumer {
+
+    /**
+     * Performs this operation on the given arguments.
+     *
+     * @param x the first argument
+     * @param y the second argument
+     */
+    public void accept(int x, int y);
+
+}
@@ -0,0 +1,20 @@
+package nepic.util;
+
+/**
+ * An operation that accepts an {@code int} argument and a {@code long} argument (such as a value
+ * and the number of times it occurs) and returns no result. Unlike a consumer of boxed values, this
+ * requires no object to be made for each pair of arguments.
+ *
+ * @author AJ Parmidge
+ */
+public interface IntLongConsumer {
+
+    /**
+     * Performs this operation on the given arguments.
+     *
+     * @param x the first argument
+     * @param y the second argument
+     */
+    public void accept(int x, long y);
+
+}
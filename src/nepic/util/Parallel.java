@@ -0,0 +1,106 @@
+package nepic.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class containing utility methods for splitting CPU-bound image analysis work across all
+ * available processors.
+ * <p>
+ * All tasks are run on a single, shared fork-join pool whose worker threads are daemon threads, so
+ * the pool never needs to be shut down explicitly.
+ *
+ * @author AJ Parmidge
+ */
+public class Parallel {
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * This class is uninstantiable.
+     */
+    private Parallel() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the number of tasks that the shared pool can run at the same time.
+     */
+    public static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    /**
+     * Determines the number of strips into which the given number of items (for example, the rows
+     * of an image) should be split so that every processor has work to do, but no strip contains
+     * fewer than the given minimum number of items.
+     *
+     * @param numItems the total number of items to split
+     * @param minItemsPerStrip the minimum number of items that a strip should contain
+     * @return the number of strips to use (always at least 1)
+     */
+    public static int getNumStrips(int numItems, int minItemsPerStrip) {
+        Verify.argument(minItemsPerStrip > 0, "Minimum number of items per strip must be positive");
+        return Math.max(1, Math.min(getParallelism(), numItems / minItemsPerStrip));
+    }
+
+    /**
+     * Determines the first item in the given strip when the given number of items is split into
+     * the given number of (nearly) equal strips. Strip {@code numStrips} begins at
+     * {@code numItems}, so the items in strip {@code i} are those in the range
+     * {@code [getStripStart(i), getStripStart(i + 1))}.
+     *
+     * @param strip the strip number
+     * @param numItems the total number of items to split
+     * @param numStrips the total number of strips
+     * @return the index of the first item in the given strip
+     */
+    public static int getStripStart(int strip, int numItems, int numStrips) {
+        return (int) (((long) strip * numItems) / numStrips);
+    }
+
+    /**
+     * Runs all of the given tasks on the shared pool, and waits for all of them to complete.
+     *
+     * @param tasks the tasks to run
+     * @return the results of the tasks, in the same order as the given tasks
+     * @throws RuntimeException if any of the tasks throws an unchecked exception (which is
+     *         re-thrown as-is), or an {@link IllegalStateException} wrapping any checked exception
+     *         thrown by a task or an interruption of the calling thread
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        Verify.notNull(tasks, "tasks");
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() == 1) { // No need to hand off a single task.
+            try {
+                results.add(tasks.get(0).call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return results;
+        }
+        try {
+            for (Future<T> future : POOL.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel tasks", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+}
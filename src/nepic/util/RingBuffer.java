@@ -0,0 +1,124 @@
+package nepic.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A first-in, first-out collection of at most a fixed number of elements. Once the collection is
+ * full, adding an element evicts the oldest one, so the memory used never grows past the capacity
+ * chosen when the {@link RingBuffer} is created. Elements are kept in a circular array, so adding
+ * an element and getting an element by its position both take constant time.
+ *
+ * @author AJ Parmidge
+ * @param <E> the type of the elements
+ */
+public class RingBuffer<E> implements Iterable<E> {
+    private final Object[] elements;
+    /**
+     * The index in {@link #elements} of the oldest element.
+     */
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Creates an empty {@link RingBuffer} that can hold the given number of elements.
+     *
+     * @param capacity the maximum number of elements to hold (must be positive)
+     */
+    public RingBuffer(int capacity) {
+        Verify.argument(capacity > 0, "Capacity must be positive");
+        elements = new Object[capacity];
+    }
+
+    /**
+     * Adds the given element as the newest element, evicting the oldest element if this
+     * {@link RingBuffer} is full.
+     *
+     * @param element the element to add (cannot be null)
+     * @return the element evicted to make room for the given element, or {@code null} if none was
+     */
+    public E add(E element) {
+        Verify.notNull(element, "element");
+        if (size < elements.length) {
+            elements[(head + size) % elements.length] = element;
+            size++;
+            return null;
+        }
+        E evicted = elementAt(head);
+        elements[head] = element;
+        head = (head + 1) % elements.length;
+        return evicted;
+    }
+
+    /**
+     * Gets the element at the given position, where the oldest element is at position 0.
+     *
+     * @param position the position of the element to get
+     * @return the element at the given position
+     * @throws IndexOutOfBoundsException if there is no element at the given position
+     */
+    public E get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Position " + position + " is out of bounds for size " + size);
+        }
+        return elementAt((head + position) % elements.length);
+    }
+
+    /**
+     * Returns the number of elements held.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of elements that can be held.
+     */
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Removes all of the elements.
+     */
+    public void clear() {
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns an iterator over the elements, from oldest to newest.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(position++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int index) {
+        return (E) elements[index];
+    }
+}
@@ -0,0 +1,210 @@
+package nepic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link RoiTaskExecutor}.
+ *
+ * @author AJ Parmidge
+ */
+public class RoiTaskExecutorTest {
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> progress = Collections.synchronizedList(new ArrayList<String>());
+    private RoiTaskExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new RoiTaskExecutor(new RoiTaskExecutor.ProgressListener() {
+            @Override
+            public void progressChanged(String runningTask, int numWaiting) {
+                progress.add(runningTask + ":" + numWaiting);
+            }
+        });
+    }
+
+    @Test
+    public void computesOnWorkerAndPublishesOnEdtInOrder() throws Exception {
+        submitOnEdt(new TestTask("a", "group1"), new TestTask("b", "group2"));
+        awaitIdle();
+        assertEquals(
+                Lists.newArrayList("compute a", "publish a", "compute b", "publish b"), events);
+        assertTrue(progress.contains("Task a:1")); // "b" waiting while "a" runs.
+        assertEquals("null:0", progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void submit_supersedesWaitingTasksInSameGroup() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        TestTask running = new TestTask("a", "group1", blocker);
+        submitOnEdt(running);
+        assertTrue(running.started.await(5, TimeUnit.SECONDS));
+        submitOnEdt(new TestTask("b", "group2"),
+                new TestTask("c", "group2"),
+                new TestTask("d", "group1"));
+        blocker.countDown();
+        awaitIdle();
+        // "b" was superseded before it started. "a" was superseded while running.
+        assertEquals(Lists.newArrayList(
+                "compute a", "cancelled a", "compute c", "publish c", "compute d", "publish d"),
+                events);
+    }
+
+    @Test
+    public void submit_taskSupersedingNothing_runsAfterTasksInSameGroup() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        TestTask running = new TestTask("a", "group1", blocker);
+        submitOnEdt(running);
+        assertTrue(running.started.await(5, TimeUnit.SECONDS));
+        submitOnEdt(new TestTask("b", "group1"), new TestTask("c", "group1") {
+            @Override
+            protected boolean supersedes(RoiTaskExecutor.Task<?> earlier) {
+                return false;
+            }
+        });
+        blocker.countDown();
+        awaitIdle();
+        // "b" superseded "a", but "c" superseded nothing, so it queued behind "b".
+        assertEquals(Lists.newArrayList(
+                "compute a", "cancelled a", "compute b", "publish b", "compute c", "publish c"),
+                events);
+    }
+
+    @Test
+    public void cancelAll() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        TestTask running = new TestTask("a", "group1", blocker);
+        submitOnEdt(running, new TestTask("b", "group2"));
+        assertTrue(running.started.await(5, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                executor.cancelAll();
+                assertTrue(executor.isBusy()); // Waiting for "a" to finish.
+            }
+        });
+        blocker.countDown();
+        awaitIdle();
+        assertEquals(Lists.newArrayList("compute a", "cancelled a"), events);
+    }
+
+    @Test
+    public void setDescription_updatesProgress() throws Exception {
+        submitOnEdt(new TestTask("a", "group1") {
+            @Override
+            protected String compute() {
+                setDescription("Task a (half done)");
+                return super.compute();
+            }
+        });
+        awaitIdle();
+        assertTrue(progress.contains("Task a (half done):0"));
+    }
+
+    @Test
+    public void compute_throwsError_failsTaskAndRunsNext() throws Exception {
+        submitOnEdt(new TestTask("a", "group1") {
+            @Override
+            protected String compute() {
+                super.compute();
+                throw new StackOverflowError("Recursed too deeply");
+            }
+
+            @Override
+            protected void failed(Throwable e) {
+                assertTrue(SwingUtilities.isEventDispatchThread());
+                events.add("failed a: " + e.getMessage());
+            }
+        }, new TestTask("b", "group2"));
+        awaitIdle();
+        assertEquals(Lists.newArrayList(
+                "compute a", "failed a: Recursed too deeply", "compute b", "publish b"), events);
+        assertEquals("null:0", progress.get(progress.size() - 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void submit_offEdt_throws() {
+        executor.submit(new TestTask("a", "group1"));
+    }
+
+    private void submitOnEdt(final TestTask... tasks) throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                for (TestTask task : tasks) {
+                    executor.submit(task);
+                }
+            }
+        });
+    }
+
+    private void awaitIdle() throws Exception {
+        final boolean[] busy = { true };
+        for (int i = 0; i < 500 && busy[0]; i++) {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    busy[0] = executor.isBusy();
+                }
+            });
+        }
+        assertFalse("Tasks did not finish", busy[0]);
+    }
+
+    private class TestTask extends RoiTaskExecutor.Task<String> {
+        private final String name;
+        private final CountDownLatch blocker;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private TestTask(String name, String group) {
+            this(name, group, new CountDownLatch(0));
+        }
+
+        private TestTask(String name, String group, CountDownLatch blocker) {
+            super("Task " + name, group);
+            this.name = name;
+            this.blocker = blocker;
+        }
+
+        @Override
+        protected String compute() {
+            assertFalse(SwingUtilities.isEventDispatchThread());
+            events.add("compute " + name);
+            started.countDown();
+            try {
+                assertTrue(blocker.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return name;
+        }
+
+        @Override
+        protected void publish(String result) {
+            assertTrue(SwingUtilities.isEventDispatchThread());
+            assertEquals(name, result);
+            events.add("publish " + name);
+        }
+
+        @Override
+        protected void cancelled(String result) {
+            assertTrue(SwingUtilities.isEventDispatchThread());
+            events.add("cancelled " + name);
+        }
+    }
+}
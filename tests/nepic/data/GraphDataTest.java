@@ -0,0 +1,84 @@
+package nepic.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link GraphData}.
+ *
+ * @author AJ Parmidge
+ */
+public class GraphDataTest {
+    private GraphData data;
+
+    @Before
+    public void setUp() {
+        data = new GraphData();
+        data.setDataSet("a", Lists.newArrayList(new Point(0, 5), new Point(10, 7)), 0xff0000);
+        data.setDataSet("b", Lists.newArrayList(new Point(-3, 6), new Point(4, 20)), 0x00ff00);
+    }
+
+    @Test
+    public void bounds() {
+        assertEquals(-3, data.getMinX());
+        assertEquals(10, data.getMaxX());
+        assertEquals(5, data.getMinY());
+        assertEquals(20, data.getMaxY());
+        assertTrue(data.boundsContain(-3, 20));
+        assertFalse(data.boundsContain(11, 10));
+    }
+
+    @Test
+    public void setDataSet_replacingDataSet_revisesBounds() {
+        int modCount = data.getModificationCount();
+        data.setDataSet("b", Lists.newArrayList(new Point(1, 6), new Point(2, 6)), 0x00ff00);
+        assertEquals(0, data.getMinX());
+        assertEquals(10, data.getMaxX());
+        assertEquals(5, data.getMinY());
+        assertEquals(7, data.getMaxY());
+        assertTrue(data.getModificationCount() != modCount);
+    }
+
+    @Test
+    public void revalueDataSet_revisesBounds() {
+        data.revalueDataSet("a", Lists.newArrayList(new Point(2, 8)));
+        assertEquals(-3, data.getMinX());
+        assertEquals(4, data.getMaxX());
+        assertEquals(6, data.getMinY());
+        assertEquals(20, data.getMaxY());
+    }
+
+    @Test
+    public void removeDataSet_revisesBounds() {
+        data.removeDataSet("b");
+        assertEquals(0, data.getMinX());
+        assertEquals(10, data.getMaxX());
+        assertEquals(5, data.getMinY());
+        assertEquals(7, data.getMaxY());
+
+        data.removeDataSet("a");
+        assertTrue(data.isEmpty());
+        assertFalse(data.boundsContain(0, 5));
+    }
+
+    @Test
+    public void dataSetsWithSameBounds() {
+        data.setDataSet("c", Lists.newArrayList(new Point(-3, 6), new Point(4, 20)), 0x0000ff);
+        data.removeDataSet("b");
+        assertEquals(-3, data.getMinX()); // Still the min x of data set "c".
+        assertEquals(20, data.getMaxY());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getMinX_empty_throws() {
+        new GraphData().getMinX();
+    }
+}
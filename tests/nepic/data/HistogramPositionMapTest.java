@@ -0,0 +1,62 @@
+package nepic.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link HistogramPositionMap}.
+ *
+ * @author AJ Parmidge
+ */
+public class HistogramPositionMapTest {
+
+    @Test
+    public void addValueAtPosition_tracksModesAndFirstPositions() {
+        HistogramPositionMap histogram = new HistogramPositionMap(0, 255);
+        histogram.addValueAtPosition(10, 0);
+        histogram.addValueAtPosition(20, 1);
+        histogram.addValueAtPosition(20, 2);
+        histogram.addValueAtPosition(10, 3);
+
+        assertEquals(Arrays.asList(20, 10), histogram.getModes());
+        assertEquals(15.0, histogram.getMode(), 0);
+        assertEquals(2, histogram.getNumberModeInstances());
+        assertEquals(0, histogram.getFirstModePosition());
+        assertTrue(histogram.currentModeWithinRange(15, 25));
+        assertFalse(histogram.currentModeWithinRange(11, 19));
+    }
+
+    @Test
+    public void addRangeAtPosition() {
+        HistogramPositionMap histogram = new HistogramPositionMap(-5, 5);
+        histogram.addRangeAtPosition(-2, 1, 4);
+        histogram.addRangeAtPosition(1, 3, 7);
+
+        assertEquals(Arrays.asList(1), histogram.getModes());
+        assertEquals(4, histogram.getFirstModePosition());
+    }
+
+    @Test
+    public void clear_allowsReuse() {
+        HistogramPositionMap histogram = new HistogramPositionMap(0, 255);
+        histogram.addRangeAtPosition(100, 110, 0);
+        histogram.addValueAtPosition(105, 1);
+        histogram.clear();
+
+        histogram.addValueAtPosition(50, 8);
+        assertEquals(Arrays.asList(50), histogram.getModes());
+        assertEquals(1, histogram.getNumberModeInstances());
+        assertEquals(8, histogram.getFirstModePosition());
+        assertFalse(histogram.currentModeWithinRange(100, 110));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addValueAtPosition_valueOutOfBounds_throws() {
+        new HistogramPositionMap(0, 255).addValueAtPosition(256, 0);
+    }
+}
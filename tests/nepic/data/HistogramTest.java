@@ -1,10 +1,14 @@
 package nepic.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static nepic.testing.util.Assertions.*;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import nepic.util.IntLongConsumer;
 import nepic.util.Range;
 
 import org.junit.Before;
@@ -91,6 +95,21 @@ public class HistogramTest {
         assertEquals(29, histogram.getNumValuesBetween(6, 13));
     }
 
+    @Test
+    public void getNumValuesBetween_matchesCountingData() {
+        for (int floor = -8; floor <= 28; floor++) {
+            for (int ceiling = floor; ceiling <= 28; ceiling++) {
+                int expected = 0;
+                for (int value : data) {
+                    if (value >= floor && value <= ceiling) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, histogram.getNumValuesBetween(floor, ceiling));
+            }
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void getNumValuesBetween_illegalBounds_throws() {
         histogram.getNumValuesBetween(50, 45); // min > max
@@ -107,6 +126,15 @@ public class HistogramTest {
         assertEquals(25, histogram.getPercentile(100));
     }
 
+    @Test
+    public void getPercentile_matchesSortedData() {
+        // data is already sorted.
+        for (int percentile = 0; percentile < 100; percentile++) {
+            int expected = data.get(data.size() * percentile / 100);
+            assertEquals(expected, histogram.getPercentile(percentile));
+        }
+    }
+
     @Test
     public void getStDev() {
         assertEquals(6.469, histogram.getStDev(), 0.001);
@@ -145,4 +173,171 @@ public class HistogramTest {
         assertEquals(41.847, histogram.getVariance(), 0.001);
     }
 
+    @Test
+    public void builderAddAll_sameAsAddingEachValue() {
+        Random random = new Random(41);
+        int[] values = new int[1003];
+        byte[] bytes = new byte[values.length];
+        Histogram.Builder expectedBuilder = new Histogram.Builder(0, 255);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(256);
+            bytes[i] = (byte) values[i];
+            if (i >= 5) {
+                expectedBuilder.addValue(values[i]);
+            }
+        }
+        Histogram expected = expectedBuilder.build();
+
+        assertHistogramsEqual(expected,
+                new Histogram.Builder(0, 255).addAll(values, 5, values.length - 5).build());
+        assertHistogramsEqual(expected,
+                new Histogram.Builder(0, 255).addAll(bytes, 5, bytes.length - 5).build());
+    }
+
+    @Test
+    public void builderAddAll_illegalValue_addsNoValues() {
+        Histogram.Builder builder = new Histogram.Builder(0, 10).addValues(3);
+        try {
+            builder.addAll(new int[] { 4, 5, 11 }, 0, 3);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected.
+        }
+        Histogram hist = builder.build();
+        assertEquals(1, hist.getNumValues());
+        assertEquals(3, hist.getMax());
+    }
+
+    @Test
+    public void builderMerge() {
+        Histogram.Builder builder = new Histogram.Builder(-13, 52);
+        Histogram.Builder otherBuilder = new Histogram.Builder(0, 30);
+        for (int value : data) {
+            if (value < 8) {
+                builder.addValue(value);
+            } else {
+                otherBuilder.addValue(value);
+            }
+        }
+        assertHistogramsEqual(histogram, builder.merge(otherBuilder).build());
+        assertEquals(Lists.newArrayList(6, 8), builder.getModes());
+        assertEquals(8, builder.getNumberModeInstances());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderMerge_valuesOutOfBounds_throws() {
+        new Histogram.Builder(0, 10).merge(new Histogram.Builder(0, 20).addValues(15));
+    }
+
+    @Test
+    public void wideDomain_sameStatisticsAsNarrowDomain() {
+        Histogram wide = new Histogram.Builder(-70000, 70000).addValues(data).build();
+        assertHistogramsEqual(histogram, wide);
+        assertEquals(histogram.getVariance(), wide.getVariance(), 0.0);
+        for (int percentile = 0; percentile <= 100; percentile++) {
+            assertEquals(histogram.getPercentile(percentile), wide.getPercentile(percentile));
+        }
+        assertEquals(histogram.getNumValuesBetween(6, 13), wide.getNumValuesBetween(6, 13));
+        assertEquals(histogram.getNumValuesBetween(14, 22), wide.getNumValuesBetween(14, 22));
+        assertEquals(1.0, wide.getOverlapWith(histogram), 0.0);
+    }
+
+    @Test
+    public void wideDomain_spreadValues() {
+        Histogram.Builder builder = new Histogram.Builder(0, 65535);
+        builder.addValues(0, 1000, 1000, 65535);
+        builder.merge(new Histogram.Builder(0, 65535).addValues(1000, 30000));
+        Histogram hist = builder.build();
+        assertEquals(6, hist.getNumValues());
+        assertEquals(0, hist.getMin());
+        assertEquals(65535, hist.getMax());
+        assertEquals(Lists.newArrayList(1000), hist.getModes());
+        assertEquals(3, hist.getNumValuesAt(1000));
+        assertEquals(0, hist.getNumValuesAt(1001));
+        assertEquals(4, hist.getNumValuesBetween(1, 30000));
+        assertEquals(1000, hist.getMedian());
+        assertEquals(30000, hist.getPercentile(70));
+        assertEquals(65535, hist.getPercentile(100));
+    }
+
+    @Test
+    public void forEachValue_visitsOccurringValuesInOrder() {
+        final List<Integer> visited = Lists.newArrayList();
+        histogram.forEachValue(new IntLongConsumer() {
+            @Override
+            public void accept(int value, long count) {
+                visited.add(value);
+                assertEquals(histogram.getNumValuesAt(value), count);
+            }
+        });
+        assertEquals(Lists.newArrayList(-5, 1, 2, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 23, 24, 25), visited);
+    }
+
+    @Test
+    public void forEachValue_wideDomain() {
+        Histogram hist = new Histogram.Builder(-1000000000, 1000000000)
+                .addValues(-1000000000, 7, 7, 1000000000).build();
+        final List<Integer> visited = Lists.newArrayList();
+        hist.forEachValue(new IntLongConsumer() {
+            @Override
+            public void accept(int value, long count) {
+                visited.add(value);
+                visited.add((int) count);
+            }
+        });
+        assertEquals(Lists.newArrayList(-1000000000, 1, 7, 2, 1000000000, 1), visited);
+    }
+
+    @Test
+    public void sumLargerThanInt_meanStaysExact() {
+        int[] values = new int[1 << 16];
+        Arrays.fill(values, 60000);
+        Histogram.Builder builder = new Histogram.Builder(0, 65535);
+        for (int i = 0; i < 600; i++) { // 39,321,600 values summing to more than 2^31.
+            builder.addAll(values, 0, values.length);
+        }
+        Histogram hist = builder.build();
+        assertEquals(39321600L * 60000, hist.getSum());
+        assertEquals(60000.0, hist.getMean(), 0.0);
+    }
+
+    @Test
+    public void countsLargerThanInt_stayExact() {
+        assertCountsLargerThanIntStayExact(0, 10);
+    }
+
+    @Test
+    public void countsLargerThanInt_wideDomain_stayExact() {
+        assertCountsLargerThanIntStayExact(0, 65535);
+    }
+
+    private static void assertCountsLargerThanIntStayExact(int lowerBound, int upperBound) {
+        Histogram.Builder builder =
+                new Histogram.Builder(lowerBound, upperBound).addValues(1, 2, 2);
+        for (int i = 0; i < 31; i++) { // Doubles the number of each value every time.
+            builder.merge(new Histogram.Builder(lowerBound, upperBound).merge(builder));
+        }
+        Histogram hist = builder.build();
+        assertEquals(3L << 31, hist.getNumValues());
+        assertEquals(1L << 31, hist.getNumValuesAt(1));
+        assertEquals(1L << 32, hist.getNumValuesAt(2));
+        assertEquals(1L << 32, hist.getNumberModeInstances());
+        assertEquals(1L << 32, hist.getNumValuesBetween(2, 10));
+        assertEquals(5.0 / 3, hist.getMean(), 1e-12);
+        assertEquals(1, hist.getPercentile(33));
+        assertEquals(2, hist.getMedian());
+    }
+
+    private static void assertHistogramsEqual(Histogram expected, Histogram actual) {
+        assertEquals(expected.getNumValues(), actual.getNumValues());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getMean(), actual.getMean(), 0.0);
+        assertEquals(expected.getModes(), actual.getModes());
+        assertEquals(expected.getNumberModeInstances(), actual.getNumberModeInstances());
+        for (int value = expected.getMin(); value <= expected.getMax(); value++) {
+            assertEquals(expected.getNumValuesAt(value), actual.getNumValuesAt(value));
+        }
+    }
 }
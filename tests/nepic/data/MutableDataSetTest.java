@@ -341,4 +341,49 @@ public class MutableDataSetTest {
         arrayData[2].y = 13;
         assertFalse(dataSet.contains(arrayData[2]));
     }
+
+    @Test
+    public void addCoordinates_getXAndY() {
+        dataSet.add(3, -7);
+        dataSet.add(new Point(-2, 8));
+        assertEquals(2, dataSet.size());
+        assertEquals(3, dataSet.getX(0));
+        assertEquals(-7, dataSet.getY(0));
+        assertEquals(-2, dataSet.getX(1));
+        assertEquals(8, dataSet.getY(1));
+        assertEquals(-2, dataSet.getMinX());
+        assertEquals(8, dataSet.getMaxY());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getX_indexOutOfBounds_throws() {
+        dataSet.add(3, -7);
+        dataSet.getX(1);
+    }
+
+    @Test
+    public void clear_resetsBounds() {
+        dataSet.addAll(Lists.newArrayList(new Point(-50, 0), new Point(50, 100)));
+        dataSet.setData(new Point(4, 5), new Point(6, 7));
+        assertEquals(4, dataSet.getMinX());
+        assertEquals(6, dataSet.getMaxX());
+        assertEquals(5, dataSet.getMinY());
+        assertEquals(7, dataSet.getMaxY());
+        assertFalse(dataSet.contains(new Point(-50, 0)));
+    }
+
+    @Test
+    public void contains_pointsAddedAfterFirstCall() {
+        for (int i = 0; i < 100; i++) {
+            dataSet.add(i, -i);
+        }
+        assertTrue(dataSet.contains(new Point(40, -40)));
+        for (int i = 100; i < 300; i++) {
+            dataSet.add(i, -i);
+        }
+        assertTrue(dataSet.contains(new Point(250, -250)));
+        assertFalse(dataSet.contains(new Point(250, 250)));
+        assertFalse(dataSet.contains(new Point(250, -251)));
+        assertFalse(dataSet.contains("Not a point"));
+    }
 }
@@ -0,0 +1,108 @@
+package nepic.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link MutableHistogram}.
+ *
+ * @author AJ Parmidge
+ */
+public class MutableHistogramTest {
+    private static final double DELTA = 0.000001;
+
+    @Test
+    public void statisticsMatchHistogram() {
+        Random random = new Random(42);
+        MutableHistogram mutableHist = new MutableHistogram(0, 255);
+        Histogram.Builder builder = new Histogram.Builder(0, 255);
+        int[] values = new int[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 50 + random.nextInt(100);
+            mutableHist.addValue(values[i]);
+        }
+        // Remove the first half of the values, and check against a histogram of the rest.
+        for (int i = 0; i < values.length / 2; i++) {
+            mutableHist.removeValue(values[i]);
+        }
+        for (int i = values.length / 2; i < values.length; i++) {
+            builder.addValues(values[i]);
+        }
+        Histogram expected = builder.build();
+
+        assertEquals(expected.getNumValues(), mutableHist.getNumValues());
+        assertEquals(expected.getMin(), mutableHist.getMin());
+        assertEquals(expected.getMax(), mutableHist.getMax());
+        assertEquals(expected.getMean(), mutableHist.getMean(), DELTA);
+        assertEquals(expected.getVariance(), mutableHist.getVariance(), DELTA);
+        assertEquals(expected.getMedian(), mutableHist.getMedian());
+        for (int percentile = 0; percentile <= 100; percentile += 10) {
+            assertEquals(expected.getPercentile(percentile), mutableHist.getPercentile(percentile));
+        }
+
+        Histogram snapshot = mutableHist.toHistogram();
+        assertEquals(expected.toString(), snapshot.toString());
+        assertEquals(expected.getModes(), snapshot.getModes());
+        assertEquals(expected.getNumberModeInstances(), snapshot.getNumberModeInstances());
+        assertEquals(1.0, snapshot.getOverlapWith(expected), DELTA);
+    }
+
+    @Test
+    public void toHistogram_isUnaffectedByLaterChanges() {
+        MutableHistogram mutableHist = new MutableHistogram(-10, 10);
+        mutableHist.addValue(-3);
+        mutableHist.addValue(4);
+        Histogram snapshot = mutableHist.toHistogram();
+        mutableHist.addValue(7);
+        mutableHist.removeValue(-3);
+
+        assertEquals(2, snapshot.getNumValues());
+        assertEquals(-3, snapshot.getMin());
+        assertEquals(4, snapshot.getMax());
+        assertEquals(4, mutableHist.getMin());
+        assertEquals(7, mutableHist.getMax());
+    }
+
+    @Test
+    public void clear() {
+        MutableHistogram mutableHist = new MutableHistogram(0, 255);
+        mutableHist.addValue(100);
+        mutableHist.clear();
+        assertTrue(mutableHist.isEmpty());
+        assertEquals(0, mutableHist.getNumValuesAt(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeValue_notInHistogram_throws() {
+        MutableHistogram mutableHist = new MutableHistogram(0, 255);
+        mutableHist.addValue(100);
+        mutableHist.removeValue(101);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getMean_empty_throws() {
+        new MutableHistogram(0, 255).getMean();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getVariance_empty_throws() {
+        new MutableHistogram(0, 255).getVariance();
+    }
+
+    @Test
+    public void getVariance_singleValue_matchesHistogram() {
+        MutableHistogram mutableHist = new MutableHistogram(0, 255);
+        mutableHist.addValue(100);
+        assertEquals(new Histogram.Builder(0, 255).addValues(100).build().getVariance(),
+                mutableHist.getVariance(), 0.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void toHistogram_empty_throws() {
+        new MutableHistogram(0, 255).toHistogram();
+    }
+}
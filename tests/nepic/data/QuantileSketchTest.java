@@ -0,0 +1,174 @@
+package nepic.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link QuantileSketch}.
+ *
+ * @author AJ Parmidge
+ */
+public class QuantileSketchTest {
+    private final List<Integer> data = Lists.newArrayList(
+            -5, 1, 1, 2, 2, 4, 4, 5, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 6, 7, 7, 8, 8, 8, 8, 8, 8, 8, 8,
+            9, 9, 10, 10, 10, 11, 12, 12, 13, 13, 13, 14, 15, 16, 17, 17, 23, 23, 24, 25, 25);
+
+    @Test
+    public void fewValues_exactlyMatchesHistogram() {
+        Histogram hist = new Histogram.Builder(-13, 52).addValues(data).build();
+        QuantileSketch sketch = new QuantileSketch();
+        for (int value : data) {
+            sketch.update(value);
+        }
+
+        assertEquals(hist.getNumValues(), sketch.getNumValues());
+        assertEquals(hist.getMin(), sketch.getMin());
+        assertEquals(hist.getMax(), sketch.getMax());
+        assertEquals(hist.getMean(), sketch.getMean(), 0.0);
+        for (int percentile = 0; percentile <= 100; percentile++) {
+            assertEquals(hist.getPercentile(percentile), sketch.getPercentile(percentile));
+        }
+    }
+
+    @Test
+    public void updateWithHistogram_sameAsAddingEachValue() {
+        Histogram hist = new Histogram.Builder(-13, 52).addValues(data).build();
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.update(hist);
+
+        assertEquals(hist.getNumValues(), sketch.getNumValues());
+        assertEquals(hist.getMean(), sketch.getMean(), 0.0);
+        assertEquals(hist.getMedian(), sketch.getMedian());
+        assertEquals(hist.getPercentile(95), sketch.getPercentile(95));
+    }
+
+    @Test
+    public void manyValues_boundedMemoryAndSmallRankError() {
+        Random random = new Random(43);
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K, new Random(44));
+        int[] values = new int[500000];
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) (1000 + 300 * random.nextGaussian());
+            sketch.update(values[i]);
+            sum += values[i];
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.getNumValues());
+        assertEquals(sum, sketch.getSum());
+        assertEquals(values[0], sketch.getMin());
+        assertEquals(values[values.length - 1], sketch.getMax());
+        assertTrue(sketch.getNumRetained() < 4 * QuantileSketch.DEFAULT_K);
+        for (int percentile = 1; percentile < 100; percentile++) {
+            assertRankWithin(values, percentile, sketch.getPercentile(percentile), 0.02);
+        }
+    }
+
+    @Test
+    public void merge() {
+        Random random = new Random(45);
+        QuantileSketch first = new QuantileSketch(QuantileSketch.DEFAULT_K, new Random(46));
+        QuantileSketch second = new QuantileSketch(QuantileSketch.DEFAULT_K, new Random(47));
+        int[] values = new int[200000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(256);
+            (i % 3 == 0 ? first : second).update(values[i], 1);
+        }
+        long expectedSum = first.getSum() + second.getSum();
+        first.merge(second);
+        Arrays.sort(values);
+
+        assertEquals(values.length, first.getNumValues());
+        assertEquals(expectedSum, first.getSum());
+        assertEquals(0, first.getMin());
+        assertEquals(255, first.getMax());
+        for (int percentile = 5; percentile < 100; percentile += 5) {
+            assertRankWithin(values, percentile, first.getPercentile(percentile), 0.02);
+        }
+    }
+
+    @Test
+    public void updateWithHistogram_wideSparseDomain() {
+        Histogram hist = new Histogram.Builder(-1000000000, 1000000000)
+                .addValues(-1000000000, 5, 5, 5, 1000000000).build();
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.update(hist); // Must not step through every value in the domain.
+
+        assertEquals(5, sketch.getNumValues());
+        assertEquals(-1000000000, sketch.getMin());
+        assertEquals(1000000000, sketch.getMax());
+        assertEquals(5, sketch.getMedian());
+    }
+
+    @Test
+    public void mergeWithSelf_countsEachValueTwice() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K, new Random(48));
+        for (int i = 0; i < 10000; i++) {
+            sketch.update(i % 100);
+        }
+        long sum = sketch.getSum();
+        sketch.merge(sketch);
+
+        assertEquals(20000, sketch.getNumValues());
+        assertEquals(2 * sum, sketch.getSum());
+        assertEquals(0, sketch.getMin());
+        assertEquals(99, sketch.getMax());
+        assertEquals(49, sketch.getMedian(), 2);
+    }
+
+    @Test
+    public void updateWithLargeCount() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.update(10, 3000000000L);
+        sketch.update(20, 1000000000L);
+
+        assertEquals(4000000000L, sketch.getNumValues());
+        assertEquals(12.5, sketch.getMean(), 0.0);
+        assertEquals(10, sketch.getMedian());
+        assertEquals(20, sketch.getPercentile(80));
+        assertTrue(sketch.getNumRetained() < 64);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getMedian_empty_throws() {
+        new QuantileSketch().getMedian();
+    }
+
+    /**
+     * Asserts that the given value found for the given percentile of the given sorted values has a
+     * rank within the given fraction of the number of values of the requested rank.
+     */
+    private static void assertRankWithin(
+            int[] sortedValues, double percentile, int actual, double maxRankError) {
+        int expectedRank = (int) (sortedValues.length * percentile / 100);
+        // The range of ranks at which the actual value occurs.
+        int firstRank = lowerBound(sortedValues, actual);
+        int lastRank = lowerBound(sortedValues, actual + 1) - 1;
+        int rankError = Math.max(0, Math.max(firstRank - expectedRank, expectedRank - lastRank));
+        assertTrue("Rank error of " + rankError + " for percentile " + percentile,
+                rankError <= maxRankError * sortedValues.length);
+    }
+
+    private static int lowerBound(int[] sortedValues, int value) {
+        int lo = 0;
+        int hi = sortedValues.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedValues[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
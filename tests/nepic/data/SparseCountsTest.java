@@ -0,0 +1,46 @@
+package nepic.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SparseCounts}.
+ *
+ * @author AJ Parmidge
+ */
+public class SparseCountsTest {
+
+    @Test
+    public void add_matchesTreeMap() {
+        Random random = new Random(42);
+        SparseCounts counts = new SparseCounts();
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(3000) * (random.nextBoolean() ? 1 : -65536);
+            int count = random.nextInt(3) + 1;
+            counts.add(value, count);
+            Integer prevCount = expected.get(value);
+            expected.put(value, prevCount == null ? count : prevCount + count);
+        }
+
+        assertEquals(expected.size(), counts.size());
+        int[] expectedValues = new int[expected.size()];
+        int i = 0;
+        for (int value : expected.keySet()) {
+            expectedValues[i++] = value;
+            assertEquals((int) expected.get(value), counts.get(value));
+        }
+        assertArrayEquals(expectedValues, counts.getSortedValues());
+        assertEquals(0, counts.get(3001));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_nonPositiveCount_throws() {
+        new SparseCounts().add(5, 0);
+    }
+}
@@ -1,5 +1,7 @@
 package nepic.geo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.awt.Point;
@@ -87,6 +89,109 @@ public class BlobTest {
         Assertions.assertEqualsAnyOrder(union, blob.getAllPoints());
     }
 
+    @Test
+    public void deepCopy_containsSamePoints() {
+        Blob copy = blob.deepCopy();
+        assertEquals(blob.getBoundingBox().toString(), copy.getBoundingBox().toString());
+        assertEquals(blob.getSize(), copy.getSize());
+        assertEquals(blob.getAllPoints(), copy.getAllPoints());
+        assertEquals(blob.getEdges(), copy.getEdges());
+    }
+
+    @Test
+    public void newBlobFromChainCode_sameAsFromTracedEdgePoints() {
+        TestIdTaggedImage img = new TestIdTaggedImage(
+                blob.getMinX(), blob.getMaxX(), blob.getMinY(), blob.getMaxY());
+        int blobId = 1;
+        img.createId(blobId, '*');
+        for (Point point : blob.getAllPoints()) {
+            img.setIdOrThrow(point.x, point.y, blobId);
+        }
+        Point start = RoiEdgeTracer.findStart(img, blobId);
+
+        Blob fromChain = Blob.newBlobFromChainCode(
+                RoiEdgeTracer.traceChainCode(img, blobId, start.x, start.y, new ChainCode()));
+        Blob fromPoints =
+                Blob.newBlobFromTracedEdges(RoiEdgeTracer.traceOuterEdges(img, blobId, start));
+        assertEquals(fromPoints.getAllPoints(), fromChain.getAllPoints());
+        assertEquals(fromPoints.getEdges(), fromChain.getEdges());
+    }
+
+    @Test
+    public void getSize_equalsNumberOfPoints() {
+        assertEquals(blob.getAllPoints().size(), blob.getSize());
+    }
+
+    @Test
+    public void forEachSpan_spansAreOrderedAndDisjoint() {
+        final List<Point> spanPts = new LinkedList<Point>();
+        blob.forEachSpan(new Blob.SpanVisitor() {
+            private int prevY = Integer.MIN_VALUE;
+            private int prevLastX = Integer.MIN_VALUE;
+
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                assertTrue(firstX <= lastX);
+                assertTrue(y > prevY || (y == prevY && firstX > prevLastX));
+                prevY = y;
+                prevLastX = lastX;
+                for (int x = firstX; x <= lastX; x++) {
+                    spanPts.add(new Point(x, y));
+                }
+            }
+        });
+        Assertions.assertEqualsAnyOrder(blob.getAllPoints(), spanPts);
+    }
+
+    @Test
+    public void forEachEdgeSpanAndForEachInnardSpan_coverEdgesAndInnards() {
+        final List<Point> edgePts = new LinkedList<Point>();
+        final List<Point> innardPts = new LinkedList<Point>();
+        blob.forEachEdgeSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    edgePts.add(new Point(x, y));
+                }
+            }
+        });
+        blob.forEachInnardSpan(new Blob.SpanVisitor() {
+            @Override
+            public void visitSpan(int y, int firstX, int lastX) {
+                for (int x = firstX; x <= lastX; x++) {
+                    innardPts.add(new Point(x, y));
+                }
+            }
+        });
+        Assertions.assertEqualsAnyOrder(blob.getEdges(), edgePts);
+        Assertions.assertEqualsAnyOrder(blob.getInnards(), innardPts);
+    }
+
+    @Test
+    public void getMaxDiameter_sameAsLongestSegmentBetweenEdgePoints() {
+        // Compare every pair of edge points.
+        Point expectedStart = null;
+        Point expectedEnd = null;
+        int maxLengthSquared = -1;
+        List<Point> edges = blob.getEdges();
+        for (Point edgePt1 : edges) {
+            for (Point edgePt2 : edges) {
+                int changeX = edgePt1.x - edgePt2.x;
+                int changeY = edgePt1.y - edgePt2.y;
+                int lengthSquared = changeX * changeX + changeY * changeY;
+                if (lengthSquared > maxLengthSquared) {
+                    maxLengthSquared = lengthSquared;
+                    expectedStart = edgePt1;
+                    expectedEnd = edgePt2;
+                }
+            }
+        }
+
+        Point[] endPoints = blob.getMaxDiameter().getEndPoints();
+        assertEquals(expectedStart, endPoints[0]);
+        assertEquals(expectedEnd, endPoints[1]);
+    }
+
     @Parameters//(name= "{index}: {0}") // This parameter added in JUnit 4.11 (NEED UPDATE VERSION)
     public static Collection<Object[]> getBlobs() {
         Collection<Object[]> blobBuilderList = new LinkedList<Object[]>();
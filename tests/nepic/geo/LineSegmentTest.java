@@ -0,0 +1,120 @@
+package nepic.geo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import nepic.geo.LineSegment.IncludeEnd;
+import nepic.geo.LineSegment.IncludeStart;
+import nepic.util.IntBinaryConsumer;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link LineSegment}.
+ *
+ * @author AJ Parmidge
+ */
+public class LineSegmentTest {
+
+    @Test
+    public void draw_shallowLine() {
+        LineSegment line = new LineSegment(new Point(0, 0), new Point(4, 2));
+        assertEquals(points(0, 0, 1, 1, 2, 1, 3, 2, 4, 2), line.draw()); // Halves round up.
+    }
+
+    @Test
+    public void draw_steepLineWithNegativeCoordinates() {
+        LineSegment line = new LineSegment(new Point(0, 0), new Point(-1, -4));
+        // -0.5 rounds away from zero.
+        assertEquals(points(0, 0, 0, -1, -1, -2, -1, -3, -1, -4), line.draw());
+    }
+
+    @Test
+    public void draw_excludingEndPoints() {
+        LineSegment line = new LineSegment(new Point(5, 3), new Point(1, 3));
+        assertEquals(points(4, 3, 3, 3, 2, 3), line.draw(IncludeStart.NO, IncludeEnd.NO));
+    }
+
+    @Test
+    public void draw_singlePoint() {
+        LineSegment line = new LineSegment(new Point(7, 9), new Point(7, 9));
+        assertEquals(points(7, 9), line.draw());
+        assertEquals(Collections.<Point> emptyList(), line.draw(IncludeStart.NO, IncludeEnd.YES));
+    }
+
+    @Test
+    public void draw_matchesInterpolation() {
+        Random random = new Random(36);
+        for (int trial = 0; trial < 500; trial++) {
+            Point start = new Point(random.nextInt(41) - 20, random.nextInt(41) - 20);
+            Point end = new Point(random.nextInt(41) - 20, random.nextInt(41) - 20);
+            if (start.equals(end)) {
+                continue;
+            }
+            LineSegment line = new LineSegment(start, end);
+            List<Point> expected = interpolate(start, end);
+            assertEquals(start + " to " + end, expected, line.draw());
+            assertEquals(expected.subList(1, expected.size() - 1),
+                    line.draw(IncludeStart.NO, IncludeEnd.NO));
+        }
+    }
+
+    @Test
+    public void forEachPixel_matchesInterpolation() {
+        int[][] endPts = { { 0, 0, 13, 5 }, { 3, 17, -6, 2 }, { -4, -4, 9, -1 }, { 2, 8, 2, -3 },
+                { 5, 5, -5, -5 }, { 0, 0, -7, 3 } };
+        for (int[] ends : endPts) {
+            Point start = new Point(ends[0], ends[1]);
+            Point end = new Point(ends[2], ends[3]);
+            LineSegment line = new LineSegment(start, end);
+            final List<Point> visited = new ArrayList<Point>();
+            line.forEachPixel(new IntBinaryConsumer() {
+                @Override
+                public void accept(int x, int y) {
+                    visited.add(new Point(x, y));
+                }
+            });
+            assertEquals(interpolate(start, end), visited);
+            assertEquals(visited.size(), line.getNumPixels());
+        }
+    }
+
+    /**
+     * Draws a line by interpolating each pixel along its major axis in floating point, and rounding
+     * halves away from zero (as {@link LineSegment} did before drawing with integer steps).
+     */
+    private static List<Point> interpolate(Point start, Point end) {
+        int changeX = Math.abs(end.x - start.x);
+        int changeY = Math.abs(end.y - start.y);
+        List<Point> points = new ArrayList<Point>();
+        if (changeX < changeY) {
+            int yIncrement = end.y < start.y ? -1 : 1;
+            for (int i = 0; i <= changeY; i++) {
+                double x = (double) ((changeY - i) * start.x + i * end.x) / changeY;
+                x = x < 0 ? x - 0.5 : x + 0.5;
+                points.add(new Point((int) x, start.y + yIncrement * i));
+            }
+        } else {
+            int xIncrement = end.x < start.x ? -1 : 1;
+            for (int i = 0; i <= changeX; i++) {
+                double y = (double) ((changeX - i) * start.y + i * end.y) / changeX;
+                y = y < 0 ? y - 0.5 : y + 0.5;
+                points.add(new Point(start.x + xIncrement * i, (int) y));
+            }
+        }
+        return points;
+    }
+
+    private static List<Point> points(int... coords) {
+        List<Point> points = new ArrayList<Point>(coords.length / 2);
+        for (int i = 0; i < coords.length; i += 2) {
+            points.add(new Point(coords[i], coords[i + 1]));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,84 @@
+package nepic.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Point;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link Polygon}.
+ *
+ * @author AJ Parmidge
+ */
+public class PolygonTest {
+    private static final List<Polygon> POLYGONS = Lists.newArrayList(
+            new Polygon(new Point(0, 0), new Point(5, 0), new Point(5, 4), new Point(0, 4)),
+            new Polygon(new Point(0, 0), new Point(5, 4), new Point(5, 0), new Point(0, 4)),
+            new Polygon(new Point(-3, 0), new Point(3, 0), new Point(0, 3)),
+            new Polygon(new Point(2, 1), new Point(40, 9), new Point(31, 37), new Point(7, 22)),
+            new Polygon(new Point(0, 0), new Point(20, 3), new Point(6, 6), new Point(18, 15),
+                    new Point(-4, 11)),
+            new BoundingBox(10, 300, 20, 250).asPolygon(),
+            new BoundingBox(10, 300, 20, 250).asPolygon().rotate(0.3, new Point(0, 0)));
+
+    @Test
+    public void asBlob_sameAsBlobFromTracedEdges() {
+        for (Polygon polygon : POLYGONS) {
+            Blob expected = Blob.newBlobFromTracedEdges(polygon.getEdges());
+            Blob actual = polygon.asBlob();
+            assertEquals(polygon.toString(), expected.getEdges(), actual.getEdges());
+            assertEquals(polygon.toString(), expected.getInnards(), actual.getInnards());
+            assertEquals(polygon.toString(), expected.getSize(), actual.getSize());
+        }
+    }
+
+    @Test
+    public void asBlob_memoized() {
+        Polygon polygon = POLYGONS.get(3).deepCopy();
+        assertSame(polygon.asBlob(), polygon.asBlob());
+    }
+
+    @Test
+    public void asBlob_afterTranslate() {
+        Polygon polygon = POLYGONS.get(3).deepCopy();
+        Blob blob = polygon.asBlob();
+        polygon.translate(5, -2);
+        Blob translatedBlob = polygon.asBlob();
+        assertNotSame(blob, translatedBlob);
+        assertEquals(blob.getMinX() + 5, translatedBlob.getMinX());
+        assertEquals(blob.getMinY() - 2, translatedBlob.getMinY());
+        assertEquals(blob.getSize(), translatedBlob.getSize());
+    }
+
+    @Test
+    public void asBlob_callerMutatesVertex_unaffected() {
+        Point corner = new Point(4, 4);
+        Polygon polygon = new Polygon(new Point(0, 0), new Point(4, 0), corner, new Point(0, 4));
+        Blob blob = polygon.asBlob();
+        corner.setLocation(40, 40);
+        assertSame(blob, polygon.asBlob());
+        assertEquals(Lists.newArrayList(new Point(0, 0), new Point(4, 0), new Point(4, 4),
+                new Point(0, 4)), polygon.getVertices());
+        assertEquals(4, polygon.getMaxX());
+    }
+
+    @Test
+    public void getTranslatedCopy_blobSameAsRasterizedCopy() {
+        for (Polygon polygon : POLYGONS) {
+            polygon.asBlob();
+            Polygon copy = polygon.getTranslatedCopy(7, 12);
+            Blob expected = new Polygon(copy.getVertices()).asBlob();
+            Blob actual = copy.asBlob();
+            assertEquals(polygon.toString(), expected.getBoundingBox().toString(),
+                    actual.getBoundingBox().toString());
+            assertEquals(polygon.toString(), expected.getEdges(), actual.getEdges());
+            assertEquals(polygon.toString(), expected.getInnards(), actual.getInnards());
+        }
+    }
+}
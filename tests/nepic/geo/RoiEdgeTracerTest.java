@@ -0,0 +1,109 @@
+package nepic.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import nepic.geo.test.TestIdTaggedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link RoiEdgeTracer}.
+ *
+ * @author AJ Parmidge
+ */
+public class RoiEdgeTracerTest {
+    private static final int ID = 3;
+
+    private TestIdTaggedImage img;
+
+    @Before
+    public void setUp() {
+        img = new TestIdTaggedImage(0, 9, 0, 9);
+        img.createIdOrThrow(ID, '#');
+    }
+
+    private void fill(int minX, int maxX, int minY, int maxY) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                img.setIdOrThrow(x, y, ID);
+            }
+        }
+    }
+
+    @Test
+    public void traceChainCode_singlePixel() {
+        fill(4, 4, 6, 6);
+        ChainCode chain = RoiEdgeTracer.traceChainCode(img, ID, 4, 6, new ChainCode());
+        assertEquals(0, chain.getLength());
+        assertEquals(1, chain.getNumPoints());
+        assertEquals(4, chain.getStartX());
+        assertEquals(6, chain.getStartY());
+    }
+
+    @Test
+    public void traceChainCode_square() {
+        fill(2, 3, 2, 3);
+        ChainCode chain = RoiEdgeTracer.traceChainCode(img, ID, 3, 2, new ChainCode());
+        assertEquals(4, chain.getLength());
+        assertEquals(ChainCode.S, chain.getDirection(0));
+        assertEquals(ChainCode.W, chain.getDirection(1));
+        assertEquals(ChainCode.N, chain.getDirection(2));
+        assertEquals(ChainCode.E, chain.getDirection(3));
+    }
+
+    @Test
+    public void traceChainCode_matchesTraceOuterEdges() {
+        fill(1, 6, 1, 2);
+        fill(3, 4, 3, 7);
+        fill(5, 8, 7, 8); // An irregular shape with a diagonal step.
+        img.setIdOrThrow(9, 9, ID);
+
+        List<Point> expected = RoiEdgeTracer.traceOuterEdges(img, ID, new Point(9, 9));
+        ChainCode chain = RoiEdgeTracer.traceChainCode(img, ID, 9, 9, new ChainCode());
+        int[] xs = new int[chain.getNumPoints()];
+        int[] ys = new int[chain.getNumPoints()];
+        chain.decodeInto(xs, ys);
+        List<Point> actual = new ArrayList<Point>();
+        for (int i = 0; i < xs.length; i++) {
+            actual.add(new Point(xs[i], ys[i]));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void traceChainCode_reusesChainCode() {
+        ChainCode chain = new ChainCode();
+        fill(0, 9, 0, 9);
+        RoiEdgeTracer.traceChainCode(img, ID, 9, 0, chain);
+        assertEquals(36, chain.getLength());
+
+        img = new TestIdTaggedImage(0, 9, 0, 9);
+        img.createIdOrThrow(ID, '#');
+        fill(5, 6, 5, 5);
+        RoiEdgeTracer.traceChainCode(img, ID, 6, 5, chain);
+        assertEquals(2, chain.getLength());
+        assertEquals(6, chain.getStartX());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void traceChainCode_invalidStart_throws() {
+        fill(2, 5, 2, 2);
+        RoiEdgeTracer.traceChainCode(img, ID, 4, 2, new ChainCode()); // Not the rightmost pixel.
+    }
+
+    @Test
+    public void isValidStart() {
+        fill(2, 5, 2, 3);
+        assertTrue(RoiEdgeTracer.isValidStart(img, ID, 5, 2));
+        assertFalse(RoiEdgeTracer.isValidStart(img, ID, 4, 2));
+        assertFalse(RoiEdgeTracer.isValidStart(img, ID, 6, 2));
+        assertEquals(new Point(5, 2), RoiEdgeTracer.findStart(img, ID));
+    }
+}
@@ -0,0 +1,132 @@
+package nepic.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link SpatialIndex}.
+ *
+ * @author AJ Parmidge
+ */
+public class SpatialIndexTest {
+    private static final BoundingBox REGION = new BoundingBox(0, 199, 0, 99);
+    private static final int CELL_SIZE = 16;
+
+    private SpatialIndex<String> index;
+
+    @Before
+    public void setUp() {
+        index = new SpatialIndex<String>(REGION, CELL_SIZE);
+    }
+
+    @Test
+    public void getItemsContaining() {
+        index.put("a", new BoundingBox(10, 40, 10, 20));
+        index.put("b", new BoundingBox(30, 60, 15, 50));
+        index.put("c", new BoundingBox(150, 160, 80, 90));
+
+        assertEquals(Collections.singletonList("a"), index.getItemsContaining(10, 10));
+        assertEquals(2, index.getItemsContaining(35, 18).size());
+        assertEquals(Collections.singletonList("c"), index.getItemsContaining(160, 90));
+        assertTrue(index.getItemsContaining(100, 50).isEmpty());
+        assertTrue(index.getItemsContaining(41, 10).isEmpty());
+    }
+
+    @Test
+    public void getItemsIntersecting_listsEachItemOnce() {
+        index.put("a", new BoundingBox(10, 100, 10, 90)); // Covers many cells.
+        index.put("b", new BoundingBox(150, 160, 80, 90));
+
+        assertEquals(Collections.singletonList("a"),
+                index.getItemsIntersecting(new BoundingBox(0, 120, 0, 99)));
+        assertEquals(2, index.getItemsIntersecting(REGION).size());
+        assertTrue(index.getItemsIntersecting(new BoundingBox(101, 149, 0, 99)).isEmpty());
+    }
+
+    @Test
+    public void put_existingItem_movesItem() {
+        index.put("a", new BoundingBox(10, 20, 10, 20));
+        index.put("a", new BoundingBox(100, 120, 50, 60));
+
+        assertEquals(1, index.size());
+        assertTrue(index.getItemsContaining(15, 15).isEmpty());
+        assertEquals(Collections.singletonList("a"), index.getItemsContaining(110, 55));
+        BoundingBox box = index.getBoundingBox("a");
+        assertEquals(100, box.getMinX());
+        assertEquals(120, box.getMaxX());
+        assertEquals(50, box.getMinY());
+        assertEquals(60, box.getMaxY());
+    }
+
+    @Test
+    public void remove() {
+        index.put("a", new BoundingBox(10, 20, 10, 20));
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertFalse(index.contains("a"));
+        assertTrue(index.isEmpty());
+        assertTrue(index.getItemsContaining(15, 15).isEmpty());
+        assertNull(index.getNearest(15, 15));
+    }
+
+    @Test
+    public void itemsBeyondRegion_clampedToBorder() {
+        index.put("a", new BoundingBox(-50, -10, -50, 300));
+
+        assertEquals(Collections.singletonList("a"), index.getItemsContaining(-20, 200));
+        assertTrue(index.getItemsContaining(0, 50).isEmpty());
+        assertSame("a", index.getNearest(199, 99));
+    }
+
+    @Test
+    public void getNearest() {
+        index.put("a", new BoundingBox(10, 20, 10, 20));
+        index.put("b", new BoundingBox(180, 190, 80, 90));
+
+        assertSame("a", index.getNearest(15, 15));
+        assertSame("a", index.getNearest(60, 40));
+        assertSame("b", index.getNearest(140, 60));
+        assertSame("b", index.getNearest(199, 0));
+    }
+
+    @Test
+    public void getNearest_matchesBruteForce() {
+        Random random = new Random(35);
+        List<BoundingBox> boxes = new ArrayList<BoundingBox>();
+        for (int i = 0; i < 40; i++) {
+            int minX = random.nextInt(200);
+            int minY = random.nextInt(100);
+            BoundingBox box = new BoundingBox(minX, minX + random.nextInt(20), minY, minY
+                    + random.nextInt(20));
+            boxes.add(box);
+            index.put("" + i, box);
+        }
+        for (int trial = 0; trial < 500; trial++) {
+            int x = random.nextInt(240) - 20;
+            int y = random.nextInt(140) - 20;
+            long minDistSq = Long.MAX_VALUE;
+            for (BoundingBox box : boxes) {
+                minDistSq = Math.min(minDistSq, getDistanceSquared(box, x, y));
+            }
+            String nearest = index.getNearest(x, y);
+            assertEquals(minDistSq, getDistanceSquared(boxes.get(Integer.parseInt(nearest)), x, y));
+        }
+    }
+
+    private static long getDistanceSquared(BoundingBox box, int x, int y) {
+        long dx = Math.max(0, Math.max(box.getMinX() - x, x - box.getMaxX()));
+        long dy = Math.max(0, Math.max(box.getMinY() - y, y - box.getMaxY()));
+        return dx * dx + dy * dy;
+    }
+}
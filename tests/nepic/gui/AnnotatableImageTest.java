@@ -0,0 +1,72 @@
+package nepic.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import nepic.data.DataSet;
+import nepic.data.MutableDataSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link AnnotatableImage}.
+ *
+ * @author AJ Parmidge
+ */
+public class AnnotatableImageTest {
+    private AnnotatableImage img;
+
+    @Before
+    public void setUp() {
+        img = new AnnotatableImage(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB));
+    }
+
+    @Test
+    public void takeChangedRegion_nothingChanged_null() {
+        assertNull(img.takeChangedRegion());
+    }
+
+    @Test
+    public void takeChangedRegion_unionOfChanges() {
+        img.annotate(1, pixels(0xff0000, 2, 3, 5, 1));
+        img.annotate(2, pixels(0x00ff00, 4, 9));
+        assertEquals(new Rectangle(2, 1, 4, 9), img.takeChangedRegion());
+    }
+
+    @Test
+    public void takeChangedRegion_resetAfterTake() {
+        img.annotate(1, pixels(0xff0000, 2, 3));
+        img.takeChangedRegion();
+        assertNull(img.takeChangedRegion());
+
+        img.annotate(2, pixels(0x00ff00, 10, 12, 11, 12));
+        assertEquals(new Rectangle(10, 12, 2, 1), img.takeChangedRegion());
+    }
+
+    @Test
+    public void takeChangedRegion_eraseAndRedraw_onlyChangedAnnotation() {
+        img.annotate(1, pixels(0xff0000, 0, 0));
+        img.annotate(2, pixels(0x00ff00, 15, 15));
+        img.takeChangedRegion();
+
+        // Redrawing annotation 1 lifts annotation 2 off the image and puts it back unchanged.
+        img.annotate(1, pixels(0xff0000, 3, 4));
+        assertEquals(new Rectangle(0, 0, 4, 5), img.takeChangedRegion());
+
+        img.eraseAnnotation(2);
+        assertEquals(new Rectangle(15, 15, 1, 1), img.takeChangedRegion());
+    }
+
+    private static DataSet pixels(int rgb, int... coords) {
+        DataSet pixels = new MutableDataSet().setRgb(rgb);
+        for (int i = 0; i < coords.length; i += 2) {
+            pixels.add(new Point(coords[i], coords[i + 1]));
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,187 @@
+package nepic.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+
+import nepic.data.DataSet;
+import nepic.data.GraphData;
+import nepic.data.MutableDataSet;
+import nepic.geo.LineSegment;
+import nepic.geo.LineSegment.IncludeEnd;
+import nepic.geo.LineSegment.IncludeStart;
+import nepic.util.Pair;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link Graph}, which check that the decimated, cached drawing of each data set
+ * gives exactly the same image as connecting (or plotting) every point of every data set.
+ *
+ * @author AJ Parmidge
+ */
+public class GraphTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 120;
+    private static final int BK_COLOR = 0x000000;
+    private final Random random = new Random(44);
+
+    @Test
+    public void refresh_connected_matchesNaiveDrawing() {
+        for (int trial = 0; trial < 100; trial++) {
+            GraphData data = randomGraphData();
+            Graph graph = new Graph(WIDTH, HEIGHT, BK_COLOR).setData(data).refresh();
+            assertImagesEqual("Trial " + trial, drawNaively(data, true), getImage(graph));
+        }
+    }
+
+    @Test
+    public void refresh_scattered_matchesNaiveDrawing() {
+        for (int trial = 0; trial < 100; trial++) {
+            GraphData data = randomGraphData();
+            Graph graph = new Graph(WIDTH, HEIGHT, BK_COLOR).setData(data)
+                    .connectDataPoints(false).refresh();
+            assertImagesEqual("Trial " + trial, drawNaively(data, false), getImage(graph));
+        }
+    }
+
+    @Test
+    public void refresh_afterDataChanges_redraws() {
+        GraphData data = randomGraphData();
+        Graph graph = new Graph(WIDTH, HEIGHT, BK_COLOR).setData(data).refresh();
+
+        data.revalueDataSet("0", randomSeries(500));
+        graph.refresh();
+        assertImagesEqual("After revalue", drawNaively(data, true), getImage(graph));
+
+        data.setDataSet("new", randomSeries(50), 0x00ffff);
+        graph.refresh();
+        assertImagesEqual("After adding", drawNaively(data, true), getImage(graph));
+
+        data.removeDataSet("new");
+        graph.refresh();
+        assertImagesEqual("After removing", drawNaively(data, true), getImage(graph));
+    }
+
+    @Test
+    public void refresh_afterDrawingChanges_redraws() {
+        GraphData data = randomGraphData();
+        Graph graph = new Graph(WIDTH, HEIGHT, BK_COLOR).setData(data).refresh();
+
+        graph.connectDataPoints(false).refresh();
+        assertImagesEqual("Scattered", drawNaively(data, false), getImage(graph));
+
+        GraphData otherData = randomGraphData();
+        graph.setData(otherData).refresh();
+        assertImagesEqual("Other data", drawNaively(otherData, false), getImage(graph));
+    }
+
+    private GraphData randomGraphData() {
+        GraphData data = new GraphData();
+        int numDataSets = 1 + random.nextInt(3);
+        for (int i = 0; i < numDataSets; i++) {
+            data.setDataSet("" + i, randomSeries(1 + random.nextInt(3000)), 0xff0000 >> (8 * i));
+        }
+        return data;
+    }
+
+    /**
+     * Makes a random walk, which mostly moves to the right (but sometimes moves back), so that
+     * many points share each column of the graph.
+     */
+    private List<Point> randomSeries(int numPoints) {
+        List<Point> series = Lists.newArrayListWithCapacity(numPoints);
+        int x = random.nextInt(100) - 50;
+        int y = random.nextInt(1000);
+        for (int i = 0; i < numPoints; i++) {
+            series.add(new Point(x, y));
+            x += random.nextInt(10) == 0 ? -random.nextInt(20) : random.nextInt(4);
+            y += random.nextInt(101) - 50;
+        }
+        return series;
+    }
+
+    /**
+     * Draws the given data the way {@link Graph} did before it decimated the data: by mapping
+     * every point onto the graph, and (if connected) drawing a line between each pair of
+     * consecutive points.
+     */
+    private static BufferedImage drawNaively(GraphData data, boolean connected) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                img.setRGB(x, y, BK_COLOR);
+            }
+        }
+        AnnotatableImage annotated = new AnnotatableImage(img);
+
+        double xMultiplier = 1;
+        long xOffset = WIDTH / 2;
+        if (data.getMinX() != data.getMaxX()) {
+            xMultiplier = (double) (WIDTH - 1) / (data.getMaxX() - data.getMinX());
+            xOffset = -Math.round(xMultiplier * data.getMinX());
+        }
+        double yMultiplier = 1;
+        long yOffset = HEIGHT / 2;
+        if (data.getMinY() != data.getMaxY()) {
+            yMultiplier = (double) (HEIGHT - 1) / (data.getMaxY() - data.getMinY());
+            yOffset = -Math.round(yMultiplier * data.getMinY());
+        }
+
+        int id = 1;
+        for (Pair<String, ? extends DataSet> dataEntry : data) {
+            DataSet pixels = new MutableDataSet().setRgb(dataEntry.second.getRgb());
+            Point prevPt = null;
+            for (Point datum : dataEntry.second) {
+                Point pt = new Point((int) Math.round(xMultiplier * datum.x + xOffset),
+                        (HEIGHT - 1) - (int) Math.round(yMultiplier * datum.y + yOffset));
+                if (!connected) {
+                    pixels.add(pt);
+                } else if (prevPt != null) {
+                    pixels.addAll(new LineSegment(prevPt, pt).draw(IncludeStart.YES,
+                            IncludeEnd.NO));
+                }
+                prevPt = pt;
+            }
+            if (connected) {
+                pixels.add(prevPt);
+            }
+            annotated.annotate(id, pixels);
+            id++;
+        }
+        return img;
+    }
+
+    private static BufferedImage getImage(Graph graph) {
+        for (Component component : graph.getComponents()) {
+            if (component instanceof JLabel && ((JLabel) component).getIcon() != null) {
+                return (BufferedImage) ((ImageIcon) ((JLabel) component).getIcon()).getImage();
+            }
+        }
+        fail("Graph has no image");
+        return null;
+    }
+
+    private static void assertImagesEqual(String message, BufferedImage expected,
+            BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    fail(message + ": images differ at (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+}
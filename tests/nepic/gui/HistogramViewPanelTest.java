@@ -0,0 +1,88 @@
+package nepic.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Component;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+
+import nepic.data.Histogram;
+import nepic.util.Range;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link HistogramViewPanel}.
+ *
+ * @author AJ Parmidge
+ */
+public class HistogramViewPanelTest {
+    private static final int HEIGHT = 100;
+    private static final int HIST_COLOR = 0xFF0000;
+
+    @Test
+    public void narrowRange_matchesPixelByPixelDrawing() {
+        Random random = new Random(44);
+        Histogram.Builder builder = new Histogram.Builder(0, 255);
+        for (int i = 0; i < 20000; i++) {
+            builder.addValue((int) Math.min(255, Math.abs(80 + 40 * random.nextGaussian())));
+        }
+        Histogram hist = builder.build();
+        int columnWidth = 2;
+        BufferedImage actual = getImage(
+                new HistogramViewPanel(hist, HEIGHT, columnWidth, new Range(0, 255)));
+
+        assertEquals(256 * columnWidth, actual.getWidth());
+        long maxCount = hist.getNumberModeInstances();
+        for (int value = 0; value <= 255; value++) {
+            long columnHeight = hist.getNumValuesAt(value) * HEIGHT / maxCount;
+            for (int x = value * columnWidth; x < (value + 1) * columnWidth; x++) {
+                for (int y = 0; y < HEIGHT; y++) {
+                    boolean filled = y > HEIGHT - columnHeight;
+                    assertEquals("Pixel (" + x + ", " + y + ")", filled,
+                            (actual.getRGB(x, y) & 0xFFFFFF) == HIST_COLOR);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void wideRange_decimatedToTallestValueInColumn() {
+        Histogram.Builder builder = new Histogram.Builder(0, 65535);
+        for (int value = 0; value <= 65535; value += 7) {
+            builder.addValue(value);
+        }
+        for (int i = 0; i < 50; i++) {
+            builder.addValue(40000); // A spike, which must not be lost by decimation.
+        }
+        Histogram hist = builder.build();
+        BufferedImage actual = getImage(
+                new HistogramViewPanel(hist, HEIGHT, 3, new Range(0, 65535)));
+
+        int width = actual.getWidth();
+        assertTrue("Width " + width, width <= 1024);
+        int tallestX = -1;
+        for (int x = 0; x < width; x++) {
+            if ((actual.getRGB(x, 1) & 0xFFFFFF) == HIST_COLOR) { // Only the spike is this tall.
+                tallestX = tallestX == -1 ? x : tallestX;
+                assertEquals(tallestX, x); // The spike's column is one pixel wide.
+            }
+        }
+        assertEquals((double) 40000 / 65536, (double) tallestX / width, 1.0 / width);
+    }
+
+    private static BufferedImage getImage(HistogramViewPanel panel) {
+        for (Component component : panel.getComponents()) {
+            if (component instanceof JLabel && ((JLabel) component).getIcon() != null) {
+                return (BufferedImage) ((ImageIcon) ((JLabel) component).getIcon()).getImage();
+            }
+        }
+        fail("HistogramViewPanel has no image");
+        return null;
+    }
+}
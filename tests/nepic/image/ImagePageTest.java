@@ -0,0 +1,157 @@
+package nepic.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.Random;
+
+import nepic.data.Histogram;
+import nepic.geo.Blob;
+import nepic.geo.BoundingBox;
+import nepic.roi.ConflictingRoisException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link ImagePage}.
+ *
+ * @author AJ Parmidge
+ */
+public class ImagePageTest {
+    private ImagePage img;
+    private Blob square; // The 3x3 square from (2, 2) to (4, 4)
+
+    @Before
+    public void setUp() {
+        img = new ImagePage(10, 10);
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                img.setRGB(x, y, (byte) (x + 10 * y));
+            }
+        }
+        square = Blob.newBlobFromTracedEdges(Lists.newArrayList(new Point(2, 2), new Point(3, 2),
+                new Point(4, 2), new Point(4, 3), new Point(4, 4), new Point(3, 4),
+                new Point(2, 4), new Point(2, 3)));
+    }
+
+    private static Roi newRoi(ImagePage img) {
+        return new Roi(img) {
+            @Override
+            public List<Point> getEdges() {
+                return null;
+            }
+
+            @Override
+            public List<Point> getInnards() {
+                return null;
+            }
+
+            @Override
+            public boolean isValid() {
+                return true;
+            }
+
+            @Override
+            public Object[] getCsvData() {
+                return null;
+            }
+
+            @Override
+            public BoundingBox getBoundingBox() {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void sumPixelIntensities() {
+        int expectedSum = 0;
+        for (int x = 2; x <= 4; x++) {
+            for (int y = 2; y <= 4; y++) {
+                expectedSum += x + 10 * y;
+            }
+        }
+        assertEquals(expectedSum, img.sumPixelIntensities(square));
+    }
+
+    @Test
+    public void associateBlobWithRoi_thenDissociate() throws ConflictingRoisException {
+        Roi roi = newRoi(img);
+        img.associateBlobWithRoi(square, roi);
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                boolean inSquare = x >= 2 && x <= 4 && y >= 2 && y <= 4;
+                assertEquals(inSquare ? roi.getId() : ImagePage.NON_ROI_ID, img.getId(x, y));
+                assertEquals(x + 10 * y, img.getPixelIntensity(x, y));
+            }
+        }
+
+        img.dissociateBlobFromRoi(square, roi);
+        for (int x = 2; x <= 4; x++) {
+            for (int y = 2; y <= 4; y++) {
+                assertEquals(ImagePage.NON_ROI_ID, img.getId(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void associateBlobWithRoi_conflictingRoi_associatesNoPixels()
+            throws ConflictingRoisException {
+        Roi otherRoi = newRoi(img);
+        img.associatePixelWithRoi(4, 4, otherRoi);
+        Roi roi = newRoi(img);
+        try {
+            img.associateBlobWithRoi(square, roi);
+            fail("Expected ConflictingRoisException");
+        } catch (ConflictingRoisException expected) {
+            // Expected.
+        }
+        for (int x = 2; x <= 4; x++) {
+            for (int y = 2; y <= 4; y++) {
+                int expectedId = (x == 4 && y == 4) ? otherRoi.getId() : ImagePage.NON_ROI_ID;
+                assertEquals(expectedId, img.getId(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void associateBlobInnardsWithRoi_associatesOnlyInnards() throws ConflictingRoisException {
+        Roi roi = newRoi(img);
+        img.associateBlobInnardsWithRoi(square, roi);
+        List<Point> innards = square.getInnards();
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                boolean isInnard = innards.contains(new Point(x, y));
+                assertEquals(isInnard ? roi.getId() : ImagePage.NON_ROI_ID, img.getId(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void makeHistogram_wideImage_sameAsAddingEachPixel() {
+        ImagePage wideImg = new ImagePage(300, 7); // Wide enough to be split into strips.
+        Random random = new Random(41);
+        Histogram.Builder expectedBuilder = new Histogram.Builder(0, 255);
+        for (int x = 0; x < wideImg.width; x++) {
+            for (int y = 0; y < wideImg.height; y++) {
+                int pi = random.nextInt(200) + 20;
+                wideImg.setRGB(x, y, (byte) pi);
+                expectedBuilder.addValue(pi);
+            }
+        }
+        Histogram expected = expectedBuilder.build();
+        Histogram actual = wideImg.makeHistogram();
+
+        assertEquals(expected.getNumValues(), actual.getNumValues());
+        assertEquals(expected.getMean(), actual.getMean(), 0.0);
+        assertEquals(expected.getModes(), actual.getModes());
+        for (int pi = 0; pi <= 255; pi++) {
+            assertEquals(expected.getNumValuesAt(pi), actual.getNumValuesAt(pi));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package nepic.image;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Point;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link PhaseCorrelator}.
+ *
+ * @author AJ Parmidge
+ */
+public class PhaseCorrelatorTest {
+
+    @Test
+    public void estimateShift_findsTranslation() {
+        PhaseCorrelator correlator = new PhaseCorrelator();
+        ImagePage from = makeBlobPage(120, 100, 50, 40);
+        ImagePage to = makeBlobPage(120, 100, 57, 35);
+        assertEquals(new Point(7, -5), correlator.estimateShift(from, to));
+        assertEquals(new Point(0, 0), correlator.estimateShift(from, from));
+    }
+
+    @Test
+    public void estimateShift_consecutivePages_reusesSpectrum() {
+        PhaseCorrelator correlator = new PhaseCorrelator();
+        ImagePage pg0 = makeBlobPage(64, 64, 30, 30);
+        ImagePage pg1 = makeBlobPage(64, 64, 33, 28);
+        ImagePage pg2 = makeBlobPage(64, 64, 31, 32);
+        assertEquals(new Point(3, -2), correlator.estimateShift(pg0, pg1));
+        assertEquals(new Point(-2, 4), correlator.estimateShift(pg1, pg2));
+        assertEquals(new Point(1, 2), correlator.estimateShift(pg0, pg2));
+    }
+
+    @Test
+    public void estimateShift_largePage_accurateToBlockSize() {
+        PhaseCorrelator correlator = new PhaseCorrelator();
+        ImagePage from = makeBlobPage(600, 300, 300, 150);
+        Point shift = correlator.estimateShift(from, makeBlobPage(600, 300, 340, 130));
+        int blockSize = 3; // 600 pixels shrunk to fit in 256 samples.
+        assertEquals(40, shift.x, blockSize);
+        assertEquals(-20, shift.y, blockSize);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void estimateShift_differentSizes_throws() {
+        new PhaseCorrelator().estimateShift(new ImagePage(10, 10), new ImagePage(10, 12));
+    }
+
+    /**
+     * Makes a page with a background texture and a bright blob, both centered at the given point.
+     */
+    private static ImagePage makeBlobPage(int width, int height, int centerX, int centerY) {
+        ImagePage page = new ImagePage(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int dx = x - centerX;
+                int dy = y - centerY;
+                double blob = 150 * Math.exp(-(dx * dx + dy * dy) / 60.0);
+                double texture = 20 * Math.sin(dx / 3.0) * Math.cos(dy / 4.0)
+                        * Math.exp(-(dx * dx + dy * dy) / 2000.0);
+                page.setRGB(x, y, (byte) (int) (60 + blob + texture));
+            }
+        }
+        return page;
+    }
+}
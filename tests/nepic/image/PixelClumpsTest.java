@@ -0,0 +1,142 @@
+package nepic.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.List;
+
+import nepic.geo.BoundingBox;
+import nepic.util.Pixel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link PixelClumps}.
+ *
+ * @author AJ Parmidge
+ */
+public class PixelClumpsTest {
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 400;
+    private static final byte DIM = 10;
+    private static final byte BRIGHT = 100;
+
+    private ImagePage img;
+
+    @Before
+    public void setUp() {
+        img = new ImagePage(WIDTH, HEIGHT);
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                img.setRGB(x, y, DIM);
+            }
+        }
+    }
+
+    private void fill(int minX, int maxX, int minY, int maxY, byte pi) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                img.setRGB(x, y, pi);
+            }
+        }
+    }
+
+    @Test
+    public void find_noBrightPixels() {
+        assertEquals(0, PixelClumps.find(img, 50).getNumClumps());
+    }
+
+    @Test
+    public void find_separateClumps() {
+        fill(2, 4, 2, 4, BRIGHT);
+        fill(10, 12, 2, 2, BRIGHT);
+        fill(5, 5, 5, 5, BRIGHT); // Only touches the first clump at a corner.
+
+        PixelClumps clumps = PixelClumps.find(img, 50);
+        assertEquals(3, clumps.getNumClumps());
+        int first = clumps.getClumpNumber(2, 2);
+        assertEquals(9, clumps.getSize(first));
+        assertEquals(3, clumps.getSize(clumps.getClumpNumber(10, 2)));
+        assertEquals(1, clumps.getSize(clumps.getClumpNumber(5, 5)));
+        assertEquals(-1, clumps.getClumpNumber(0, 0));
+    }
+
+    @Test
+    public void find_clumpSpanningAllStrips() {
+        // A 'U' shape whose arms are only joined at the very bottom of the image.
+        fill(5, 6, 0, HEIGHT - 1, BRIGHT);
+        fill(30, 31, 0, HEIGHT - 1, BRIGHT);
+        fill(5, 31, HEIGHT - 1, HEIGHT - 1, BRIGHT);
+
+        // Split into strips explicitly, so the strips are stitched together on any machine.
+        for (int numStrips : new int[] { 1, 2, 7, HEIGHT }) {
+            assertUShapeFound(PixelClumps.find(img, 50, numStrips));
+        }
+        assertUShapeFound(PixelClumps.find(img, 50));
+    }
+
+    private static void assertUShapeFound(PixelClumps clumps) {
+        assertEquals(1, clumps.getNumClumps());
+        assertEquals(clumps.getClumpNumber(5, 0), clumps.getClumpNumber(31, 0));
+        assertEquals(4 * HEIGHT + 23, clumps.getSize(0));
+        BoundingBox bounds = clumps.getBoundingBox(0);
+        assertEquals(5, bounds.getMinX());
+        assertEquals(31, bounds.getMaxX());
+        assertEquals(0, bounds.getMinY());
+        assertEquals(HEIGHT - 1, bounds.getMaxY());
+        assertEquals(31, clumps.getMaxXPixel(0).x);
+    }
+
+    @Test
+    public void getMostIntensePixel() {
+        fill(2, 8, 2, 8, BRIGHT);
+        img.setRGB(6, 3, (byte) 120);
+        img.setRGB(7, 7, (byte) 120);
+
+        PixelClumps clumps = PixelClumps.find(img, 50);
+        Pixel peak = clumps.getMostIntensePixel(0);
+        assertEquals(new Point(6, 3), new Point(peak.x, peak.y));
+        assertEquals(120, peak.color);
+    }
+
+    @Test
+    public void find_ignoresPixelsInOtherRois() throws Exception {
+        fill(2, 8, 2, 8, BRIGHT);
+        Roi roi = new Roi(img) {
+            @Override
+            public List<Point> getEdges() {
+                return null;
+            }
+
+            @Override
+            public List<Point> getInnards() {
+                return null;
+            }
+
+            @Override
+            public boolean isValid() {
+                return true;
+            }
+
+            @Override
+            public Object[] getCsvData() {
+                return null;
+            }
+
+            @Override
+            public BoundingBox getBoundingBox() {
+                return null;
+            }
+        };
+        for (int y = 2; y <= 8; y++) {
+            img.associatePixelWithRoi(5, y, roi); // Splits the bright square in two.
+        }
+
+        PixelClumps clumps = PixelClumps.find(img, 50);
+        assertEquals(2, clumps.getNumClumps());
+        assertTrue(clumps.getClumpNumber(4, 5) != clumps.getClumpNumber(6, 5));
+        assertEquals(-1, clumps.getClumpNumber(5, 5));
+    }
+}
@@ -0,0 +1,82 @@
+package nepic.roi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.List;
+
+import nepic.geo.Polygon;
+import nepic.image.ConstraintMap;
+import nepic.image.ImagePage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link BackgroundFinder}.
+ *
+ * @author AJ Parmidge
+ */
+public class BackgroundFinderTest {
+    private static final Point ORIG_ORIGIN = new Point(20, 20);
+    private static final Point TRACKED_ORIGIN = new Point(25, 22);
+
+    private BackgroundFinder finder;
+    private Polygon origBkArea;
+
+    @Before
+    public void setUp() {
+        origBkArea = new Polygon(
+                new Point(10, 10), new Point(30, 10), new Point(30, 30), new Point(10, 30));
+        finder = new BackgroundFinder();
+        finder.setImage(new ImagePage(100, 100));
+        finder.createFeature(new ConstraintMap()
+                .addConstraint(BackgroundFinder.AREA, origBkArea)
+                .addConstraint(BackgroundFinder.ORIGIN, ORIG_ORIGIN)
+                .addConstraint(BackgroundFinder.CURR_THETA, 0.0));
+        finder.setImage(new ImagePage(100, 100)); // The next page.
+    }
+
+    private Background track(double theta) {
+        return finder.createFeature(new ConstraintMap()
+                .addConstraint(BackgroundFinder.ORIGIN, TRACKED_ORIGIN)
+                .addConstraint(BackgroundFinder.CURR_THETA, theta));
+    }
+
+    @Test
+    public void createFeature_trackedAtSameTheta_translatesAreaAsDrawn() {
+        Polygon expected = origBkArea.deepCopy();
+        expected.translate(TRACKED_ORIGIN.x - ORIG_ORIGIN.x, TRACKED_ORIGIN.y - ORIG_ORIGIN.y);
+
+        Background tracked = track(0.0);
+        assertEquals(expected.getVertices(), tracked.getArea().getVertices());
+        assertEquals(TRACKED_ORIGIN, tracked.getOrigin());
+    }
+
+    @Test
+    public void createFeature_trackedAtNewTheta_rotatesAreaAroundNewOrigin() {
+        for (double theta : new double[] { Math.PI / 6, -Math.PI / 4, 1.0 }) {
+            // Rotate around the new origin, and then move by the change in origin.
+            Polygon expected = origBkArea.rotate(theta, TRACKED_ORIGIN);
+            expected.translate(TRACKED_ORIGIN.x - ORIG_ORIGIN.x, TRACKED_ORIGIN.y - ORIG_ORIGIN.y);
+
+            finder.setImage(new ImagePage(100, 100));
+            Background tracked = track(theta);
+            assertEquals(theta, tracked.getTheta(), 0.0);
+            // The angle is rounded to one of the cached angles (moving each vertex by at most half
+            // a pixel), and the cached rotation and the offset to the new origin are each rounded
+            // separately, so each vertex may be up to two pixels from the expected vertex.
+            List<Point> expectedVertices = expected.getVertices();
+            List<Point> actualVertices = tracked.getArea().getVertices();
+            assertEquals(expectedVertices.size(), actualVertices.size());
+            for (int i = 0; i < expectedVertices.size(); i++) {
+                Point expectedVertex = expectedVertices.get(i);
+                Point actualVertex = actualVertices.get(i);
+                assertTrue("theta = " + theta + ": expected " + expectedVertex + " but was "
+                        + actualVertex, Math.abs(expectedVertex.x - actualVertex.x) <= 2
+                        && Math.abs(expectedVertex.y - actualVertex.y) <= 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package nepic.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for {@link Fft}.
+ *
+ * @author AJ Parmidge
+ */
+public class FftTest {
+    private static final double EPSILON = 1e-9;
+    private final Random random = new Random(50);
+
+    @Test
+    public void transform_matchesDft() {
+        for (int n = 1; n <= 64; n *= 2) {
+            double[] re = randomSequence(n);
+            double[] im = randomSequence(n);
+            double[][] expected = dft(re, im);
+            new Fft(n).transform(re, im, false);
+            assertClose(expected[0], re, EPSILON);
+            assertClose(expected[1], im, EPSILON);
+        }
+    }
+
+    @Test
+    public void transform_inverse_scalesBySize() {
+        double[] re = randomSequence(16);
+        double[] im = randomSequence(16);
+        double[] expectedRe = scale(re, 16);
+        double[] expectedIm = scale(im, 16);
+        Fft fft = new Fft(16);
+        fft.transform(re, im, false);
+        fft.transform(re, im, true);
+        assertClose(expectedRe, re, EPSILON);
+        assertClose(expectedIm, im, EPSILON);
+    }
+
+    @Test
+    public void realForward_matchesDft() {
+        for (int n = 1; n <= 32; n *= 2) {
+            double[] x = randomSequence(2 * n);
+            double[][] expected = dft(x, new double[2 * n]);
+            double[] re = new double[n + 1];
+            double[] im = new double[n + 1];
+            new Fft(n).realForward(x, re, im);
+            for (int k = 0; k <= n; k++) {
+                assertClose(new double[] { expected[0][k], expected[1][k] },
+                        new double[] { re[k], im[k] }, EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void realInverse_undoesRealForward() {
+        for (int n = 1; n <= 32; n *= 2) {
+            double[] x = randomSequence(2 * n);
+            double[] re = new double[n + 1];
+            double[] im = new double[n + 1];
+            double[] result = new double[2 * n];
+            Fft fft = new Fft(n);
+            fft.realForward(x, re, im);
+            fft.realInverse(re, im, result);
+            assertClose(scale(x, 2 * n), result, EPSILON);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ctor_notPowerOfTwo_throws() {
+        new Fft(12);
+    }
+
+    private static void assertClose(double[] expected, double[] actual, double epsilon) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Value " + i, expected[i], actual[i], epsilon);
+        }
+    }
+
+    private double[] randomSequence(int length) {
+        double[] sequence = new double[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = random.nextDouble() * 2 - 1;
+        }
+        return sequence;
+    }
+
+    private static double[] scale(double[] sequence, double factor) {
+        double[] scaled = new double[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            scaled[i] = sequence[i] * factor;
+        }
+        return scaled;
+    }
+
+    private static double[][] dft(double[] re, double[] im) {
+        int n = re.length;
+        double[][] result = new double[2][n];
+        for (int k = 0; k < n; k++) {
+            for (int t = 0; t < n; t++) {
+                double angle = -2 * Math.PI * k * t / n;
+                result[0][k] += re[t] * Math.cos(angle) - im[t] * Math.sin(angle);
+                result[1][k] += re[t] * Math.sin(angle) + im[t] * Math.cos(angle);
+            }
+        }
+        return result;
+    }
+}
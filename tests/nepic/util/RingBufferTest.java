@@ -0,0 +1,73 @@
+package nepic.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit tests for {@link RingBuffer}.
+ *
+ * @author AJ Parmidge
+ */
+public class RingBufferTest {
+
+    @Test
+    public void add_notFull() {
+        RingBuffer<String> ring = new RingBuffer<String>(3);
+        assertNull(ring.add("a"));
+        assertNull(ring.add("b"));
+        assertEquals(2, ring.size());
+        assertEquals(3, ring.capacity());
+        assertEquals("a", ring.get(0));
+        assertEquals("b", ring.get(1));
+    }
+
+    @Test
+    public void add_full_evictsOldest() {
+        RingBuffer<String> ring = new RingBuffer<String>(3);
+        ring.add("a");
+        ring.add("b");
+        ring.add("c");
+        assertEquals("a", ring.add("d"));
+        assertEquals("b", ring.add("e"));
+        assertEquals(3, ring.size());
+        assertEquals(Lists.newArrayList("c", "d", "e"), toList(ring));
+    }
+
+    @Test
+    public void clear() {
+        RingBuffer<String> ring = new RingBuffer<String>(2);
+        ring.add("a");
+        ring.add("b");
+        ring.add("c");
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertNull(ring.add("d"));
+        assertEquals(Lists.newArrayList("d"), toList(ring));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfBounds_throws() {
+        RingBuffer<String> ring = new RingBuffer<String>(2);
+        ring.add("a");
+        ring.get(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ctor_zeroCapacity_throws() {
+        new RingBuffer<String>(0);
+    }
+
+    private static List<String> toList(RingBuffer<String> ring) {
+        List<String> list = Lists.newArrayList();
+        for (String element : ring) {
+            list.add(element);
+        }
+        return list;
+    }
+}